@@ -27,6 +27,10 @@ import java.beans.PropertyChangeSupport;
 import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
 import java.nio.charset.StandardCharsets;
 import java.security.SecureRandom;
 import java.util.ArrayList;
@@ -79,6 +83,8 @@ import VASSAL.build.module.properties.MutableProperty;
 import VASSAL.build.module.properties.PropertySource;
 import VASSAL.build.module.turn.TurnTracker;
 import VASSAL.build.widget.PieceSlot;
+import VASSAL.command.BinaryCommandReader;
+import VASSAL.command.BinaryCommandWriter;
 import VASSAL.command.Command;
 import VASSAL.command.CommandEncoder;
 import VASSAL.command.Logger;
@@ -86,6 +92,7 @@ import VASSAL.command.NullCommand;
 import VASSAL.configure.CompoundValidityChecker;
 import VASSAL.configure.MandatoryComponent;
 import VASSAL.counters.GamePiece;
+import VASSAL.counters.TraitDefinitionCache;
 import VASSAL.i18n.ComponentI18nData;
 import VASSAL.i18n.Localization;
 import VASSAL.i18n.Resources;
@@ -147,6 +154,8 @@ public abstract class GameModule extends AbstractConfigurable implements Command
     @Override
     public void propertyChange(PropertyChangeEvent evt) {
       for (Map map : Map.getMapList()) {
+        // the bounds of pieces may depend on the property
+        map.invalidatePieceBounds();
         map.repaint();
       }
     }
@@ -603,6 +612,58 @@ public abstract class GameModule extends AbstractConfigurable implements Command
     }
   }
 
+  /**
+   * Uses the registered {@link CommandEncoder}s to decode a single
+   * {@link Command}, ignoring any subcommands it encodes.
+   */
+  protected Command decodeSubCommand(String subCommand) {
+    Command c = null;
+    for (int i = 0; i < commandEncoders.length && c == null; ++i) {
+      c = commandEncoders[i].decode(subCommand);
+    }
+    return c;
+  }
+
+  /**
+   * Uses the registered {@link CommandEncoder}s to encode a single
+   * {@link Command}, ignoring its subcommands.
+   */
+  public String encodeSubCommand(Command c) {
+    String s = null;
+    for (int i = 0; i < commandEncoders.length && s == null; ++i) {
+      s = commandEncoders[i].encode(c);
+    }
+    return s;
+  }
+
+  /**
+   * Uses the registered {@link CommandEncoder}s to encode a {@link Command}
+   * and its subcommands to a stream in the binary saved game format.
+   *
+   * @see BinaryCommandWriter
+   */
+  public void encodeBinary(Command c, OutputStream out) throws IOException {
+    new BinaryCommandWriter(this::encodeSubCommand, out).write(c);
+  }
+
+  /**
+   * Uses the registered {@link CommandEncoder}s to decode a {@link Command}
+   * from a stream in the binary saved game format.
+   *
+   * @see BinaryCommandReader
+   */
+  public Command decodeBinary(InputStream in) throws IOException {
+    return new BinaryCommandReader(this::decodeSubCommand, in).read();
+  }
+
+  /**
+   * Uses the registered {@link CommandEncoder}s to decode the text read
+   * from a {@link Reader} into a {@link Command}.
+   */
+  public Command decode(Reader in) throws IOException {
+    return decode(IOUtils.toString(in));
+  }
+
   /**
    * Uses the registered {@link CommandEncoder}s to encode a {@link Command} into a String object
    */
@@ -621,6 +682,17 @@ public abstract class GameModule extends AbstractConfigurable implements Command
     return s;
   }
 
+  /**
+   * Uses the registered {@link CommandEncoder}s to encode a {@link Command}
+   * to a {@link Writer}.
+   */
+  public void encode(Command c, Writer out) throws IOException {
+    final String s = encode(c);
+    if (s != null) {
+      out.write(s);
+    }
+  }
+
   /**
    * @return a common FileChooser so that recent file locations
    * can be remembered
@@ -862,6 +934,8 @@ public abstract class GameModule extends AbstractConfigurable implements Command
           theModule.getDataArchive().getName()));
     }
     else {
+      // definitions may refer to the images of the last module
+      TraitDefinitionCache.clear();
       theModule = module;
       theModule.setGpIdSupport(theModule);
       try {
@@ -897,6 +971,7 @@ public abstract class GameModule extends AbstractConfigurable implements Command
     if (theModule != null) {
       if (theModule.shutDown()) {
         theModule = null;
+        TraitDefinitionCache.clear();
       }
     }
   }
@@ -19,8 +19,13 @@
 package VASSAL.build.module;
 
 import java.awt.Point;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -96,6 +101,17 @@ public class BasicCommandEncoder implements CommandEncoder, Buildable {
   private Map<String,DecoratorFactory> decoratorFactories =
     new HashMap<>();
 
+  // The outer trait type and the inner piece type of each piece type
+  // decoded. Many pieces share a type, so this spares unescaping the
+  // inner type again at each level of each of them, and lets the traits
+  // find their shared definitions by the same strings.
+  private static final int MAX_SPLIT_TYPES = 16384;
+  private final Map<String,String[]> splitTypes = new ConcurrentHashMap<>();
+
+  // pieces being built in parallel for the current thread, if any
+  private static final ThreadLocal<List<ForkJoinTask<GamePiece>>> pending =
+    new ThreadLocal<>();
+
   public BasicCommandEncoder() {
     basicFactories.put(Stack.TYPE, new BasicPieceFactory() {
       @Override
@@ -388,9 +404,21 @@ public class BasicCommandEncoder implements CommandEncoder, Buildable {
    * createDecorator or createBasic
    */
   public GamePiece createPiece(String type) {
-    SequenceEncoder.Decoder st = new SequenceEncoder.Decoder(type, '\t');
-    type = st.nextToken();
-    String innerType = st.hasMoreTokens() ? st.nextToken() : null;
+    String[] split = splitTypes.get(type);
+    if (split == null) {
+      final SequenceEncoder.Decoder st =
+        new SequenceEncoder.Decoder(type, '\t');
+      split = new String[2];
+      split[0] = st.nextToken();
+      split[1] = st.hasMoreTokens() ? st.nextToken() : null;
+      if (splitTypes.size() >= MAX_SPLIT_TYPES) {
+        splitTypes.clear();
+      }
+      splitTypes.put(type, split);
+    }
+
+    type = split[0];
+    String innerType = split[1];
 
     if (innerType != null) {
       GamePiece inner = createPiece(innerType);
@@ -407,6 +435,47 @@ public class BasicCommandEncoder implements CommandEncoder, Buildable {
     }
   }
 
+  /**
+   * Whether a piece of the given type may be built on a thread other than
+   * the one decoding it. Its constructors must not register it anywhere
+   * or touch unsynchronized shared state. {@link Stack}s and
+   * {@link Deck}s are built on the decoding thread.
+   */
+  protected boolean isParallelConstructionSafe(String type) {
+    return !type.startsWith(Stack.TYPE) && !type.startsWith(Deck.ID);
+  }
+
+  /**
+   * Build the pieces of {@link AddPiece} commands decoded on the calling
+   * thread in parallel, until {@link #endParallelConstruction} is called.
+   * The pieces are built detached, from their types alone; their states
+   * are set when the commands are executed, as usual.
+   *
+   * @return true if this began parallel construction, false if it was
+   * already under way
+   */
+  public static boolean beginParallelConstruction() {
+    if (pending.get() != null) {
+      return false;
+    }
+    pending.set(new ArrayList<>());
+    return true;
+  }
+
+  /**
+   * Wait for the pieces begun since {@link #beginParallelConstruction}
+   * to be built, and build any further pieces on the decoding thread.
+   */
+  public static void endParallelConstruction() {
+    final List<ForkJoinTask<GamePiece>> tasks = pending.get();
+    pending.remove();
+    if (tasks != null) {
+      for (ForkJoinTask<GamePiece> t : tasks) {
+        t.join();
+      }
+    }
+  }
+
   @Override
   public void build(org.w3c.dom.Element e) {
     Builder.build(e, this);
@@ -426,10 +495,11 @@ public class BasicCommandEncoder implements CommandEncoder, Buildable {
     return doc.createElement(getClass().getName());
   }
 
-  private static final char PARAM_SEPARATOR = '/';
+  public static final char PARAM_SEPARATOR = '/';
   public static final String ADD = "+" + PARAM_SEPARATOR; //$NON-NLS-1$
   public static final String REMOVE = "-" + PARAM_SEPARATOR; //$NON-NLS-1$
   public static final String CHANGE = "D" + PARAM_SEPARATOR; //$NON-NLS-1$
+  public static final String CHANGE_DELTA = "d" + PARAM_SEPARATOR; //$NON-NLS-1$
   public static final String MOVE = "M" + PARAM_SEPARATOR; //$NON-NLS-1$
 
   @Override
@@ -444,6 +514,20 @@ public class BasicCommandEncoder implements CommandEncoder, Buildable {
       String id = unwrapNull(st.nextToken());
       String type = st.nextToken();
       String state = st.nextToken();
+      final List<ForkJoinTask<GamePiece>> tasks = pending.get();
+      if (tasks != null && isParallelConstructionSafe(type)) {
+        final ForkJoinTask<GamePiece> task = ForkJoinTask.adapt(() -> {
+          final GamePiece p = createPiece(type);
+          if (p != null) {
+            p.setId(id);
+          }
+          return p;
+        });
+        ForkJoinPool.commonPool().execute(task);
+        tasks.add(task);
+        return new AddPiece(task, state);
+      }
+
       GamePiece p = createPiece(type);
       if (p == null) {
         return null;
@@ -471,6 +555,24 @@ public class BasicCommandEncoder implements CommandEncoder, Buildable {
       String oldState = st.hasMoreTokens() ? st.nextToken() : null;
       return new ChangePiece(id, oldState, newState);
     }
+    else if (command.startsWith(CHANGE_DELTA)) {
+      command = command.substring(CHANGE_DELTA.length());
+      st = new SequenceEncoder.Decoder(command, PARAM_SEPARATOR);
+      final String id = st.nextToken();
+      final int layers = st.nextInt(0);
+      final long checksum = Long.parseLong(st.nextToken(), 16);
+      final int n = st.nextInt(0);
+      final int[] changed = new int[n];
+      final String[] newStates = new String[n];
+      final String[] oldStates = new String[n];
+      for (int i = 0; i < n; ++i) {
+        changed[i] = st.nextInt(0);
+        newStates[i] = st.nextToken();
+        oldStates[i] = st.nextToken();
+      }
+      return new ChangePiece(id,
+        new ChangePiece.Delta(layers, checksum, changed, newStates, oldStates));
+    }
     else if (command.startsWith(MOVE)) {
       command = command.substring(MOVE.length());
       st = new SequenceEncoder.Decoder(command, PARAM_SEPARATOR);
@@ -491,6 +593,22 @@ public class BasicCommandEncoder implements CommandEncoder, Buildable {
     }
   }
 
+  private static volatile boolean deltaEncoding = false;
+
+  /**
+   * Whether {@link ChangePiece} commands are encoded as deltas, which
+   * older versions cannot read, where possible. Off unless the player
+   * opts in through the preference set up by {@link GameState}, since
+   * nothing tells which versions the other players are using.
+   */
+  public static void setDeltaEncoding(boolean enabled) {
+    deltaEncoding = enabled;
+  }
+
+  public static boolean isDeltaEncoding() {
+    return deltaEncoding;
+  }
+
   private String wrapNull(String s) {
     return s == null ? "null" : s; //$NON-NLS-1$
   }
@@ -511,6 +629,21 @@ public class BasicCommandEncoder implements CommandEncoder, Buildable {
     }
     else if (c instanceof ChangePiece) {
       ChangePiece cp = (ChangePiece) c;
+      final ChangePiece.Delta delta = cp.getNewState() == null || deltaEncoding ?
+        cp.getDelta() : null;
+      if (delta != null) {
+        final int[] changed = delta.getChangedLayers();
+        final String[] newStates = delta.getNewStates();
+        final String[] oldStates = delta.getOldStates();
+        se.append(cp.getId())
+          .append(delta.getLayerCount())
+          .append(Long.toHexString(delta.getChecksum()))
+          .append(changed.length);
+        for (int i = 0; i < changed.length; ++i) {
+          se.append(changed[i]).append(newStates[i]).append(oldStates[i]);
+        }
+        return CHANGE_DELTA + se.getValue();
+      }
       se.append(cp.getId()).append(cp.getNewState());
       if (cp.getOldState() != null) {
         se.append(cp.getOldState());
@@ -21,16 +21,20 @@ package VASSAL.build.module;
 
 import java.awt.Event;
 import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
 import java.awt.event.KeyEvent;
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
+import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.URL;
-import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 
 import javax.swing.AbstractAction;
 import javax.swing.Action;
@@ -38,7 +42,9 @@ import javax.swing.ImageIcon;
 import javax.swing.JButton;
 import javax.swing.JOptionPane;
 import javax.swing.KeyStroke;
+import javax.swing.Timer;
 
+import org.slf4j.LoggerFactory;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 
@@ -56,20 +62,22 @@ import VASSAL.configure.IconConfigurer;
 import VASSAL.configure.NamedHotKeyConfigurer;
 import VASSAL.i18n.Resources;
 import VASSAL.launch.Launcher;
+import VASSAL.tools.ErrorDialog;
 import VASSAL.tools.KeyStrokeListener;
 import VASSAL.tools.NamedKeyStroke;
 import VASSAL.tools.NamedKeyStrokeListener;
 import VASSAL.tools.WriteErrorDialog;
 import VASSAL.tools.filechooser.FileChooser;
 import VASSAL.tools.filechooser.LogFileFilter;
-import VASSAL.tools.io.FastByteArrayOutputStream;
 import VASSAL.tools.io.FileArchive;
-import VASSAL.tools.io.ObfuscatingOutputStream;
 import VASSAL.tools.io.ZipArchive;
 import VASSAL.tools.menu.MenuManager;
 import VASSAL.tools.swing.Dialogs;
 
 public class BasicLogger implements Logger, Buildable, GameComponent, CommandEncoder {
+  private static final org.slf4j.Logger log =
+    LoggerFactory.getLogger(BasicLogger.class);
+
   public static final String BEGIN = "begin_log";  //$NON-NLS-1$
   public static final String END = "end_log";  //$NON-NLS-1$
   public static final String LOG = "LOG\t";  //$NON-NLS-1$
@@ -88,14 +96,39 @@ public class BasicLogger implements Logger, Buildable, GameComponent, CommandEnc
   protected Action stepAction = new StepAction();
   protected SaveMetaData metadata;
 
+  /** Checkpoints of the logfile being replayed */
+  protected LogIndex inputIndex = new LogIndex();
+  /** Checkpoints of the logfile being written */
+  protected LogIndex outputIndex = new LogIndex();
+  /** True while a checkpoint is restored, which sets up the game anew */
+  protected boolean seeking = false;
+
+  /** Steps replayed between repaints when fast forwarding */
+  protected static final int FAST_FORWARD_STEPS = 10;
+  protected static final int FAST_FORWARD_DELAY = 50;
+  protected Timer fastForwardTimer;
+
   public BasicLogger() {
     super();
     stepAction.setEnabled(false);
     undoAction.setEnabled(false);
     endLogAction.setEnabled(false);
     newLogAction.setEnabled(false);
+    stepBackAction.setEnabled(false);
+    goToStepAction.setEnabled(false);
+    fastForwardAction.setEnabled(false);
     logInput = new ArrayList<>();
     logOutput = new ArrayList<>();
+
+    // LogCommands enable stepping as they are read
+    stepAction.addPropertyChangeListener(new PropertyChangeListener() {
+      @Override
+      public void propertyChange(PropertyChangeEvent evt) {
+        if ("enabled".equals(evt.getPropertyName())) {  //$NON-NLS-1$
+          updatePlaybackActions();
+        }
+      }
+    });
   }
 
   @Override
@@ -123,6 +156,9 @@ public class BasicLogger implements Logger, Buildable, GameComponent, CommandEnc
     // some languages
     endLogAction.putValue(Action.MNEMONIC_KEY,(int)Resources.getString("BasicLogger.end_logfile.shortcut").charAt(0));
     mm.addAction("BasicLogger.end_logfile", endLogAction);
+    mm.addAction("BasicLogger.step_back", stepBackAction);
+    mm.addAction("BasicLogger.go_to_step", goToStepAction);
+    mm.addAction("BasicLogger.fast_forward", fastForwardAction);
 
     JButton button = mod.getToolBar().add(undoAction);
     button.setToolTipText(Resources.getString("BasicLogger.undo_last_move"));  //$NON-NLS-1$
@@ -135,6 +171,9 @@ public class BasicLogger implements Logger, Buildable, GameComponent, CommandEnc
     final NamedKeyStrokeListener stepKeyListener = new NamedKeyStrokeListener(stepAction, NamedKeyStroke.getNamedKeyStroke(KeyEvent.VK_PAGE_DOWN, 0));
     mod.addKeyStrokeListener(stepKeyListener);
 
+    final NamedKeyStrokeListener stepBackKeyListener = new NamedKeyStrokeListener(stepBackAction, NamedKeyStroke.getNamedKeyStroke(KeyEvent.VK_PAGE_UP, 0));
+    mod.addKeyStrokeListener(stepBackKeyListener);
+
     final KeyStrokeListener newLogKeyListener = new KeyStrokeListener(newLogAction, KeyStroke.getKeyStroke(KeyEvent.VK_W, Event.ALT_MASK));
     mod.addKeyStrokeListener(newLogKeyListener);
 
@@ -171,6 +210,16 @@ public class BasicLogger implements Logger, Buildable, GameComponent, CommandEnc
     });
     stepKeyConfig.fireUpdate();
 
+    final NamedHotKeyConfigurer stepBackKeyConfig = new NamedHotKeyConfigurer("stepBackHotKey", Resources.getString("BasicLogger.step_back_hotkey"), stepBackKeyListener.getNamedKeyStroke());  //$NON-NLS-1$ //$NON-NLS-2$
+    GlobalOptions.getInstance().addOption(stepBackKeyConfig);
+    stepBackKeyConfig.addPropertyChangeListener(new PropertyChangeListener() {
+      @Override
+      public void propertyChange(PropertyChangeEvent evt) {
+        stepBackKeyListener.setKeyStroke(stepBackKeyConfig.getValueNamedKeyStroke());
+      }
+    });
+    stepBackKeyConfig.fireUpdate();
+
     BooleanConfigurer logOptionStart = new BooleanConfigurer(PROMPT_NEW_LOG_START, Resources.getString("BasicLogger.prompt_new_log_before"), Boolean.FALSE);  //$NON-NLS-1$
     mod.getPrefs().addOption(Resources.getString("Prefs.general_tab"), logOptionStart); //$NON-NLS-1$
 
@@ -195,15 +244,23 @@ public class BasicLogger implements Logger, Buildable, GameComponent, CommandEnc
 
   @Override
   public void setup(boolean show) {
+    if (seeking) {
+      // restoring a checkpoint does not end the replay
+      return;
+    }
+
     newLogAction.setEnabled(show);
     if (show) {
       logOutput.clear();
+      outputIndex.clear();
       nextInput = 0;
       nextUndo = -1;
       beginningState =
         GameModule.getGameModule().getGameState().getRestoreCommand();
     }
     else {
+      stopFastForward();
+
       if (endLogAction.isEnabled()) {
         if (JOptionPane.showConfirmDialog(
             GameModule.getGameModule().getFrame(),
@@ -221,10 +278,13 @@ public class BasicLogger implements Logger, Buildable, GameComponent, CommandEnc
       }
 
       logInput.clear();
+      inputIndex = new LogIndex();
+      nextInput = 0;
       beginningState = null;
       undoAction.setEnabled(false);
       endLogAction.setEnabled(false);
       stepAction.setEnabled(false);
+      updatePlaybackActions();
       outputFile = null;
     }
   }
@@ -242,15 +302,200 @@ public class BasicLogger implements Logger, Buildable, GameComponent, CommandEnc
   }
 
   protected void step() {
+    if (nextInput == 0) {
+      checkpointInput();
+    }
+
     final Command c = logInput.get(nextInput++);
     c.execute();
     GameModule.getGameModule().sendAndLog(c);
+    checkpointInput();
     stepAction.setEnabled(nextInput < logInput.size());
+    updatePlaybackActions();
     if (!(nextInput < logInput.size())) {
+      stopFastForward();
       queryNewLogFile(false);
     }
   }
 
+  /**
+   * Go back one step through the logfile being replayed.
+   */
+  protected void stepBack() {
+    seek(nextInput - 1);
+  }
+
+  /**
+   * Move to any step of the logfile being replayed. The game is restored
+   * from the nearest earlier checkpoint, if the step is behind the current
+   * one or a checkpoint is nearer than it, and the steps from there are
+   * executed at once, so that the maps are repainted only at the end.
+   *
+   * The steps are not sent to other players or logged, so this is not
+   * allowed while writing a logfile or connected to a server.
+   *
+   * @param step the number of logged commands to have executed
+   */
+  public void seek(int step) {
+    step = Math.max(0, Math.min(step, logInput.size()));
+    if (step == nextInput) {
+      return;
+    }
+
+    final GameModule g = GameModule.getGameModule();
+    if (isLogging() || g.getServer().isConnected()) {
+      g.warn(Resources.getString("BasicLogger.cannot_seek"));  //$NON-NLS-1$
+      return;
+    }
+
+    stopFastForward();
+    if (nextInput == 0) {
+      checkpointInput();
+    }
+
+    final int from = inputIndex.floorStep(step);
+    if (step < nextInput && from < 0) {
+      g.warn(Resources.getString("BasicLogger.cannot_seek_back"));  //$NON-NLS-1$
+      return;
+    }
+
+    final GlobalOptions options = GlobalOptions.getInstance();
+    options.setCenteringSuspended(true);
+    try {
+      if (step < nextInput || from > nextInput) {
+        final Command restore = inputIndex.get(from);
+        seeking = true;
+        try {
+          g.getGameState().replaceGame(restore);
+        }
+        finally {
+          seeking = false;
+        }
+        nextInput = from;
+      }
+
+      while (nextInput < step) {
+        logInput.get(nextInput++).execute();
+        checkpointInput();
+      }
+    }
+    catch (IOException e) {
+      // the checkpoints are made by this version, so cannot be bad
+      ErrorDialog.bug(e);
+    }
+    finally {
+      options.setCenteringSuspended(false);
+    }
+
+    stepAction.setEnabled(hasMoreCommands());
+    updatePlaybackActions();
+    g.warn(Resources.getString("BasicLogger.at_step",  //$NON-NLS-1$
+      nextInput, logInput.size()));
+  }
+
+  /**
+   * Take a checkpoint of the game, if one is due at the current step of
+   * the logfile being replayed.
+   */
+  protected void checkpointInput() {
+    if (inputIndex.isDue(nextInput)) {
+      inputIndex.put(nextInput,
+        GameModule.getGameModule().getGameState().getRestoreCommand());
+    }
+  }
+
+  /**
+   * Take a checkpoint of the game, if one is due at the current step of
+   * the logfile being written.
+   */
+  protected void checkpointOutput() {
+    if (isLogging() && outputIndex.isDue(logOutput.size())) {
+      outputIndex.put(logOutput.size(),
+        GameModule.getGameModule().getGameState().getRestoreCommand());
+    }
+  }
+
+  /**
+   * Read the checkpoints written with a logfile just loaded, so that
+   * they need not be made again during the replay.
+   */
+  public void readIndex(File f) {
+    if (logInput.isEmpty()) {
+      return;
+    }
+
+    try (ZipFile zip = new ZipFile(f)) {
+      final ZipEntry entry = zip.getEntry(LogIndex.ZIP_ENTRY);
+      if (entry != null) {
+        try (InputStream in =
+               new BufferedInputStream(zip.getInputStream(entry))) {
+          final LogIndex index = LogIndex.read(in, logInput.size());
+          if (index != null) {
+            inputIndex = index;
+          }
+        }
+      }
+    }
+    catch (IOException | RuntimeException e) {
+      // without the index, checkpoints are made during the replay
+      log.warn("Failed to read the index of " + f, e);  //$NON-NLS-1$
+    }
+  }
+
+  public boolean isFastForwarding() {
+    return fastForwardTimer != null;
+  }
+
+  /**
+   * Replay the logfile several steps at a time, until the end is reached
+   * or {@link #stopFastForward} is called.
+   */
+  protected void startFastForward() {
+    if (isFastForwarding() || !hasMoreCommands()) {
+      return;
+    }
+
+    fastForwardTimer = new Timer(FAST_FORWARD_DELAY, new ActionListener() {
+      @Override
+      public void actionPerformed(ActionEvent e) {
+        fastForward();
+      }
+    });
+    fastForwardAction.putValue(Action.NAME,
+      Resources.getString("BasicLogger.stop_fast_forward"));  //$NON-NLS-1$
+    fastForwardTimer.start();
+  }
+
+  protected void fastForward() {
+    final GlobalOptions options = GlobalOptions.getInstance();
+    options.setCenteringSuspended(true);
+    try {
+      for (int i = 0; i < FAST_FORWARD_STEPS && isFastForwarding() &&
+                      hasMoreCommands(); ++i) {
+        step();
+      }
+    }
+    finally {
+      options.setCenteringSuspended(false);
+    }
+  }
+
+  public void stopFastForward() {
+    if (fastForwardTimer != null) {
+      fastForwardTimer.stop();
+      fastForwardTimer = null;
+      fastForwardAction.putValue(Action.NAME,
+        Resources.getString("BasicLogger.fast_forward"));  //$NON-NLS-1$
+      updatePlaybackActions();
+    }
+  }
+
+  protected void updatePlaybackActions() {
+    stepBackAction.setEnabled(nextInput > 0);
+    goToStepAction.setEnabled(!logInput.isEmpty());
+    fastForwardAction.setEnabled(hasMoreCommands() || isFastForwarding());
+  }
+
   /*
    * Check if user would like to create a new logfile
    */
@@ -310,15 +555,11 @@ public class BasicLogger implements Logger, Buildable, GameComponent, CommandEnc
         log.append(new LogCommand(c, logInput, stepAction));
       }
 
-// FIXME: Extremely inefficient! Make encode write to an OutputStream
-      final String s = GameModule.getGameModule().encode(log);
-      final FastByteArrayOutputStream ba = new FastByteArrayOutputStream();
-      try (OutputStream out = new ObfuscatingOutputStream(ba)) {
-        out.write(s.getBytes(StandardCharsets.UTF_8));
-      }
-
       try (FileArchive archive = new ZipArchive(outputFile)) {
-        archive.add(GameState.SAVEFILE_ZIP_ENTRY, ba.toInputStream());
+        GameState.writeSave(archive, log);
+        try (OutputStream out = archive.getOutputStream(LogIndex.ZIP_ENTRY)) {
+          outputIndex.write(out, logOutput.size());
+        }
         metadata.save(archive);
       }
 
@@ -391,6 +632,7 @@ public class BasicLogger implements Logger, Buildable, GameComponent, CommandEnc
     final GameModule gm = GameModule.getGameModule();
 
     logOutput.clear();
+    outputIndex.clear();
     beginningState = gm.getGameState().getRestoreCommand();
 
     undoAction.setEnabled(false);
@@ -423,12 +665,14 @@ public class BasicLogger implements Logger, Buildable, GameComponent, CommandEnc
     undo.execute();
     GameModule.getGameModule().getServer().sendToOthers(undo);
     logOutput.add(undo);
+    checkpointOutput();
   }
 
   @Override
   public void log(Command c) {
     if (c != null && c.isLoggable()) {
       logOutput.add(c);
+      checkpointOutput();
       if (c.getUndoCommand() != null && !c.getUndoCommand().isNull()) {
         nextUndo = logOutput.size() - 1;
       }
@@ -497,6 +741,55 @@ public class BasicLogger implements Logger, Buildable, GameComponent, CommandEnc
     }
   };
 
+  protected Action stepBackAction = new AbstractAction(Resources.getString("BasicLogger.step_back")) {  //$NON-NLS-1$
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    public void actionPerformed(ActionEvent e) {
+      stepBack();
+    }
+  };
+
+  protected Action goToStepAction = new AbstractAction(Resources.getString("BasicLogger.go_to_step")) {  //$NON-NLS-1$
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    public void actionPerformed(ActionEvent e) {
+      final String s = (String) JOptionPane.showInputDialog(
+        GameModule.getGameModule().getFrame(),
+        Resources.getString("BasicLogger.go_to_step_prompt", logInput.size()),  //$NON-NLS-1$
+        Resources.getString("BasicLogger.go_to_step"),  //$NON-NLS-1$
+        JOptionPane.QUESTION_MESSAGE,
+        null,
+        null,
+        String.valueOf(nextInput)
+      );
+
+      if (s != null) {
+        try {
+          seek(Integer.parseInt(s.trim()));
+        }
+        catch (NumberFormatException ex) {
+          // not a step; ignore it
+        }
+      }
+    }
+  };
+
+  protected Action fastForwardAction = new AbstractAction(Resources.getString("BasicLogger.fast_forward")) {  //$NON-NLS-1$
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    public void actionPerformed(ActionEvent e) {
+      if (isFastForwarding()) {
+        stopFastForward();
+      }
+      else {
+        startFastForward();
+      }
+    }
+  };
+
   public static class LogCommand extends Command {
     protected Command logged;
     protected List<Command> logInput;
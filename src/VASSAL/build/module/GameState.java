@@ -22,12 +22,19 @@ import java.awt.Component;
 import java.awt.Cursor;
 import java.awt.event.ActionEvent;
 import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -38,6 +45,7 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutionException;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
@@ -49,6 +57,7 @@ import javax.swing.JOptionPane;
 import javax.swing.SwingWorker;
 import javax.swing.SwingUtilities;
 
+import org.apache.commons.io.input.CountingInputStream;
 import org.slf4j.LoggerFactory;
 
 import VASSAL.Info;
@@ -58,12 +67,14 @@ import VASSAL.build.module.metadata.MetaDataFactory;
 import VASSAL.build.module.metadata.SaveMetaData;
 import VASSAL.command.AddPiece;
 import VASSAL.command.AlertCommand;
+import VASSAL.command.BinaryCommandReader;
 import VASSAL.command.Command;
 import VASSAL.command.CommandEncoder;
 import VASSAL.command.CommandFilter;
 import VASSAL.command.ConditionalCommand;
 import VASSAL.command.Logger;
 import VASSAL.command.NullCommand;
+import VASSAL.configure.BooleanConfigurer;
 import VASSAL.configure.DirectoryConfigurer;
 import VASSAL.counters.GamePiece;
 import VASSAL.i18n.Resources;
@@ -77,13 +88,12 @@ import VASSAL.tools.WriteErrorDialog;
 import VASSAL.tools.filechooser.FileChooser;
 import VASSAL.tools.filechooser.LogAndSaveFileFilter;
 import VASSAL.tools.io.DeobfuscatingInputStream;
-import VASSAL.tools.io.FastByteArrayOutputStream;
 import VASSAL.tools.io.FileArchive;
-import VASSAL.tools.io.IOUtils;
 import VASSAL.tools.io.ObfuscatingOutputStream;
 import VASSAL.tools.io.ZipArchive;
 import VASSAL.tools.menu.MenuManager;
 import VASSAL.tools.swing.Dialogs;
+import VASSAL.tools.swing.ProgressDialog;
 
 
 /**
@@ -96,8 +106,10 @@ public class GameState implements CommandEncoder {
     LoggerFactory.getLogger(GameState.class);
 
   protected Map<String,GamePiece> pieces = new HashMap<>();
+  protected PropertyIndex propertyIndex = new PropertyIndex();
   protected List<GameComponent> gameComponents = new ArrayList<>();
   protected List<GameSetupStep> setupSteps = new ArrayList<>();
+  protected List<Runnable> afterSetup;
   protected Action loadGame, saveGame, saveGameAs, newGame, closeGame;
   protected String lastSave;
   protected File lastSaveFile = null;
@@ -174,6 +186,23 @@ public class GameState implements CommandEncoder {
     // some languages
     closeGame.putValue(Action.MNEMONIC_KEY, (int)Resources.getString("GameState.close_game.shortcut").charAt(0));
 
+    final BooleanConfigurer binaryFormat = new BooleanConfigurer(
+      BINARY_SAVE_FORMAT,
+      Resources.getString("GameState.binary_save_format"),  //$NON-NLS-1$
+      Boolean.FALSE);
+    mod.getPrefs().addOption(Resources.getString("Prefs.general_tab"), binaryFormat);  //$NON-NLS-1$
+
+    // Peers are not asked what they can read, so every player in the room
+    // must opt in before deltas are safe to send.
+    final BooleanConfigurer deltaEncoding = new BooleanConfigurer(
+      DELTA_ENCODING,
+      Resources.getString("GameState.delta_encoding"),  //$NON-NLS-1$
+      Boolean.FALSE);
+    mod.getPrefs().addOption(Resources.getString("Prefs.general_tab"), deltaEncoding);  //$NON-NLS-1$
+    BasicCommandEncoder.setDeltaEncoding(deltaEncoding.booleanValue());
+    deltaEncoding.addPropertyChangeListener(e ->
+      BasicCommandEncoder.setDeltaEncoding(Boolean.TRUE.equals(e.getNewValue())));
+
     final MenuManager mm = MenuManager.getInstance();
     mm.addAction("GameState.new_game", newGame);
     mm.addAction("GameState.load_game", loadGame);
@@ -186,6 +215,24 @@ public class GameState implements CommandEncoder {
     closeGame.setEnabled(gameStarting);
   }
 
+  private boolean replacing = false;
+
+  /**
+   * Replace the game in progress by executing a {@link Command} made by
+   * {@link #getRestoreCommand}, without asking whether to save the game
+   * first. The game is then considered modified.
+   */
+  public void replaceGame(Command restore) {
+    replacing = true;
+    try {
+      restore.execute();
+    }
+    finally {
+      replacing = false;
+      setModified(true);
+    }
+  }
+
   /**
    * @return true if the game state is different from when it was last saved
    */
@@ -285,6 +332,21 @@ public class GameState implements CommandEncoder {
   // END FIXME
   //
 
+  /**
+   * Run a task once every {@link GameComponent} has been set up for the
+   * game now starting, after tasks given earlier; or at once, if no game
+   * is starting. This lets a component do the work of its setup in the
+   * background while the others are set up.
+   */
+  public void invokeAfterSetup(Runnable r) {
+    if (afterSetup != null) {
+      afterSetup.add(r);
+    }
+    else {
+      r.run();
+    }
+  }
+
   /**
    * Start/end a game.  Prompt to save if the game state has been
    * modified since last save.  Invoke {@link GameComponent#setup}
@@ -293,7 +355,7 @@ public class GameState implements CommandEncoder {
   public void setup(boolean gameStarting) {
     final GameModule g = GameModule.getGameModule();
 
-    if (!gameStarting && gameStarted && isModified()) {
+    if (!gameStarting && gameStarted && !replacing && isModified()) {
       switch (JOptionPane.showConfirmDialog(
         g.getFrame(),
         Resources.getString("GameState.save_game_query"), //$NON-NLS-1$
@@ -311,6 +373,7 @@ public class GameState implements CommandEncoder {
     this.gameStarting = gameStarting;
     if (!gameStarting) {
       pieces.clear();
+      propertyIndex.clear();
     }
 
     newGame.setEnabled(!gameStarting);
@@ -330,8 +393,20 @@ public class GameState implements CommandEncoder {
     }
 
     gameStarted &= this.gameStarting;
-    for (GameComponent gc : gameComponents) {
-      gc.setup(this.gameStarting);
+    afterSetup = this.gameStarting ? new ArrayList<>() : null;
+    try {
+      for (GameComponent gc : gameComponents) {
+        gc.setup(this.gameStarting);
+      }
+    }
+    finally {
+      final List<Runnable> after = afterSetup;
+      afterSetup = null;
+      if (after != null) {
+        for (Runnable r : after) {
+          r.run();
+        }
+      }
     }
 
     gameStarted |= this.gameStarting;
@@ -589,7 +664,11 @@ public class GameState implements CommandEncoder {
     if (p.getId() == null) {
       p.setId(getNewPieceId());
     }
-    pieces.put(p.getId(), p);
+    final GamePiece old = pieces.put(p.getId(), p);
+    if (old != null && old != p) {
+      propertyIndex.remove(old);
+    }
+    propertyIndex.add(p);
   }
 
   /**
@@ -604,7 +683,10 @@ public class GameState implements CommandEncoder {
    */
   public void removePiece(String id) {
     if (id != null) {
-      pieces.remove(id);
+      final GamePiece p = pieces.remove(id);
+      if (p != null) {
+        propertyIndex.remove(p);
+      }
     }
   }
 
@@ -658,6 +740,14 @@ public class GameState implements CommandEncoder {
     return pieces.values();
   }
 
+  /**
+   * @return the index of pieces by property value, which is disabled
+   * unless the module declares properties to index
+   */
+  public PropertyIndex getPropertyIndex() {
+    return propertyIndex;
+  }
+
   public static class SetupCommand extends Command {
     private boolean gameStarting;
 
@@ -739,19 +829,14 @@ public class GameState implements CommandEncoder {
       return null;
     }
   }
+  public static final String BINARY_SAVE_FORMAT = "binarySaveFormat";  //$NON-NLS-1$
+  public static final String DELTA_ENCODING = "deltaEncoding";  //$NON-NLS-1$
   public static final String BEGIN_SAVE = "begin_save";  //$NON-NLS-1$
   public static final String END_SAVE = "end_save";  //$NON-NLS-1$
 
   public void saveGame(File f) throws IOException {
-// FIXME: Extremely inefficient! Write directly to ZipArchive OutputStream
-    final String save = saveString();
-    final FastByteArrayOutputStream ba = new FastByteArrayOutputStream();
-    try (OutputStream out = new ObfuscatingOutputStream(ba)) {
-      out.write(save.getBytes(StandardCharsets.UTF_8));
-    }
-
     try (FileArchive archive = new ZipArchive(f)) {
-      archive.add(SAVEFILE_ZIP_ENTRY, ba.toInputStream());
+      writeSave(archive, getRestoreCommand());
       (new SaveMetaData()).save(archive);
     }
 
@@ -760,10 +845,45 @@ public class GameState implements CommandEncoder {
     setModified(false);
   }
 
+  /**
+   * Write a {@link Command} to the saved game entry of an archive. The
+   * command is encoded straight into the entry, so the memory used does
+   * not depend on the size of the game. The entry is written in the text
+   * format, which all versions can read, unless the binary format is
+   * preferred; either way it is obfuscated. If writing fails, all changes
+   * to the archive are reverted.
+   *
+   * @param archive the saved game or log file
+   * @param c the command to write
+   * @throws IOException
+   */
+  public static void writeSave(FileArchive archive, Command c)
+                                                          throws IOException {
+    final GameModule g = GameModule.getGameModule();
+    try (OutputStream zout = archive.getOutputStream(SAVEFILE_ZIP_ENTRY);
+         OutputStream bout = new BufferedOutputStream(zout);
+         OutputStream out = new ObfuscatingOutputStream(bout)) {
+      if (Boolean.TRUE.equals(g.getPrefs().getValue(BINARY_SAVE_FORMAT))) {
+        g.encodeBinary(c, out);
+      }
+      else {
+        try (Writer w = new BufferedWriter(
+               new OutputStreamWriter(out, StandardCharsets.UTF_8))) {
+          g.encode(c, w);
+        }
+      }
+    }
+    catch (IOException | RuntimeException e) {
+      archive.revert();
+      throw e;
+    }
+  }
+
   public void loadGameInBackground(final File f) {
     try {
       loadGameInBackground(f.getName(),
-                           new BufferedInputStream(new FileInputStream(f)));
+                           new BufferedInputStream(new FileInputStream(f)),
+                           f.length(), f);
     }
     catch (IOException e) {
       ReadErrorDialog.error(e, f);
@@ -772,22 +892,79 @@ public class GameState implements CommandEncoder {
 
   public void loadGameInBackground(final String shortName,
                                    final InputStream in)  {
+    loadGameInBackground(shortName, in, -1);
+  }
+
+  /** Saved games at least this long show a progress bar while loading. */
+  protected static final long PROGRESS_THRESHOLD = 1 << 20;
+
+  /**
+   * Load a saved game or log in the background.
+   *
+   * @param shortName the name to show the user
+   * @param in the saved game
+   * @param size the length of the saved game in bytes, or -1 if unknown
+   */
+  public void loadGameInBackground(final String shortName,
+                                   final InputStream in,
+                                   final long size) {
+    loadGameInBackground(shortName, in, size, null);
+  }
+
+  /**
+   * Load a saved game or log in the background.
+   *
+   * @param shortName the name to show the user
+   * @param in the saved game
+   * @param size the length of the saved game in bytes, or -1 if unknown
+   * @param file the file from which the saved game is read, if any
+   */
+  protected void loadGameInBackground(final String shortName,
+                                      final InputStream in,
+                                      final long size,
+                                      final File file) {
     GameModule.getGameModule().warn(
       Resources.getString("GameState.loading", shortName));  //$NON-NLS-1$
 
     final JFrame frame = GameModule.getGameModule().getFrame();
     frame.setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
 
-    new SwingWorker<Command,Void>() {
+    final ProgressDialog dialog = size >= PROGRESS_THRESHOLD ?
+      new ProgressDialog(frame,
+        Resources.getString("GameState.loading_title"),  //$NON-NLS-1$
+        Resources.getString("GameState.loading", shortName)) : null;  //$NON-NLS-1$
+
+    final SwingWorker<Command,Void> task = new SwingWorker<Command,Void>() {
       @Override
       public Command doInBackground() throws Exception {
-        try (in) {
-          return decodeSavedGame(in);
+        // commands are decoded as they are read, so the bytes read
+        // measure the progress
+        try (InputStream cin = new CountingInputStream(in) {
+              @Override
+              protected void beforeRead(int n) throws IOException {
+                if (isCancelled()) {
+                  throw new InterruptedIOException();
+                }
+              }
+
+              @Override
+              protected synchronized void afterRead(int n) {
+                super.afterRead(n);
+                if (size > 0) {
+                  setProgress((int) Math.min(100, getByteCount() * 100 / size));
+                }
+              }
+            }) {
+          return decodeSavedGame(cin);
         }
       }
 
       @Override
       protected void done() {
+        if (dialog != null) {
+          dialog.dispose();
+        }
+
         try {
           Command loadCommand = null;
           String msg = null;
@@ -807,6 +984,9 @@ public class GameState implements CommandEncoder {
           catch (InterruptedException e) {
             ErrorDialog.bug(e);
           }
+          catch (CancellationException e) {
+            msg = Resources.getString("GameState.cancel_load", shortName);  //$NON-NLS-1$
+          }
           // FIXME: review error message
           catch (ExecutionException e) {
 // FIXME: This is a temporary hack to catch OutOfMemoryErrors; there should
@@ -830,6 +1010,9 @@ public class GameState implements CommandEncoder {
           GameModule.getGameModule().warn(msg);
           Logger logger = GameModule.getGameModule().getLogger();
           if (logger instanceof BasicLogger) {
+            if (loadCommand != null && file != null) {
+              ((BasicLogger)logger).readIndex(file);
+            }
             ((BasicLogger)logger).queryNewLogFile(true);
           }
         }
@@ -837,7 +1020,22 @@ public class GameState implements CommandEncoder {
           frame.setCursor(Cursor.getPredefinedCursor(Cursor.DEFAULT_CURSOR));
         }
       }
-    }.execute();
+    };
+
+    if (dialog != null) {
+      dialog.setModal(false);
+      dialog.setLocationRelativeTo(frame);
+      dialog.setIndeterminate(size <= 0);
+      dialog.addActionListener(e -> task.cancel(true));
+      task.addPropertyChangeListener(e -> {
+        if ("progress".equals(e.getPropertyName())) {  //$NON-NLS-1$
+          dialog.setProgress((Integer) e.getNewValue());
+        }
+      });
+      dialog.setVisible(true);
+    }
+
+    task.execute();
   }
 
   /**
@@ -906,16 +1104,35 @@ public class GameState implements CommandEncoder {
       new BufferedInputStream(new FileInputStream(saveFile)));
   }
 
+  /**
+   * Decode a saved game. The pieces it adds are built in parallel, and
+   * are all built once this returns.
+   */
   public Command decodeSavedGame(InputStream in) throws IOException {
+    final boolean parallel = BasicCommandEncoder.beginParallelConstruction();
+    try {
+      return decodeSavedGameEntry(in);
+    }
+    finally {
+      if (parallel) {
+        BasicCommandEncoder.endParallelConstruction();
+      }
+    }
+  }
+
+  protected Command decodeSavedGameEntry(InputStream in) throws IOException {
     try (ZipInputStream zipInput = new ZipInputStream(in)) {
       for (ZipEntry entry = zipInput.getNextEntry(); entry != null;
            entry = zipInput.getNextEntry()) {
         if (SAVEFILE_ZIP_ENTRY.equals(entry.getName())) {
-          try (InputStream din = new DeobfuscatingInputStream(zipInput)) {
-            // FIXME: toString() is very inefficient, make decode() use the stream directly
-            final Command c = GameModule.getGameModule().decode(
-              IOUtils.toString(din, StandardCharsets.UTF_8));
-            return c;
+          final InputStream din = new BufferedInputStream(
+            new DeobfuscatingInputStream(new BufferedInputStream(zipInput)));
+          if (BinaryCommandReader.isBinary(din)) {
+            return GameModule.getGameModule().decodeBinary(din);
+          }
+
+          try (Reader r = new InputStreamReader(din, StandardCharsets.UTF_8)) {
+            return GameModule.getGameModule().decode(r);
           }
         }
       }
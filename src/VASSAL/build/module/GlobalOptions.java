@@ -52,6 +52,7 @@ import VASSAL.configure.ConfigurerFactory;
 import VASSAL.configure.FormattedStringConfigurer;
 import VASSAL.configure.IntConfigurer;
 import VASSAL.configure.SingleChildInstance;
+import VASSAL.configure.StringArrayConfigurer;
 import VASSAL.configure.StringEnum;
 import VASSAL.i18n.Resources;
 import VASSAL.preferences.BasicPreference;
@@ -79,6 +80,8 @@ public class GlobalOptions extends AbstractConfigurable {
   public static final String INITIAL_HEAP = "initialHeap"; //$NON-NLS-1$
   public static final String BUG_10295 = "bug10295";
   public static final String CLASSIC_MFD = "classicMfd";
+  public static final String CACHE_CALCULATED_PROPERTIES = "cacheCalculatedProperties"; //$NON-NLS-1$
+  public static final String INDEXED_PROPERTIES = "indexedProperties"; //$NON-NLS-1$
 
   public static final String PLAYER_NAME = "PlayerName"; //$NON-NLS-1$
   public static final String PLAYER_NAME_ALT = "playerName"; //$NON-NLS-1$
@@ -106,6 +109,10 @@ public class GlobalOptions extends AbstractConfigurable {
   private boolean useClassicMoveFixedDistance = false;
   private BooleanConfigurer classicMfd;
 
+  private boolean cacheCalculatedProperties = true;
+
+  private String[] indexedProperties = new String[0];
+
   @Override
   public void addTo(Buildable parent) {
     instance = this;
@@ -182,6 +189,18 @@ public class GlobalOptions extends AbstractConfigurable {
     classicMfd.addPropertyChangeListener( (evt) -> setUseClassicMoveFixedDistance(classicMfd.getValueBoolean()));
     prefs.addOption(classicMfd);
 
+    // Calculated Properties reuse their values until a property they
+    // read changes. Allow this to be turned off in case of trouble.
+    final BooleanConfigurer cacheCalcConf = new BooleanConfigurer(
+      CACHE_CALCULATED_PROPERTIES,
+      Resources.getString("GlobalOptions.cache_calculated_properties"), //$NON-NLS-1$
+      Boolean.TRUE
+    );
+    prefs.addOption(cacheCalcConf);
+    cacheCalculatedProperties = !Boolean.FALSE.equals(cacheCalcConf.getValue());
+    cacheCalcConf.addPropertyChangeListener(
+      evt -> setCacheCalculatedProperties(cacheCalcConf.getValueBoolean()));
+
     validator = new SingleChildInstance(gm, getClass());
   }
 
@@ -201,6 +220,14 @@ public class GlobalOptions extends AbstractConfigurable {
     useClassicMoveFixedDistance = b;
   }
 
+  public boolean isCacheCalculatedProperties() {
+    return cacheCalculatedProperties;
+  }
+
+  public void setCacheCalculatedProperties(boolean b) {
+    cacheCalculatedProperties = b;
+  }
+
   @Deprecated
   public boolean isAveragedScaling() {
     return true;
@@ -243,7 +270,8 @@ public class GlobalOptions extends AbstractConfigurable {
       null,
       Resources.getString("Editor.GlobalOption.center_moves"), //$NON-NLS-1$
       Resources.getString("Editor.GlobalOption.autoreport_moves"), //$NON-NLS-1$
-      Resources.getString("Editor.GlobalOption.playerid_format") //$NON-NLS-1$
+      Resources.getString("Editor.GlobalOption.playerid_format"), //$NON-NLS-1$
+      Resources.getString("Editor.GlobalOption.indexed_properties") //$NON-NLS-1$
    };
   }
 
@@ -255,7 +283,8 @@ public class GlobalOptions extends AbstractConfigurable {
         PROMPT_STRING,
         CENTER_ON_MOVE,
         AUTO_REPORT,
-        PLAYER_ID_FORMAT
+        PLAYER_ID_FORMAT,
+        INDEXED_PROPERTIES
       )
     );
 
@@ -273,7 +302,8 @@ public class GlobalOptions extends AbstractConfigurable {
       null,
       Prompt.class,
       Prompt.class,
-      PlayerIdFormatConfig.class
+      PlayerIdFormatConfig.class,
+      String[].class
     };
   }
 
@@ -375,6 +405,9 @@ public class GlobalOptions extends AbstractConfigurable {
     else if (PLAYER_ID_FORMAT.equals(key)) {
       return playerIdFormat.getFormat();
     }
+    else if (INDEXED_PROPERTIES.equals(key)) {
+      return StringArrayConfigurer.arrayToString(indexedProperties);
+    }
     else if (!optionConfigurers.containsKey(key)) {
       Object val = properties.get(key);
       return val != null ? val.toString() : null;
@@ -437,6 +470,14 @@ public class GlobalOptions extends AbstractConfigurable {
     else if (PLAYER_ID_FORMAT.equals(key)) {
       playerIdFormat.setFormat((String) value);
     }
+    else if (INDEXED_PROPERTIES.equals(key)) {
+      if (value instanceof String) {
+        value = StringArrayConfigurer.stringToArray((String) value);
+      }
+      indexedProperties = (String[]) value;
+      GameModule.getGameModule().getGameState()
+                .getPropertyIndex().setIndexedProperties(indexedProperties);
+    }
     else if (optionConfigurers.containsKey(key)) {
       optionConfigurers.get(key).setValue(value);
     }
@@ -450,7 +491,17 @@ public class GlobalOptions extends AbstractConfigurable {
   }
 
   public boolean centerOnOpponentsMove() {
-    return isEnabled(centerOnMoves, CENTER_ON_MOVE);
+    return !centeringSuspended && isEnabled(centerOnMoves, CENTER_ON_MOVE);
+  }
+
+  private boolean centeringSuspended = false;
+
+  /**
+   * Stop maps from centering on moves, whatever the preference, while
+   * many moves are replayed at once.
+   */
+  public void setCenteringSuspended(boolean suspended) {
+    centeringSuspended = suspended;
   }
 
   public boolean isMarkMoveEnabled() {
@@ -0,0 +1,378 @@
+/*
+ * $Id$
+ *
+ * Copyright (c) 2020 by Joel Uckelman
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+package VASSAL.build.module;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import VASSAL.build.GameModule;
+import VASSAL.command.BinaryCommandWriter;
+import VASSAL.command.Command;
+import VASSAL.tools.concurrent.DaemonThreadFactory;
+
+/**
+ * Checkpoints of the whole game state taken at intervals through a
+ * logfile, so that playback can move to any step by restoring the nearest
+ * earlier checkpoint and replaying only the steps after it.
+ *
+ * A step is the number of logged commands executed before it; the
+ * checkpoint for a step is the game state after that many commands. Each
+ * checkpoint is held as a compressed {@link GameState#getRestoreCommand}
+ * in the binary saved game format. Once the checkpoints take up too much
+ * memory, every other one is dropped and the interval doubled.
+ *
+ * Taking a checkpoint only encodes each command of the game state as
+ * text, which must be done while the game cannot change. Building the
+ * binary format and compressing it are left to a background thread, so
+ * logging a move is not held up by them. Methods which read the
+ * checkpoints wait for those still being built.
+ *
+ * The index is written to a logfile in its own entry, so that the
+ * checkpoints need not be made again when the log is replayed.
+ *
+ * @author Joel Uckelman
+ * @since 3.3.1
+ */
+public class LogIndex {
+  private static final Logger logger = LoggerFactory.getLogger(LogIndex.class);
+
+  public static final String ZIP_ENTRY = "logIndex"; //$NON-NLS-1$
+  public static final int DEFAULT_INTERVAL = 50;
+
+  protected static final int VERSION = 1;
+  protected static final long MAX_BYTES = 64L << 20;
+
+  /** Builds checkpoints, one at a time and in the order they are taken */
+  protected static final Executor compressor =
+    Executors.newSingleThreadExecutor(
+      new DaemonThreadFactory(LogIndex.class.getSimpleName()));
+
+  // all guarded by this
+  protected final TreeMap<Integer, byte[]> checkpoints = new TreeMap<>();
+  /** Steps whose checkpoints are still being built */
+  protected final Set<Integer> pending = new HashSet<>();
+  protected int interval;
+  protected long bytes;
+
+  public LogIndex() {
+    this(DEFAULT_INTERVAL);
+  }
+
+  /**
+   * @param interval the number of steps between checkpoints
+   */
+  public LogIndex(int interval) {
+    this.interval = interval;
+  }
+
+  public synchronized int getInterval() {
+    await();
+    return interval;
+  }
+
+  /**
+   * @return true if a checkpoint should be taken at this step, and has
+   * not been
+   */
+  public synchronized boolean isDue(int step) {
+    return step % interval == 0 && !checkpoints.containsKey(step) &&
+           !pending.contains(step);
+  }
+
+  public synchronized boolean contains(int step) {
+    await();
+    return checkpoints.containsKey(step);
+  }
+
+  /**
+   * @return the last step at or before the given one having a
+   * checkpoint, or -1 if there is none
+   */
+  public synchronized int floorStep(int step) {
+    await();
+    final Integer s = checkpoints.floorKey(step);
+    return s == null ? -1 : s;
+  }
+
+  /**
+   * Record the game state at a step. The commands are encoded now, and
+   * the checkpoint built from them in the background.
+   *
+   * @param step the step
+   * @param restore the command which restores the game state, or
+   * <code>null</code> if there is no game
+   */
+  public void put(int step, Command restore) {
+    final GameModule g = GameModule.getGameModule();
+    put(step, restore, g::encodeSubCommand);
+  }
+
+  /**
+   * @param encoder encodes a command, without its subcommands
+   */
+  protected void put(int step, Command restore,
+                     Function<Command, String> encoder) {
+    if (restore == null) {
+      return;
+    }
+
+    final Command snapshot = snapshot(restore, encoder);
+    synchronized (this) {
+      pending.add(step);
+    }
+
+    compressor.execute(() -> {
+      byte[] checkpoint = null;
+      try {
+        checkpoint = compress(snapshot);
+      }
+      catch (IOException | RuntimeException e) {
+        logger.error("Failed to checkpoint the logfile", e);  //$NON-NLS-1$
+      }
+      finally {
+        synchronized (this) {
+          pending.remove(step);
+          if (checkpoint != null) {
+            put(step, checkpoint);
+          }
+          notifyAll();
+        }
+      }
+    });
+  }
+
+  /** A command and its subcommands, already encoded */
+  protected static class Encoded extends Command {
+    protected final String text;
+
+    protected Encoded(String text) {
+      this.text = text;
+    }
+
+    @Override
+    protected void executeCommand() {
+    }
+
+    @Override
+    protected Command myUndoCommand() {
+      return null;
+    }
+  }
+
+  /**
+   * Encode a command and its subcommands, without recursion, into a tree
+   * which no longer depends on the game.
+   */
+  protected static Command snapshot(Command c,
+                                    Function<Command, String> encoder) {
+    final Encoded root = new Encoded(encoder.apply(c));
+    final Deque<Command> from = new ArrayDeque<>();
+    final Deque<Encoded> to = new ArrayDeque<>();
+    from.push(c);
+    to.push(root);
+
+    while (!from.isEmpty()) {
+      final Command parent = from.pop();
+      final Encoded copy = to.pop();
+      final int n = parent.getSubCommandCount();
+      for (int i = 0; i < n; ++i) {
+        final Command sub = parent.getSubCommand(i);
+        final Encoded e = new Encoded(encoder.apply(sub));
+        copy.append(e);
+        if (sub.getSubCommandCount() > 0) {
+          from.push(sub);
+          to.push(e);
+        }
+      }
+    }
+    return root;
+  }
+
+  protected static byte[] compress(Command snapshot) throws IOException {
+    final ByteArrayOutputStream buf = new ByteArrayOutputStream();
+    try (OutputStream out = new DeflaterOutputStream(buf)) {
+      new BinaryCommandWriter(c -> ((Encoded) c).text, out).write(snapshot);
+    }
+    return buf.toByteArray();
+  }
+
+  /**
+   * Wait for the checkpoints being built in the background.
+   */
+  protected synchronized void await() {
+    while (!pending.isEmpty()) {
+      try {
+        wait();
+      }
+      catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      }
+    }
+  }
+
+  protected synchronized void put(int step, byte[] checkpoint) {
+    final byte[] old = checkpoints.put(step, checkpoint);
+    bytes += checkpoint.length - (old == null ? 0 : old.length);
+
+    while (bytes > MAX_BYTES && checkpoints.size() > 1) {
+      thin();
+    }
+  }
+
+  /**
+   * Drop every checkpoint not at a multiple of twice the interval,
+   * except the first, and double the interval.
+   */
+  protected synchronized void thin() {
+    interval *= 2;
+    final Iterator<Map.Entry<Integer, byte[]>> i =
+      checkpoints.entrySet().iterator();
+    i.next();
+    while (i.hasNext()) {
+      final Map.Entry<Integer, byte[]> e = i.next();
+      if (e.getKey() % interval != 0) {
+        bytes -= e.getValue().length;
+        i.remove();
+      }
+    }
+  }
+
+  /**
+   * @return the command which restores the game state at the step, or
+   * <code>null</code> if there is no checkpoint for it
+   */
+  public Command get(int step) throws IOException {
+    final byte[] checkpoint;
+    synchronized (this) {
+      await();
+      checkpoint = checkpoints.get(step);
+    }
+    if (checkpoint == null) {
+      return null;
+    }
+
+    final boolean parallel = BasicCommandEncoder.beginParallelConstruction();
+    try (InputStream in =
+           new InflaterInputStream(new ByteArrayInputStream(checkpoint))) {
+      return GameModule.getGameModule().decodeBinary(in);
+    }
+    finally {
+      if (parallel) {
+        BasicCommandEncoder.endParallelConstruction();
+      }
+    }
+  }
+
+  /**
+   * Forget the checkpoints after a step.
+   */
+  public synchronized void truncate(int step) {
+    await();
+    final Map<Integer, byte[]> tail = checkpoints.tailMap(step, false);
+    for (byte[] b : tail.values()) {
+      bytes -= b.length;
+    }
+    tail.clear();
+  }
+
+  public synchronized void clear() {
+    await();
+    checkpoints.clear();
+    bytes = 0;
+  }
+
+  public synchronized boolean isEmpty() {
+    await();
+    return checkpoints.isEmpty();
+  }
+
+  /**
+   * Write the index of a logfile.
+   *
+   * @param out the stream to which to write
+   * @param steps the number of steps in the logfile
+   */
+  public synchronized void write(OutputStream out, int steps)
+                                                          throws IOException {
+    await();
+    final DataOutputStream dout = new DataOutputStream(out);
+    dout.writeInt(VERSION);
+    dout.writeInt(steps);
+    dout.writeInt(interval);
+
+    final Map<Integer, byte[]> head = checkpoints.headMap(steps, true);
+    dout.writeInt(head.size());
+    for (Map.Entry<Integer, byte[]> e : head.entrySet()) {
+      dout.writeInt(e.getKey());
+      dout.writeInt(e.getValue().length);
+      dout.write(e.getValue());
+    }
+    dout.flush();
+  }
+
+  /**
+   * Read the index of a logfile.
+   *
+   * @param in the stream from which to read
+   * @param steps the number of steps in the logfile
+   * @return the index, or <code>null</code> if it was written by another
+   * version, for a logfile with a different number of steps, or is invalid
+   */
+  public static LogIndex read(InputStream in, int steps) throws IOException {
+    final DataInputStream din = new DataInputStream(in);
+    if (din.readInt() != VERSION || din.readInt() != steps) {
+      return null;
+    }
+
+    final int interval = din.readInt();
+    if (interval <= 0) {
+      return null;
+    }
+
+    final LogIndex index = new LogIndex(interval);
+    for (int n = din.readInt(); n > 0; --n) {
+      final int step = din.readInt();
+      final byte[] checkpoint = new byte[din.readInt()];
+      din.readFully(checkpoint);
+      index.put(step, checkpoint);
+    }
+    return index;
+  }
+}
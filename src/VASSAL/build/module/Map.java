@@ -56,9 +56,11 @@ import java.beans.PropertyChangeListener;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.EnumSet;
 import java.util.Enumeration;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.CopyOnWriteArrayList;
 
 import javax.swing.JComponent;
@@ -89,6 +91,7 @@ import VASSAL.build.IllegalBuildException;
 import VASSAL.build.module.documentation.HelpFile;
 import VASSAL.build.module.map.BoardPicker;
 import VASSAL.build.module.map.CounterDetailViewer;
+import VASSAL.build.module.map.DamageTracker;
 import VASSAL.build.module.map.DefaultPieceCollection;
 import VASSAL.build.module.map.DrawPile;
 import VASSAL.build.module.map.Drawable;
@@ -99,6 +102,7 @@ import VASSAL.build.module.map.HidePiecesButton;
 import VASSAL.build.module.map.HighlightLastMoved;
 import VASSAL.build.module.map.ImageSaver;
 import VASSAL.build.module.map.KeyBufferer;
+import VASSAL.build.module.map.LayerCompositor;
 import VASSAL.build.module.map.LOS_Thread;
 import VASSAL.build.module.map.LayeredPieceCollection;
 import VASSAL.build.module.map.MapCenterer;
@@ -111,6 +115,7 @@ import VASSAL.build.module.map.PieceRecenterer;
 import VASSAL.build.module.map.Scroller;
 import VASSAL.build.module.map.SelectionHighlighters;
 import VASSAL.build.module.map.SetupStack;
+import VASSAL.build.module.map.SpatialPieceCollection;
 import VASSAL.build.module.map.StackExpander;
 import VASSAL.build.module.map.StackMetrics;
 import VASSAL.build.module.map.TextSaver;
@@ -141,10 +146,13 @@ import VASSAL.configure.MandatoryComponent;
 import VASSAL.configure.NamedHotKeyConfigurer;
 import VASSAL.configure.PlayerIdFormattedStringConfigurer;
 import VASSAL.configure.VisibilityCondition;
+import VASSAL.counters.AreaOfEffect;
+import VASSAL.counters.BoundsTracker;
 import VASSAL.counters.ColoredBorder;
 import VASSAL.counters.Deck;
 import VASSAL.counters.DeckVisitor;
 import VASSAL.counters.DeckVisitorDispatcher;
+import VASSAL.counters.Decorator;
 import VASSAL.counters.DragBuffer;
 import VASSAL.counters.GamePiece;
 import VASSAL.counters.Highlighter;
@@ -208,6 +216,8 @@ public class Map extends AbstractConfigurable implements GameComponent, MouseLis
   protected int[][] boardWidths; // Cache of board widths by row/column
   protected int[][] boardHeights; // Cache of board heights by row/column
   protected PieceCollection pieces = new DefaultPieceCollection();
+  protected final DamageTracker damageTracker = new DamageTracker(this);
+  protected final LayerCompositor compositor = new LayerCompositor(this);
   protected Highlighter highlighter = new ColoredBorder();
   protected ArrayList<Highlighter> highlighters = new ArrayList<>();
   protected boolean clearFirst = false; // Whether to clear the display before
@@ -229,6 +239,8 @@ public class Map extends AbstractConfigurable implements GameComponent, MouseLis
   protected PropertyChangeListener repaintOnPropertyChange = new PropertyChangeListener() {
     @Override
     public void propertyChange(PropertyChangeEvent evt) {
+      // the bounds of pieces may depend on the property
+      invalidatePieceBounds();
       repaint();
     }
   };
@@ -746,6 +758,8 @@ public class Map extends AbstractConfigurable implements GameComponent, MouseLis
 
   @Override
   public void sideChanged(String oldSide, String newSide) {
+    // which pieces are visible, and so the bounds of Stacks, depends on side
+    invalidatePieceBounds();
     repaint();
   }
 
@@ -760,6 +774,7 @@ public class Map extends AbstractConfigurable implements GameComponent, MouseLis
       boards.add(b);
     }
     setBoardBoundaries();
+    compositor.invalidateAll(EnumSet.allOf(LayerCompositor.Layer.class));
   }
 
   /**
@@ -1268,16 +1283,18 @@ public class Map extends AbstractConfigurable implements GameComponent, MouseLis
 
       final KeyBuffer kbuf = KeyBuffer.getBuffer();
       final ArrayList<GamePiece> l = new ArrayList<>(kbuf.asList());
+      final BoundsTracker bounds = new BoundsTracker();
 
       for (GamePiece p : l) {
         if (p.getMap() == activeMap) {
+          bounds.addPiece(p);
           kbuf.remove(p);
           dirty = true;
         }
       }
 
       if (dirty && activeMap != null) {
-        activeMap.repaint();
+        bounds.repaint();
       }
     }
     activeMap = this;
@@ -1323,7 +1340,7 @@ public class Map extends AbstractConfigurable implements GameComponent, MouseLis
     }
     // Clicking with mouse always repaints the map
     clearFirst = true;
-    theMap.repaint();
+    repaint();
     activeMap = this;
   }
 
@@ -1535,8 +1552,19 @@ public class Map extends AbstractConfigurable implements GameComponent, MouseLis
     }
   );
 
+  /**
+   * Repaint the map.
+   *
+   * @param cf if true, also redraw the background, boards and grids
+   */
   public void repaint(boolean cf) {
     clearFirst = cf;
+    if (cf) {
+      compositor.invalidateAll(EnumSet.allOf(LayerCompositor.Layer.class));
+    }
+    else {
+      compositor.invalidateAll(CONTENT_LAYERS);
+    }
     theMap.repaint();
   }
 
@@ -1550,6 +1578,12 @@ public class Map extends AbstractConfigurable implements GameComponent, MouseLis
     drawDrawable(g, false);
     drawPiecesInRegion(g, visibleRect, c);
     drawDrawable(g, true);
+
+    if (DamageTracker.DEBUG && c == theMap) {
+      final Graphics2D g2d = (Graphics2D) g;
+      damageTracker.drawOverlay(g2d,
+        g2d.getDeviceConfiguration().getDefaultTransform().getScaleX());
+    }
   }
 
   public void drawBoardsInRegion(Graphics g,
@@ -1567,8 +1601,64 @@ public class Map extends AbstractConfigurable implements GameComponent, MouseLis
     drawBoardsInRegion(g, visibleRect, theMap);
   }
 
+  /**
+   * Repaint the whole map. Prefer {@link #repaint(Rectangle)} when the
+   * affected region is known.
+   */
   public void repaint() {
-    theMap.repaint();
+    compositor.invalidateAll(CONTENT_LAYERS);
+    damageTracker.addAll();
+  }
+
+  /** The retained layers which change when pieces do */
+  protected static final Set<LayerCompositor.Layer> CONTENT_LAYERS =
+    Collections.unmodifiableSet(EnumSet.of(
+      LayerCompositor.Layer.UNDER, LayerCompositor.Layer.PIECES
+    ));
+
+  /**
+   * Repaint the whole map when only {@link Drawable}s drawn above the
+   * counters have changed. The retained images of the boards and
+   * counters are reused.
+   */
+  public void repaintOverlay() {
+    damageTracker.addAll();
+  }
+
+  /**
+   * Repaint a region of the map where only {@link Drawable}s drawn above
+   * the counters have changed. The retained images of the boards and
+   * counters are reused.
+   *
+   * @param r the region in map coordinates
+   */
+  public void repaintOverlay(Rectangle r) {
+    damageTracker.add(r);
+  }
+
+  public LayerCompositor getLayerCompositor() {
+    return compositor;
+  }
+
+  /**
+   * @return true if any board on this map is still loading or fading in
+   * tiles for the map view
+   */
+  public boolean isLoadingBoards() {
+    for (Board b : boards) {
+      if (b.isLoading()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  public Color getBackgroundColor() {
+    return bgColor;
+  }
+
+  public DamageTracker getDamageTracker() {
+    return damageTracker;
   }
 
   public void drawPiecesInRegion(Graphics g,
@@ -1585,7 +1675,8 @@ public class Map extends AbstractConfigurable implements GameComponent, MouseLis
     Composite oldComposite = g2d.getComposite();
     g2d.setComposite(
       AlphaComposite.getInstance(AlphaComposite.SRC_OVER, pieceOpacity));
-    final GamePiece[] stack = pieces.getPieces();
+    final GamePiece[] stack = visibleRect == null ? pieces.getPieces() :
+      getPiecesInRegion(drawingToMap(visibleRect, os_scale));
     for (GamePiece gamePiece : stack) {
       final Point pt = mapToDrawing(gamePiece.getPosition(), os_scale);
       if (gamePiece.getClass() == Stack.class) {
@@ -1708,6 +1799,39 @@ public class Map extends AbstractConfigurable implements GameComponent, MouseLis
     return r;
   }
 
+  /**
+   * Returns the region of the map which must be repainted when a GamePiece
+   * changes: its {@link #boundingBoxOf bounding box}, together with any
+   * Area of Effect transparencies and shading drawn outside it. Return
+   * null if this piece is not on the map
+   */
+  public Rectangle damageBoundsOf(GamePiece p) {
+    final Rectangle r = boundingBoxOf(p);
+    if (r != null) {
+      addAreaOfEffectBounds(p, r);
+    }
+    return r;
+  }
+
+  private static void addAreaOfEffectBounds(GamePiece p, Rectangle r) {
+    if (p instanceof Stack) {
+      for (GamePiece child : ((Stack) p).asList()) {
+        addAreaOfEffectBounds(child, r);
+      }
+      return;
+    }
+
+    for (GamePiece d = p; d instanceof Decorator;
+         d = ((Decorator) d).getInner()) {
+      if (d instanceof AreaOfEffect) {
+        final Rectangle t = ((AreaOfEffect) d).getAreaBounds();
+        if (t != null) {
+          r.add(t);
+        }
+      }
+    }
+  }
+
   /**
    * Returns the selection bounding box of a GamePiece accounting for the offset of a piece within a stack
    *
@@ -1757,6 +1881,62 @@ public class Map extends AbstractConfigurable implements GameComponent, MouseLis
     return pieces.getAllPieces();
   }
 
+  /**
+   * @param region a rectangle in map coordinates
+   * @return an array of the visible GamePieces whose bounds intersect
+   * the region, in drawing order. This is a read-only copy.
+   */
+  public GamePiece[] getPiecesInRegion(Rectangle region) {
+    if (pieces instanceof SpatialPieceCollection) {
+      return ((SpatialPieceCollection) pieces).getPiecesInRegion(
+        pad(region));
+    }
+    return pieces.getPieces();
+  }
+
+  /**
+   * @param region a rectangle in map coordinates
+   * @return an array of all GamePieces whose bounds intersect the region,
+   * regardless of visibility, in drawing order. This is a read-only copy.
+   */
+  public GamePiece[] getAllPiecesInRegion(Rectangle region) {
+    if (pieces instanceof SpatialPieceCollection) {
+      return ((SpatialPieceCollection) pieces).getAllPiecesInRegion(
+        pad(region));
+    }
+    return pieces.getAllPieces();
+  }
+
+  /*
+   * Regions converted from drawing coordinates lose their fractional
+   * parts, so allow a pixel of slack on each side.
+   */
+  private static Rectangle pad(Rectangle r) {
+    return new Rectangle(r.x - 1, r.y - 1, r.width + 2, r.height + 2);
+  }
+
+  /**
+   * Notify the {@link PieceCollection} that the bounds of a piece on this
+   * map, or of the Stack containing it, may have changed.
+   */
+  public void pieceBoundsChanged(GamePiece p) {
+    if (pieces instanceof SpatialPieceCollection) {
+      final GamePiece top = p.getParent() == null ? p : p.getParent();
+      ((SpatialPieceCollection) pieces).update(top);
+    }
+  }
+
+  /**
+   * Notify the {@link PieceCollection} that the bounds of any piece on
+   * this map may have changed, as when a property which a piece's
+   * appearance may depend on changes.
+   */
+  public void invalidatePieceBounds() {
+    if (pieces instanceof SpatialPieceCollection) {
+      ((SpatialPieceCollection) pieces).invalidate();
+    }
+  }
+
   public void setPieceCollection(PieceCollection pieces) {
     this.pieces = pieces;
   }
@@ -1862,12 +2042,16 @@ public class Map extends AbstractConfigurable implements GameComponent, MouseLis
   }
 
   /**
-   * Repaint the given area, specified in map coordinates
+   * Repaint a region of the map. Requests are coalesced and issued
+   * once per pass through the event queue.
+   *
+   * @param r the region in map coordinates
    */
   public void repaint(Rectangle r) {
-    r.setLocation(mapToComponent(new Point(r.x, r.y)));
-    r.setSize((int) (r.width * getZoom()), (int) (r.height * getZoom()));
-    theMap.repaint(r.x, r.y, r.width, r.height);
+    if (r != null) {
+      compositor.invalidate(r, CONTENT_LAYERS);
+    }
+    damageTracker.add(r);
   }
 
   /**
@@ -1876,6 +2060,7 @@ public class Map extends AbstractConfigurable implements GameComponent, MouseLis
    */
   public void setPiecesVisible(boolean show) {
     hideCounters = !show;
+    compositor.invalidateAll(EnumSet.of(LayerCompositor.Layer.PIECES));
   }
 
   public boolean isPiecesVisible() {
@@ -1888,6 +2073,7 @@ public class Map extends AbstractConfigurable implements GameComponent, MouseLis
 
   public void setPieceOpacity(float pieceOpacity) {
     this.pieceOpacity = pieceOpacity;
+    compositor.invalidateAll(EnumSet.of(LayerCompositor.Layer.PIECES));
   }
 
   @Override
@@ -2062,7 +2248,7 @@ public class Map extends AbstractConfigurable implements GameComponent, MouseLis
    * Use the provided {@link PieceFinder} instance to locate a visible piece at the given location
    */
   public GamePiece findPiece(Point pt, PieceFinder finder) {
-    GamePiece[] stack = pieces.getPieces();
+    GamePiece[] stack = getPiecesInRegion(new Rectangle(pt));
     for (int i = stack.length - 1; i >= 0; --i) {
       GamePiece p = finder.select(this, stack[i], pt);
       if (p != null) {
@@ -2077,7 +2263,7 @@ public class Map extends AbstractConfigurable implements GameComponent, MouseLis
    * is visible or not
    */
   public GamePiece findAnyPiece(Point pt, PieceFinder finder) {
-    GamePiece[] stack = pieces.getAllPieces();
+    GamePiece[] stack = getAllPiecesInRegion(new Rectangle(pt));
     for (int i = stack.length - 1; i >= 0; --i) {
       GamePiece p = finder.select(this, stack[i], pt);
       if (p != null) {
@@ -2104,6 +2290,7 @@ public class Map extends AbstractConfigurable implements GameComponent, MouseLis
       MoveTracker tracker = new MoveTracker(piece);
       piece.setPosition(pt);
       addPiece(piece);
+      pieceBoundsChanged(piece);
       c = tracker.getMoveCommand();
     }
     return c;
@@ -2163,7 +2350,7 @@ public class Map extends AbstractConfigurable implements GameComponent, MouseLis
       }
       pieces.add(p);
       p.setMap(this);
-      theMap.repaint();
+      repaint(damageBoundsOf(p));
     }
   }
 
@@ -2187,8 +2374,14 @@ public class Map extends AbstractConfigurable implements GameComponent, MouseLis
    * Removes a piece from the map
    */
   public void removePiece(GamePiece p) {
+    final Rectangle r = damageBoundsOf(p);
     pieces.remove(p);
-    theMap.repaint();
+    if (r != null) {
+      repaint(r);
+    }
+    else {
+      repaint();
+    }
   }
 
   /**
@@ -2717,13 +2910,26 @@ public class Map extends AbstractConfigurable implements GameComponent, MouseLis
       // scale factor to prevent poor quality upscaling, so reset the
       // transform to scale of 1 and multiply the map zoom by the OS scaling.
       final AffineTransform orig_t = g2d.getTransform();
+
+      // Paint only the damaged part of the view
+      final Rectangle clip = g.getClipBounds();
+      final Rectangle vis = clip == null ?
+        getVisibleRect() : getVisibleRect().intersection(clip);
+
       g2d.setTransform(SwingUtils.descaleTransform(orig_t));
 
-      final Rectangle r = map.componentToDrawing(getVisibleRect(), os_scale);
+      final Rectangle r = map.componentToDrawing(vis, os_scale);
+      if (clip != null) {
+        // allow for truncation when scaling
+        r.grow(1, 1);
+      }
 
-      g2d.setColor(map.bgColor);
-      g2d.fillRect(r.x, r.y, r.width, r.height);
-      map.paintRegion(g2d, r);
+      if (!map.compositor.paint(g2d,
+            map.componentToDrawing(getVisibleRect(), os_scale), os_scale)) {
+        g2d.setColor(map.bgColor);
+        g2d.fillRect(r.x, r.y, r.width, r.height);
+        map.paintRegion(g2d, r);
+      }
 
       g2d.setTransform(orig_t);
     }
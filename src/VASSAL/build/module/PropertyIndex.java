@@ -0,0 +1,270 @@
+/*
+ * $Id$
+ *
+ * Copyright (c) 2020 by Joel Uckelman
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+package VASSAL.build.module;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import VASSAL.counters.Decorator;
+import VASSAL.counters.GamePiece;
+import VASSAL.counters.ModificationStamp;
+import VASSAL.counters.PieceFilter;
+import VASSAL.counters.Stack;
+
+/**
+ * An index of the pieces in the game by the values of selected
+ * properties, so that a {@link PieceFilter} testing those properties
+ * need not be tried against every piece.
+ *
+ * The index is kept current by observing {@link ModificationStamp}s:
+ * whatever changes a piece, whether a {@link VASSAL.command.ChangePiece}
+ * or {@link VASSAL.command.MovePiece} or a local action, marks it
+ * modified, and modified pieces are reindexed before the next lookup.
+ * Hence an indexed property must depend only on the piece itself, i.e.,
+ * its traits, its map, position and deck, and not on, e.g., global
+ * properties. Pieces which do not keep a modification stamp are
+ * reindexed on every lookup. Pieces may be marked modified on any thread,
+ * as they are while being built in parallel, so access is synchronized.
+ *
+ * @author Joel Uckelman
+ * @since 3.3.1
+ */
+public class PropertyIndex {
+  private static final Logger logger =
+    LoggerFactory.getLogger(PropertyIndex.class);
+
+  protected List<String> names = Collections.emptyList();
+
+  /** property name -> property value -> pieces */
+  protected final Map<String, Map<String, Set<GamePiece>>> index =
+    new HashMap<>();
+
+  /** piece -> its indexed values, in the order of {@link #names} */
+  protected final Map<GamePiece, String[]> entries = new HashMap<>();
+
+  /** Pieces to reindex before the next lookup */
+  protected final Set<GamePiece> dirty = new HashSet<>();
+
+  /** Pieces without a modification stamp */
+  protected final Set<GamePiece> unstamped = new HashSet<>();
+
+  /** GKC name -> { uses of the index, full scans } */
+  protected final Map<String, long[]> usage = new TreeMap<>();
+
+  /**
+   * Set the properties to index. Indexing no properties disables the
+   * index.
+   */
+  public synchronized void setIndexedProperties(String... props) {
+    final List<String> n = new ArrayList<>();
+    for (String s : props) {
+      if (s != null && s.length() > 0 && !n.contains(s)) {
+        n.add(s);
+      }
+    }
+
+    if (n.equals(names)) {
+      return;
+    }
+
+    final Set<GamePiece> pieces = new HashSet<>(entries.keySet());
+    clear();
+    names = n;
+
+    for (String name : names) {
+      index.put(name, new HashMap<>());
+    }
+
+    if (isEnabled()) {
+      ModificationStamp.setObserver(this::modified);
+      for (GamePiece p : pieces) {
+        add(p);
+      }
+    }
+    else {
+      ModificationStamp.setObserver(null);
+    }
+  }
+
+  public synchronized String[] getIndexedProperties() {
+    return names.toArray(new String[0]);
+  }
+
+  public synchronized boolean isEnabled() {
+    return !names.isEmpty();
+  }
+
+  /** @return true if values of the given property are indexed */
+  public synchronized boolean isIndexed(String name) {
+    return index.containsKey(name);
+  }
+
+  /** Add a piece to the index. Stacks are not indexed, but their contents are. */
+  public synchronized void add(GamePiece p) {
+    if (isEnabled() && !(p instanceof Stack) && !entries.containsKey(p)) {
+      entries.put(p, null);
+      dirty.add(p);
+    }
+  }
+
+  public synchronized void remove(GamePiece p) {
+    final String[] values = entries.remove(p);
+    if (values != null) {
+      for (int i = 0; i < values.length; ++i) {
+        bucket(names.get(i), values[i]).remove(p);
+      }
+    }
+    dirty.remove(p);
+    unstamped.remove(p);
+  }
+
+  public synchronized void clear() {
+    for (Map<String, Set<GamePiece>> m : index.values()) {
+      m.clear();
+    }
+    entries.clear();
+    dirty.clear();
+    unstamped.clear();
+  }
+
+  /** Note that a piece or trait has been modified. */
+  protected synchronized void modified(GamePiece p) {
+    if (entries.containsKey(p)) {
+      dirty.add(p);
+      return;
+    }
+
+    final GamePiece outer = Decorator.getOutermost(p);
+    if (entries.containsKey(outer)) {
+      dirty.add(outer);
+    }
+  }
+
+  /**
+   * @return true if the given piece is known to the index, and the index
+   * is current for it
+   */
+  public synchronized boolean isCurrent(GamePiece p) {
+    return entries.containsKey(p) && !dirty.contains(p) &&
+      !unstamped.contains(p);
+  }
+
+  /**
+   * Find the pieces having a value for a property.
+   *
+   * @param name the property name
+   * @param value the value, as given by toString(), or null for pieces
+   * which do not have the property
+   * @return the pieces, or null if the property is not indexed
+   */
+  public synchronized Set<GamePiece> getPieces(String name, String value) {
+    if (!isIndexed(name)) {
+      return null;
+    }
+    refresh();
+    final Set<GamePiece> s = index.get(name).get(value);
+    return s == null ? Collections.emptySet() : Collections.unmodifiableSet(s);
+  }
+
+  /**
+   * Bring the index up to date.
+   */
+  protected void refresh() {
+    dirty.addAll(unstamped);
+    final List<GamePiece> l = new ArrayList<>(dirty);
+    dirty.clear();
+    for (GamePiece p : l) {
+      reindex(p);
+    }
+  }
+
+  protected void reindex(GamePiece p) {
+    final String[] old = entries.get(p);
+    final String[] values = new String[names.size()];
+    for (int i = 0; i < values.length; ++i) {
+      final String name = names.get(i);
+      final Object v = p.getProperty(name);
+      values[i] = v == null ? null : v.toString();
+
+      if (old == null || !Objects.equals(old[i], values[i])) {
+        if (old != null) {
+          bucket(name, old[i]).remove(p);
+        }
+        bucket(name, values[i]).add(p);
+      }
+    }
+    entries.put(p, values);
+
+    if (p.getModificationStamp() < 0) {
+      unstamped.add(p);
+    }
+    else {
+      unstamped.remove(p);
+    }
+  }
+
+  protected Set<GamePiece> bucket(String name, String value) {
+    return index.get(name).computeIfAbsent(value, k -> new HashSet<>());
+  }
+
+  /**
+   * Find the pieces which a filter may accept.
+   *
+   * @return the candidates, or null if the filter cannot use the index
+   * @see PieceFilter#getCandidates
+   */
+  public synchronized Set<GamePiece> getCandidates(PieceFilter filter) {
+    return isEnabled() && filter != null ? filter.getCandidates(this) : null;
+  }
+
+  /**
+   * Record whether a global key command could use the index.
+   *
+   * @param name the name of the command
+   * @param indexed true if the index was used, false for a full scan
+   */
+  public synchronized void recordUsage(String name, boolean indexed) {
+    final long[] u = usage.computeIfAbsent(String.valueOf(name), k -> new long[2]);
+    ++u[indexed ? 0 : 1];
+    logger.debug("{}: {}", name, indexed ? "index" : "scan"); //$NON-NLS-1$ //$NON-NLS-2$
+  }
+
+  /**
+   * @return for each global key command run, the number of times it used
+   * the index, and the number of times it scanned every piece
+   */
+  public synchronized Map<String, long[]> getUsage() {
+    final Map<String, long[]> m = new TreeMap<>();
+    for (Map.Entry<String, long[]> e : usage.entrySet()) {
+      m.put(e.getKey(), Arrays.copyOf(e.getValue(), 2));
+    }
+    return m;
+  }
+}
@@ -21,7 +21,7 @@ package VASSAL.build.module;
 import java.awt.Component;
 import java.beans.PropertyChangeListener;
 import java.beans.PropertyChangeSupport;
-import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.swing.Box;
 
@@ -58,9 +58,11 @@ public class PrototypeDefinition extends AbstractConfigurable
                                  implements UniqueIdManager.Identifyable,
                                             ValidityChecker {
   private String name = "Prototype"; //$NON-NLS-1$
+  // pieces may be expanded on several threads when a game starts
   private java.util.Map<String,GamePiece> pieces =
-    new HashMap<>();
+    new ConcurrentHashMap<>();
   private String pieceDefinition;
+  private int version = 0;
   private static UniqueIdManager idMgr = new UniqueIdManager("prototype-"); //$NON-NLS-1$
   private PropertyChangeSupport propSupport = new PropertyChangeSupport(this);
 
@@ -133,6 +135,20 @@ public class PrototypeDefinition extends AbstractConfigurable
     idMgr.add(this);
   }
 
+  /**
+   * The version of this definition increases whenever the piece
+   * definition changes, so that users of a piece expanded from it know
+   * when to expand it again.
+   *
+   * @return the version of this definition
+   */
+  public int getVersion() {
+    return version;
+  }
+
+  /**
+   * @return a new piece built from this definition
+   */
   public GamePiece getPiece() {
     return getPiece(pieceDefinition);
   }
@@ -140,17 +156,32 @@ public class PrototypeDefinition extends AbstractConfigurable
   /**
    * For the case when the piece definition is a Message Format, expand the definition using the given properties
    *
+   * The piece returned is shared by all callers expanding the definition
+   * to the same text, until the definition changes. It must be copied,
+   * not altered.
+   *
    * @param props
    * @return
    */
   public GamePiece getPiece(PropertySource props) {
     String def = props == null ? pieceDefinition : new FormattedString(pieceDefinition).getText(props);
-    return getPiece(def);
+    if (def == null) {
+      return null;
+    }
+
+    GamePiece piece = pieces.get(def);
+    if (piece == null) {
+      piece = getPiece(def);
+      if (piece != null) {
+        pieces.put(def, piece);
+      }
+    }
+    return piece;
   }
 
   protected GamePiece getPiece(String def) {
-    GamePiece piece = pieces.get(def);
-    if (piece == null && def != null) {
+    GamePiece piece = null;
+    if (def != null) {
       try {
         final AddPiece comm = (AddPiece) GameModule.getGameModule().decode(def);
         if (comm == null) {
@@ -171,6 +202,7 @@ public class PrototypeDefinition extends AbstractConfigurable
   public void setPiece(GamePiece p) {
     pieceDefinition = p == null ? null : GameModule.getGameModule().encode(new AddPiece(p));
     pieces.clear();
+    ++version;
   }
 
   @Override
@@ -178,6 +210,8 @@ public class PrototypeDefinition extends AbstractConfigurable
     if (e != null) {
       setConfigureName(e.getAttribute(NAME_PROPERTY));
       pieceDefinition = Builder.getText(e);
+      pieces.clear();
+      ++version;
     }
   }
 
@@ -18,6 +18,7 @@
  */
 package VASSAL.build.module.map;
 
+import java.awt.Rectangle;
 import java.util.ArrayList;
 import java.util.Arrays;
 
@@ -31,7 +32,7 @@ import VASSAL.counters.Stack;
  * pieces into distinct layers.  The layers are drawn in order of their index, i.e.
  * layer 0 is on the bottom.
  */
-public abstract class CompoundPieceCollection implements PieceCollection {
+public abstract class CompoundPieceCollection implements SpatialPieceCollection {
   protected SimplePieceCollection[] layers;
   protected int bottomLayer = 0;
   protected boolean[] enabled;
@@ -106,6 +107,50 @@ public abstract class CompoundPieceCollection implements PieceCollection {
     return getPieces(true);
   }
 
+  @Override
+  public GamePiece[] getPiecesInRegion(Rectangle region) {
+    return getPiecesInRegion(region, false);
+  }
+
+  @Override
+  public GamePiece[] getAllPiecesInRegion(Rectangle region) {
+    return getPiecesInRegion(region, true);
+  }
+
+  protected GamePiece[] getPiecesInRegion(Rectangle region,
+                                          boolean includeDisabled) {
+    ArrayList<GamePiece> l = new ArrayList<>();
+    int layer = bottomLayer;
+    for (int i = 0; i < layers.length; ++i) {
+      if (includeDisabled || enabled[layer]) {
+        l.addAll(Arrays.asList(layers[layer].getPiecesInRegion(region)));
+      }
+      layer++;
+      if (layer >= layers.length) {
+        layer = 0;
+      }
+    }
+    return l.toArray(new GamePiece[0]);
+  }
+
+  /*
+   * The layer of a piece may depend on a property which has just
+   * changed, so let every layer check whether it holds the piece.
+   */
+  @Override
+  public void update(GamePiece p) {
+    for (SimplePieceCollection layer : layers) {
+      layer.update(p);
+    }
+  }
+
+  @Override
+  public void invalidate() {
+    for (SimplePieceCollection layer : layers) {
+      layer.invalidate();
+    }
+  }
+
   @Override
   public int indexOf(GamePiece p) {
     int layer = getLayerForPiece(p);
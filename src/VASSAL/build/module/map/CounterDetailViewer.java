@@ -462,7 +462,7 @@ public class CounterDetailViewer extends AbstractConfigurable implements Drawabl
       graphicsVisible = drawPieces;
       textVisible = showText && (summaryReportFormat.getFormat().length() > 0 || counterReportFormat.getFormat().length() > 0);
     }
-    map.repaint();
+    map.repaintOverlay();
   }
 
   protected double getZoom() {
@@ -474,11 +474,31 @@ public class CounterDetailViewer extends AbstractConfigurable implements Drawabl
    * on selection criteria setup in config.
    */
   protected List<GamePiece> getDisplayablePieces() {
-    GamePiece[] allPieces = map.getPieces(); // All pieces from bottom up
+    final Point pt = map.componentToMap(currentMousePosition.getPoint());
+    final Rectangle region = new Rectangle(pt);
 
-    Visitor visitor = new Visitor(new Filter(), map,
-      map.componentToMap(currentMousePosition.getPoint()));
-    DeckVisitorDispatcher dispatcher = new DeckVisitorDispatcher(visitor);
+    Visitor visitor = visitPieces(pt, region);
+
+    /*
+     * The Visitor also accepts pieces sharing the position of the first
+     * piece found, which may lie outside the region around the mouse.
+     * Widen the region to include that position and look again.
+     */
+    if (visitor.foundPieceAt != null &&
+        !region.contains(visitor.foundPieceAt)) {
+      region.add(visitor.foundPieceAt);
+      visitor = visitPieces(pt, region);
+    }
+
+    return visitor.getPieces();
+  }
+
+  protected Visitor visitPieces(Point pt, Rectangle region) {
+    // All pieces in the region from bottom up
+    final GamePiece[] allPieces = map.getPiecesInRegion(region);
+
+    final Visitor visitor = new Visitor(new Filter(), map, pt);
+    final DeckVisitorDispatcher dispatcher = new DeckVisitorDispatcher(visitor);
 
     /*
      * Process pieces from the top down to make it easier to check for top layer
@@ -488,7 +508,7 @@ public class CounterDetailViewer extends AbstractConfigurable implements Drawabl
       dispatcher.accept(allPieces[i]);
     }
 
-    return visitor.getPieces();
+    return visitor;
   }
 
   /**
@@ -750,7 +770,7 @@ public class CounterDetailViewer extends AbstractConfigurable implements Drawabl
   protected void hideDetails() {
     graphicsVisible = false;
     textVisible = false;
-    map.repaint();
+    map.repaintOverlay();
   }
 
   /*
@@ -0,0 +1,246 @@
+/*
+ * $Id$
+ *
+ * Copyright (c) 2020 by Joel Uckelman
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+package VASSAL.build.module.map;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.Stroke;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.swing.JComponent;
+import javax.swing.SwingUtilities;
+
+import VASSAL.build.module.Map;
+
+/**
+ * Collects the regions of a {@link Map} which need repainting and
+ * requests repaints for them once per pass through the event queue.
+ *
+ * Damage is reported in map coordinates. Overlapping and adjacent
+ * rectangles are merged, so that a burst of changes to nearby pieces
+ * results in a few small repaints rather than one of the whole view.
+ *
+ * Run with <code>-DdebugRepaint=true</code> to outline the damaged
+ * regions on the map.
+ *
+ * @author Joel Uckelman
+ * @since 3.3.1
+ */
+public class DamageTracker {
+  public static final boolean DEBUG =
+    "true".equals(System.getProperty("debugRepaint")); //$NON-NLS-1$ //$NON-NLS-2$
+
+  /** Beyond this many separate regions, repaint their union instead. */
+  protected static final int MAX_REGIONS = 32;
+
+  protected final Map map;
+
+  protected List<Rectangle> pending = new ArrayList<>();
+  protected boolean full = false;
+  protected boolean scheduled = false;
+
+  // for the debug overlay
+  protected List<Rectangle> lastFlushed = Collections.emptyList();
+  protected boolean lastFull = false;
+
+  // statistics
+  protected long requests;
+  protected long flushes;
+  protected long fullRepaints;
+  protected long damagedArea;
+
+  public DamageTracker(Map map) {
+    this.map = map;
+  }
+
+  /**
+   * Mark a region as needing repainting.
+   *
+   * @param r a rectangle in map coordinates; it is not modified
+   */
+  public synchronized void add(Rectangle r) {
+    ++requests;
+    if (full || r == null || r.isEmpty()) {
+      return;
+    }
+
+    Rectangle u = new Rectangle(r);
+    for (int i = 0; i < pending.size(); ) {
+      final Rectangle q = pending.get(i);
+      if (shouldMerge(q, u)) {
+        u = u.union(q);
+        pending.remove(i);
+        i = 0;
+      }
+      else {
+        ++i;
+      }
+    }
+    pending.add(u);
+
+    if (pending.size() > MAX_REGIONS) {
+      Rectangle all = pending.get(0);
+      for (Rectangle q : pending) {
+        all = all.union(q);
+      }
+      pending.clear();
+      pending.add(all);
+    }
+
+    schedule();
+  }
+
+  /** Mark the whole map as needing repainting. */
+  public synchronized void addAll() {
+    ++requests;
+    full = true;
+    pending.clear();
+    schedule();
+  }
+
+  /*
+   * Merge two rectangles if they overlap or if their union is not much
+   * larger than the two of them together.
+   */
+  protected static boolean shouldMerge(Rectangle a, Rectangle b) {
+    if (a.intersects(b)) {
+      return true;
+    }
+    final Rectangle u = a.union(b);
+    final long waste = area(u) - area(a) - area(b);
+    return waste <= Math.min(area(a), area(b)) / 4;
+  }
+
+  protected static long area(Rectangle r) {
+    return (long) r.width * r.height;
+  }
+
+  protected void schedule() {
+    if (!scheduled) {
+      scheduled = true;
+      SwingUtilities.invokeLater(this::flush);
+    }
+  }
+
+  /**
+   * Issue repaints for all damage collected since the last flush.
+   * Must be called on the EDT.
+   */
+  public void flush() {
+    final List<Rectangle> regions;
+    final boolean wasFull;
+    synchronized (this) {
+      scheduled = false;
+      regions = pending;
+      wasFull = full;
+      pending = new ArrayList<>();
+      full = false;
+      ++flushes;
+    }
+
+    final JComponent view = map.getView();
+    final Rectangle vis = view.getVisibleRect();
+    long area = 0;
+    if (wasFull) {
+      area = area(vis);
+      view.repaint();
+    }
+    else {
+      for (Rectangle r : regions) {
+        final Rectangle c = toComponent(r);
+        area += area(c.intersection(vis));
+        view.repaint(c.x, c.y, c.width, c.height);
+      }
+    }
+
+    synchronized (this) {
+      if (wasFull) {
+        ++fullRepaints;
+      }
+      damagedArea += area;
+    }
+
+    if (DEBUG) {
+      lastFlushed = regions;
+      lastFull = wasFull;
+    }
+  }
+
+  /*
+   * Scaling truncates, so pad by a pixel on each side to be sure the
+   * edges are covered.
+   */
+  protected Rectangle toComponent(Rectangle r) {
+    final Rectangle c = map.mapToComponent(r);
+    c.grow(1, 1);
+    c.width += 1;
+    c.height += 1;
+    return c;
+  }
+
+  private static final Color OVERLAY_COLOR = new Color(255, 0, 0, 160);
+  private static final BasicStroke OVERLAY_STROKE = new BasicStroke(1.0f);
+
+  /**
+   * Outline the regions repainted by the last flush.
+   *
+   * @param g the Graphics passed to {@link Map#paintRegion}
+   * @param os_scale the OS scaling factor
+   */
+  public void drawOverlay(Graphics2D g, double os_scale) {
+    if (!DEBUG || lastFull) {
+      return;
+    }
+
+    final Color oldColor = g.getColor();
+    final Stroke oldStroke = g.getStroke();
+    g.setColor(OVERLAY_COLOR);
+    g.setStroke(OVERLAY_STROKE);
+    for (Rectangle r : lastFlushed) {
+      final Rectangle d = map.mapToDrawing(r, os_scale);
+      g.drawRect(d.x, d.y, d.width - 1, d.height - 1);
+    }
+    g.setStroke(oldStroke);
+    g.setColor(oldColor);
+  }
+
+  /** @return the number of damage reports received */
+  public synchronized long getRequestCount() {
+    return requests;
+  }
+
+  /** @return the number of times damage has been flushed */
+  public synchronized long getFlushCount() {
+    return flushes;
+  }
+
+  /** @return the number of flushes which repainted the whole view */
+  public synchronized long getFullRepaintCount() {
+    return fullRepaints;
+  }
+
+  /** @return the total area, in component pixels, requested for repainting */
+  public synchronized long getDamagedArea() {
+    return damagedArea;
+  }
+}
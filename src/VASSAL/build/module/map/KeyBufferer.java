@@ -167,15 +167,19 @@ public class KeyBufferer extends MouseAdapter implements Buildable, MouseMotionL
       return;
     }
 
+    final Rectangle mapsel = map.componentToMap(selection);
     PieceVisitorDispatcher d = createDragSelector(
-      !evt.isControlDown(), evt.isAltDown(), map.componentToMap(selection)
+      !evt.isControlDown(), evt.isAltDown(), mapsel
     );
     // RFE 1659481 Don't clear the entire selection buffer if either shift
     // or control is down - we select/deselect lassoed counters instead
     if (!evt.isShiftDown() && !evt.isControlDown()) {
       KeyBuffer.getBuffer().clear();
     }
-    map.apply(d);
+    // Only pieces overlapping the lasso can be selected by it
+    for (GamePiece p : map.getPiecesInRegion(mapsel)) {
+      d.accept(p);
+    }
     repaintSelectionRect();
     selection = null;
   }
@@ -523,7 +523,7 @@ public class LOS_Thread extends AbstractConfigurable implements
       map.pushMouseListener(this);
       if (hideCounters) {
         map.setPieceOpacity(hideOpacity / 100.0f);
-        map.repaint();
+        map.repaintOverlay();
       }
       visible = true;
       anchor.move(0, 0);
@@ -610,7 +610,7 @@ public class LOS_Thread extends AbstractConfigurable implements
         }
         map.setPieceOpacity(1.0f);
         map.popMouseListener();
-        map.repaint();
+        map.repaintOverlay();
       }
       lastRelease = e.getWhen();
 
@@ -636,7 +636,7 @@ public class LOS_Thread extends AbstractConfigurable implements
     }
     else {
       launch.setAttribute(ICON_NAME, iconName);
-      map.repaint();
+      map.repaintOverlay();
     }
   }
 
@@ -664,7 +664,7 @@ public class LOS_Thread extends AbstractConfigurable implements
     anchor.y = newAnchor.y;
     arrow.x = newArrow.x;
     arrow.y = newArrow.y;
-    map.repaint();
+    map.repaintOverlay();
   }
 
   protected Point getArrow() {
@@ -714,10 +714,10 @@ public class LOS_Thread extends AbstractConfigurable implements
           Math.min(mapAnchor.y, mapArrow.y)-fudge,
           Math.abs(mapAnchor.x - mapArrow.x)+1+fudge*2,
           Math.abs(mapAnchor.y - mapArrow.y)+1+fudge*2);
-      map.repaint(r);
+      map.repaintOverlay(r);
 
       if (drawRange) {
-        map.repaint(lastRangeRect);
+        map.repaintOverlay(lastRangeRect);
       }
     }
   }
@@ -0,0 +1,391 @@
+/*
+ * $Id$
+ *
+ * Copyright (c) 2020 by Joel Uckelman
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+package VASSAL.build.module.map;
+
+import java.awt.AlphaComposite;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Rectangle;
+import java.awt.Transparency;
+import java.awt.image.VolatileImage;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+import VASSAL.build.module.Map;
+import VASSAL.tools.swing.SwingUtils;
+
+/**
+ * Retains an offscreen image of each of the slow-changing layers of a
+ * {@link Map.View} (boards and grids, {@link Drawable}s below the counters,
+ * and the counters themselves) covering the visible part of the map at
+ * the current zoom level. Each paint redraws only the parts of each
+ * layer which have been invalidated, then composites the layers.
+ *
+ * {@link Drawable}s above the counters are drawn directly on every paint,
+ * since they are usually transient (selection rectangles, LOS threads,
+ * mouse-over viewers) and cheap.
+ *
+ * When the view scrolls, layer contents are shifted and only the newly
+ * exposed strip is redrawn.
+ *
+ * All coordinates used by this class are drawing coordinates (i.e.,
+ * component coordinates multiplied by the OS scaling factor), except where
+ * stated otherwise.
+ *
+ * @author Joel Uckelman
+ * @since 3.3.1
+ */
+public class LayerCompositor {
+  public enum Layer {
+    /** Background, boards and grids */
+    BOARDS,
+    /** {@link Drawable}s below the counters, e.g., {@link MapShader} */
+    UNDER,
+    /** Counters */
+    PIECES
+  }
+
+  /** Run with <code>-DnoLayerCache=true</code> to paint maps directly */
+  public static final boolean ENABLED =
+    !"true".equals(System.getProperty("noLayerCache")); //$NON-NLS-1$ //$NON-NLS-2$
+
+  /** Beyond this many dirty regions in a layer, use their union instead */
+  protected static final int MAX_DIRTY = 16;
+
+  protected final Map map;
+
+  protected final java.util.Map<Layer,VolatileImage> images =
+    new EnumMap<>(Layer.class);
+  protected final java.util.Map<Layer,List<Rectangle>> dirty =
+    new EnumMap<>(Layer.class);
+
+  /** The drawing-space rectangle covered by the layer images */
+  protected Rectangle area = new Rectangle();
+  protected double zoom = -1.0;
+  protected GraphicsConfiguration gc;
+
+  /** A device whose volatile images do not match its OS scaling factor */
+  protected GraphicsConfiguration rejected;
+
+  /** Invalidations reported in map coordinates, not yet converted */
+  protected final List<Rectangle> pendingMap = new ArrayList<>();
+  protected final List<Set<Layer>> pendingLayers = new ArrayList<>();
+  protected final Set<Layer> pendingAll = EnumSet.noneOf(Layer.class);
+
+  public LayerCompositor(Map map) {
+    this.map = map;
+    for (Layer l : Layer.values()) {
+      dirty.put(l, new ArrayList<>());
+    }
+  }
+
+  /**
+   * Mark a region of some layers as needing to be redrawn.
+   * May be called from any thread.
+   *
+   * @param r the region, in map coordinates
+   */
+  public synchronized void invalidate(Rectangle r, Set<Layer> layers) {
+    pendingMap.add(new Rectangle(r));
+    pendingLayers.add(layers);
+  }
+
+  /**
+   * Mark the whole of some layers as needing to be redrawn.
+   * May be called from any thread.
+   */
+  public synchronized void invalidateAll(Set<Layer> layers) {
+    pendingAll.addAll(layers);
+  }
+
+  /**
+   * Paint the visible region of the map. The clip of <code>g</code>
+   * determines what is actually painted.
+   *
+   * @param g the graphics context, in drawing coordinates
+   * @param visible the visible region of the map
+   * @param os_scale the OS scaling factor
+   * @return false if retained layers cannot be used with this graphics
+   * context, in which case nothing has been painted
+   */
+  public boolean paint(Graphics2D g, Rectangle visible, double os_scale) {
+    if (!ENABLED) {
+      return false;
+    }
+
+    if (visible.isEmpty()) {
+      return true;
+    }
+
+    final GraphicsConfiguration ngc = g.getDeviceConfiguration();
+    if (ngc == rejected) {
+      return false;
+    }
+
+    final double nzoom = map.getZoom() * os_scale;
+
+    if (ngc != gc || nzoom != zoom || !visible.getSize().equals(area.getSize())) {
+      // everything must be drawn afresh
+      gc = ngc;
+      zoom = nzoom;
+      area = new Rectangle(visible);
+      allocate();
+      invalidateAllNow(EnumSet.allOf(Layer.class));
+
+      // The layers are drawn by code which takes the OS scaling factor
+      // from the device configuration of its Graphics, so that of the
+      // layer images must match ours.
+      final Graphics2D ig = images.get(Layer.BOARDS).createGraphics();
+      final double iscale =
+        ig.getDeviceConfiguration().getDefaultTransform().getScaleX();
+      ig.dispose();
+      if (iscale != os_scale) {
+        dispose();
+        rejected = ngc;
+        return false;
+      }
+    }
+    else if (!visible.getLocation().equals(area.getLocation())) {
+      scroll(visible);
+    }
+
+    applyPending(os_scale);
+
+    for (Layer l : Layer.values()) {
+      VolatileImage img = images.get(l);
+      if (img.validate(gc) == VolatileImage.IMAGE_INCOMPATIBLE) {
+        img = createImage();
+        images.put(l, img);
+        invalidateNow(l, area);
+      }
+      else if (img.contentsLost()) {
+        invalidateNow(l, area);
+      }
+
+      render(l, img, os_scale);
+    }
+
+    // composite the retained layers, then draw the overlays directly
+    for (Layer l : Layer.values()) {
+      g.drawImage(images.get(l), area.x, area.y, null);
+    }
+
+    map.drawDrawable(g, true);
+
+    if (DamageTracker.DEBUG) {
+      map.getDamageTracker().drawOverlay(g, os_scale);
+    }
+
+    // validating may have lost contents since we composited
+    for (Layer l : Layer.values()) {
+      if (images.get(l).contentsLost()) {
+        invalidateNow(l, area);
+        map.getView().repaint();
+      }
+    }
+
+    return true;
+  }
+
+  protected void allocate() {
+    for (Layer l : Layer.values()) {
+      final VolatileImage old = images.get(l);
+      if (old != null) {
+        old.flush();
+      }
+      images.put(l, createImage());
+    }
+  }
+
+  protected VolatileImage createImage() {
+    return gc.createCompatibleVolatileImage(
+      area.width, area.height, Transparency.TRANSLUCENT
+    );
+  }
+
+  /*
+   * Shift the contents of each layer to the new visible region, and
+   * invalidate the parts which were not visible before.
+   */
+  protected void scroll(Rectangle visible) {
+    final int dx = area.x - visible.x;
+    final int dy = area.y - visible.y;
+    final Rectangle overlap = area.intersection(visible);
+
+    for (Layer l : Layer.values()) {
+      if (!overlap.isEmpty()) {
+        final Graphics2D ig = images.get(l).createGraphics();
+        ig.copyArea(overlap.x - area.x, overlap.y - area.y,
+                    overlap.width, overlap.height, dx, dy);
+        ig.dispose();
+      }
+    }
+
+    area = new Rectangle(visible);
+
+    if (overlap.isEmpty()) {
+      invalidateAllNow(EnumSet.allOf(Layer.class));
+    }
+    else {
+      for (Rectangle r : exposed(visible, overlap)) {
+        for (Layer l : Layer.values()) {
+          invalidateNow(l, r);
+        }
+      }
+    }
+  }
+
+  /** @return the parts of <code>r</code> outside of <code>inner</code> */
+  protected static List<Rectangle> exposed(Rectangle r, Rectangle inner) {
+    final List<Rectangle> l = new ArrayList<>(4);
+    if (inner.y > r.y) {
+      l.add(new Rectangle(r.x, r.y, r.width, inner.y - r.y));
+    }
+    if (inner.y + inner.height < r.y + r.height) {
+      l.add(new Rectangle(r.x, inner.y + inner.height,
+                          r.width, r.y + r.height - inner.y - inner.height));
+    }
+    if (inner.x > r.x) {
+      l.add(new Rectangle(r.x, inner.y, inner.x - r.x, inner.height));
+    }
+    if (inner.x + inner.width < r.x + r.width) {
+      l.add(new Rectangle(inner.x + inner.width, inner.y,
+                          r.x + r.width - inner.x - inner.width,
+                          inner.height));
+    }
+    return l;
+  }
+
+  protected void applyPending(double os_scale) {
+    synchronized (this) {
+      invalidateAllNow(pendingAll);
+      pendingAll.clear();
+
+      for (int i = 0; i < pendingMap.size(); ++i) {
+        final Rectangle r = map.mapToDrawing(pendingMap.get(i), os_scale);
+        // allow for truncation when scaling
+        r.grow(1, 1);
+        r.width += 1;
+        r.height += 1;
+        for (Layer l : pendingLayers.get(i)) {
+          invalidateNow(l, r);
+        }
+      }
+      pendingMap.clear();
+      pendingLayers.clear();
+    }
+  }
+
+  protected void invalidateAllNow(Set<Layer> layers) {
+    for (Layer l : layers) {
+      final List<Rectangle> d = dirty.get(l);
+      d.clear();
+      d.add(new Rectangle(area));
+    }
+  }
+
+  protected void invalidateNow(Layer l, Rectangle r) {
+    final Rectangle ri = r.intersection(area);
+    if (ri.isEmpty()) {
+      return;
+    }
+
+    final List<Rectangle> d = dirty.get(l);
+    for (Rectangle q : d) {
+      if (q.contains(ri)) {
+        return;
+      }
+    }
+
+    d.add(ri);
+    if (d.size() > MAX_DIRTY) {
+      Rectangle u = d.get(0);
+      for (Rectangle q : d) {
+        u = u.union(q);
+      }
+      d.clear();
+      d.add(u);
+    }
+  }
+
+  private static final Color CLEAR = new Color(0, 0, 0, 0);
+
+  protected void render(Layer l, VolatileImage img, double os_scale) {
+    final List<Rectangle> d = dirty.get(l);
+    if (d.isEmpty()) {
+      return;
+    }
+
+    final List<Rectangle> regions = new ArrayList<>(d);
+    d.clear();
+
+    final Graphics2D ig = img.createGraphics();
+    ig.addRenderingHints(SwingUtils.FONT_HINTS);
+    ig.translate(-area.x, -area.y);
+
+    for (Rectangle r : regions) {
+      ig.setClip(r);
+
+      switch (l) {
+      case BOARDS:
+        ig.setComposite(AlphaComposite.Src);
+        ig.setColor(map.getBackgroundColor());
+        ig.fillRect(r.x, r.y, r.width, r.height);
+        ig.setComposite(AlphaComposite.SrcOver);
+        map.drawBoardsInRegion(ig, r, map.getView());
+        // Tiles still loading will be drawn on a later pass
+        if (map.isLoadingBoards()) {
+          invalidateNow(l, r);
+        }
+        break;
+      case UNDER:
+        clear(ig, r);
+        map.drawDrawable(ig, false);
+        break;
+      case PIECES:
+        clear(ig, r);
+        map.drawPiecesInRegion(ig, r, map.getView());
+        break;
+      }
+    }
+
+    ig.dispose();
+  }
+
+  protected static void clear(Graphics2D g, Rectangle r) {
+    g.setComposite(AlphaComposite.Src);
+    g.setColor(CLEAR);
+    g.fillRect(r.x, r.y, r.width, r.height);
+    g.setComposite(AlphaComposite.SrcOver);
+  }
+
+  /** Release the layer images */
+  public void dispose() {
+    for (VolatileImage img : images.values()) {
+      img.flush();
+    }
+    images.clear();
+    zoom = -1.0;
+    gc = null;
+  }
+}
@@ -29,10 +29,10 @@ import java.awt.Graphics2D;
 import java.awt.Image;
 import java.awt.Paint;
 import java.awt.Rectangle;
+import java.awt.Shape;
 import java.awt.Stroke;
 import java.awt.TexturePaint;
 import java.awt.event.ActionListener;
-import java.awt.geom.AffineTransform;
 import java.awt.geom.Area;
 import java.awt.image.BufferedImage;
 import java.io.File;
@@ -105,6 +105,15 @@ public class MapShader extends AbstractConfigurable implements GameComponent, Dr
 
   protected Area boardClip = null;
 
+  protected ShadeCache shadeCache = null;
+
+  /**
+   * How far, in map coordinates, beyond each cell of the cached shade its
+   * outline is kept correct. The border is at most one pixel wide, so
+   * this suffices down to a zoom of about 1/16.
+   */
+  protected static final int BORDER_MARGIN = 16;
+
 
   public static final String TYPE = "type";
   public static final String DRAW_OVER = "drawOver";
@@ -171,17 +180,37 @@ public class MapShader extends AbstractConfigurable implements GameComponent, Dr
     g2d.setPaint(
       scaleImage && pattern.equals(TYPE_IMAGE) && imageName != null ?
       getTexture(zoom) : getTexture());
-    Area area = getShadeShape(map);
-    if (zoom != 1.0) {
-      area = new Area(AffineTransform.getScaleInstance(zoom,zoom)
-                                     .createTransformedShape(area));
+
+    // only the cells we can see need be drawn
+    final Rectangle clip = g2d.getClipBounds();
+    final Rectangle region = clip == null ?
+      new Rectangle(map.mapSize()) :
+      new Rectangle(
+        (int) Math.floor(clip.x / zoom),
+        (int) Math.floor(clip.y / zoom),
+        (int) Math.ceil(clip.width / zoom) + 1,
+        (int) Math.ceil(clip.height / zoom) + 1
+      );
+
+    final List<ShadeCache.Cell> cells =
+      updateShadeCache(map).getCells(region, zoom);
+    for (ShadeCache.Cell c : cells) {
+      g2d.fill(c.getFill());
     }
-    g2d.fill(area);
+
     if (border) {
       g2d.setComposite(getBorderComposite());
       g2d.setStroke(getStroke(zoom));
       g2d.setColor(getBorderColor());
-      g2d.draw(area);
+
+      // each outline is right only within its own cell
+      final Shape oldClip = g2d.getClip();
+      for (ShadeCache.Cell c : cells) {
+        g2d.setClip(oldClip);
+        g2d.clip(c.getClip());
+        g2d.draw(c.getOutline());
+      }
+      g2d.setClip(oldClip);
     }
 
     g2d.setComposite(oldComposite);
@@ -217,6 +246,42 @@ public class MapShader extends AbstractConfigurable implements GameComponent, Dr
       AlphaComposite.SRC_OVER, borderOpacity / 100.0f);
   }
 
+  /**
+   * Bring the shade cache up to date with the pieces on the map. The area
+   * of each shaded piece is recomputed, but the cells of the shade are
+   * rebuilt only where an area has moved, appeared, or disappeared.
+   */
+  protected ShadeCache updateShadeCache(Map map) {
+    if (shadeCache == null) {
+      final boolean bg = !type.equals(FG_TYPE);
+      shadeCache =
+        new ShadeCache(bg ? getBoardClip() : null, bg, BORDER_MARGIN);
+    }
+
+    shadeCache.beginUpdate();
+    for (GamePiece p : map.getPieces()) {
+      updatePiece(shadeCache, p);
+    }
+    shadeCache.endUpdate();
+
+    return shadeCache;
+  }
+
+  protected void updatePiece(ShadeCache cache, GamePiece piece) {
+    if (piece instanceof Stack) {
+      for (GamePiece p : ((Stack) piece).asList()) {
+        updatePiece(cache, p);
+      }
+    }
+    else {
+      final ShadedPiece shaded =
+        (ShadedPiece) Decorator.getDecorator(piece, ShadedPiece.class);
+      if (shaded != null) {
+        cache.update(piece, shaded.getArea(this));
+      }
+    }
+  }
+
   /**
    * Get/Build the shape of the shade.
    */
@@ -608,6 +673,7 @@ public class MapShader extends AbstractConfigurable implements GameComponent, Dr
     launch.setEnabled(gameStarting);
     if (!gameStarting) {
       boardClip = null;
+      shadeCache = null;
     }
   }
 
@@ -649,15 +715,20 @@ public class MapShader extends AbstractConfigurable implements GameComponent, Dr
     }
     else if (BOARDS.equals(key)) {
       boardSelection = (String) value;
+      boardClip = null;
+      shadeCache = null;
     }
     else if (BOARD_LIST.equals(key)) {
       if (value instanceof String) {
         value = StringArrayConfigurer.stringToArray((String) value);
       }
       boardList = (String[]) value;
+      boardClip = null;
+      shadeCache = null;
     }
     else if (TYPE.equals(key)) {
       type = (String) value;
+      shadeCache = null;
     }
     else if (DRAW_OVER.equals(key)) {
       if (value instanceof String) {
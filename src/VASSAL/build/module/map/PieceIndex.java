@@ -0,0 +1,266 @@
+/*
+ * $Id$
+ *
+ * Copyright (c) 2020 by Joel Uckelman
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+package VASSAL.build.module.map;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+import VASSAL.build.module.Map;
+import VASSAL.counters.GamePiece;
+
+/**
+ * A uniform grid over map coordinates which records the cells overlapped
+ * by the bounding box of each top-level {@link GamePiece} in a
+ * {@link PieceCollection}.
+ *
+ * Bounds are measured lazily: {@link #add} and {@link #update} only mark
+ * a piece as stale, and stale pieces are measured again on the next query.
+ * Pieces which cannot be measured (e.g., because they are not on a map)
+ * or which are too large to index usefully are returned by every query.
+ *
+ * @author Joel Uckelman
+ * @since 3.3.1
+ */
+public class PieceIndex {
+  public static final int DEFAULT_CELL_SIZE = 256;
+
+  /** Pieces spanning more cells than this are not put into the grid. */
+  protected static final int MAX_CELLS_PER_PIECE = 1024;
+
+  protected final int cellSize;
+
+  protected final java.util.Map<GamePiece,Rectangle> bounds =
+    new IdentityHashMap<>();
+  protected final java.util.Map<Long,List<GamePiece>> cells = new HashMap<>();
+  protected final Set<GamePiece> stale =
+    Collections.newSetFromMap(new IdentityHashMap<>());
+  protected final Set<GamePiece> unbounded =
+    Collections.newSetFromMap(new IdentityHashMap<>());
+
+  public PieceIndex() {
+    this(DEFAULT_CELL_SIZE);
+  }
+
+  public PieceIndex(int cellSize) {
+    if (cellSize <= 0) {
+      throw new IllegalArgumentException("cellSize = " + cellSize);
+    }
+    this.cellSize = cellSize;
+  }
+
+  /** Start tracking a piece. Its bounds are measured on the next query. */
+  public void add(GamePiece p) {
+    if (!bounds.containsKey(p)) {
+      bounds.put(p, null);
+      stale.add(p);
+    }
+  }
+
+  /** Stop tracking a piece. */
+  public void remove(GamePiece p) {
+    if (bounds.containsKey(p)) {
+      unlink(p);
+      bounds.remove(p);
+      stale.remove(p);
+    }
+  }
+
+  /**
+   * Mark the bounds of a piece as stale. Pieces not tracked by this
+   * index are ignored.
+   */
+  public void update(GamePiece p) {
+    if (bounds.containsKey(p)) {
+      stale.add(p);
+    }
+  }
+
+  /** Mark the bounds of all pieces as stale. */
+  public void invalidate() {
+    stale.addAll(bounds.keySet());
+  }
+
+  public void clear() {
+    bounds.clear();
+    cells.clear();
+    stale.clear();
+    unbounded.clear();
+  }
+
+  public boolean contains(GamePiece p) {
+    return bounds.containsKey(p);
+  }
+
+  public int size() {
+    return bounds.size();
+  }
+
+  /**
+   * @param region a rectangle in map coordinates
+   * @return the pieces whose bounds intersect the region, in no
+   * particular order
+   */
+  public Set<GamePiece> query(Rectangle region) {
+    refresh();
+
+    final Set<GamePiece> found =
+      Collections.newSetFromMap(new IdentityHashMap<>());
+    found.addAll(unbounded);
+
+    final int x0 = Math.floorDiv(region.x, cellSize);
+    final int y0 = Math.floorDiv(region.y, cellSize);
+    final int x1 = Math.floorDiv(region.x + region.width, cellSize);
+    final int y1 = Math.floorDiv(region.y + region.height, cellSize);
+
+    if ((long) (x1 - x0 + 1) * (y1 - y0 + 1) > cells.size()) {
+      // the region covers more cells than are occupied, so check them all
+      for (List<GamePiece> cell : cells.values()) {
+        collect(cell, region, found);
+      }
+    }
+    else {
+      for (int x = x0; x <= x1; ++x) {
+        for (int y = y0; y <= y1; ++y) {
+          final List<GamePiece> cell = cells.get(key(x, y));
+          if (cell != null) {
+            collect(cell, region, found);
+          }
+        }
+      }
+    }
+
+    return found;
+  }
+
+  protected void collect(List<GamePiece> cell, Rectangle region,
+                         Set<GamePiece> found) {
+    for (GamePiece p : cell) {
+      if (overlaps(bounds.get(p), region)) {
+        found.add(p);
+      }
+    }
+  }
+
+  /*
+   * Unlike Rectangle.intersects(), this treats edges as inclusive
+   * and does not ignore empty rectangles.
+   */
+  protected static boolean overlaps(Rectangle a, Rectangle b) {
+    return a.x <= b.x + b.width && b.x <= a.x + a.width &&
+           a.y <= b.y + b.height && b.y <= a.y + a.height;
+  }
+
+  protected void refresh() {
+    if (stale.isEmpty()) {
+      return;
+    }
+
+    for (GamePiece p : stale) {
+      unlink(p);
+      final Rectangle r = measure(p);
+      bounds.put(p, r);
+      link(p, r);
+    }
+    stale.clear();
+  }
+
+  /**
+   * @return the bounds of the piece in map coordinates, or
+   * <code>null</code> if it cannot be determined
+   */
+  protected Rectangle measure(GamePiece p) {
+    final Map map = p.getMap();
+    if (map == null) {
+      return null;
+    }
+
+    final Rectangle r = map.boundingBoxOf(p);
+    if (r != null) {
+      // some callers test against the position rather than the shape
+      r.add(p.getPosition());
+    }
+    return r;
+  }
+
+  protected void link(GamePiece p, Rectangle r) {
+    if (r == null) {
+      unbounded.add(p);
+      return;
+    }
+
+    final int x0 = Math.floorDiv(r.x, cellSize);
+    final int y0 = Math.floorDiv(r.y, cellSize);
+    final int x1 = Math.floorDiv(r.x + r.width, cellSize);
+    final int y1 = Math.floorDiv(r.y + r.height, cellSize);
+
+    if ((long) (x1 - x0 + 1) * (y1 - y0 + 1) > MAX_CELLS_PER_PIECE) {
+      unbounded.add(p);
+      return;
+    }
+
+    for (int x = x0; x <= x1; ++x) {
+      for (int y = y0; y <= y1; ++y) {
+        cells.computeIfAbsent(key(x, y), k -> new ArrayList<>(4)).add(p);
+      }
+    }
+  }
+
+  protected void unlink(GamePiece p) {
+    if (unbounded.remove(p)) {
+      return;
+    }
+
+    final Rectangle r = bounds.get(p);
+    if (r == null) {
+      return;
+    }
+
+    final int x0 = Math.floorDiv(r.x, cellSize);
+    final int y0 = Math.floorDiv(r.y, cellSize);
+    final int x1 = Math.floorDiv(r.x + r.width, cellSize);
+    final int y1 = Math.floorDiv(r.y + r.height, cellSize);
+
+    for (int x = x0; x <= x1; ++x) {
+      for (int y = y0; y <= y1; ++y) {
+        final Long k = key(x, y);
+        final List<GamePiece> cell = cells.get(k);
+        if (cell != null) {
+          for (int i = 0; i < cell.size(); ++i) {
+            if (cell.get(i) == p) {
+              cell.remove(i);
+              break;
+            }
+          }
+          if (cell.isEmpty()) {
+            cells.remove(k);
+          }
+        }
+      }
+    }
+  }
+
+  protected static Long key(int x, int y) {
+    return ((long) x << 32) | (y & 0xFFFFFFFFL);
+  }
+}
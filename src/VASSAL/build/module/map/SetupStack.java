@@ -61,6 +61,8 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 import javax.swing.Box;
 import javax.swing.ImageIcon;
@@ -75,6 +77,9 @@ import javax.swing.JScrollPane;
 import javax.swing.KeyStroke;
 import javax.swing.SwingUtilities;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import VASSAL.build.AbstractConfigurable;
 import VASSAL.build.AutoConfigurable;
 import VASSAL.build.BadDataReport;
@@ -89,6 +94,7 @@ import VASSAL.build.module.map.boardPicker.Board;
 import VASSAL.build.module.map.boardPicker.board.MapGrid;
 import VASSAL.build.module.map.boardPicker.board.MapGrid.BadCoords;
 import VASSAL.build.widget.PieceSlot;
+import VASSAL.command.AddPiece;
 import VASSAL.command.Command;
 import VASSAL.configure.AutoConfigurer;
 import VASSAL.configure.Configurer;
@@ -115,6 +121,8 @@ import VASSAL.tools.swing.SwingUtils;
  *
  */
 public class SetupStack extends AbstractConfigurable implements GameComponent, UniqueIdManager.Identifyable {
+  private static final Logger log = LoggerFactory.getLogger(SetupStack.class);
+
   private static UniqueIdManager idMgr = new UniqueIdManager("SetupStack");
   public static final String COMMAND_PREFIX = "SETUP_STACK\t";
   protected Point pos = new Point();
@@ -127,6 +135,9 @@ public class SetupStack extends AbstractConfigurable implements GameComponent, U
   public static final String NAME = "name";
   protected static NewGameIndicator indicator;
 
+  // pieces being built for a game which is starting
+  protected ForkJoinTask<List<GamePiece>> contents;
+
   protected StackConfigurer stackConfigurer;
   protected JButton configureButton;
   protected String location;
@@ -224,26 +235,41 @@ public class SetupStack extends AbstractConfigurable implements GameComponent, U
   @Override
   public void setup(boolean gameStarting) {
     if (gameStarting && indicator.isNewGame() && isOwningBoardActive()) {
-      Stack s = initializeContents();
-      updatePosition();
-      Point p = new Point(pos);
-      if (owningBoardName != null) {
-        Rectangle r = map.getBoardByName(owningBoardName).bounds();
-        p.translate(r.x, r.y);
-      }
-      if (placeNonStackingSeparately()) {
-        for (int i=0;i<s.getPieceCount();++i) {
-          GamePiece piece = s.getPieceAt(i);
-          if (Boolean.TRUE.equals(piece.getProperty(Properties.NO_STACK))) {
-            s.remove(piece);
-            piece.setParent(null);
-            map.placeAt(piece,p);
-            i--;
-          }
+      // Build our pieces in the background while the other components
+      // are set up, and place them afterwards. The pieces in the slots
+      // belong to the event dispatch thread, so the background builds
+      // from their definitions instead.
+      final List<String> definitions = getPieceDefinitions();
+      contents = ForkJoinPool.commonPool().submit(
+        () -> buildContents(definitions));
+      GameModule.getGameModule().getGameState().invokeAfterSetup(
+        this::placeContents);
+    }
+  }
+
+  /**
+   * Place the contents of this stack on its map.
+   */
+  protected void placeContents() {
+    Stack s = initializeContents();
+    updatePosition();
+    Point p = new Point(pos);
+    if (owningBoardName != null) {
+      Rectangle r = map.getBoardByName(owningBoardName).bounds();
+      p.translate(r.x, r.y);
+    }
+    if (placeNonStackingSeparately()) {
+      for (int i=0;i<s.getPieceCount();++i) {
+        GamePiece piece = s.getPieceAt(i);
+        if (Boolean.TRUE.equals(piece.getProperty(Properties.NO_STACK))) {
+          s.remove(piece);
+          piece.setParent(null);
+          map.placeAt(piece,p);
+          i--;
         }
       }
-      map.placeAt(s, p);
     }
+    map.placeAt(s, p);
   }
 
   protected boolean placeNonStackingSeparately() {
@@ -408,18 +434,77 @@ public class SetupStack extends AbstractConfigurable implements GameComponent, U
     return active;
   }
 
-  protected Stack initializeContents() {
-    Stack s = createStack();
+  /**
+   * @return the definitions of the pieces in this stack
+   * @see PieceSlot#getPieceDefinition
+   */
+  protected List<String> getPieceDefinitions() {
+    final List<String> l = new ArrayList<>();
+    for (Configurable c : getConfigureComponents()) {
+      if (c instanceof PieceSlot) {
+        l.add(((PieceSlot) c).getPieceDefinition());
+      }
+    }
+    return l;
+  }
+
+  /**
+   * Build the pieces in this stack from their definitions, detached from
+   * any map. This may run on any thread, as the pieces it builds are its
+   * own until it returns.
+   *
+   * @param definitions the definitions of the pieces
+   */
+  protected List<GamePiece> buildContents(List<String> definitions) {
+    final GameModule g = GameModule.getGameModule();
+    final List<GamePiece> l = new ArrayList<>();
+    for (String definition : definitions) {
+      final AddPiece comm =
+        definition == null ? null : (AddPiece) g.decode(definition);
+      if (comm == null) {
+        log.warn("Couldn't build piece " + definition);  //$NON-NLS-1$
+        continue;
+      }
+
+      final GamePiece p = comm.getTarget();
+      p.setState(comm.getState());
+      l.add(PieceCloner.getInstance().clonePiece(p));
+    }
+    return l;
+  }
+
+  /**
+   * Build the pieces in this stack, detached from any map, from the
+   * pieces in its slots. This must run on the event dispatch thread.
+   */
+  protected List<GamePiece> buildContents() {
+    final List<GamePiece> l = new ArrayList<>();
     Configurable[] c = getConfigureComponents();
     for (Configurable configurable : c) {
       if (configurable instanceof PieceSlot) {
         PieceSlot slot = (PieceSlot) configurable;
         GamePiece p = slot.getPiece();
-        p = PieceCloner.getInstance().clonePiece(p);
-        GameModule.getGameModule().getGameState().addPiece(p);
-        s.add(p);
+        l.add(PieceCloner.getInstance().clonePiece(p));
       }
     }
+    return l;
+  }
+
+  protected Stack initializeContents() {
+    final List<GamePiece> l;
+    if (contents != null) {
+      l = contents.join();
+      contents = null;
+    }
+    else {
+      l = buildContents();
+    }
+
+    Stack s = createStack();
+    for (GamePiece p : l) {
+      GameModule.getGameModule().getGameState().addPiece(p);
+      s.add(p);
+    }
     GameModule.getGameModule().getGameState().addPiece(s);
     return s;
   }
@@ -0,0 +1,362 @@
+/*
+ * $Id$
+ *
+ * Copyright (c) 2020 by Joel Uckelman
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+package VASSAL.build.module.map;
+
+import java.awt.Rectangle;
+import java.awt.Shape;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Area;
+import java.awt.geom.PathIterator;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+
+import VASSAL.counters.GamePiece;
+
+/**
+ * Keeps the shape drawn by a {@link MapShader} split into square cells,
+ * so that a change to one {@link MapShader.ShadedPiece} rebuilds only
+ * the cells its area touches, and a paint transforms and fills only the
+ * cells it can see.
+ *
+ * Each cell holds the union of the areas touching it (or, for background
+ * shading, the shaded boards less those areas), clipped to the cell
+ * grown by a margin. The interior is filled clipped to the cell itself,
+ * and the outline is stroked clipped to the cell, so the artificial
+ * edges along the margin are never seen.
+ *
+ * Changes are detected by comparing the area of each piece with the one
+ * seen on the previous update: first by bounds, and, where those match,
+ * by the segments of their outlines.
+ *
+ * @author Joel Uckelman
+ * @since 3.3.1
+ */
+public class ShadeCache {
+  public static final int CELL_SIZE = 512;
+
+  /** A rectangular part of the shade. */
+  public static class Cell {
+    protected final Rectangle rect;
+    protected final Area shape;
+    protected Area fill;
+
+    protected double zoom = -1.0;
+    protected Shape zoomedFill;
+    protected Shape zoomedOutline;
+    protected Shape zoomedRect;
+
+    protected Cell(Rectangle rect, Area shape) {
+      this.rect = rect;
+      this.shape = shape;
+    }
+
+    protected void zoom(double z) {
+      if (z == zoom) {
+        return;
+      }
+
+      if (fill == null) {
+        fill = new Area(shape);
+        fill.intersect(new Area(rect));
+      }
+
+      final AffineTransform t = AffineTransform.getScaleInstance(z, z);
+      zoomedFill = t.createTransformedShape(fill);
+      zoomedOutline = t.createTransformedShape(shape);
+      zoomedRect = t.createTransformedShape(rect);
+      zoom = z;
+    }
+
+    /** @return the shaded part of this cell, at the last zoom */
+    public Shape getFill() {
+      return zoomedFill;
+    }
+
+    /**
+     * @return the shade near this cell, at the last zoom; only the part
+     * within {@link #getClip} is correct
+     */
+    public Shape getOutline() {
+      return zoomedOutline;
+    }
+
+    /** @return the bounds of this cell, at the last zoom */
+    public Shape getClip() {
+      return zoomedRect;
+    }
+
+    public boolean isEmpty() {
+      return shape.isEmpty();
+    }
+  }
+
+  protected static class Entry {
+    protected final Area area;
+    protected final Rectangle bounds;
+    protected boolean seen;
+
+    protected Entry(Area area) {
+      this.area = area;
+      this.bounds = area.getBounds();
+    }
+  }
+
+  protected final boolean subtract;
+  protected final Area base;
+  protected final int margin;
+
+  protected final java.util.Map<GamePiece,Entry> entries =
+    new IdentityHashMap<>();
+  protected final java.util.Map<Long,List<Entry>> cellEntries =
+    new HashMap<>();
+  protected final java.util.Map<Long,Cell> cells = new HashMap<>();
+
+  /**
+   * @param base the shaded area before any pieces are considered, in map
+   * coordinates, or <code>null</code> for none
+   * @param subtract true if the areas of pieces are to be taken away from
+   * <code>base</code>, false if they are to be added to it
+   * @param margin the distance, in map coordinates, beyond a cell within
+   * which the outline must be correct, e.g., to allow for a border
+   */
+  public ShadeCache(Area base, boolean subtract, int margin) {
+    this.base = base == null ? new Area() : base;
+    this.subtract = subtract;
+    this.margin = Math.max(0, margin);
+  }
+
+  /** Mark all pieces as not seen, before a round of {@link #update}s. */
+  public void beginUpdate() {
+    for (Entry e : entries.values()) {
+      e.seen = false;
+    }
+  }
+
+  /**
+   * Record the area which a piece currently contributes.
+   *
+   * @param p the piece
+   * @param area its area in map coordinates, or <code>null</code> if it
+   * contributes none
+   */
+  public void update(GamePiece p, Area area) {
+    final Entry old = entries.get(p);
+    if (area == null || area.isEmpty()) {
+      if (old != null) {
+        remove(p, old);
+      }
+      return;
+    }
+
+    if (old != null) {
+      if (old.bounds.equals(area.getBounds()) && sameOutline(old.area, area)) {
+        old.seen = true;
+        return;
+      }
+      remove(p, old);
+    }
+
+    final Entry e = new Entry(area);
+    e.seen = true;
+    entries.put(p, e);
+    link(e);
+  }
+
+  /** Drop the pieces not updated since {@link #beginUpdate}. */
+  public void endUpdate() {
+    for (Iterator<Entry> i = entries.values().iterator(); i.hasNext(); ) {
+      final Entry e = i.next();
+      if (!e.seen) {
+        i.remove();
+        unlink(e);
+      }
+    }
+  }
+
+  /**
+   * @return true if the areas have the same outline, segment for segment;
+   * cheaper than {@link Area#equals}, which is all that is needed to see
+   * that an area has been made again unchanged
+   */
+  protected static boolean sameOutline(Area a, Area b) {
+    final PathIterator i = a.getPathIterator(null);
+    final PathIterator j = b.getPathIterator(null);
+    final double[] ci = new double[6];
+    final double[] cj = new double[6];
+    for ( ; !i.isDone(); i.next(), j.next()) {
+      if (j.isDone()) {
+        return false;
+      }
+
+      final int type = i.currentSegment(ci);
+      if (type != j.currentSegment(cj)) {
+        return false;
+      }
+
+      final int n;
+      switch (type) {
+      case PathIterator.SEG_MOVETO:
+      case PathIterator.SEG_LINETO:
+        n = 2;
+        break;
+      case PathIterator.SEG_QUADTO:
+        n = 4;
+        break;
+      case PathIterator.SEG_CUBICTO:
+        n = 6;
+        break;
+      default:
+        n = 0;
+      }
+
+      for (int k = 0; k < n; ++k) {
+        if (ci[k] != cj[k]) {
+          return false;
+        }
+      }
+    }
+    return j.isDone();
+  }
+
+  protected void remove(GamePiece p, Entry e) {
+    entries.remove(p);
+    unlink(e);
+  }
+
+  protected Rectangle span(Rectangle r) {
+    final Rectangle g = new Rectangle(r);
+    g.grow(margin, margin);
+    final int x0 = Math.floorDiv(g.x, CELL_SIZE);
+    final int y0 = Math.floorDiv(g.y, CELL_SIZE);
+    final int x1 = Math.floorDiv(g.x + g.width, CELL_SIZE);
+    final int y1 = Math.floorDiv(g.y + g.height, CELL_SIZE);
+    return new Rectangle(x0, y0, x1 - x0 + 1, y1 - y0 + 1);
+  }
+
+  protected void link(Entry e) {
+    final Rectangle s = span(e.bounds);
+    for (int x = s.x; x < s.x + s.width; ++x) {
+      for (int y = s.y; y < s.y + s.height; ++y) {
+        final Long k = key(x, y);
+        cellEntries.computeIfAbsent(k, kk -> new ArrayList<>(4)).add(e);
+        cells.remove(k);
+      }
+    }
+  }
+
+  protected void unlink(Entry e) {
+    final Rectangle s = span(e.bounds);
+    for (int x = s.x; x < s.x + s.width; ++x) {
+      for (int y = s.y; y < s.y + s.height; ++y) {
+        final Long k = key(x, y);
+        final List<Entry> l = cellEntries.get(k);
+        if (l != null) {
+          l.remove(e);
+          if (l.isEmpty()) {
+            cellEntries.remove(k);
+          }
+        }
+        cells.remove(k);
+      }
+    }
+  }
+
+  /**
+   * @param region the region wanted, in map coordinates
+   * @param zoom the zoom at which the cells will be drawn
+   * @return the nonempty cells overlapping the region
+   */
+  public List<Cell> getCells(Rectangle region, double zoom) {
+    final List<Cell> l = new ArrayList<>();
+
+    Rectangle r = region;
+    if (!subtract) {
+      // only cells touched by some piece can be nonempty
+      if (cellEntries.isEmpty()) {
+        return l;
+      }
+    }
+    else {
+      r = r.intersection(base.getBounds());
+      if (r.isEmpty()) {
+        return l;
+      }
+    }
+
+    final int x0 = Math.floorDiv(r.x, CELL_SIZE);
+    final int y0 = Math.floorDiv(r.y, CELL_SIZE);
+    final int x1 = Math.floorDiv(r.x + r.width, CELL_SIZE);
+    final int y1 = Math.floorDiv(r.y + r.height, CELL_SIZE);
+
+    for (int x = x0; x <= x1; ++x) {
+      for (int y = y0; y <= y1; ++y) {
+        final Long k = key(x, y);
+        if (!subtract && !cellEntries.containsKey(k)) {
+          continue;
+        }
+
+        Cell c = cells.get(k);
+        if (c == null) {
+          c = build(x, y, cellEntries.get(k));
+          cells.put(k, c);
+        }
+
+        if (!c.isEmpty()) {
+          c.zoom(zoom);
+          l.add(c);
+        }
+      }
+    }
+
+    return l;
+  }
+
+  protected Cell build(int x, int y, List<Entry> es) {
+    final Rectangle rect =
+      new Rectangle(x * CELL_SIZE, y * CELL_SIZE, CELL_SIZE, CELL_SIZE);
+    final Rectangle grown = new Rectangle(rect);
+    grown.grow(margin, margin);
+    final Area clip = new Area(grown);
+
+    final Area shape = new Area(base);
+    shape.intersect(clip);
+
+    if (es != null) {
+      for (Entry e : es) {
+        if (subtract) {
+          shape.subtract(e.area);
+        }
+        else {
+          final Area a = new Area(e.area);
+          a.intersect(clip);
+          shape.add(a);
+        }
+      }
+    }
+
+    return new Cell(rect, shape);
+  }
+
+  protected static Long key(int x, int y) {
+    return ((long) x << 32) | (y & 0xFFFFFFFFL);
+  }
+}
@@ -18,13 +18,33 @@
  */
 package VASSAL.build.module.map;
 
+import java.awt.Rectangle;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.Set;
 
 import VASSAL.counters.GamePiece;
 
-/** Stores {@link VASSAL.counters.GamePiece}s in a simple array */
-public class SimplePieceCollection implements PieceCollection {
+/**
+ * Stores {@link VASSAL.counters.GamePiece}s in a simple array, with
+ * a {@link PieceIndex} for finding the pieces in a region
+ */
+public class SimplePieceCollection implements SpatialPieceCollection {
   private final ArrayList<GamePiece> pieces = new ArrayList<>();
+  private final PieceIndex index = new PieceIndex();
+
+  /*
+   * Drawing order of each piece, so that the results of a region query
+   * can be sorted without searching the list. Front and back are tracked
+   * separately so that moving a piece to either end is constant time.
+   */
+  private final java.util.Map<GamePiece,Long> order = new IdentityHashMap<>();
+  private long front = 0;
+  private long back = 0;
+  private final Comparator<GamePiece> byOrder =
+    Comparator.comparingLong(order::get);
 
   /**
    * Returns the index of a piece.  When painting the map, pieces
@@ -42,11 +62,16 @@ public class SimplePieceCollection implements PieceCollection {
   @Override
   public void add(GamePiece p) {
     pieces.add(p);
+    order.put(p, ++front);
+    index.add(p);
   }
 
   @Override
   public void clear() {
     pieces.clear();
+    order.clear();
+    index.clear();
+    front = back = 0;
   }
 
   @Override
@@ -64,9 +89,36 @@ public class SimplePieceCollection implements PieceCollection {
     return getPieces();
   }
 
+  @Override
+  public GamePiece[] getPiecesInRegion(Rectangle region) {
+    final Set<GamePiece> found = index.query(region);
+    // pieces not tracked by the index can't be ordered, so drop them
+    found.removeIf(p -> !order.containsKey(p));
+    final GamePiece[] a = found.toArray(new GamePiece[0]);
+    Arrays.sort(a, byOrder);
+    return a;
+  }
+
+  @Override
+  public GamePiece[] getAllPiecesInRegion(Rectangle region) {
+    return getPiecesInRegion(region);
+  }
+
+  @Override
+  public void update(GamePiece p) {
+    index.update(p);
+  }
+
+  @Override
+  public void invalidate() {
+    index.invalidate();
+  }
+
   private void removePieceAt(int gone) {
     if (gone >= 0) {
-      pieces.remove(gone);
+      final GamePiece p = pieces.remove(gone);
+      order.remove(p);
+      index.remove(p);
     }
   }
 
@@ -75,12 +127,26 @@ public class SimplePieceCollection implements PieceCollection {
     if (i >= 0) {
       pieces.remove(i);
       pieces.add(pos, p);
+      renumber();
+    }
+  }
+
+  private void renumber() {
+    back = 0;
+    front = 0;
+    for (GamePiece p : pieces) {
+      order.put(p, ++front);
     }
   }
 
   @Override
   public void moveToBack(GamePiece p) {
-    reposition(p, 0);
+    final int i = pieces.indexOf(p);
+    if (i >= 0) {
+      pieces.remove(i);
+      pieces.add(0, p);
+      order.put(p, --back);
+    }
   }
 
   @Override
@@ -89,6 +155,7 @@ public class SimplePieceCollection implements PieceCollection {
     if (i >= 0) {
       pieces.remove(p);
       pieces.add(p);
+      order.put(p, ++front);
     }
   }
 }
@@ -0,0 +1,51 @@
+/*
+ * $Id$
+ *
+ * Copyright (c) 2020 by Joel Uckelman
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+package VASSAL.build.module.map;
+
+import java.awt.Rectangle;
+
+import VASSAL.counters.GamePiece;
+
+/**
+ * A {@link PieceCollection} which can efficiently find the pieces
+ * overlapping a region of the map.
+ *
+ * @author Joel Uckelman
+ * @since 3.3.1
+ */
+public interface SpatialPieceCollection extends PieceCollection {
+  /**
+   * Return the currently-visible pieces whose bounds intersect the given
+   * region (in map coordinates), in the same order as {@link #getPieces()}.
+   */
+  GamePiece[] getPiecesInRegion(Rectangle region);
+
+  /**
+   * Return all pieces whose bounds intersect the given region (in map
+   * coordinates), regardless of visibility, in the same order as
+   * {@link #getAllPieces()}.
+   */
+  GamePiece[] getAllPiecesInRegion(Rectangle region);
+
+  /** Notify the collection that the bounds of a piece may have changed */
+  void update(GamePiece p);
+
+  /** Notify the collection that the bounds of every piece may have changed */
+  void invalidate();
+}
@@ -228,6 +228,23 @@ public class Zoomer extends AbstractConfigurable implements GameComponent {
       return custom < 0 ? cur < levels.length-1 : cur < levels.length;
     }
 
+    /**
+     * @return the zoom factor {@link #lowerLevel} would set, or a
+     * negative value if there is no lower level
+     */
+    public double getLowerZoom() {
+      return hasLowerLevel() ? levels[cur-1] : -1;
+    }
+
+    /**
+     * @return the zoom factor {@link #higherLevel} would set, or a
+     * negative value if there is no higher level
+     */
+    public double getHigherZoom() {
+      if (!hasHigherLevel()) return -1;
+      return custom < 0 ? levels[cur+1] : levels[cur];
+    }
+
     public List<Double> getLevels() {
       final ArrayList<Double> l = new ArrayList<>(levels.length);
       for (double d : levels) l.add(d);
@@ -833,6 +850,22 @@ public class Zoomer extends AbstractConfigurable implements GameComponent {
     return state.getZoom();
   }
 
+  /**
+   * @return the zoom factor {@link #zoomOut} would set, or a negative
+   * value if we are fully zoomed out
+   */
+  public double getLowerZoomFactor() {
+    return state.getLowerZoom();
+  }
+
+  /**
+   * @return the zoom factor {@link #zoomIn} would set, or a negative
+   * value if we are fully zoomed in
+   */
+  public double getHigherZoomFactor() {
+    return state.getHigherZoom();
+  }
+
   protected Point getMapCenter() {
     final Rectangle r = map.getView().getVisibleRect();
     return map.componentToMap(new Point(r.x + r.width/2, r.y + r.height/2));
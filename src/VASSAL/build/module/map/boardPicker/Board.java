@@ -51,6 +51,7 @@ import VASSAL.build.GameModule;
 import VASSAL.build.module.GameComponent;
 import VASSAL.build.module.Map;
 import VASSAL.build.module.documentation.HelpFile;
+import VASSAL.build.module.map.Zoomer;
 import VASSAL.build.module.map.boardPicker.board.HexGrid;
 import VASSAL.build.module.map.boardPicker.board.MapGrid;
 import VASSAL.build.module.map.boardPicker.board.RegionGrid;
@@ -70,6 +71,7 @@ import VASSAL.tools.imageop.Op;
 import VASSAL.tools.imageop.Repainter;
 import VASSAL.tools.imageop.ScaleOp;
 import VASSAL.tools.imageop.SourceOp;
+import VASSAL.tools.imageop.TilePrefetcher;
 
 public class Board extends AbstractConfigurable implements GridContainer {
   /**
@@ -100,6 +102,10 @@ public class Board extends AbstractConfigurable implements GridContainer {
   protected SourceOp boardImageOp;
   protected ScaleOp scaledImageOp;
 
+  protected final TilePrefetcher prefetcher = new TilePrefetcher();
+  /** Ops for the next lower and higher zoom levels, for prefetching */
+  protected final ScaleOp[] adjacentImageOps = new ScaleOp[2];
+
   public Board() {
   }
 
@@ -253,6 +259,7 @@ public class Board extends AbstractConfigurable implements GridContainer {
           boardImageOp = Op.load(imageFile);
         }
       }
+      Arrays.fill(adjacentImageOps, null);
     }
     else if (WIDTH.equals(key)) {
       if (val instanceof String) {
@@ -312,6 +319,14 @@ public class Board extends AbstractConfigurable implements GridContainer {
   private ConcurrentMap<Point,Future<BufferedImage>> o_requested =
     new ConcurrentHashMap<>();
 
+  /**
+   * @return true if some tiles requested for the map view have not been
+   * drawn yet, or are still fading in
+   */
+  public boolean isLoading() {
+    return !requested.isEmpty() || !alpha.isEmpty();
+  }
+
   private static Comparator<Point> tileOrdering = new Comparator<>() {
     @Override
     public int compare(Point t1, Point t2) {
@@ -475,6 +490,8 @@ public class Board extends AbstractConfigurable implements GridContainer {
       }
 
       if (map != null && obs == map.getView()) {
+        prefetchTiles(op, r, zoom);
+
         for (Point tile : requested.keySet().toArray(new Point[0])) {
           if (Arrays.binarySearch(tiles, tile, tileOrdering) < 0) {
             requested.remove(tile);
@@ -519,6 +536,58 @@ public class Board extends AbstractConfigurable implements GridContainer {
     }
   }
 
+  /**
+   * Queue requests for the tiles the map view is likely to want next:
+   * those just beyond the visible region, and those which would be
+   * visible after zooming in or out by one level.
+   *
+   * @param op the op being drawn
+   * @param r the visible region, in the coordinates of <code>op</code>
+   * @param zoom the scale of <code>op</code>
+   */
+  protected void prefetchTiles(ImageOp op, Rectangle r, double zoom) {
+    if (prefetcher.getRing() == 0) {
+      return;
+    }
+
+    prefetcher.prefetchAround(op, r);
+
+    final Zoomer zoomer = map.getZoomer();
+    if (zoomer == null) {
+      return;
+    }
+
+    final double mzoom = map.getZoom();
+    prefetchAtZoom(0, zoomer.getLowerZoomFactor() / mzoom, r, zoom);
+    prefetchAtZoom(1, zoomer.getHigherZoomFactor() / mzoom, r, zoom);
+  }
+
+  /*
+   * Prefetch the tiles covering r, kept centered, at zoom*factor.
+   */
+  protected void prefetchAtZoom(int slot, double factor,
+                                Rectangle r, double zoom) {
+    if (factor <= 0) {
+      return;
+    }
+
+    final double z = zoom * factor;
+    ScaleOp sop = adjacentImageOps[slot];
+    if (sop == null || sop.getScale() != z) {
+      sop = adjacentImageOps[slot] = Op.scale(boardImageOp, z);
+    }
+    final ImageOp op = reversed ? Op.rotate(sop, 180) : sop;
+
+    final Rectangle zr = new Rectangle(
+      (int) ((r.x + r.width/2.0) * factor - r.width/2.0),
+      (int) ((r.y + r.height/2.0) * factor - r.height/2.0),
+      r.width,
+      r.height
+    );
+
+    prefetcher.prefetchRegion(op, zr);
+  }
+
   @Deprecated
   public synchronized Image getScaledImage(double zoom, Component obs) {
     try {
@@ -99,6 +99,10 @@ public class Zone extends AbstractConfigurable implements GridContainer, Mutable
   protected PropertyChangeListener repaintOnPropertyChange = new PropertyChangeListener() {
     @Override
     public void propertyChange(PropertyChangeEvent evt) {
+      // the bounds of pieces may depend on the property
+      if (getMap() != null) {
+        getMap().invalidatePieceBounds();
+      }
       repaint();
     }
   };
@@ -193,7 +197,7 @@ public class Zone extends AbstractConfigurable implements GridContainer, Mutable
 
   public void repaint() {
     if (getMap() != null) {
-      getMap().repaint();
+      getMap().repaint(true);
     }
   }
 
@@ -154,6 +154,14 @@ public class PieceSlot extends Widget implements MouseListener, KeyListener {
       GameModule.getGameModule().encode(new AddPiece(c));
   }
 
+  /**
+   * @return the encoded {@link AddPiece} command which defines the piece
+   * in this slot, or <code>null</code> if there is none
+   */
+  public String getPieceDefinition() {
+    return pieceDefinition;
+  }
+
   /**
    * Return defined GamePiece with prototypes fully expanded.
    *
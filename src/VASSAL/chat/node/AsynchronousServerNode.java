@@ -25,7 +25,9 @@ package VASSAL.chat.node;
 import java.io.IOException;
 import java.util.Arrays;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 import java.util.logging.Logger;
@@ -59,7 +61,7 @@ public class AsynchronousServerNode extends ServerNode {
   }
 
   @Override
-  protected synchronized void sendContents(Node node) {
+  protected void sendContents(Node node) {
     contentsReporter.markChanged(node);
   }
 
@@ -69,6 +71,9 @@ public class AsynchronousServerNode extends ServerNode {
     private long lastGlobalUpdate;
     private static final long GLOBAL_UPDATE_INTERVAL = 1000L * 120L;
 
+    // the info and first player of each room when its owner was checked
+    private final Map<Node, Object[]> ownerChecks = new IdentityHashMap<>();
+
     public ReportContentsThread(AsynchronousServerNode server) {
       this.server = server;
       changed = new HashSet<>();
@@ -78,38 +83,61 @@ public class AsynchronousServerNode extends ServerNode {
     @Override
     public void run() {
       while (true) {
-        try {
-          synchronized (this) {
-            wait();
-            sendContents();
+        final Set<Node> modules;
+        final boolean global;
+        synchronized (this) {
+          if (changed.isEmpty()) {
+            try {
+              wait(GLOBAL_UPDATE_INTERVAL);
+            }
+            catch (InterruptedException e) {
+            }
           }
+
+          // Every so often, send everything to everyone, so that
+          // clients which have fallen out of step can recover.
+          final long time = System.currentTimeMillis();
+          global = time - lastGlobalUpdate >= GLOBAL_UPDATE_INTERVAL;
+          if (global) {
+            lastGlobalUpdate = time;
+          }
+
+          modules = changed;
+          changed = new HashSet<>();
         }
-        catch (InterruptedException e) {
-        }
+        sendContents(modules, global);
       }
     }
 
-    private synchronized void sendContents() {
+    private void sendContents(Set<Node> changedModules, boolean global) {
       server.statusReporter.updateContents(server.getLeafDescendants());
-      long time = System.currentTimeMillis();
-      Iterator<Node> modules;
-      if (time - lastGlobalUpdate < GLOBAL_UPDATE_INTERVAL) {
+
+      final Iterator<Node> modules;
+      if (global) {
         modules = Arrays.asList(server.getChildren()).iterator();
-        lastGlobalUpdate = time;
+        // forget the rooms which have gone
+        ownerChecks.clear();
       }
       else {
-        modules = changed.iterator();
+        modules = changedModules.iterator();
       }
+
       while (modules.hasNext()) {
         Node module = modules.next();
         logger.fine("Sending contents of "+module.getId()); //$NON-NLS-1$
-        Node[] players = module.getLeafDescendants();
         Node[] rooms = module.getChildren();
 
         // Check if any rooms have lost their first player
         for (int i = 1; i < rooms.length; i++) {
           Node[] c = rooms[i].getChildren();
           if (c.length > 0) {
+            // Parse the infos only if they or the first player have changed
+            final Object[] check =
+              { rooms[i].getInfo(), c[0], c[0].getInfo() };
+            if (Arrays.equals(check, ownerChecks.get(rooms[i]))) {
+              continue;
+            }
+
             try {
               final Properties roomProps = new PropertiesEncoder(rooms[i].getInfo()).getProperties();
               final String roomOwner = roomProps.getProperty("owner");
@@ -117,7 +145,9 @@ public class AsynchronousServerNode extends ServerNode {
               if (roomOwner == null || (! roomOwner.equals(playerId))) {
                 roomProps.setProperty("owner", playerId);
                 rooms[i].setInfo(new PropertiesEncoder(roomProps).toString());
+                check[0] = rooms[i].getInfo();
               }
+              ownerChecks.put(rooms[i], check);
             }
             catch (IOException e) {
               // Error encoding/decoding properties. Shouldn't happen.
@@ -126,13 +156,8 @@ public class AsynchronousServerNode extends ServerNode {
           }
         }
 
-        String listCommand = Protocol.encodeListCommand(players);
-        logger.finer(listCommand);
-        module.send(listCommand);
-        String roomInfo = Protocol.encodeRoomsInfo(rooms);
-        module.send(roomInfo);
+        server.sendRoster(module, global);
       }
-      changed.clear();
     }
 
     public synchronized void markChanged(Node module) {
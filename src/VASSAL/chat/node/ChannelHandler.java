@@ -0,0 +1,409 @@
+/*
+ * $Id$
+ *
+ * Copyright (c) 2020 by Joel Uckelman
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+package VASSAL.chat.node;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * A non-blocking connection to a client of the node server, served by
+ * one of the event loops of a {@link ChannelServer}. It is the
+ * counterpart of {@link SocketHandler}, and behaves the same on the wire.
+ *
+ * Lines read are framed as {@link java.io.BufferedReader#readLine} frames
+ * them, and are handed to the listener on the event loop thread. Lines
+ * written, from any thread, are queued in this connection's own output
+ * buffers, which the event loop sends with as few writes as the socket
+ * allows, so that a slow client holds up no one but itself. A line
+ * broadcast to many connections is queued in each by reference, not
+ * copied.
+ *
+ * Once compression is started, by either end, what follows the
+ * {@link Protocol#DEFLATE} lines is inflated and deflated here, each with
+ * one stream for the life of the connection. Lines written are deflated
+ * as they are queued, and the stream is flushed once for each batch the
+ * event loop sends.
+ *
+ * @author Joel Uckelman
+ * @since 3.3.1
+ */
+public class ChannelHandler implements LineConnection {
+  private static final Logger logger =
+    Logger.getLogger(ChannelHandler.class.getName());
+
+  private static final String SIGN_OFF = "!BYE"; //$NON-NLS-1$
+  private static final ByteBuffer SIGN_OFF_LINE = LineConnection.encode(SIGN_OFF);
+  private static final ByteBuffer DEFLATE_LINE =
+    LineConnection.encode(Protocol.DEFLATE);
+  private static final long KEEP_ALIVE = TimeUnit.MINUTES.toNanos(2);
+  private static final int MAX_LINE_LENGTH = 1 << 26;
+  private static final int MAX_GATHER = 64;
+  private static final int INFLATE_BUFFER_SIZE = 1 << 14;
+  private static final int DEFLATE_BUFFER_SIZE = 1 << 13;
+
+  private final SocketChannel channel;
+  private final ChannelServer.EventLoop loop;
+  private final Consumer<String> listener;
+  private final Runnable closeListener;
+  private final InetAddress address;
+  private final LineReader reader = new LineReader(MAX_LINE_LENGTH);
+
+  // used only by the event loop thread
+  private SelectionKey key;
+  private boolean isOpen = true;
+  private Inflater inflater;
+  private ByteBuffer inflated;
+  private boolean inflateNext;
+
+  private volatile byte[] dictionary;
+
+  // guarded by this
+  private final ArrayDeque<ByteBuffer> output = new ArrayDeque<>();
+  private boolean flushPending;
+  private boolean closing;
+  private Deflater deflater;
+  private byte[] deflateBuffer;
+  private boolean deflaterDirty;
+
+  private volatile long lastWrite = System.nanoTime();
+
+  /**
+   * @param channel the connection
+   * @param loop the event loop which will serve it
+   * @param listener receives each nonempty line read
+   * @param closeListener is run once the connection is closed
+   */
+  public ChannelHandler(SocketChannel channel,
+                        ChannelServer.EventLoop loop,
+                        Consumer<String> listener,
+                        Runnable closeListener) throws IOException {
+    this.channel = channel;
+    this.loop = loop;
+    this.listener = listener;
+    this.closeListener = closeListener;
+    channel.configureBlocking(false);
+    address = channel.socket().getInetAddress();
+  }
+
+  public void start() {
+    loop.register(this);
+  }
+
+  @Override
+  public void writeLine(String line) {
+    enqueue(LineConnection.encode(line), false);
+  }
+
+  @Override
+  public void writeLine(ByteBuffer line) {
+    enqueue(line, false);
+  }
+
+  @Override
+  public void close() {
+    enqueue(SIGN_OFF_LINE, true);
+  }
+
+  @Override
+  public void startCompression(byte[] dictionary) {
+    synchronized (this) {
+      if (deflater != null || closing) {
+        return;
+      }
+
+      this.dictionary = dictionary;
+      output.add(DEFLATE_LINE.duplicate());
+
+      deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+      if (dictionary.length > 0) {
+        deflater.setDictionary(dictionary);
+      }
+      deflateBuffer = new byte[DEFLATE_BUFFER_SIZE];
+
+      if (flushPending) {
+        return;
+      }
+      flushPending = true;
+    }
+
+    loop.requestFlush(this);
+  }
+
+  private void enqueue(ByteBuffer line, boolean last) {
+    synchronized (this) {
+      if (closing) {
+        return;
+      }
+
+      // the line may be shared, so leave its position alone
+      if (deflater == null) {
+        output.add(line.duplicate());
+      }
+      else {
+        deflater.setInput(line.duplicate());
+        deflate(Deflater.NO_FLUSH);
+        deflaterDirty = true;
+      }
+      closing = last;
+      lastWrite = System.nanoTime();
+
+      if (flushPending) {
+        return;
+      }
+      flushPending = true;
+    }
+
+    loop.requestFlush(this);
+  }
+
+  @Override
+  public InetAddress getInetAddress() {
+    return address;
+  }
+
+  void register(Selector selector) {
+    try {
+      key = channel.register(selector, SelectionKey.OP_READ, this);
+    }
+    catch (IOException e) {
+      closeChannel();
+      return;
+    }
+    // send anything written before we were registered
+    flush();
+  }
+
+  /**
+   * Read what has arrived. Called by the event loop when the channel is
+   * readable.
+   */
+  void read(ByteBuffer buf) {
+    if (!isOpen) {
+      return;
+    }
+
+    try {
+      buf.clear();
+      final int n = channel.read(buf);
+      buf.flip();
+
+      if (n < 0) {
+        if (inflater == null) {
+          reader.finish(this::handleLine);
+        }
+        closeChannel();
+      }
+      else if (inflater != null) {
+        inflate(buf);
+      }
+      else if (!reader.read(buf, this::handleLine)) {
+        if (inflateNext) {
+          startInflating();
+          // the rest was compressed
+          inflate(buf);
+        }
+        else {
+          closeChannel();
+        }
+      }
+    }
+    catch (IOException | DataFormatException e) {
+      closeChannel();
+    }
+  }
+
+  private void startInflating() {
+    inflateNext = false;
+    inflater = new Inflater(true);
+    inflated = ByteBuffer.allocate(INFLATE_BUFFER_SIZE);
+
+    final byte[] dict = dictionary;
+    if (dict != null && dict.length > 0) {
+      inflater.setDictionary(dict);
+    }
+
+    startCompression(dict == null ? new byte[0] : dict);
+  }
+
+  private void inflate(ByteBuffer buf)
+                                  throws IOException, DataFormatException {
+    inflater.setInput(buf);
+    while (isOpen) {
+      inflated.clear();
+      final int n = inflater.inflate(inflated);
+      inflated.flip();
+
+      if (n > 0) {
+        if (!reader.read(inflated, this::handleLine)) {
+          closeChannel();
+        }
+      }
+      else if (inflater.needsInput()) {
+        return;
+      }
+      else {
+        // the stream ended, or wants a dictionary we do not have
+        throw new DataFormatException();
+      }
+    }
+  }
+
+  private boolean handleLine(String line) {
+    if (SIGN_OFF.equals(line)) {
+      return false;
+    }
+    else if (Protocol.DEFLATE.equals(line)) {
+      // a second DEFLATE line is an error
+      inflateNext = inflater == null;
+      return false;
+    }
+    else if (line.length() > 0) {
+      try {
+        listener.accept(line);
+      }
+      catch (Exception e) {
+        // the listener failed on this line; keep reading
+        logger.log(Level.WARNING, "Failed handling " + line, e); //$NON-NLS-1$
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Write as much of the queued output as the socket will take. Called
+   * by the event loop when output has been queued, or the channel is
+   * writable again.
+   */
+  void flush() {
+    if (!isOpen || key == null) {
+      return;
+    }
+
+    try {
+      synchronized (this) {
+        if (deflaterDirty) {
+          deflate(Deflater.SYNC_FLUSH);
+          deflaterDirty = false;
+        }
+
+        final ByteBuffer[] bufs = new ByteBuffer[MAX_GATHER];
+        while (!output.isEmpty()) {
+          int n = 0;
+          for (Iterator<ByteBuffer> i = output.iterator();
+               i.hasNext() && n < bufs.length; ) {
+            bufs[n++] = i.next();
+          }
+
+          final long written = channel.write(bufs, 0, n);
+          while (!output.isEmpty() && !output.peek().hasRemaining()) {
+            output.poll();
+          }
+
+          if (written == 0) {
+            break;
+          }
+        }
+
+        if (!output.isEmpty()) {
+          // the socket is full; finish when it is writable again
+          key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+          return;
+        }
+
+        key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+        flushPending = false;
+        if (!closing) {
+          return;
+        }
+      }
+
+      // the sign-off has been sent
+      closeChannel();
+    }
+    catch (IOException e) {
+      closeChannel();
+    }
+  }
+
+  // guarded by this
+  private void deflate(int flush) {
+    int n;
+    do {
+      n = deflater.deflate(deflateBuffer, 0, deflateBuffer.length, flush);
+      if (n > 0) {
+        output.add(ByteBuffer.wrap(Arrays.copyOf(deflateBuffer, n)));
+      }
+    } while (n == deflateBuffer.length || !deflater.needsInput());
+  }
+
+  /**
+   * Send a keep-alive if nothing has been written for a while.
+   */
+  void keepAlive(long now) {
+    if (now - lastWrite > KEEP_ALIVE) {
+      writeLine(""); //$NON-NLS-1$
+    }
+  }
+
+  void closeChannel() {
+    if (!isOpen) {
+      return;
+    }
+    isOpen = false;
+
+    synchronized (this) {
+      closing = true;
+      output.clear();
+      if (deflater != null) {
+        deflater.end();
+      }
+    }
+
+    if (inflater != null) {
+      inflater.end();
+    }
+
+    if (key != null) {
+      key.cancel();
+    }
+
+    try {
+      channel.close();
+    }
+    catch (IOException e) {
+      logger.log(Level.FINE, "Failed to close the channel", e); //$NON-NLS-1$
+    }
+
+    closeListener.run();
+  }
+}
@@ -0,0 +1,257 @@
+/*
+ * $Id$
+ *
+ * Copyright (c) 2020 by Joel Uckelman
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+package VASSAL.chat.node;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The server-side transport over non-blocking channels. Each connection
+ * accepted is handed to one of a small, fixed pool of event loops, each
+ * of which serves all of its connections from a single {@link Selector},
+ * so the server runs a few threads in all rather than two per player as
+ * {@link Server} does. Both speak the same {@link Protocol}; the
+ * <code>-transport socket</code> option of {@link Server#main} selects the
+ * older one.
+ *
+ * @author Joel Uckelman
+ * @since 3.3.1
+ */
+public class ChannelServer extends Thread {
+  private static final Logger logger =
+    Logger.getLogger(ChannelServer.class.getName());
+
+  public static final int DEFAULT_EVENT_LOOPS =
+    Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+
+  private final AsynchronousServerNode rootNode;
+  private final ServerSocketChannel socket;
+  private final EventLoop[] loops;
+  private int next;
+
+  public ChannelServer(AsynchronousServerNode rootNode, int port)
+                                                        throws IOException {
+    this(rootNode, port, DEFAULT_EVENT_LOOPS);
+  }
+
+  /**
+   * @param rootNode the server node
+   * @param port the port on which to listen, or 0 for any free port
+   * @param eventLoops the number of event loops
+   */
+  public ChannelServer(AsynchronousServerNode rootNode, int port,
+                       int eventLoops) throws IOException {
+    super("accept"); //$NON-NLS-1$
+    this.rootNode = rootNode;
+
+    socket = ServerSocketChannel.open();
+    socket.bind(new InetSocketAddress(port));
+
+    loops = new EventLoop[eventLoops];
+    for (int i = 0; i < eventLoops; ++i) {
+      loops[i] = new EventLoop("event loop " + i); //$NON-NLS-1$
+      loops[i].start();
+    }
+
+    logger.info("Started server on port " + getLocalPort()); //$NON-NLS-1$
+    start();
+  }
+
+  public int getLocalPort() {
+    return socket.socket().getLocalPort();
+  }
+
+  @Override
+  public void run() {
+    int consecutiveFailures = 0;
+    while (consecutiveFailures < 10) {
+      try {
+        accept(socket.accept());
+        consecutiveFailures = 0;
+      }
+      catch (ClosedChannelException e) {
+        // we were shut down
+        return;
+      }
+      catch (Exception e) {
+        logger.log(Level.WARNING, "Failed to accept a connection", e); //$NON-NLS-1$
+        consecutiveFailures++;
+      }
+    }
+
+    logger.severe("Giving up after " + consecutiveFailures + //$NON-NLS-1$
+                  " consecutive accept failures"); //$NON-NLS-1$
+    try {
+      close();
+    }
+    catch (IOException e) {
+      logger.log(Level.WARNING, "Failed to close the server", e); //$NON-NLS-1$
+    }
+  }
+
+  private void accept(SocketChannel ch) throws IOException {
+    final PlayerNode player = new PlayerNode(rootNode);
+    final ChannelHandler handler;
+    try {
+      handler = new ChannelHandler(
+        ch, loops[next], player::handleMessage, player::connectionClosed
+      );
+    }
+    catch (IOException e) {
+      ch.close();
+      throw e;
+    }
+
+    next = (next + 1) % loops.length;
+    player.setConnection(handler);
+    handler.start();
+  }
+
+  /**
+   * Stop accepting connections and close those open.
+   */
+  public void close() throws IOException {
+    socket.close();
+    for (EventLoop loop : loops) {
+      loop.shutDown();
+    }
+  }
+
+  /**
+   * A thread serving the reads and writes of many connections.
+   */
+  static class EventLoop extends Thread {
+    private static final int READ_BUFFER_SIZE = 1 << 16;
+    private static final long KEEP_ALIVE_CHECK = TimeUnit.SECONDS.toMillis(10);
+
+    private final Selector selector;
+    private final Queue<ChannelHandler> registrations =
+      new ConcurrentLinkedQueue<>();
+    private final Queue<ChannelHandler> flushes =
+      new ConcurrentLinkedQueue<>();
+    private final ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+    private volatile boolean running = true;
+
+    EventLoop(String name) throws IOException {
+      super(name);
+      selector = Selector.open();
+    }
+
+    void register(ChannelHandler handler) {
+      registrations.add(handler);
+      selector.wakeup();
+    }
+
+    void requestFlush(ChannelHandler handler) {
+      flushes.add(handler);
+      // output queued while handling a read goes out in this iteration
+      if (Thread.currentThread() != this) {
+        selector.wakeup();
+      }
+    }
+
+    void shutDown() {
+      running = false;
+      selector.wakeup();
+    }
+
+    @Override
+    public void run() {
+      long lastKeepAlive = System.nanoTime();
+
+      while (running) {
+        try {
+          selector.select(KEEP_ALIVE_CHECK);
+        }
+        catch (IOException e) {
+          logger.log(Level.SEVERE, "Select failed in " + getName(), e); //$NON-NLS-1$
+          break;
+        }
+
+        ChannelHandler handler;
+        while ((handler = registrations.poll()) != null) {
+          handler.register(selector);
+        }
+
+        final Iterator<SelectionKey> i = selector.selectedKeys().iterator();
+        while (i.hasNext()) {
+          final SelectionKey key = i.next();
+          i.remove();
+
+          handler = (ChannelHandler) key.attachment();
+          try {
+            if (key.isValid() && key.isReadable()) {
+              handler.read(readBuffer);
+            }
+            if (key.isValid() && key.isWritable()) {
+              handler.flush();
+            }
+          }
+          catch (RuntimeException e) {
+            logger.log(Level.WARNING, "Closing a connection after an error", e); //$NON-NLS-1$
+            handler.closeChannel();
+          }
+        }
+
+        while ((handler = flushes.poll()) != null) {
+          handler.flush();
+        }
+
+        final long now = System.nanoTime();
+        if (now - lastKeepAlive >
+              TimeUnit.MILLISECONDS.toNanos(KEEP_ALIVE_CHECK)) {
+          lastKeepAlive = now;
+          for (SelectionKey key : selector.keys()) {
+            if (key.isValid()) {
+              ((ChannelHandler) key.attachment()).keepAlive(now);
+            }
+          }
+        }
+      }
+
+      for (SelectionKey key : selector.keys().toArray(new SelectionKey[0])) {
+        ((ChannelHandler) key.attachment()).closeChannel();
+      }
+
+      ChannelHandler handler;
+      while ((handler = registrations.poll()) != null) {
+        handler.closeChannel();
+      }
+
+      try {
+        selector.close();
+      }
+      catch (IOException e) {
+        logger.log(Level.FINE, "Failed to close the selector", e); //$NON-NLS-1$
+      }
+    }
+  }
+}
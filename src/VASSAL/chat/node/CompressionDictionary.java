@@ -0,0 +1,87 @@
+/*
+ * $Id$
+ *
+ * Copyright (c) 2020 by Joel Uckelman
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+package VASSAL.chat.node;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import VASSAL.build.GameModule;
+import VASSAL.build.module.Map;
+import VASSAL.build.widget.PieceSlot;
+import VASSAL.counters.GamePiece;
+import VASSAL.counters.PieceCloner;
+
+/**
+ * Builds the preset dictionary with which a client compresses its
+ * connection to the server. Game traffic is mostly commands naming the
+ * module's pieces and maps, so the dictionary is made of the types of the
+ * pieces in the module's piece palettes, with prototypes expanded as they
+ * are when the pieces are put into play, and of the ids of its maps.
+ *
+ * @author Joel Uckelman
+ * @since 3.3.1
+ */
+public class CompressionDictionary {
+  private CompressionDictionary() {
+  }
+
+  /**
+   * @return the dictionary for the module, which is empty if there is no
+   * module
+   */
+  public static byte[] build(GameModule module) {
+    if (module == null) {
+      return new byte[0];
+    }
+
+    final Set<String> parts = new LinkedHashSet<>();
+    int size = 0;
+    for (PieceSlot slot : module.getAllDescendantComponentsOf(PieceSlot.class)) {
+      if (size >= Protocol.MAX_DICTIONARY_SIZE) {
+        break;
+      }
+
+      final GamePiece p = slot.getPiece();
+      if (p != null) {
+        final String type = PieceCloner.getInstance().clonePiece(p).getType();
+        if (parts.add(type)) {
+          size += type.length();
+        }
+      }
+    }
+
+    // Deflate finds what is at the end of the dictionary most cheaply
+    for (Map map : Map.getMapList()) {
+      parts.add(map.getId());
+    }
+
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    for (String part : parts) {
+      out.writeBytes(part.getBytes(StandardCharsets.UTF_8));
+    }
+
+    final byte[] dict = out.toByteArray();
+    return dict.length <= Protocol.MAX_DICTIONARY_SIZE ? dict :
+      Arrays.copyOfRange(dict,
+        dict.length - Protocol.MAX_DICTIONARY_SIZE, dict.length);
+  }
+}
@@ -0,0 +1,79 @@
+/*
+ * $Id$
+ *
+ * Copyright (c) 2020 by Joel Uckelman
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+package VASSAL.chat.node;
+
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A connection carrying the newline-terminated {@link Protocol} messages,
+ * whether over a blocking {@link SocketHandler} or a non-blocking
+ * {@link ChannelHandler}.
+ *
+ * @author Joel Uckelman
+ * @since 3.3.1
+ */
+public interface LineConnection {
+  /**
+   * Queue a line to be sent. Does not block.
+   */
+  void writeLine(String line);
+
+  /**
+   * Queue a line made by {@link #encode}. Does not block. The same line
+   * may be written to many connections, so it is never changed.
+   */
+  void writeLine(ByteBuffer line);
+
+  /**
+   * Sign off once the lines already queued have been sent.
+   */
+  void close();
+
+  InetAddress getInetAddress();
+
+  /**
+   * Send a {@link Protocol#DEFLATE} line, after which compress all that is
+   * sent. Does nothing if this has been done already.
+   *
+   * @param dictionary the preset dictionary for both directions
+   * @see Protocol#encodeDeflateRequest
+   */
+  void startCompression(byte[] dictionary);
+
+  /**
+   * @return the line encoded for sending, with its newline
+   */
+  static ByteBuffer encode(String line) {
+    final byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+    final ByteBuffer buf = ByteBuffer.allocate(bytes.length + 1);
+    buf.put(bytes).put((byte) '\n').flip();
+    return buf;
+  }
+
+  /**
+   * @return the line made by {@link #encode}
+   */
+  static String decode(ByteBuffer line) {
+    final ByteBuffer b = line.duplicate();
+    b.limit(b.limit() - 1);
+    return StandardCharsets.UTF_8.decode(b).toString();
+  }
+}
@@ -0,0 +1,134 @@
+/*
+ * $Id$
+ *
+ * Copyright (c) 2020 by Joel Uckelman
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+package VASSAL.chat.node;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.function.Predicate;
+
+/**
+ * Splits bytes into lines ended by "\n", "\r" or "\r\n", as
+ * {@link java.io.BufferedReader#readLine} does, and decodes each as
+ * UTF-8. A line may arrive in any number of pieces.
+ *
+ * Unlike a <code>BufferedReader</code>, it reads no further than it is
+ * asked to, so that the rest of the input can be read otherwise, as it
+ * is once a connection switches to compression.
+ *
+ * @author Joel Uckelman
+ * @since 3.3.1
+ */
+class LineReader {
+  private static final int INITIAL_SIZE = 256;
+  private static final int KEEP_SIZE = 1 << 16;
+
+  private final int maxLength;
+  private byte[] partial = new byte[INITIAL_SIZE];
+  private int length;
+  private boolean skipLF;
+
+  LineReader(int maxLength) {
+    this.maxLength = maxLength;
+  }
+
+  /**
+   * Pass on each line completed by the bytes remaining in a heap buffer,
+   * and keep any incomplete line at the end for next time.
+   *
+   * @return false if <code>out</code> refused a line, after which the
+   * rest of the input is not read
+   * @throws IOException if a line is too long
+   */
+  boolean read(ByteBuffer in, Predicate<String> out) throws IOException {
+    final byte[] a = in.array();
+    final int off = in.arrayOffset();
+    final int end = off + in.limit();
+    int pos = off + in.position();
+
+    while (pos < end) {
+      if (skipLF) {
+        skipLF = false;
+        if (a[pos] == '\n') {
+          ++pos;
+          continue;
+        }
+      }
+
+      int i = pos;
+      while (i < end && a[i] != '\n' && a[i] != '\r') {
+        ++i;
+      }
+
+      append(a, pos, i - pos);
+      if (i == end) {
+        break;
+      }
+
+      skipLF = a[i] == '\r';
+      pos = i + 1;
+
+      if (!out.test(takeLine())) {
+        in.position(pos - off);
+        return false;
+      }
+    }
+
+    in.position(in.limit());
+    return true;
+  }
+
+  /**
+   * Pass on the last line, if the input ended without terminating it.
+   *
+   * @return false if <code>out</code> refused the line
+   */
+  boolean finish(Predicate<String> out) {
+    return length == 0 || out.test(takeLine());
+  }
+
+  private void append(byte[] a, int pos, int len) throws IOException {
+    if (len == 0) {
+      return;
+    }
+
+    if (length + len > maxLength) {
+      throw new IOException("Line too long"); //$NON-NLS-1$
+    }
+
+    if (length + len > partial.length) {
+      partial = Arrays.copyOf(
+        partial, Math.max(length + len, 2 * partial.length));
+    }
+
+    System.arraycopy(a, pos, partial, length, len);
+    length += len;
+  }
+
+  private String takeLine() {
+    final String line =
+      new String(partial, 0, length, StandardCharsets.UTF_8);
+    length = 0;
+    if (partial.length > KEEP_SIZE) {
+      partial = new byte[INITIAL_SIZE];
+    }
+    return line;
+  }
+}
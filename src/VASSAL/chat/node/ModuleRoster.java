@@ -0,0 +1,251 @@
+/*
+ * $Id$
+ *
+ * Copyright (c) 2020 by Joel Uckelman
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+package VASSAL.chat.node;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import VASSAL.tools.SequenceEncoder;
+
+/**
+ * The rooms and players of a module, with a version number which
+ * increases with each change. The server keeps one for each module, and
+ * sends clients which ask for it a {@link Protocol#ROSTER} snapshot once,
+ * followed by a {@link Protocol#ROSTER_DELTA} of only what changed each
+ * time the module does, rather than the whole {@link Protocol#LIST} and
+ * {@link Protocol#ROOM_INFO}. The client keeps its own copy, to which it
+ * applies the deltas; a client which misses a version asks for a new
+ * snapshot.
+ *
+ * Rooms are keyed by id and players by their path below the module, each
+ * mapped to its info, in the order of the module's nodes.
+ *
+ * @author Joel Uckelman
+ * @since 3.3.1
+ */
+public class ModuleRoster {
+  // delta operations
+  static final String PLAYER_JOINED = "J"; //$NON-NLS-1$
+  static final String PLAYER_LEFT = "L"; //$NON-NLS-1$
+  static final String PLAYER_CHANGED = "C"; //$NON-NLS-1$
+  static final String ROOM_CREATED = "R"; //$NON-NLS-1$
+  static final String ROOM_CHANGED = "O"; //$NON-NLS-1$
+  static final String ROOM_REMOVED = "X"; //$NON-NLS-1$
+
+  private long version;
+  private LinkedHashMap<String, String> rooms = new LinkedHashMap<>();
+  private LinkedHashMap<String, String> players = new LinkedHashMap<>();
+
+  public long getVersion() {
+    return version;
+  }
+
+  /**
+   * Bring the roster up to date with the module.
+   *
+   * @return the {@link Protocol#ROSTER_DELTA} command taking a client from
+   * the previous version to the new one, or <code>null</code> if nothing
+   * has changed
+   */
+  public String update(Node module) {
+    final LinkedHashMap<String, String> newRooms = new LinkedHashMap<>();
+    final LinkedHashMap<String, String> newPlayers = new LinkedHashMap<>();
+
+    for (Node room : module.getChildren()) {
+      final String roomInfo = room.getInfo();
+      newRooms.put(room.getId(), roomInfo == null ? "" : roomInfo); //$NON-NLS-1$
+
+      for (Node player : room.getChildren()) {
+        final String info = player.getInfo();
+        if (player.getId() != null && info != null) {
+          newPlayers.put(
+            new SequenceEncoder(room.getId(), '/')
+              .append(player.getId()).getValue(),
+            info
+          );
+        }
+      }
+    }
+
+    final SequenceEncoder se =
+      new SequenceEncoder(Long.toString(version), '\t');
+    boolean changed = false;
+
+    for (Map.Entry<String, String> e : newRooms.entrySet()) {
+      final String old = rooms.get(e.getKey());
+      if (old == null) {
+        se.append(ROOM_CREATED).append(e.getKey()).append(e.getValue());
+        changed = true;
+      }
+      else if (!old.equals(e.getValue())) {
+        se.append(ROOM_CHANGED).append(e.getKey()).append(e.getValue());
+        changed = true;
+      }
+    }
+
+    for (String path : players.keySet()) {
+      if (!newPlayers.containsKey(path)) {
+        se.append(PLAYER_LEFT).append(path).append(""); //$NON-NLS-1$
+        changed = true;
+      }
+    }
+
+    for (Map.Entry<String, String> e : newPlayers.entrySet()) {
+      final String old = players.get(e.getKey());
+      if (old == null) {
+        se.append(PLAYER_JOINED).append(e.getKey()).append(e.getValue());
+        changed = true;
+      }
+      else if (!old.equals(e.getValue())) {
+        se.append(PLAYER_CHANGED).append(e.getKey()).append(e.getValue());
+        changed = true;
+      }
+    }
+
+    for (String id : rooms.keySet()) {
+      if (!newRooms.containsKey(id)) {
+        se.append(ROOM_REMOVED).append(id).append(""); //$NON-NLS-1$
+        changed = true;
+      }
+    }
+
+    if (!changed) {
+      return null;
+    }
+
+    rooms = newRooms;
+    players = newPlayers;
+    ++version;
+    return Protocol.ROSTER_DELTA + se.getValue();
+  }
+
+  /**
+   * @return the {@link Protocol#ROSTER} snapshot of this version
+   */
+  public String encode() {
+    final SequenceEncoder se =
+      new SequenceEncoder(Long.toString(version), '\t')
+        .append(rooms.size());
+    for (Map.Entry<String, String> e : rooms.entrySet()) {
+      se.append(e.getKey()).append(e.getValue());
+    }
+    for (Map.Entry<String, String> e : players.entrySet()) {
+      se.append(e.getKey()).append(e.getValue());
+    }
+    return Protocol.ROSTER + se.getValue();
+  }
+
+  /**
+   * @return the roster of a {@link Protocol#ROSTER} snapshot, or
+   * <code>null</code> if the command is not one or is not valid
+   */
+  public static ModuleRoster decode(String cmd) {
+    if (!cmd.startsWith(Protocol.ROSTER)) {
+      return null;
+    }
+
+    final ModuleRoster roster = new ModuleRoster();
+    final SequenceEncoder.Decoder st = new SequenceEncoder.Decoder(
+      cmd.substring(Protocol.ROSTER.length()), '\t');
+    try {
+      roster.version = Long.parseLong(st.nextToken());
+      for (int n = Integer.parseInt(st.nextToken()); n > 0; --n) {
+        roster.rooms.put(st.nextToken(), st.nextToken());
+      }
+      while (st.hasMoreTokens()) {
+        roster.players.put(st.nextToken(), st.nextToken());
+      }
+    }
+    catch (NumberFormatException | NoSuchElementException e) {
+      return null;
+    }
+    return roster;
+  }
+
+  /**
+   * Apply a {@link Protocol#ROSTER_DELTA} command.
+   *
+   * @return false, leaving the roster unchanged, if the delta is not from
+   * this version of the roster or is not valid
+   */
+  public boolean apply(String cmd) {
+    if (!cmd.startsWith(Protocol.ROSTER_DELTA)) {
+      return false;
+    }
+
+    final SequenceEncoder.Decoder st = new SequenceEncoder.Decoder(
+      cmd.substring(Protocol.ROSTER_DELTA.length()), '\t');
+    final List<String[]> ops = new ArrayList<>();
+    try {
+      if (Long.parseLong(st.nextToken()) != version) {
+        return false;
+      }
+      while (st.hasMoreTokens()) {
+        ops.add(new String[] { st.nextToken(), st.nextToken(), st.nextToken() });
+      }
+    }
+    catch (NumberFormatException | NoSuchElementException e) {
+      return false;
+    }
+
+    for (String[] op : ops) {
+      switch (op[0]) {
+      case PLAYER_JOINED:
+      case PLAYER_CHANGED:
+        players.put(op[1], op[2]);
+        break;
+      case PLAYER_LEFT:
+        players.remove(op[1]);
+        break;
+      case ROOM_CREATED:
+      case ROOM_CHANGED:
+        rooms.put(op[1], op[2]);
+        break;
+      case ROOM_REMOVED:
+        rooms.remove(op[1]);
+        break;
+      default:
+        // ignore what a newer server might send
+      }
+    }
+
+    ++version;
+    return true;
+  }
+
+  /**
+   * @return a node for the module, with a child for each room and a
+   * grandchild for each player, as {@link Protocol#decodeListCommand}
+   * would give, but with the info of the rooms as well
+   */
+  public Node toNode(String moduleId) {
+    final Node module = new Node(null, moduleId, null);
+    for (Map.Entry<String, String> e : rooms.entrySet()) {
+      final String info = e.getValue();
+      module.add(new Node(module, e.getKey(), info.isEmpty() ? null : info));
+    }
+    for (Map.Entry<String, String> e : players.entrySet()) {
+      Node.build(module, e.getKey()).setInfo(e.getValue());
+    }
+    return module;
+  }
+}
@@ -23,9 +23,11 @@
 package VASSAL.chat.node;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.ListIterator;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.logging.Logger;
 
 import VASSAL.tools.PropertiesEncoder;
@@ -37,13 +39,16 @@ import VASSAL.tools.SequenceEncoder;
  * encoded in the {@link #getInfo} string. Each node can be identified
  * globally by a path name. Messages sent to a node generally broadcast to
  * all descendents of the node.
+ *
+ * The children are kept in a copy-on-write list, so that paths can be
+ * resolved and messages sent without locking while nodes come and go.
  */
 public class Node implements MsgSender {
   private static Logger logger = Logger.getLogger(MsgSender.class.getName());
   private String id;
-  private String info;
-  private Node parent;
-  private List<Node> children = new ArrayList<>();
+  private volatile String info;
+  private volatile Node parent;
+  private final List<Node> children = new CopyOnWriteArrayList<>();
 
   public Node(Node parent, String id, String info) {
     this.parent = parent;
@@ -124,7 +129,7 @@ public class Node implements MsgSender {
    * @return
    */
   public Node getChild(String id) {
-    for (Node n : getChildren()) {
+    for (Node n : children) {
       if (id.equals(n.getId())) {
         return n;
       }
@@ -149,11 +154,27 @@ public class Node implements MsgSender {
 
   @Override
   public void send(String msg) {
-    for (Node n : getChildren()) {
+    for (Node n : children) {
       n.send(msg);
     }
   }
 
+  /**
+   * Send a line made by {@link LineConnection#encode} to all descendants,
+   * so that it is encoded once however many there are. Leaves which
+   * cannot take it encoded are sent it decoded.
+   */
+  public void send(ByteBuffer line) {
+    if (isLeaf()) {
+      send(LineConnection.decode(line));
+    }
+    else {
+      for (Node n : children) {
+        n.send(line);
+      }
+    }
+  }
+
   public Node[] getLeafDescendants() {
     ArrayList<Node> l = new ArrayList<>();
     addLeaves(this, l);
@@ -165,7 +186,7 @@ public class Node implements MsgSender {
       l.add(base);
     }
     else {
-      for (Node n : base.getChildren()) {
+      for (Node n : base.children) {
         addLeaves(n,l);
       }
     }
@@ -176,9 +197,7 @@ public class Node implements MsgSender {
   }
 
   public Node[] getChildren() {
-    synchronized (children) {
-      return children.toArray(new Node[0]);
-    }
+    return children.toArray(new Node[0]);
   }
 
   /**
@@ -238,15 +257,13 @@ public class Node implements MsgSender {
   }
 
   public String getPath() {
-    synchronized (children) {
-      SequenceEncoder se = new SequenceEncoder('/');
-      List<Node> path = getPathList();
-      for (ListIterator<Node> i = path.listIterator(path.size());
-           i.hasPrevious(); ) {
-        se.append(i.previous().getId());
-      }
-      return se.getValue();
+    SequenceEncoder se = new SequenceEncoder('/');
+    List<Node> path = getPathList();
+    for (ListIterator<Node> i = path.listIterator(path.size());
+         i.hasPrevious(); ) {
+      se.append(i.previous().getId());
     }
+    return se.getValue();
   }
 
   /**
@@ -254,17 +271,15 @@ public class Node implements MsgSender {
    * @return
    */
   public String getPathAndInfo() {
-    synchronized (children) {
-      SequenceEncoder se = new SequenceEncoder('/');
-      List<Node> path = getPathList();
-      for (ListIterator<Node> i = path.listIterator(path.size()-1);
-           i.hasPrevious(); ) {
-        Node n = i.previous();
-        SequenceEncoder se2 =
-          new SequenceEncoder(n.getId(),'=').append(n.getInfo());
-        se.append(se2.getValue());
-      }
-      return se.getValue();
+    SequenceEncoder se = new SequenceEncoder('/');
+    List<Node> path = getPathList();
+    for (ListIterator<Node> i = path.listIterator(path.size()-1);
+         i.hasPrevious(); ) {
+      Node n = i.previous();
+      SequenceEncoder se2 =
+        new SequenceEncoder(n.getId(),'=').append(n.getInfo());
+      se.append(se2.getValue());
     }
+    return se.getValue();
   }
 }
@@ -99,6 +99,8 @@ public abstract class NodeClient implements LockableChatServerConnection,
   protected PropertyChangeListener nameChangeListener;
   protected PropertyChangeListener profileChangeListener;
   protected NodeRoom pendingSynchToRoom;
+  protected ModuleRoster roster;
+  protected boolean rosterRequested;
 
   public NodeClient(String moduleName, String playerId, CommandEncoder encoder,
       MessageBoard msgSvr, WelcomeMessageServer welcomer) {
@@ -187,6 +189,10 @@ public abstract class NodeClient implements LockableChatServerConnection,
         .getValue();
     send(Protocol.encodeRegisterCommand(me.getId(), path,
         new PropertiesEncoder(me.toProperties()).getStringValue()));
+    // Servers which know it send roster deltas instead of whole lists
+    roster = null;
+    rosterRequested = true;
+    send(Protocol.encodeRosterRequest());
     if (GameModule.getGameModule() != null) {
       String username = (String) GameModule.getGameModule().getPrefs()
           .getValue("Login"); //$NON-NLS-1$
@@ -239,7 +245,8 @@ public abstract class NodeClient implements LockableChatServerConnection,
   public void forward(String receipientPath, String msg) {
     if (isConnected() && currentRoom != null && msg != null) {
       msg = checker.filter(msg, defaultRoomName, currentRoom.getName());
-      if (msg.length() > compressionLimit) {
+      // A compressed connection does better than compressing each message
+      if (msg.length() > compressionLimit && !isConnectionCompressed()) {
         try {
           msg = ZIP_HEADER + Base64.encodeBase64String(
             Compressor.compress(msg.getBytes(StandardCharsets.UTF_8))
@@ -254,6 +261,13 @@ public abstract class NodeClient implements LockableChatServerConnection,
     }
   }
 
+  /**
+   * @return true if all sent to the server is compressed
+   */
+  protected boolean isConnectionCompressed() {
+    return false;
+  }
+
   public void sendToOthers(String msg) {
     if (currentRoom != null) {
       String path = new SequenceEncoder(moduleName, '/').append(
@@ -447,20 +461,27 @@ public abstract class NodeClient implements LockableChatServerConnection,
   public void handleMessageFromServer(String msg) {
     Node n;
     Properties p;
+    ModuleRoster r;
     if ((n = Protocol.decodeListCommand(msg)) != null) {
       Node mod = n.getChild(moduleName);
       if (mod != null) {
         updateRooms(mod);
       }
-      // Rooms have been updated with any new players (including us), so perform
-      // a Synchronize
-      // for a move to a new room if needed.
-      if (pendingSynchToRoom != null) {
-        new SynchAction(pendingSynchToRoom.getOwningPlayer(), this)
-            .actionPerformed(null);
-        pendingSynchToRoom = null;
-        GameModule.getGameModule().warn(
-            Resources.getString("Chat.synchronize_complete"));
+      synchPending();
+    }
+    else if ((r = ModuleRoster.decode(msg)) != null) {
+      roster = r;
+      rosterRequested = false;
+      rosterChanged();
+    }
+    else if (msg.startsWith(Protocol.ROSTER_DELTA)) {
+      if (roster != null && roster.apply(msg)) {
+        rosterChanged();
+      }
+      else if (!rosterRequested) {
+        // We have missed a change, so start again from a snapshot
+        rosterRequested = true;
+        send(Protocol.encodeRosterRequest());
       }
     }
     else if ((p = Protocol.decodeRoomsInfo(msg)) != null) {
@@ -504,6 +525,31 @@ public abstract class NodeClient implements LockableChatServerConnection,
     }
   }
 
+  /**
+   * Rooms have been updated with any new players (including us), so
+   * perform a Synchronize for a move to a new room if needed.
+   */
+  protected void synchPending() {
+    if (pendingSynchToRoom != null) {
+      new SynchAction(pendingSynchToRoom.getOwningPlayer(), this)
+          .actionPerformed(null);
+      pendingSynchToRoom = null;
+      GameModule.getGameModule().warn(
+          Resources.getString("Chat.synchronize_complete"));
+    }
+  }
+
+  /**
+   * Update the rooms from the {@link ModuleRoster}, which gives the info
+   * of both the players and the rooms at once.
+   */
+  protected void rosterChanged() {
+    updateRooms(roster.toNode(moduleName));
+    synchPending();
+    propSupport.firePropertyChange(ROOM, null, currentRoom);
+    propSupport.firePropertyChange(AVAILABLE_ROOMS, null, allRooms);
+  }
+
   protected void updateRooms(Node module) {
     Node[] roomNodes = module.getChildren();
     NodeRoom[] rooms = new NodeRoom[roomNodes.length];
@@ -19,6 +19,7 @@ package VASSAL.chat.node;
 
 import java.io.IOException;
 import java.net.Socket;
+import java.nio.ByteBuffer;
 import java.util.Properties;
 
 import VASSAL.tools.SequenceEncoder;
@@ -30,17 +31,32 @@ import VASSAL.tools.SequenceEncoder;
  * {@link #getInfo} returns an encoded {@link java.util.Properties} object with real name, profile, etc.
  */
 public class PlayerNode extends Node implements SocketWatcher {
-  private SocketHandler input;
+  private LineConnection input;
   protected String id;
   protected String info;
   private AsynchronousServerNode server;
+  private volatile boolean takesRosterDeltas;
+  private boolean rosterRequested;
   private static ConnectionLimiter connLimiter = new ConnectionLimiter();
 
   public PlayerNode(Socket socket, AsynchronousServerNode server) throws IOException {
+    this(server);
+    final SocketHandler handler = new SocketHandler(socket, this);
+    input = handler;
+    handler.start();
+  }
+
+  /**
+   * A player whose connection is given later by {@link #setConnection},
+   * before it is started.
+   */
+  PlayerNode(AsynchronousServerNode server) {
     super(null,null,null);
-    server = server;
-    input = new SocketHandler(socket, this);
-    input.start();
+    this.server = server;
+  }
+
+  void setConnection(LineConnection input) {
+    this.input = input;
   }
 
   @Override
@@ -58,6 +74,11 @@ public class PlayerNode extends Node implements SocketWatcher {
     input.writeLine(msg);
   }
 
+  @Override
+  public void send(ByteBuffer line) {
+    input.writeLine(line);
+  }
+
   // Always update IP on client info in case client 'forgets' their IP
   @Override
   public String getInfo() {
@@ -85,6 +106,7 @@ public class PlayerNode extends Node implements SocketWatcher {
     String[] info;
     Properties p;
     String cmd;
+    byte[] dictionary;
     if ((info = Protocol.decodeRegisterCommand(line)) != null) {
       id = info[0];
       this.info = info[2];
@@ -131,10 +153,42 @@ public class PlayerNode extends Node implements SocketWatcher {
     else if ((cmd = Protocol.decodeLoginCommand(line)) != null) {
       connLimiter.register(cmd,input);
     }
+    else if ((dictionary = Protocol.decodeDeflateRequest(line)) != null) {
+      input.startCompression(dictionary);
+    }
+    else if (Protocol.decodeRosterRequest(line)) {
+      synchronized (this) {
+        takesRosterDeltas = true;
+        rosterRequested = true;
+      }
+      server.updateInfo(this);
+    }
+  }
+
+  /**
+   * @return true if this player is sent {@link ModuleRoster} deltas
+   * rather than the full lists
+   */
+  public boolean takesRosterDeltas() {
+    return takesRosterDeltas;
+  }
+
+  /**
+   * @return true if this player has asked for a roster snapshot since
+   * last sent one
+   */
+  public synchronized boolean takeRosterRequest() {
+    final boolean requested = rosterRequested;
+    rosterRequested = false;
+    return requested;
   }
 
   @Override
   public void socketClosed(SocketHandler handler) {
+    connectionClosed();
+  }
+
+  void connectionClosed() {
     server.disconnect(this);
   }
 }
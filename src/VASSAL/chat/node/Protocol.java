@@ -18,8 +18,11 @@
 package VASSAL.chat.node;
 
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.Properties;
 
+import org.apache.commons.codec.binary.Base64;
+
 import VASSAL.tools.PropertiesEncoder;
 import VASSAL.tools.SequenceEncoder;
 
@@ -40,6 +43,14 @@ public class Protocol {
   public static final String ROOM_INFO = "ROOM_INFO\t"; //$NON-NLS-1$
   public static final String LOGIN = "LOGIN\t"; //$NON-NLS-1$
   public static final String KICK = "KICK\t"; //$NON-NLS-1$
+  public static final String ROSTER = "ROSTER\t"; //$NON-NLS-1$
+  public static final String ROSTER_DELTA = "ROSTER_DELTA\t"; //$NON-NLS-1$
+  public static final String ROSTER_REQUEST = "ROSTER_REQUEST\t"; //$NON-NLS-1$
+  public static final String DEFLATE = "DEFLATE\t"; //$NON-NLS-1$
+  public static final String DEFLATE_REQUEST = "DEFLATE_REQUEST\t"; //$NON-NLS-1$
+
+  /** The largest preset dictionary deflate can use */
+  public static final int MAX_DICTIONARY_SIZE = 1 << 15;
 
   /**
    * Contains registration information sent when a client initially connects to
@@ -261,6 +272,48 @@ public class Protocol {
     return node;
   }
 
+  /**
+   * Sent by a client which takes {@link ModuleRoster} snapshots and deltas
+   * in place of the full lists, whenever it needs a new snapshot
+   */
+  public static String encodeRosterRequest() {
+    return ROSTER_REQUEST;
+  }
+
+  public static boolean decodeRosterRequest(String cmd) {
+    return cmd.startsWith(ROSTER_REQUEST);
+  }
+
+  /**
+   * Sent by a client which can compress its connection. A server which
+   * can replies with a {@link #DEFLATE} line, and compresses all it sends
+   * after that as one raw deflate stream, flushed after each batch of
+   * lines, using the given preset dictionary. Either end reading a
+   * <code>DEFLATE</code> line inflates all it reads after it, and if it
+   * has not yet done so, sends one and compresses all it sends after.
+   *
+   * @param dictionary the preset dictionary
+   */
+  public static String encodeDeflateRequest(byte[] dictionary) {
+    return DEFLATE_REQUEST + Base64.encodeBase64String(dictionary);
+  }
+
+  /**
+   * @see #encodeDeflateRequest
+   * @return the preset dictionary, no longer than deflate can use
+   */
+  public static byte[] decodeDeflateRequest(String cmd) {
+    byte[] dictionary = null;
+    if (cmd.startsWith(DEFLATE_REQUEST)) {
+      dictionary = Base64.decodeBase64(cmd.substring(DEFLATE_REQUEST.length()));
+      if (dictionary.length > MAX_DICTIONARY_SIZE) {
+        dictionary = Arrays.copyOfRange(dictionary,
+          dictionary.length - MAX_DICTIONARY_SIZE, dictionary.length);
+      }
+    }
+    return dictionary;
+  }
+
   public static boolean decodeRegisterRequest(String cmd) {
     return cmd.startsWith(REG_REQUEST);
   }
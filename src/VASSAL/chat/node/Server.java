@@ -66,7 +66,15 @@ public class Server extends Thread {
       reportURL = null;
     }
     if (!"true".equals(p.getProperty("test"))) { //$NON-NLS-1$ //$NON-NLS-2$
-      new Server(new AsynchronousServerNode(reportURL), port);
+      final AsynchronousServerNode rootNode =
+        new AsynchronousServerNode(reportURL);
+      // -transport socket runs the older thread-per-socket transport
+      if ("socket".equals(p.getProperty("transport"))) { //$NON-NLS-1$ //$NON-NLS-2$
+        new Server(rootNode, port);
+      }
+      else {
+        new ChannelServer(rootNode, port);
+      }
       new LockWatcher(1000L*60*30,1000L*60,port).start();
     }
     if (p.getProperty("test") != null) { //$NON-NLS-1$
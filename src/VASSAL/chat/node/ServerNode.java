@@ -19,34 +19,48 @@
 package VASSAL.chat.node;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Set;
 import java.util.Timer;
 import java.util.TimerTask;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Logger;
 
 import VASSAL.tools.PropertiesEncoder;
 import VASSAL.tools.SequenceEncoder;
 
+/**
+ * Root node in a hierarchical server.
+ *
+ * Each module is locked separately: the operations which change the tree
+ * hold the lock of each module they change, so that players in different
+ * modules never wait for one another. Messages are forwarded without
+ * locking at all, to the nodes on the path at the time.
+ */
 public class ServerNode extends Node {
   private static final Logger logger = Logger.getLogger(ServerNode.class.getName());
   private SendContentsTask sendContents;
+  private final ConcurrentHashMap<String, Object> moduleLocks =
+    new ConcurrentHashMap<>();
+  private final ConcurrentHashMap<Node, ModuleRoster> rosters =
+    new ConcurrentHashMap<>();
 
   public ServerNode() {
     super(null, null, null);
-    sendContents = new SendContentsTask();
+    sendContents = new SendContentsTask(this);
     Timer t = new Timer();
     t.schedule(sendContents, 0, 1000);
   }
 
-  public synchronized void forward(String senderPath, String msg) {
+  public void forward(String senderPath, String msg) {
     MsgSender target = getMsgSender(senderPath);
     target.send(msg);
   }
 
-  public synchronized MsgSender getMsgSender(String path) {
+  public MsgSender getMsgSender(String path) {
     Node[] target = new Node[]{this};
     SequenceEncoder.Decoder st = new SequenceEncoder.Decoder(path, '/');
     while (st.hasMoreTokens()) {
@@ -86,43 +100,129 @@ public class ServerNode extends Node {
       }
     }
 
-    final MsgSender[] senders = Arrays.copyOf(target, target.length);
+    final Node[] recipients = target;
 
     return new MsgSender() {
       @Override
       public void send(String msg) {
-        for (MsgSender sender : senders) {
-          sender.send(msg);
+        // encode once, for all recipients to share
+        final ByteBuffer line = LineConnection.encode(msg);
+        for (Node n : recipients) {
+          n.send(line);
         }
       }
     };
   }
 
-  public synchronized void disconnect(Node target) {
-    Node mod = getModule(target);
-    if (mod != null) {
-      Node room = target.getParent();
-      room.remove(target);
-      if (room.getChildren().length == 0) {
-        room.getParent().remove(room);
+  /**
+   * @return the object on which to synchronize while changing the module
+   * with the given id, whether or not the module exists
+   */
+  protected Object getModuleLock(String moduleId) {
+    return moduleLocks.computeIfAbsent(
+      moduleId == null ? "" : moduleId, k -> new Object()); //$NON-NLS-1$
+  }
+
+  private static String getModuleId(String path) {
+    return new SequenceEncoder.Decoder(path, '/').nextToken(null);
+  }
+
+  public void disconnect(Node target) {
+    while (true) {
+      Node mod = getModule(target);
+      if (mod == null) {
+        return;
       }
-      if (mod.getChildren().length == 0) {
-        remove(mod);
+      synchronized (getModuleLock(mod.getId())) {
+        if (getModule(target) != mod) {
+          // moved before we had the lock
+          continue;
+        }
+        Node room = target.getParent();
+        room.remove(target);
+        if (room.getChildren().length == 0) {
+          room.getParent().remove(room);
+        }
+        if (mod.getChildren().length == 0) {
+          remove(mod);
+        }
+        sendContents(mod);
+        return;
       }
-      sendContents(mod);
     }
   }
 
-  protected synchronized void sendContents(Node module) {
+  protected void sendContents(Node module) {
     sendContents.markChanged(module);
   }
 
-  public synchronized void registerNode(String parentPath, Node newNode) {
-    Node newParent = Node.build(this, parentPath);
-    newParent.add(newNode);
-    Node module = getModule(newParent);
-    if (module != null) {
-      sendContents(module);
+  /**
+   * Send the rooms and players of a module to everyone in it. Players
+   * which take {@link ModuleRoster} deltas are sent what has changed since
+   * last time, or a snapshot if they have asked for one; the rest are sent
+   * the whole {@link Protocol#LIST} and {@link Protocol#ROOM_INFO}.
+   *
+   * @param module the module
+   * @param snapshot if true, send a snapshot or the whole lists to all,
+   * even if nothing has changed
+   */
+  protected void sendRoster(Node module, boolean snapshot) {
+    final Node[] players = module.getLeafDescendants();
+    if (players.length == 0) {
+      rosters.remove(module);
+      return;
+    }
+
+    final ModuleRoster roster =
+      rosters.computeIfAbsent(module, k -> new ModuleRoster());
+    final String delta = roster.update(module);
+
+    // each is encoded once, for all recipients to share
+    ByteBuffer rosterLine = null;
+    ByteBuffer deltaLine = null;
+    ByteBuffer listLine = null;
+    ByteBuffer roomInfoLine = null;
+
+    for (Node player : players) {
+      if (player instanceof PlayerNode &&
+          ((PlayerNode) player).takesRosterDeltas()) {
+        if (((PlayerNode) player).takeRosterRequest() || snapshot) {
+          if (rosterLine == null) {
+            rosterLine = LineConnection.encode(roster.encode());
+          }
+          player.send(rosterLine);
+        }
+        else if (delta != null) {
+          if (deltaLine == null) {
+            deltaLine = LineConnection.encode(delta);
+          }
+          player.send(deltaLine);
+        }
+      }
+      else if (delta != null || snapshot) {
+        if (listLine == null) {
+          final String listCommand = Protocol.encodeListCommand(players);
+          logger.finer(listCommand);
+          listLine = LineConnection.encode(listCommand);
+          final String roomInfo =
+            Protocol.encodeRoomsInfo(module.getChildren());
+          logger.finer(roomInfo);
+          roomInfoLine = LineConnection.encode(roomInfo);
+        }
+        player.send(listLine);
+        player.send(roomInfoLine);
+      }
+    }
+  }
+
+  public void registerNode(String parentPath, Node newNode) {
+    synchronized (getModuleLock(getModuleId(parentPath))) {
+      Node newParent = Node.build(this, parentPath);
+      newParent.add(newNode);
+      Node module = getModule(newParent);
+      if (module != null) {
+        sendContents(module);
+      }
     }
   }
 
@@ -134,20 +234,40 @@ public class ServerNode extends Node {
     return module;
   }
 
-  public synchronized void move(Node target, String newParentPath) {
-    Node oldMod = getModule(target);
-    Node newParent = Node.build(this, newParentPath);
-    newParent.add(target);
-    Node mod = getModule(newParent);
-    if (mod != null) {
-      sendContents(mod);
-    }
-    if (oldMod != mod && oldMod != null) {
-      sendContents(oldMod);
+  public void move(Node target, String newParentPath) {
+    final String newModId = getModuleId(newParentPath);
+    while (true) {
+      Node oldMod = getModule(target);
+      final String oldModId = oldMod == null ? newModId : oldMod.getId();
+
+      // lock both modules, always in the same order
+      final boolean newFirst = oldModId == null ||
+        (newModId != null && newModId.compareTo(oldModId) < 0);
+      final Object first = getModuleLock(newFirst ? newModId : oldModId);
+      final Object second = getModuleLock(newFirst ? oldModId : newModId);
+
+      synchronized (first) {
+        synchronized (second) {
+          if (getModule(target) != oldMod) {
+            // moved before we had the lock
+            continue;
+          }
+          Node newParent = Node.build(this, newParentPath);
+          newParent.add(target);
+          Node mod = getModule(newParent);
+          if (mod != null) {
+            sendContents(mod);
+          }
+          if (oldMod != mod && oldMod != null) {
+            sendContents(oldMod);
+          }
+          return;
+        }
+      }
     }
   }
 
-  public synchronized void updateInfo(Node target) {
+  public void updateInfo(Node target) {
     Node mod = getModule(target);
     if (mod != null) {
       sendContents(mod);
@@ -163,7 +283,17 @@ public class ServerNode extends Node {
    * @param kickeeId
    *          Id of Player to be kicked
    */
-  public synchronized void kick(PlayerNode kicker, String kickeeId) {
+  public void kick(PlayerNode kicker, String kickeeId) {
+    final Node mod = getModule(kicker);
+    if (mod == null) {
+      return;
+    }
+    synchronized (getModuleLock(mod.getId())) {
+      kickFromRoom(kicker, kickeeId);
+    }
+  }
+
+  private void kickFromRoom(PlayerNode kicker, String kickeeId) {
     // Check the kicker owns the room he is in
     final Node roomNode = kicker.getParent();
     String roomOwnerId;
@@ -188,9 +318,14 @@ public class ServerNode extends Node {
   }
 
   private static class SendContentsTask extends TimerTask {
+    private final ServerNode server;
     // FIXME: should modules be wrapped by Collections.synchronizedMap()?
     private Set<Node> modules = new HashSet<>();
 
+    public SendContentsTask(ServerNode server) {
+      this.server = server;
+    }
+
     public void markChanged(Node module) {
       synchronized (modules) {
         modules.add(module);
@@ -202,20 +337,11 @@ public class ServerNode extends Node {
       HashSet<Node> s = new HashSet<>();
       synchronized (modules) {
         s.addAll(modules);
+        modules.clear();
       }
       for (Node module : s) {
         logger.fine("Sending contents of " + module.getId()); //$NON-NLS-1$
-        Node[] players = module.getLeafDescendants();
-        Node[] rooms = module.getChildren();
-        String listCommand = Protocol.encodeListCommand(players);
-        module.send(listCommand);
-        logger.finer(listCommand);
-        String roomInfo = Protocol.encodeRoomsInfo(rooms);
-        module.send(roomInfo);
-        logger.finer(roomInfo);
-      }
-      synchronized (modules) {
-        modules.clear();
+        server.sendRoster(module, false);
       }
     }
   }
@@ -18,35 +18,53 @@
  */
 package VASSAL.chat.node;
 
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
-import java.io.InputStreamReader;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
 import java.io.IOException;
-import java.io.OutputStreamWriter;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
 import java.net.InetAddress;
 import java.net.Socket;
-import java.nio.charset.StandardCharsets;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
 
-public class SocketHandler {
+public class SocketHandler implements LineConnection {
   private Socket sock;
   private SocketWatcher handler;
-  private BufferedReader reader;
-  private BufferedWriter writer;
-  private BlockingQueue<String> writeQueue = new LinkedBlockingQueue<>();
+  private volatile InputStream reader;
+  private volatile OutputStream writer;
+  private BlockingQueue<ByteBuffer> writeQueue = new LinkedBlockingQueue<>();
   private boolean isOpen = true;
   private Thread readThread = null;
   private Thread writeThread = null;
 
+  private volatile byte[] dictionary;
+  private boolean compressing;
+  private boolean inflateNext;
+
   private static final String SIGN_OFF = "!BYE"; //$NON-NLS-1$
+  private static final ByteBuffer SIGN_OFF_LINE =
+    LineConnection.encode(SIGN_OFF);
+  private static final ByteBuffer DEFLATE_LINE =
+    LineConnection.encode(Protocol.DEFLATE);
+  private static final int BUFFER_SIZE = 8192;
+  private static final int MAX_LINE_LENGTH = 1 << 26;
 
   public SocketHandler(Socket sock, SocketWatcher handler) throws IOException {
     this.sock = sock;
     this.handler = handler;
-    reader = new BufferedReader(new InputStreamReader(sock.getInputStream(), StandardCharsets.UTF_8));
-    writer = new BufferedWriter(new OutputStreamWriter(sock.getOutputStream(), StandardCharsets.UTF_8));
+    reader = sock.getInputStream();
+    writer = new BufferedOutputStream(sock.getOutputStream(), BUFFER_SIZE);
   }
 
   public void start() {
@@ -62,22 +80,23 @@ public class SocketHandler {
     final Runnable r = new Runnable() {
       @Override
       public void run() {
-        String line;
+        final LineReader lines = new LineReader(MAX_LINE_LENGTH);
+        final byte[] buf = new byte[BUFFER_SIZE];
         try {
-          while ((line = reader.readLine()) != null) {
-            if (SIGN_OFF.equals(line)) {
+          while (true) {
+            final int n = reader.read(buf);
+            if (n < 0) {
+              lines.finish(SocketHandler.this::handleLine);
               break;
             }
-            else if (line.length() > 0) {
-              try {
-                handler.handleMessage(line);
-              }
-              catch (Exception e) {
-                // FIXME: review error message
-                // Handler threw an exception.  Keep reading.
-                System.err.println("Caught " + e.getClass().getName() + " handling " + line); //$NON-NLS-1$ //$NON-NLS-2$
-                e.printStackTrace();
+
+            final ByteBuffer bb = ByteBuffer.wrap(buf, 0, n);
+            if (!lines.read(bb, SocketHandler.this::handleLine)) {
+              if (!inflateNext) {
+                break;
               }
+              inflateNext = false;
+              startInflating(Arrays.copyOfRange(buf, bb.position(), n));
             }
           }
         }
@@ -102,7 +121,8 @@ public class SocketHandler {
     final Runnable r = new Runnable() {
       @Override
       public void run() {
-        String line;
+        final List<ByteBuffer> batch = new ArrayList<>();
+        ByteBuffer line;
         try {
           while (true) {
             try {
@@ -115,9 +135,13 @@ public class SocketHandler {
             }
 
             if (line != null) {
-              // send the message we took off the queue
-              writeNext(line);
-              if (SIGN_OFF.equals(line)) {
+              // send the message we took off the queue, along with any
+              // queued behind it
+              batch.add(line);
+              writeQueue.drainTo(batch);
+              final boolean signedOff = writeBatch(batch);
+              batch.clear();
+              if (signedOff) {
                 break;
               }
             }
@@ -145,14 +169,103 @@ public class SocketHandler {
     return t;
   }
 
-  private void writeNext(String line) throws IOException {
-    writer.write(line + '\n');
+  private boolean handleLine(String line) {
+    if (SIGN_OFF.equals(line)) {
+      return false;
+    }
+    else if (Protocol.DEFLATE.equals(line)) {
+      // a second DEFLATE line is an error
+      inflateNext = !(reader instanceof InflaterInputStream);
+      return false;
+    }
+    else if (line.length() > 0) {
+      try {
+        handler.handleMessage(line);
+      }
+      catch (Exception e) {
+        // FIXME: review error message
+        // Handler threw an exception.  Keep reading.
+        System.err.println("Caught " + e.getClass().getName() + " handling " + line); //$NON-NLS-1$ //$NON-NLS-2$
+        e.printStackTrace();
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Inflate all read from here on, starting with what has been read past
+   * the DEFLATE line, and compress all written if not already doing so.
+   */
+  private void startInflating(byte[] readAhead) {
+    final Inflater inflater = new Inflater(true);
+    final byte[] dict = dictionary;
+    if (dict != null && dict.length > 0) {
+      inflater.setDictionary(dict);
+    }
+
+    reader = new InflaterInputStream(
+      new SequenceInputStream(new ByteArrayInputStream(readAhead), reader),
+      inflater, BUFFER_SIZE
+    );
+
+    startCompression(dict == null ? new byte[0] : dict);
+  }
+
+  /**
+   * Write a batch of lines, flushing once at the end of it.
+   *
+   * @return true if the batch ended with the sign-off
+   */
+  private boolean writeBatch(List<ByteBuffer> lines) throws IOException {
+    for (ByteBuffer line : lines) {
+      writeNext(line);
+      // compare by reference: a line forwarded from another player may
+      // have the same content as one of our markers
+      if (line == SIGN_OFF_LINE) {
+        writer.flush();
+        return true;
+      }
+    }
     writer.flush();
+    return false;
+  }
+
+  private void writeNext(ByteBuffer line) throws IOException {
+    // lines may be shared with other connections, so leave the buffer as
+    // it is
+    if (line.hasArray()) {
+      writer.write(
+        line.array(), line.arrayOffset() + line.position(), line.remaining()
+      );
+    }
+    else {
+      final byte[] bytes = new byte[line.remaining()];
+      line.duplicate().get(bytes);
+      writer.write(bytes);
+    }
+
+    if (line == DEFLATE_LINE && !(writer instanceof DeflaterOutputStream)) {
+      // the DEFLATE line itself goes out uncompressed
+      writer.flush();
+      final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+      final byte[] dict = dictionary;
+      if (dict != null && dict.length > 0) {
+        deflater.setDictionary(dict);
+      }
+      // syncFlush, so that each flush sends all written so far
+      writer = new DeflaterOutputStream(writer, deflater, BUFFER_SIZE, true);
+    }
   }
 
+  @Override
   public void writeLine(String pMessage) {
+    writeLine(LineConnection.encode(pMessage));
+  }
+
+  @Override
+  public void writeLine(ByteBuffer line) {
     try {
-      writeQueue.put(pMessage);
+      writeQueue.put(line);
     }
     catch (InterruptedException e) {
       // The queue can have Integer.MAX_VALUE elements, so if put() ever
@@ -162,8 +275,33 @@ public class SocketHandler {
     }
   }
 
+  @Override
   public void close() {
-    writeLine(SIGN_OFF);
+    writeLine(SIGN_OFF_LINE);
+  }
+
+  /**
+   * Set the preset dictionary to use if the other end starts compression,
+   * as a client does before asking for it.
+   */
+  public void setCompressionDictionary(byte[] dictionary) {
+    this.dictionary = dictionary;
+  }
+
+  @Override
+  public synchronized void startCompression(byte[] dictionary) {
+    if (!compressing) {
+      compressing = true;
+      this.dictionary = dictionary;
+      writeLine(DEFLATE_LINE);
+    }
+  }
+
+  /**
+   * @return true if what is written is compressed, or soon will be
+   */
+  public synchronized boolean isCompressing() {
+    return compressing;
   }
 
   // FIXME: stream closing is probalby totally broken
@@ -194,6 +332,7 @@ public class SocketHandler {
     }
   }
 
+  @Override
   public InetAddress getInetAddress() {
     return sock.getInetAddress();
   }
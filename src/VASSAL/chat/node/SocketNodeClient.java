@@ -22,6 +22,7 @@ import java.net.Socket;
 import java.net.UnknownHostException;
 import java.util.Properties;
 
+import VASSAL.build.GameModule;
 import VASSAL.chat.CgiServerStatus;
 import VASSAL.chat.WelcomeMessageServer;
 import VASSAL.chat.messageboard.MessageBoard;
@@ -31,6 +32,7 @@ import VASSAL.i18n.Resources;
 public class SocketNodeClient extends NodeClient implements SocketWatcher {
   private SocketHandler sender;
   protected NodeServerInfo serverInfo;
+  private byte[] dictionary;
 
   public SocketNodeClient(String moduleName, String playerId, CommandEncoder encoder, NodeServerInfo serverInfo, MessageBoard msgSvr, WelcomeMessageServer welcomer) {
     super(moduleName, playerId, encoder, msgSvr, welcomer);
@@ -63,6 +65,19 @@ public class SocketNodeClient extends NodeClient implements SocketWatcher {
     Socket s = new Socket(serverInfo.getHostName(), serverInfo.getPort());
     sender = new SocketHandler(s, this);
     sender.start();
+
+    // Servers which can compress the connection will start doing so
+    if (dictionary == null) {
+      dictionary = CompressionDictionary.build(GameModule.getGameModule());
+    }
+    sender.setCompressionDictionary(dictionary);
+    sender.writeLine(Protocol.encodeDeflateRequest(dictionary));
+  }
+
+  @Override
+  protected boolean isConnectionCompressed() {
+    final SocketHandler s = sender;
+    return s != null && s.isCompressing();
   }
 
   @Override
@@ -18,6 +18,8 @@
  */
 package VASSAL.command;
 
+import java.util.concurrent.ForkJoinTask;
+
 import VASSAL.build.GameModule;
 import VASSAL.build.module.GameState;
 import VASSAL.build.module.GlobalOptions;
@@ -32,6 +34,7 @@ import VASSAL.counters.Properties;
 public class AddPiece extends Command {
   private Command undo;
   private GamePiece target;
+  private ForkJoinTask<GamePiece> pending;
   private String state;
 
   public AddPiece(GamePiece p) {
@@ -43,12 +46,24 @@ public class AddPiece extends Command {
     this.state = state;
   }
 
+  /**
+   * Add a piece which is still being built.
+   *
+   * @param pending the task building the piece, which may yield null
+   * @param state the state to give the piece
+   */
+  public AddPiece(ForkJoinTask<GamePiece> pending, String state) {
+    this.pending = pending;
+    this.state = state;
+  }
+
   /**
    * Adds a piece by invoking {@link GameState#addPiece}, followed by
    * {@link GamePiece#setState}
    */
   @Override
   protected void executeCommand() {
+    final GamePiece target = getTarget();
     if (target != null) {
       GameModule.getGameModule().getGameState().addPiece(target);
       target.setState(state);
@@ -66,12 +81,16 @@ public class AddPiece extends Command {
   @Override
   protected Command myUndoCommand() {
     if (undo == null) {
-      undo = new RemovePiece(target);
+      undo = new RemovePiece(getTarget());
     }
     return undo;
   }
 
   public GamePiece getTarget() {
+    if (pending != null) {
+      target = pending.join();
+      pending = null;
+    }
     return target;
   }
 
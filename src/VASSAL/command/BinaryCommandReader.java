@@ -0,0 +1,276 @@
+/*
+ * $Id$
+ *
+ * Copyright (c) 2020 by Joel Uckelman
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+package VASSAL.command;
+
+import static VASSAL.command.BinaryCommandWriter.ADD;
+import static VASSAL.command.BinaryCommandWriter.CHANGE;
+import static VASSAL.command.BinaryCommandWriter.LITERAL_INTERNED;
+import static VASSAL.command.BinaryCommandWriter.MOVE;
+import static VASSAL.command.BinaryCommandWriter.NONE;
+import static VASSAL.command.BinaryCommandWriter.REMOVE;
+import static VASSAL.command.BinaryCommandWriter.STATE_SEPARATOR;
+import static VASSAL.command.BinaryCommandWriter.TABLE;
+import static VASSAL.command.BinaryCommandWriter.TEXT;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.function.Function;
+
+import VASSAL.build.module.BasicCommandEncoder;
+
+/**
+ * Reads a compound {@link Command} written by a {@link BinaryCommandWriter}.
+ *
+ * @author Joel Uckelman
+ * @since 3.3.1
+ */
+public class BinaryCommandReader {
+  protected final Function<String, Command> decoder;
+  protected final InputStream in;
+  protected final List<String> table = new ArrayList<>();
+
+  private static final byte[] HEADER =
+    BinaryCommandWriter.HEADER.getBytes(StandardCharsets.US_ASCII);
+
+  // marks a command which has no encoding
+  private static final Command ABSENT = new NullCommand();
+
+  /**
+   * @param decoder decodes a single command
+   * @param in the stream from which to read
+   * @throws IOException if the stream is not in a supported version
+   */
+  public BinaryCommandReader(Function<String, Command> decoder,
+                             InputStream in) throws IOException {
+    this.decoder = decoder;
+    this.in = in;
+
+    final byte[] h = readHeader(in);
+    if (!Arrays.equals(h, HEADER)) {
+      throw new IOException("Not a binary saved game"); //$NON-NLS-1$
+    }
+
+    final long version = readVarLong();
+    if (version < 1 || version > BinaryCommandWriter.VERSION) {
+      throw new IOException("Unsupported saved game version " + version); //$NON-NLS-1$
+    }
+  }
+
+  private static byte[] readHeader(InputStream in) throws IOException {
+    final byte[] b = new byte[HEADER.length];
+    int n = 0;
+    for (int r; n < b.length && (r = in.read(b, n, b.length - n)) >= 0; ) {
+      n += r;
+    }
+    return n == b.length ? b : null;
+  }
+
+  /**
+   * Check whether a stream is in the binary format, leaving its position
+   * unchanged.
+   *
+   * @param in a stream supporting {@link InputStream#mark}
+   * @return true if the stream begins with the binary format header
+   */
+  public static boolean isBinary(InputStream in) throws IOException {
+    in.mark(HEADER.length);
+    try {
+      return Arrays.equals(readHeader(in), HEADER);
+    }
+    finally {
+      in.reset();
+    }
+  }
+
+  /**
+   * Read a command and its subcommands.
+   *
+   * @return the command, or null if it could not be decoded
+   */
+  public Command read() throws IOException {
+    final Command c = readCommand();
+    return c == ABSENT ? decoder.apply("") : c;
+  }
+
+  /**
+   * A compound command being read, and the number of its subcommands
+   * still to be read.
+   */
+  private static class Frame {
+    Command command;
+    long remaining;
+
+    Frame(Command command, long remaining) {
+      this.command = command;
+      this.remaining = remaining;
+    }
+  }
+
+  protected Command readCommand() throws IOException {
+    // Subcommands are read without recursion, so that a deep chain of
+    // appended commands cannot overflow the stack.
+    final Deque<Frame> stack = new ArrayDeque<>();
+
+    for (;;) {
+      final String s = readRecord();
+      final long n = readVarLong();
+
+      if (n > 0) {
+        stack.push(new Frame(decoder.apply(s == null ? "" : s), n));
+        continue;
+      }
+
+      Command c = s == null ? ABSENT : decoder.apply(s);
+
+      // subcommands are appended as when decoding the text format
+      for (;;) {
+        final Frame f = stack.peek();
+        if (f == null) {
+          return c;
+        }
+
+        if (c != ABSENT) {
+          f.command = f.command == null ? c : f.command.append(c);
+        }
+
+        if (--f.remaining > 0) {
+          break;
+        }
+
+        stack.pop();
+        c = f.command;
+      }
+    }
+  }
+
+  protected String readRecord() throws IOException {
+    final int kind = (int) readVarLong();
+    final List<String> f = new ArrayList<>();
+    switch (kind) {
+    case NONE:
+      return null;
+    case TEXT:
+      return readString();
+    case ADD:
+      f.add(readId());
+      f.add(readString());
+      f.add(readState());
+      return BinaryCommandWriter.join(BasicCommandEncoder.ADD, f);
+    case REMOVE:
+      return BasicCommandEncoder.REMOVE + readId();
+    case CHANGE:
+      f.add(readId());
+      f.add(readState());
+      if (readVarLong() != 0) {
+        f.add(readState());
+      }
+      return BinaryCommandWriter.join(BasicCommandEncoder.CHANGE, f);
+    case MOVE:
+      f.add(readId());
+      for (int i = 1; i < 10; ++i) {
+        switch (i) {
+        case 2: case 3: case 6: case 7:
+          f.add(Long.toString(readSignedVarLong()));
+          break;
+        case 4: case 8:
+          f.add(readId());
+          break;
+        default:
+          f.add(readString());
+        }
+      }
+      return BinaryCommandWriter.join(BasicCommandEncoder.MOVE, f);
+    default:
+      throw new IOException("Unknown record " + kind); //$NON-NLS-1$
+    }
+  }
+
+  protected String readId() throws IOException {
+    final long n = readVarLong();
+    return n == 0 ? readString() : Long.toString(n);
+  }
+
+  protected String readState() throws IOException {
+    final long count = readVarLong();
+    final StringBuilder sb = new StringBuilder();
+    for (long i = 0; i < count; ++i) {
+      if (i > 0) {
+        sb.append(STATE_SEPARATOR);
+      }
+      sb.append(readString());
+    }
+    return sb.toString();
+  }
+
+  protected String readString() throws IOException {
+    final long ref = readVarLong();
+    if (ref >= TABLE) {
+      final long i = ref - TABLE;
+      if (i >= table.size()) {
+        throw new IOException("Bad string reference " + ref); //$NON-NLS-1$
+      }
+      return table.get((int) i);
+    }
+
+    final long len = readVarLong();
+    if (len > Integer.MAX_VALUE) {
+      throw new IOException("Bad string length " + len); //$NON-NLS-1$
+    }
+    final byte[] b = new byte[(int) len];
+    for (int n = 0, r; n < b.length; n += r) {
+      r = in.read(b, n, b.length - n);
+      if (r < 0) {
+        throw new EOFException();
+      }
+    }
+
+    final String s = new String(b, StandardCharsets.UTF_8);
+    if (ref == LITERAL_INTERNED) {
+      table.add(s);
+    }
+    return s;
+  }
+
+  protected long readSignedVarLong() throws IOException {
+    final long n = readVarLong();
+    return (n >>> 1) ^ -(n & 1);
+  }
+
+  protected long readVarLong() throws IOException {
+    long n = 0;
+    for (int shift = 0; shift < 64; shift += 7) {
+      final int b = in.read();
+      if (b < 0) {
+        throw new EOFException();
+      }
+      n |= (long) (b & 0x7F) << shift;
+      if ((b & 0x80) == 0) {
+        return n;
+      }
+    }
+    throw new IOException("Malformed varint"); //$NON-NLS-1$
+  }
+}
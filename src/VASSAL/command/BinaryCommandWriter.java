@@ -0,0 +1,299 @@
+/*
+ * $Id$
+ *
+ * Copyright (c) 2020 by Joel Uckelman
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+package VASSAL.command;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import VASSAL.build.module.BasicCommandEncoder;
+import VASSAL.tools.SequenceEncoder;
+
+/**
+ * Writes a compound {@link Command} in the binary saved game format.
+ *
+ * The format holds the same single command encodings as the text
+ * format, but stores the tree of commands as a sequence of records, each
+ * followed by the number of its subcommands, so that nothing need be
+ * escaped. The encodings of {@link AddPiece}, {@link RemovePiece},
+ * {@link ChangePiece} and {@link MovePiece} are split into their fields:
+ * numeric piece ids and coordinates are written as varints, and piece
+ * types, state fragments, map ids and other strings are written once and
+ * afterwards referred to by their index in a string table which the
+ * reader rebuilds as it goes. An encoding which would not be reproduced
+ * exactly from its fields is written whole.
+ *
+ * @author Joel Uckelman
+ * @since 3.3.1
+ */
+public class BinaryCommandWriter {
+  public static final String HEADER = "!VSAV"; //$NON-NLS-1$
+  public static final int VERSION = 1;
+
+  // record kinds
+  static final int NONE = 0;
+  static final int TEXT = 1;
+  static final int ADD = 2;
+  static final int REMOVE = 3;
+  static final int CHANGE = 4;
+  static final int MOVE = 5;
+
+  // string references; larger values are table indices + TABLE
+  static final int LITERAL = 0;
+  static final int LITERAL_INTERNED = 1;
+  static final int TABLE = 2;
+
+  /** Piece states are split into fragments at this character. */
+  static final char STATE_SEPARATOR = '\t';
+
+  /** Strings no longer join the table once it holds this many chars. */
+  protected static final long MAX_TABLE_CHARS = 1 << 22;
+
+  protected final Function<Command, String> encoder;
+  protected final OutputStream out;
+  protected final Map<String, Integer> table = new HashMap<>();
+  protected long tableChars = 0;
+
+  /**
+   * @param encoder encodes a single command, ignoring its subcommands
+   * @param out the stream to which to write
+   * @throws IOException
+   */
+  public BinaryCommandWriter(Function<Command, String> encoder,
+                             OutputStream out) throws IOException {
+    this.encoder = encoder;
+    this.out = out;
+
+    out.write(HEADER.getBytes(StandardCharsets.US_ASCII));
+    writeVarLong(VERSION);
+  }
+
+  /**
+   * Write a command and its subcommands.
+   */
+  public void write(Command c) throws IOException {
+    if (c == null) {
+      writeVarLong(NONE);
+      writeVarLong(0);
+      return;
+    }
+
+    // Write each command before its subcommands, without recursion, so
+    // that a deep chain of appended commands cannot overflow the stack.
+    final Deque<Command> parents = new ArrayDeque<>();
+    final Deque<int[]> next = new ArrayDeque<>();
+    writeNode(c);
+    parents.push(c);
+    next.push(new int[1]);
+
+    while (!parents.isEmpty()) {
+      final Command parent = parents.peek();
+      final int[] i = next.peek();
+      if (i[0] >= parent.getSubCommandCount()) {
+        parents.pop();
+        next.pop();
+        continue;
+      }
+
+      final Command command = parent.getSubCommand(i[0]++);
+      writeNode(command);
+      if (command.getSubCommandCount() > 0) {
+        parents.push(command);
+        next.push(new int[1]);
+      }
+    }
+  }
+
+  private void writeNode(Command c) throws IOException {
+    writeRecord(encoder.apply(c));
+    writeVarLong(c.getSubCommandCount());
+  }
+
+  protected void writeRecord(String s) throws IOException {
+    if (s == null) {
+      writeVarLong(NONE);
+      return;
+    }
+
+    if (s.startsWith(BasicCommandEncoder.ADD)) {
+      final List<String> f = split(s, BasicCommandEncoder.ADD);
+      if (f.size() == 3 && s.equals(join(BasicCommandEncoder.ADD, f))) {
+        writeVarLong(ADD);
+        writeId(f.get(0));
+        writeString(f.get(1));
+        writeState(f.get(2));
+        return;
+      }
+    }
+    else if (s.startsWith(BasicCommandEncoder.REMOVE)) {
+      writeVarLong(REMOVE);
+      writeId(s.substring(BasicCommandEncoder.REMOVE.length()));
+      return;
+    }
+    else if (s.startsWith(BasicCommandEncoder.CHANGE)) {
+      final List<String> f = split(s, BasicCommandEncoder.CHANGE);
+      if ((f.size() == 2 || f.size() == 3) &&
+          s.equals(join(BasicCommandEncoder.CHANGE, f))) {
+        writeVarLong(CHANGE);
+        writeId(f.get(0));
+        writeState(f.get(1));
+        writeVarLong(f.size() == 3 ? 1 : 0);
+        if (f.size() == 3) {
+          writeState(f.get(2));
+        }
+        return;
+      }
+    }
+    else if (s.startsWith(BasicCommandEncoder.MOVE)) {
+      final List<String> f = split(s, BasicCommandEncoder.MOVE);
+      if (f.size() == 10 && isInt(f.get(2)) && isInt(f.get(3)) &&
+          isInt(f.get(6)) && isInt(f.get(7)) &&
+          s.equals(join(BasicCommandEncoder.MOVE, f))) {
+        writeVarLong(MOVE);
+        writeId(f.get(0));
+        for (int i = 1; i < 10; ++i) {
+          switch (i) {
+          case 2: case 3: case 6: case 7:
+            writeSignedVarLong(Integer.parseInt(f.get(i)));
+            break;
+          case 4: case 8:
+            writeId(f.get(i));
+            break;
+          default:
+            writeString(f.get(i));
+          }
+        }
+        return;
+      }
+    }
+
+    writeVarLong(TEXT);
+    writeString(s);
+  }
+
+  static List<String> split(String s, String prefix) {
+    final List<String> l = new ArrayList<>();
+    final SequenceEncoder.Decoder st = new SequenceEncoder.Decoder(
+      s.substring(prefix.length()), BasicCommandEncoder.PARAM_SEPARATOR);
+    while (st.hasMoreTokens()) {
+      l.add(st.nextToken());
+    }
+    return l;
+  }
+
+  static String join(String prefix, List<String> fields) {
+    final SequenceEncoder se =
+      new SequenceEncoder(BasicCommandEncoder.PARAM_SEPARATOR);
+    for (String f : fields) {
+      se.append(f);
+    }
+    return prefix + se.getValue();
+  }
+
+  protected static boolean isInt(String s) {
+    try {
+      return Integer.toString(Integer.parseInt(s)).equals(s);
+    }
+    catch (NumberFormatException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Write a piece id, as a number if it is one.
+   */
+  protected void writeId(String id) throws IOException {
+    long n = -1;
+    if (id.length() > 0 && id.length() < 19 && id.charAt(0) != '0') {
+      try {
+        n = Long.parseLong(id);
+      }
+      catch (NumberFormatException e) {
+        // not a number
+      }
+    }
+
+    if (n > 0 && Long.toString(n).equals(id)) {
+      writeVarLong(n);
+    }
+    else {
+      writeVarLong(0);
+      writeString(id);
+    }
+  }
+
+  protected void writeState(String state) throws IOException {
+    int count = 1;
+    for (int i = state.indexOf(STATE_SEPARATOR); i >= 0;
+         i = state.indexOf(STATE_SEPARATOR, i + 1)) {
+      ++count;
+    }
+    writeVarLong(count);
+
+    int begin = 0;
+    for (int i = 0; i < count; ++i) {
+      int end = state.indexOf(STATE_SEPARATOR, begin);
+      if (end < 0) {
+        end = state.length();
+      }
+      writeString(state.substring(begin, end));
+      begin = end + 1;
+    }
+  }
+
+  protected void writeString(String s) throws IOException {
+    final Integer i = table.get(s);
+    if (i != null) {
+      writeVarLong(i + TABLE);
+      return;
+    }
+
+    if (tableChars < MAX_TABLE_CHARS) {
+      table.put(s, table.size());
+      tableChars += s.length();
+      writeVarLong(LITERAL_INTERNED);
+    }
+    else {
+      writeVarLong(LITERAL);
+    }
+
+    final byte[] b = s.getBytes(StandardCharsets.UTF_8);
+    writeVarLong(b.length);
+    out.write(b);
+  }
+
+  protected void writeSignedVarLong(long n) throws IOException {
+    writeVarLong((n << 1) ^ (n >> 63));
+  }
+
+  protected void writeVarLong(long n) throws IOException {
+    while ((n & ~0x7FL) != 0) {
+      out.write((int) ((n & 0x7F) | 0x80));
+      n >>>= 7;
+    }
+    out.write((int) n);
+  }
+}
@@ -18,21 +18,34 @@
  */
 package VASSAL.command;
 
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+import VASSAL.build.BadDataReport;
 import VASSAL.build.GameModule;
 import VASSAL.build.module.GlobalOptions;
 import VASSAL.counters.BoundsTracker;
+import VASSAL.counters.Decorator;
 import VASSAL.counters.GamePiece;
 import VASSAL.counters.Properties;
 import VASSAL.counters.StateMergeable;
+import VASSAL.tools.ErrorDialog;
 
 /**
  * This Command changes the state of a {@link GamePiece}.  Its undo
  * Command is another ChangePiece with the new and old states
- * reversed.  */
+ * reversed.
+ *
+ * When the number of layers of the piece is known, the change can be
+ * expressed as a {@link Delta} holding only the layers whose states
+ * differ, which is much shorter to encode than the full states.  */
 public class ChangePiece extends Command {
   protected String newState, oldState;
   private String id;
   private Command undo;
+  private int layers;
+  private Delta delta;
 
   /**
    * @param id the id of the {@link GamePiece} to change
@@ -45,6 +58,31 @@ public class ChangePiece extends Command {
     this.oldState = oldState;
   }
 
+  /**
+   * @param id the id of the {@link GamePiece} to change
+   * @param oldState the previous state of the piece
+   * @param newState the new state of the piece
+   * @param layers the number of layers of the piece
+   * @see Decorator#getLayerCount
+   */
+  public ChangePiece(String id, String oldState, String newState, int layers) {
+    this(id, oldState, newState);
+    this.layers = layers;
+  }
+
+  /**
+   * When using this constructor, the old and new states will be
+   * made when this Command is executed, by applying the delta to the
+   * state of the piece at that time.
+   *
+   * @param id the id of the {@link GamePiece} to change
+   * @param delta the change to the layers of the piece
+   */
+  public ChangePiece(String id, Delta delta) {
+    this(id, null, null, delta.getLayerCount());
+    this.delta = delta;
+  }
+
   /**
    * When using this constructor, the previous state will be set
    * to that of the piece when this Command is executed.
@@ -61,6 +99,17 @@ public class ChangePiece extends Command {
   protected void executeCommand() {
     GamePiece target = GameModule.getGameModule().getGameState().getPieceForId(id);
     if (target != null) {
+      if (newState == null && delta != null) {
+        final String[] states = delta.apply(target.getState());
+        if (states == null) {
+          ErrorDialog.dataError(new BadDataReport(
+            "Piece has fewer layers than its change", id)); //$NON-NLS-1$
+          return;
+        }
+        oldState = states[0];
+        newState = states[1];
+      }
+
       BoundsTracker bounds = new BoundsTracker();
       bounds.addPiece(target);
       if (oldState != null) {
@@ -88,17 +137,21 @@ public class ChangePiece extends Command {
   @Override
   public Command append(Command c) {
     Command last = this;
-    Command[] sub = getSubCommands();
-    if (sub.length > 0) {
-      last = sub[sub.length - 1];
+    final int n = getSubCommandCount();
+    if (n > 0) {
+      last = getSubCommand(n - 1);
     }
     if (c instanceof ChangePiece
       && last instanceof ChangePiece
       && ((ChangePiece) c).id != null
       && ((ChangePiece) c).id.equals(((ChangePiece) last).id)
-      && ((ChangePiece) c).newState != null) {
+      && ((ChangePiece) c).newState != null
+      && ((ChangePiece) last).newState != null) {
       ((ChangePiece) last).newState = ((ChangePiece) c).newState;
-      sub = c.getSubCommands();
+      if (((ChangePiece) last).layers != ((ChangePiece) c).layers) {
+        ((ChangePiece) last).layers = 0;
+      }
+      final Command[] sub = c.getSubCommands();
       for (Command command : sub) {
         append(command);
       }
@@ -112,7 +165,7 @@ public class ChangePiece extends Command {
   @Override
   protected Command myUndoCommand() {
     if (undo == null && oldState != null) {
-      undo = new ChangePiece(id, newState, oldState);
+      undo = new ChangePiece(id, newState, oldState, layers);
     }
     return undo;
   }
@@ -121,6 +174,10 @@ public class ChangePiece extends Command {
     return id;
   }
 
+  /**
+   * @return the new state of the piece, or <code>null</code> if this
+   * Command was made from a {@link Delta} and has not been executed
+   */
   public String getNewState() {
     return newState;
   }
@@ -129,13 +186,169 @@ public class ChangePiece extends Command {
     return oldState;
   }
 
+  /**
+   * @return the number of layers of the piece, or 0 if not known
+   */
+  public int getLayerCount() {
+    return layers;
+  }
+
+  /**
+   * @return the change as the states of only the layers which differ, or
+   * <code>null</code> if it cannot be expressed more briefly that way
+   */
+  public Delta getDelta() {
+    if (delta != null) {
+      return delta;
+    }
+    if (layers < 2 || oldState == null || newState == null) {
+      return null;
+    }
+    return Delta.between(oldState, newState, layers);
+  }
+
   @Override
   public boolean isNull() {
+    if (newState == null) {
+      return delta != null && delta.getChangedLayers().length == 0 && isAtomic();
+    }
     return newState.equals(oldState) && isAtomic();
   }
 
   @Override
   public String getDetails() {
+    if (newState == null && delta != null) {
+      return "id="+id+",delta="+delta;
+    }
     return "id="+id+",oldState="+oldState+",newState="+newState;
   }
+
+  /**
+   * A change to the states of some layers of a piece, with a checksum of
+   * the old state of the whole piece. If the piece has some other state
+   * when the change is applied, as happens when players change the same
+   * piece at once, the changed layers are merged into it.
+   *
+   * @see Decorator#splitState
+   */
+  public static class Delta {
+    private final int layers;
+    private final long checksum;
+    private final int[] changed;
+    private final String[] newStates;
+    private final String[] oldStates;
+
+    /**
+     * @param layers the number of layers of the piece
+     * @param checksum the {@link #checksum} of the old state of the piece
+     * @param changed the indices of the changed layers, outermost first
+     * @param newStates the new state of each changed layer
+     * @param oldStates the old state of each changed layer
+     */
+    public Delta(int layers, long checksum, int[] changed,
+                 String[] newStates, String[] oldStates) {
+      this.layers = layers;
+      this.checksum = checksum;
+      this.changed = changed;
+      this.newStates = newStates;
+      this.oldStates = oldStates;
+    }
+
+    /**
+     * @return the Delta between two states of a piece, or
+     * <code>null</code> if the states do not have so many layers or
+     * every layer changed
+     */
+    public static Delta between(String oldState, String newState, int layers) {
+      final String[] oldLayers = Decorator.splitState(oldState, layers);
+      final String[] newLayers = Decorator.splitState(newState, layers);
+      if (oldLayers == null || newLayers == null ||
+          !Decorator.joinState(newLayers).equals(newState)) {
+        return null;
+      }
+
+      int n = 0;
+      final int[] changed = new int[layers];
+      for (int i = 0; i < layers; ++i) {
+        if (!oldLayers[i].equals(newLayers[i])) {
+          changed[n++] = i;
+        }
+      }
+      if (n == layers) {
+        return null;
+      }
+
+      final String[] newStates = new String[n];
+      final String[] oldStates = new String[n];
+      for (int i = 0; i < n; ++i) {
+        newStates[i] = newLayers[changed[i]];
+        oldStates[i] = oldLayers[changed[i]];
+      }
+      return new Delta(layers, checksum(oldState),
+                       Arrays.copyOf(changed, n), newStates, oldStates);
+    }
+
+    /**
+     * @return the checksum of a piece state
+     */
+    public static long checksum(String state) {
+      final CRC32 crc = new CRC32();
+      crc.update(state.getBytes(StandardCharsets.UTF_8));
+      return crc.getValue();
+    }
+
+    /**
+     * Apply this change to the current state of a piece.
+     *
+     * @return the old and new states of the piece, or <code>null</code>
+     * if the current state has too few layers
+     */
+    public String[] apply(String current) {
+      final String[] cur = Decorator.splitState(current, layers);
+      if (cur == null) {
+        return null;
+      }
+
+      final String[] next = cur.clone();
+      for (int i = 0; i < changed.length; ++i) {
+        next[changed[i]] = newStates[i];
+      }
+
+      String old = current;
+      if (checksum(current) != checksum) {
+        for (int i = 0; i < changed.length; ++i) {
+          cur[changed[i]] = oldStates[i];
+        }
+        old = Decorator.joinState(cur);
+      }
+      return new String[] { old, Decorator.joinState(next) };
+    }
+
+    public int getLayerCount() {
+      return layers;
+    }
+
+    public long getChecksum() {
+      return checksum;
+    }
+
+    public int[] getChangedLayers() {
+      return changed.clone();
+    }
+
+    public String[] getNewStates() {
+      return newStates.clone();
+    }
+
+    public String[] getOldStates() {
+      return oldStates.clone();
+    }
+
+    @Override
+    public String toString() {
+      return "layers="+layers+",checksum="+checksum+",changed="+
+        Arrays.toString(changed)+",oldStates="+Arrays.toString(oldStates)+
+        ",newStates="+Arrays.toString(newStates);
+    }
+  }
 }
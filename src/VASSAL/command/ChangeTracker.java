@@ -30,17 +30,39 @@ import VASSAL.counters.GamePiece;
 public class ChangeTracker {
   private GamePiece piece;
   private String oldState;
+  private int layers;
 
   public ChangeTracker(GamePiece p) {
-    oldState = Decorator.getOutermost(p).getState();
+    final GamePiece outer = Decorator.getOutermost(p);
+    oldState = outer.getState();
+    layers = Decorator.getLayerCount(outer);
     piece = p;
   }
 
   public Command getChangeCommand() {
-    return new ChangePiece(piece.getId(), oldState, Decorator.getOutermost(piece).getState());
+    if (piece.getMap() != null) {
+      piece.getMap().pieceBoundsChanged(piece);
+    }
+    final GamePiece outer = Decorator.getOutermost(piece);
+    final String newState = outer.getState();
+    if (!oldState.equals(newState)) {
+      outer.markModified();
+    }
+    return new ChangePiece(piece.getId(), oldState, newState, layers);
   }
 
+  /*
+   * The states must be compared even when the modification stamp of the
+   * piece is unchanged, as traits often alter their fields directly in
+   * the course of the action being tracked. A change found here raises
+   * the stamp, so that caches relying on it see the change.
+   */
   public boolean isChanged() {
-    return !oldState.equals(Decorator.getOutermost(piece).getState());
+    final GamePiece outer = Decorator.getOutermost(piece);
+    if (oldState.equals(outer.getState())) {
+      return false;
+    }
+    outer.markModified();
+    return true;
   }
 }
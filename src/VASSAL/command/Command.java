@@ -18,8 +18,7 @@
  */
 package VASSAL.command;
 
-import java.util.LinkedList;
-import java.util.ListIterator;
+import java.util.Arrays;
 
 import VASSAL.tools.ErrorDialog;
 import VASSAL.tools.ThrowableUtils;
@@ -36,38 +35,131 @@ import VASSAL.tools.ThrowableUtils;
  * @see CommandEncoder
  */
 public abstract class Command {
-  private LinkedList<Command> seq = new LinkedList<>();
+  private static final Command[] NO_COMMANDS = new Command[0];
+
+  // subcommands, allocated on the first append
+  private Command[] seq;
+  private int seqSize;
   private Command undo;
 
   public Command() {}
 
   public Command[] getSubCommands() {
-    return seq.toArray(new Command[0]);
+    return seqSize == 0 ? NO_COMMANDS : Arrays.copyOf(seq, seqSize);
+  }
+
+  /**
+   * @return the number of subcommands of this Command
+   */
+  public int getSubCommandCount() {
+    return seqSize;
+  }
+
+  /**
+   * Get a subcommand without copying them all, as
+   * {@link #getSubCommands} does.
+   *
+   * @param i the index of the subcommand
+   * @return the subcommand
+   */
+  public Command getSubCommand(int i) {
+    if (i < 0 || i >= seqSize) {
+      throw new IndexOutOfBoundsException(String.valueOf(i));
+    }
+    return seq[i];
   }
 
+  /**
+   * Whether a class overrides one of the methods which walk a command
+   * tree; such a class gets its own method called for its subtree.
+   */
+  private static final class Overrides {
+    final boolean execute;
+    final boolean getUndoCommand;
+
+    Overrides(Class<?> c) {
+      execute = declaresOwn(c, "execute");
+      getUndoCommand = declaresOwn(c, "getUndoCommand");
+    }
+
+    private static boolean declaresOwn(Class<?> c, String name) {
+      try {
+        return c.getMethod(name).getDeclaringClass() != Command.class;
+      }
+      catch (NoSuchMethodException e) {
+        return true;
+      }
+    }
+  }
+
+  private static final ClassValue<Overrides> overrides =
+    new ClassValue<Overrides>() {
+      @Override
+      protected Overrides computeValue(Class<?> c) {
+        return new Overrides(c);
+      }
+    };
+
   /**
    * Execute this command by first invoking {@link #executeCommand}, then
-   * invoking {@link #execute} recursively on all subcommands.
+   * invoking {@link #execute} on all subcommands, depth first.
+   *
+   * The subcommands are visited without recursion, so that a deep chain
+   * of appended commands cannot overflow the stack.
    */
   public void execute() {
+    executeSelf();
+    if (seqSize == 0) {
+      return;
+    }
+
+    Command[] parents = new Command[8];
+    int[] next = new int[8];
+    int top = 0;
+    parents[0] = this;
+
+    while (top >= 0) {
+      final Command parent = parents[top];
+      if (next[top] >= parent.seqSize) {
+        parents[top--] = null;
+        continue;
+      }
+
+      final Command cmd = parent.seq[next[top]++];
+      if (overrides.get(cmd.getClass()).execute) {
+        try {
+          cmd.execute();
+        }
+        catch (Throwable t) {
+          handleFailure(t);
+        }
+      }
+      else {
+        cmd.executeSelf();
+        if (cmd.seqSize > 0) {
+          if (++top == parents.length) {
+            parents = Arrays.copyOf(parents, 2*top);
+            next = Arrays.copyOf(next, 2*top);
+          }
+          parents[top] = cmd;
+          next[top] = 0;
+        }
+      }
+    }
+  }
+
+  private void executeSelf() {
     try {
       executeCommand();
     }
     catch (Throwable t) {
       handleFailure(t);
 
-      final LinkedList<Command> oldSeq = seq;
+      final Command[] oldSeq = seq;
+      final int oldSize = seqSize;
       stripSubCommands();
       seq = oldSeq;
-    }
-
-    for (Command cmd : seq) {
-      try {
-        cmd.execute();
-      }
-      catch (Throwable t) {
-        handleFailure(t);
-      }
+      seqSize = oldSize;
     }
   }
 
@@ -101,7 +193,8 @@ public abstract class Command {
    * Remove all subcommands.
    */
   public void stripSubCommands() {
-    seq = new LinkedList<>();
+    seq = null;
+    seqSize = 0;
   }
 
   /**
@@ -133,8 +226,8 @@ public abstract class Command {
    * @return
    */
   protected boolean isAtomic() {
-    for (Command c : seq) {
-      if (!c.isNull()) {
+    for (int i = 0; i < seqSize; ++i) {
+      if (!seq[i].isNull()) {
         return false;
       }
     }
@@ -146,7 +239,7 @@ public abstract class Command {
     final String details = getDetails();
     if (details != null) sb.append("[").append(details).append("]");
 
-    for (Command c : seq) sb.append("+").append(c);
+    for (int i = 0; i < seqSize; ++i) sb.append("+").append(seq[i]);
 
     return sb.toString();
   }
@@ -165,7 +258,14 @@ public abstract class Command {
       if (isNull()) {
         retval = c;
       }
-      seq.add(c);
+
+      if (seq == null) {
+        seq = new Command[2];
+      }
+      else if (seqSize == seq.length) {
+        seq = Arrays.copyOf(seq, seqSize + (seqSize >> 1) + 1);
+      }
+      seq[seqSize++] = c;
     }
     return retval;
   }
@@ -175,14 +275,49 @@ public abstract class Command {
    * the actions of all its subcommands.
    */
   public Command getUndoCommand() {
-    if (undo == null) {
-      undo = new NullCommand();
-      for (ListIterator<Command> i = seq.listIterator(seq.size());
-           i.hasPrevious(); ) {
-        undo = undo.append(i.previous().getUndoCommand());
+    if (undo != null) {
+      return undo;
+    }
+
+    // Find the undo commands of the subcommands before those of their
+    // parents, last subcommand first, without recursion.
+    Command[] parents = new Command[8];
+    int[] next = new int[8];
+    int top = 0;
+    parents[0] = this;
+    next[0] = seqSize - 1;
+
+    while (top >= 0) {
+      final Command parent = parents[top];
+      if (next[top] < 0) {
+        parent.undo = parent.assembleUndoCommand();
+        parents[top--] = null;
+        continue;
+      }
+
+      final Command cmd = parent.seq[next[top]--];
+      if (cmd.undo == null && !overrides.get(cmd.getClass()).getUndoCommand) {
+        if (++top == parents.length) {
+          parents = Arrays.copyOf(parents, 2*top);
+          next = Arrays.copyOf(next, 2*top);
+        }
+        parents[top] = cmd;
+        next[top] = cmd.seqSize - 1;
       }
-      undo = undo.append(myUndoCommand());
     }
+
     return undo;
   }
+
+  /**
+   * @return the undo command of this Command and its subcommands, whose
+   * own undo commands are known
+   */
+  private Command assembleUndoCommand() {
+    Command u = new NullCommand();
+    for (int i = seqSize - 1; i >= 0; --i) {
+      u = u.append(seq[i].getUndoCommand());
+    }
+    return u.append(myUndoCommand());
+  }
 }
@@ -0,0 +1,56 @@
+/*
+ * $Id$
+ *
+ * Copyright (c) 2020 by Joel Uckelman
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+package VASSAL.command;
+
+/**
+ * A {@link NullCommand} for collecting many commands, such as those
+ * made by a Global Key Command, into one flat list.
+ *
+ * Appending a bare <code>NullCommand</code> or <code>CommandBatch</code>
+ * appends its subcommands in its place, so that batches of batches do
+ * not nest. Since such a command does nothing itself, executing, undoing
+ * and encoding the batch is the same as it would be had it been appended
+ * whole. Subcommands appended to it later are not seen by the batch.
+ *
+ * @author Joel Uckelman
+ * @since 3.3.1
+ */
+public class CommandBatch extends NullCommand {
+  public CommandBatch() {
+  }
+
+  @Override
+  public Command append(Command c) {
+    if (c != null && isFlattenable(c)) {
+      // The batch now holds what c did, so it stands in for c even where
+      // appending c whole would have returned c.
+      final int n = c.getSubCommandCount();
+      for (int i = 0; i < n; ++i) {
+        super.append(c.getSubCommand(i));
+      }
+      return this;
+    }
+    return super.append(c);
+  }
+
+  private static boolean isFlattenable(Command c) {
+    return c.getClass() == NullCommand.class ||
+           c.getClass() == CommandBatch.class;
+  }
+}
@@ -0,0 +1,260 @@
+/*
+ * $Id$
+ *
+ * Copyright (c) 2020 by Joel Uckelman
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+package VASSAL.command;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.NoSuchElementException;
+import java.util.function.Function;
+
+import VASSAL.tools.SequenceEncoder;
+
+/**
+ * Reads a compound {@link Command} from a {@link Reader}, one top-level
+ * command at a time.
+ *
+ * This decodes the text written by a {@link CommandWriter} the same way
+ * as splitting it recursively with {@link SequenceEncoder.Decoder}s would,
+ * but without holding the whole text in memory. Subcommands which are
+ * themselves compound are read from the stream as well, so only the
+ * encodings of single commands are ever built as strings.
+ *
+ * @author Joel Uckelman
+ * @since 3.3.1
+ */
+public class CommandReader {
+  protected final Function<String, Command> decoder;
+  protected final char delimiter;
+  protected final Level top;
+
+  /**
+   * @param decoder decodes a single command
+   * @param delimiter the separator between subcommands
+   * @param in the reader from which to read
+   */
+  public CommandReader(Function<String, Command> decoder, char delimiter,
+                       Reader in) {
+    this.decoder = decoder;
+    this.delimiter = delimiter;
+    top = new Level(new ReaderSource(in));
+  }
+
+  /**
+   * @return true if there is another top-level command to read
+   */
+  public boolean hasNext() {
+    return top.hasNext();
+  }
+
+  /**
+   * Read the next top-level command, including its subcommands.
+   *
+   * @return the command, or null if it could not be decoded
+   * @throws NoSuchElementException if there are no more commands
+   */
+  public Command next() throws IOException {
+    return top.next();
+  }
+
+  /**
+   * Read all remaining commands, appending each to the first.
+   *
+   * @return the command, or null if none could be decoded
+   */
+  public Command read() throws IOException {
+    return top.readAll();
+  }
+
+  /**
+   * Decode a String as this reader would decode a stream.
+   */
+  public Command decode(String s) throws IOException {
+    return new Level(new ReaderSource(new StringReader(s))).readAll();
+  }
+
+  /** A stream of characters with one character of pushback. */
+  protected abstract static class Source {
+    private static final int NONE = -2;
+    private int pushback = NONE;
+
+    public int read() throws IOException {
+      if (pushback != NONE) {
+        final int c = pushback;
+        pushback = NONE;
+        return c;
+      }
+      return readChar();
+    }
+
+    public void unread(int c) {
+      pushback = c;
+    }
+
+    protected abstract int readChar() throws IOException;
+  }
+
+  protected static class ReaderSource extends Source {
+    private final Reader in;
+    private final char[] buf = new char[8192];
+    private int pos = 0;
+    private int len = 0;
+
+    public ReaderSource(Reader in) {
+      this.in = in;
+    }
+
+    @Override
+    protected int readChar() throws IOException {
+      if (pos == len) {
+        len = in.read(buf);
+        pos = 0;
+        if (len <= 0) {
+          len = 0;
+          return -1;
+        }
+      }
+      return buf[pos++];
+    }
+  }
+
+  /**
+   * The characters of one token of the enclosing source, unescaped as
+   * {@link SequenceEncoder.Decoder#nextToken} would, but with no quotes
+   * removed.
+   */
+  protected class TokenSource extends Source {
+    private final Source parent;
+    private boolean ended = false;
+
+    /** whether the token ended at a delimiter, rather than at the end */
+    protected boolean delimited = false;
+
+    /** whether the token differs from its text in the enclosing source */
+    protected boolean modified = false;
+
+    public TokenSource(Source parent) {
+      this.parent = parent;
+    }
+
+    @Override
+    protected int readChar() throws IOException {
+      if (ended) {
+        return -1;
+      }
+
+      final int c = parent.read();
+      if (c == -1) {
+        ended = true;
+        return -1;
+      }
+      else if (c == delimiter) {
+        ended = true;
+        delimited = true;
+        return -1;
+      }
+      else if (c == '\\') {
+        // an escaped delimiter loses its backslash
+        final int d = parent.read();
+        if (d == delimiter) {
+          modified = true;
+          return d;
+        }
+        parent.unread(d);
+      }
+      return c;
+    }
+
+    public String readString(StringBuilder sb) throws IOException {
+      for (int c = read(); c != -1; c = read()) {
+        sb.append((char) c);
+      }
+      return sb.toString();
+    }
+  }
+
+  /** The sequence of commands encoded by a source. */
+  protected class Level {
+    private final Source source;
+    private boolean started = false;
+    private boolean more = true;
+
+    public Level(Source source) {
+      this.source = source;
+    }
+
+    public boolean hasNext() {
+      return more;
+    }
+
+    public Command next() throws IOException {
+      if (!more) {
+        throw new NoSuchElementException();
+      }
+
+      final TokenSource tok = new TokenSource(source);
+      final Command c;
+
+      if (!started) {
+        started = true;
+
+        // The first token may be the whole encoding of a single command
+        final String raw = tok.readString(new StringBuilder());
+        final String s = unquote(raw);
+        more = tok.delimited;
+        if (!more && !tok.modified && s.equals(raw)) {
+          c = decoder.apply(s);
+        }
+        else {
+          c = decode(s);
+        }
+      }
+      else {
+        final int first = tok.read();
+        if (first == '\'') {
+          // A quoted token can be unquoted only once it is all read
+          final StringBuilder sb = new StringBuilder();
+          sb.append('\'');
+          c = decode(unquote(tok.readString(sb)));
+        }
+        else {
+          tok.unread(first);
+          c = new Level(tok).readAll();
+        }
+        more = tok.delimited;
+      }
+
+      return c;
+    }
+
+    public Command readAll() throws IOException {
+      Command c = null;
+      while (hasNext()) {
+        final Command next = next();
+        c = c == null ? next : c.append(next);
+      }
+      return c;
+    }
+
+    protected String unquote(String s) {
+      return s.length() > 1 && s.startsWith("'") && s.endsWith("'") ?
+        s.substring(1, s.length() - 1) : s;
+    }
+  }
+}
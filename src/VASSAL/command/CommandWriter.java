@@ -0,0 +1,289 @@
+/*
+ * $Id$
+ *
+ * Copyright (c) 2020 by Joel Uckelman
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+package VASSAL.command;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.function.Function;
+
+import VASSAL.tools.SequenceEncoder;
+
+/**
+ * Writes the encoding of a compound {@link Command} to a {@link Writer}.
+ *
+ * The text written is the same as that produced by joining the encodings
+ * of each command and its subcommands with a {@link SequenceEncoder}, but
+ * only the encoding of one single command is held in memory at a time.
+ * Where a {@link SequenceEncoder} would escape the delimiter once for
+ * each level of nesting, this writes the required number of escapes as
+ * it goes.
+ *
+ * @author Joel Uckelman
+ * @since 3.3.1
+ */
+public class CommandWriter {
+  protected final Function<Command, String> encoder;
+  protected final char delimiter;
+  protected final Writer out;
+
+  /**
+   * @param encoder encodes a single command, ignoring its subcommands
+   * @param delimiter the separator between subcommands
+   * @param out the writer to which to write
+   */
+  public CommandWriter(Function<Command, String> encoder, char delimiter,
+                       Writer out) {
+    this.encoder = encoder;
+    this.delimiter = delimiter;
+    this.out = out;
+  }
+
+  /**
+   * Write the encoding of a command and its subcommands.
+   */
+  public void write(Command c) throws IOException {
+    if (c != null) {
+      write(c, encoder.apply(c), 0);
+    }
+  }
+
+  /**
+   * A compound command being written, and how far through its
+   * subcommands the writing is.
+   */
+  private static class Frame {
+    final Command command;
+    final int depth;
+    final boolean quoted;
+    int next = 0;
+
+    Frame(Command command, int depth, boolean quoted) {
+      this.command = command;
+      this.depth = depth;
+      this.quoted = quoted;
+    }
+  }
+
+  /**
+   * Write the encoding of a command, escaped for the given depth.
+   *
+   * The subcommands are written without recursion, so that a deep chain
+   * of appended commands cannot overflow the stack.
+   *
+   * @param s the encoding of the command alone
+   * @param depth the number of {@link SequenceEncoder}s enclosing it
+   */
+  protected void write(Command c, String s, int depth) throws IOException {
+    if (c.getSubCommandCount() == 0) {
+      if (s != null) {
+        writeEscaped(s, depth);
+      }
+      return;
+    }
+
+    if (s != null) {
+      writeToken(s, depth + 1);
+    }
+
+    final Deque<Frame> stack = new ArrayDeque<>();
+    stack.push(new Frame(c, depth, false));
+
+    while (!stack.isEmpty()) {
+      final Frame f = stack.peek();
+      if (f.next >= f.command.getSubCommandCount()) {
+        stack.pop();
+        if (f.quoted) {
+          out.write('\'');
+        }
+        continue;
+      }
+
+      final Command command = f.command.getSubCommand(f.next++);
+      final String t = encoder.apply(command);
+      if (command.getSubCommandCount() == 0) {
+        if (t != null) {
+          writeDelimiter(f.depth);
+          writeToken(t, f.depth + 1);
+        }
+      }
+      else {
+        writeDelimiter(f.depth);
+        final boolean quote = needsQuotes(ends(command, t));
+        if (quote) {
+          out.write('\'');
+        }
+        if (t != null) {
+          writeToken(t, f.depth + 2);
+        }
+        stack.push(new Frame(command, f.depth + 1, quote));
+      }
+    }
+  }
+
+  protected void writeDelimiter(int depth) throws IOException {
+    for (int i = 0; i < depth; ++i) {
+      out.write('\\');
+    }
+    out.write(delimiter);
+  }
+
+  protected void writeEscaped(String s, int depth) throws IOException {
+    int begin = 0;
+    int end = s.indexOf(delimiter);
+    while (end >= 0) {
+      out.write(s, begin, end - begin);
+      writeDelimiter(depth);
+      begin = end + 1;
+      end = s.indexOf(delimiter, begin);
+    }
+    out.write(s, begin, s.length() - begin);
+  }
+
+  /** Write a string as {@link SequenceEncoder#append(String)} would. */
+  protected void writeToken(String s, int depth) throws IOException {
+    if (needsQuotes(s)) {
+      out.write('\'');
+      writeEscaped(s, depth);
+      out.write('\'');
+    }
+    else {
+      writeEscaped(s, depth);
+    }
+  }
+
+  protected static boolean needsQuotes(String s) {
+    return s.endsWith("\\") || (s.startsWith("'") && s.endsWith("'"));
+  }
+
+  protected static boolean needsQuotes(char[] ends) {
+    return ends != null &&
+      (ends[1] == '\\' || (ends[0] == '\'' && ends[1] == '\''));
+  }
+
+  /**
+   * @return the first and last characters of the given string once
+   * appended to a {@link SequenceEncoder}, or null if it is empty
+   */
+  protected char[] tokenEnds(String s) {
+    if (needsQuotes(s)) {
+      return new char[] { '\'', '\'' };
+    }
+    else if (s.isEmpty()) {
+      return null;
+    }
+    else {
+      return new char[] {
+        s.charAt(0) == delimiter ? '\\' : s.charAt(0),
+        s.charAt(s.length() - 1)
+      };
+    }
+  }
+
+  /**
+   * @return the first and last characters of the given compound encoding
+   * once appended to a {@link SequenceEncoder}, or null if it is empty
+   */
+  protected char[] tokenEnds(char[] ends) {
+    if (needsQuotes(ends)) {
+      return new char[] { '\'', '\'' };
+    }
+    else if (ends == null) {
+      return null;
+    }
+    else {
+      return new char[] { ends[0] == delimiter ? '\\' : ends[0], ends[1] };
+    }
+  }
+
+  /**
+   * Find the first and last characters of the encoding of a command with
+   * subcommands, without encoding more than its first and last commands.
+   *
+   * @param s the encoding of the command alone
+   * @return the first and last characters, or null if the encoding is empty
+   */
+  protected char[] ends(Command c, String s) {
+    // Follow the last subcommands having encodings down as far as they
+    // go, noting the first characters of the commands on the way, then
+    // work back up, without recursion.
+    final List<char[]> firsts = new ArrayList<>();
+    char[] result;
+
+    for (;;) {
+      final char[] first = s == null ? null : tokenEnds(s);
+      firsts.add(first);
+
+      // find the last subcommand having an encoding
+      Command compound = null;
+      String compoundEncoding = null;
+      char[] last = null;
+      boolean found = false;
+      for (int i = c.getSubCommandCount() - 1; i >= 0 && !found; --i) {
+        final Command sub = c.getSubCommand(i);
+        final String t = encoder.apply(sub);
+        if (sub.getSubCommandCount() == 0) {
+          if (t != null) {
+            found = true;
+            last = tokenEnds(t);
+          }
+        }
+        else {
+          found = true;
+          compound = sub;
+          compoundEncoding = t;
+        }
+      }
+
+      if (compound != null) {
+        c = compound;
+        s = compoundEncoding;
+        continue;
+      }
+
+      firsts.remove(firsts.size() - 1);
+      if (found) {
+        // each subcommand is preceded by a delimiter
+        result = new char[] {
+          first == null ? delimiter : first[0],
+          last == null ? delimiter : last[1]
+        };
+      }
+      else {
+        result = first;
+      }
+      break;
+    }
+
+    // each command above ends with its last subcommand
+    for (int i = firsts.size() - 1; i >= 0; --i) {
+      final char[] first = firsts.get(i);
+      final char[] last = tokenEnds(result);
+      result = new char[] {
+        first == null ? delimiter : first[0],
+        last == null ? delimiter : last[1]
+      };
+    }
+
+    return result;
+  }
+}
@@ -66,7 +66,7 @@ public class RemovePiece extends Command {
     HighlightLastMoved.setLastMoved(target);
 
     if (m != null) {
-      r = parent == null ?  m.boundingBoxOf(target) : m.boundingBoxOf(parent);
+      r = parent == null ?  m.damageBoundsOf(target) : m.damageBoundsOf(parent);
       m.removePiece(target);
       target.setMap(null);
     }
@@ -215,6 +215,21 @@ public class AreaOfEffect extends Decorator implements TranslatablePiece, MapSha
     piece.draw(g, x, y, obs, zoom);
   }
 
+  /**
+   * @return the bounds of the area affected on the map, either by the
+   * transparency or by map shading, in map coordinates, or
+   * <code>null</code> if there is none
+   */
+  public Rectangle getAreaBounds() {
+    if (alwaysActive || active) {
+      final Area a = getArea();
+      if (a != null) {
+        return a.getBounds();
+      }
+    }
+    return null;
+  }
+
   protected Area getArea() {
     Area a;
     final Map map = getMap();
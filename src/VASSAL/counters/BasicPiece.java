@@ -59,6 +59,8 @@ import VASSAL.i18n.TranslatablePiece;
 import VASSAL.property.PersistentPropertyContainer;
 import VASSAL.tools.SequenceEncoder;
 import VASSAL.tools.image.ImageUtils;
+import VASSAL.tools.imageop.ImageOp;
+import VASSAL.tools.imageop.Op;
 import VASSAL.tools.imageop.ScaledImagePainter;
 
 /**
@@ -114,6 +116,7 @@ public class BasicPiece implements TranslatablePiece, StateMergeable, PropertyNa
    * before set and de-serialised after get. 
    */
   private java.util.Map<Object, Object> persistentProps;
+  private long modified = ModificationStamp.next();
   
   /** @deprecated Moved into own traits, retained for backward compatibility */
   @Deprecated
@@ -140,16 +143,39 @@ public class BasicPiece implements TranslatablePiece, StateMergeable, PropertyNa
 
   @Override
   public void mySetType(String type) {
-    final SequenceEncoder.Decoder st = new SequenceEncoder.Decoder(type, ';');
-    st.nextToken();
-    cloneKey = st.nextChar('\0');
-    deleteKey = st.nextChar('\0');
-    imageName = st.nextToken();
-    commonName = st.nextToken();
-    imagePainter.setImageName(imageName);
+    final Definition def =
+      TraitDefinitionCache.get(BasicPiece.class, type, Definition::new);
+    cloneKey = def.cloneKey;
+    deleteKey = def.deleteKey;
+    imageName = def.imageName;
+    commonName = def.commonName;
+    imagePainter.setSource(def.image);
     commands = null;
   }
 
+  /**
+   * The parsed type of a BasicPiece, shared by all pieces of that type.
+   */
+  private static final class Definition {
+    final char cloneKey;
+    final char deleteKey;
+    final String imageName;
+    final String commonName;
+    final ImageOp image;
+
+    Definition(String type) {
+      final SequenceEncoder.Decoder st =
+        new SequenceEncoder.Decoder(type, ';');
+      st.nextToken();
+      cloneKey = st.nextChar('\0');
+      deleteKey = st.nextChar('\0');
+      imageName = st.nextToken();
+      commonName = st.nextToken();
+      image = imageName == null || imageName.trim().length() == 0
+        ? null : Op.load(imageName);
+    }
+  }
+
   @Override
   public String getType() {
     final SequenceEncoder se =
@@ -164,6 +190,7 @@ public class BasicPiece implements TranslatablePiece, StateMergeable, PropertyNa
     if (map != this.map) {
       commands = null;
       this.map = map;
+      markModified();
     }
   }
 
@@ -362,6 +389,7 @@ public class BasicPiece implements TranslatablePiece, StateMergeable, PropertyNa
 
   @Override
   public void setProperty(Object key, Object val) {
+    markModified();
     if (props == null) {
       props = new HashMap<>();
     }
@@ -380,6 +408,7 @@ public class BasicPiece implements TranslatablePiece, StateMergeable, PropertyNa
     }
 
     final Object oldValue = newValue == null ? persistentProps.remove(key) : persistentProps.put(key, newValue);
+    markModified();
     return Objects.equals(oldValue, newValue) ? null : new SetPersistentPropertyCommand (getId(), key, oldValue, newValue);
   }
 
@@ -451,11 +480,14 @@ public class BasicPiece implements TranslatablePiece, StateMergeable, PropertyNa
   @Override
   public void setPosition(Point p) {
     if (getMap() != null && getParent() == null) {
-      getMap().repaint(getMap().boundingBoxOf(Decorator.getOutermost(this)));
+      getMap().repaint(getMap().damageBoundsOf(Decorator.getOutermost(this)));
     }
     pos = p;
+    markModified();
     if (getMap() != null && getParent() == null) {
-      getMap().repaint(getMap().boundingBoxOf(Decorator.getOutermost(this)));
+      final GamePiece outer = Decorator.getOutermost(this);
+      getMap().pieceBoundsChanged(outer);
+      getMap().repaint(getMap().damageBoundsOf(outer));
     }
   }
 
@@ -466,7 +498,11 @@ public class BasicPiece implements TranslatablePiece, StateMergeable, PropertyNa
 
   @Override
   public void setParent(Stack s) {
-    parent = s;
+    // The parent determines the position, map and deck of this piece
+    if (s != parent) {
+      parent = s;
+      markModified();
+    }
   }
 
   @Override
@@ -684,6 +720,17 @@ public class BasicPiece implements TranslatablePiece, StateMergeable, PropertyNa
       final String val = st.nextToken("");
       persistentProps.put(key, val);
     }
+    markModified();
+  }
+
+  @Override
+  public long getModificationStamp() {
+    return modified;
+  }
+
+  @Override
+  public void markModified() {
+    modified = ModificationStamp.next(this);
   }
 
   @Override
@@ -18,6 +18,10 @@
  */
 package VASSAL.counters;
 
+import java.util.Set;
+
+import VASSAL.build.module.PropertyIndex;
+
 /**
  * Boolean and of two PieceFilters
  */
@@ -35,6 +39,20 @@ public class BooleanAndPieceFilter implements PieceFilter {
     return filter1.accept(piece) && filter2.accept(piece);
   }
 
+  @Override
+  public Set<GamePiece> getCandidates(PropertyIndex index) {
+    // Either side narrows the candidates; prefer the narrower
+    final Set<GamePiece> c1 = filter1.getCandidates(index);
+    final Set<GamePiece> c2 = filter2.getCandidates(index);
+    if (c1 == null) {
+      return c2;
+    }
+    else if (c2 == null) {
+      return c1;
+    }
+    return c1.size() <= c2.size() ? c1 : c2;
+  }
+
   public PieceFilter getFilter1() {
     return filter1;
   }
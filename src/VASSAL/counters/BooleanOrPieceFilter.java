@@ -18,6 +18,11 @@
  */
 package VASSAL.counters;
 
+import java.util.HashSet;
+import java.util.Set;
+
+import VASSAL.build.module.PropertyIndex;
+
 /**
  * Boolean Or of two PieceFilters
  */
@@ -35,6 +40,21 @@ public class BooleanOrPieceFilter implements PieceFilter {
     return filter1.accept(piece) || filter2.accept(piece);
   }
 
+  @Override
+  public Set<GamePiece> getCandidates(PropertyIndex index) {
+    final Set<GamePiece> c1 = filter1.getCandidates(index);
+    if (c1 == null) {
+      return null;
+    }
+    final Set<GamePiece> c2 = filter2.getCandidates(index);
+    if (c2 == null) {
+      return null;
+    }
+    final Set<GamePiece> c = new HashSet<>(c1);
+    c.addAll(c2);
+    return c;
+  }
+
   public PieceFilter getFilter1() {
     return filter1;
   }
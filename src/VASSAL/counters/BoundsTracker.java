@@ -18,8 +18,10 @@
  */
 package VASSAL.counters;
 
-import java.util.HashSet;
-import java.util.Set;
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 
 import VASSAL.build.module.Map;
 
@@ -30,10 +32,10 @@ import VASSAL.build.module.Map;
  * added pieces belonged.
  */
 public class BoundsTracker {
-  private Set<Map> maps;
+  private java.util.Map<Map,List<Rectangle>> maps;
 
   public BoundsTracker() {
-    maps = new HashSet<>();
+    maps = new HashMap<>();
   }
 
   public void clear() {
@@ -41,14 +43,36 @@ public class BoundsTracker {
   }
 
   public void addPiece(GamePiece p) {
-    if (p.getMap() != null) {
-      maps.add(p.getMap());
+    final Map m = p.getMap();
+    if (m != null) {
+      m.pieceBoundsChanged(p);
+
+      // Pieces in a Stack affect the layout of the whole Stack
+      final GamePiece target = p.getParent() == null ? p : p.getParent();
+      final Rectangle r = target.getMap() == m ? m.damageBoundsOf(target) : null;
+      final List<Rectangle> l = maps.computeIfAbsent(m, k -> new ArrayList<>());
+      if (r != null) {
+        l.add(r);
+      }
+      else {
+        // null marks that the whole map must be repainted
+        l.add(null);
+      }
     }
   }
 
   public void repaint() {
-    for (Map m : maps) {
-      m.repaint();
+    for (java.util.Map.Entry<Map,List<Rectangle>> e : maps.entrySet()) {
+      final Map m = e.getKey();
+      final List<Rectangle> l = e.getValue();
+      if (l.contains(null)) {
+        m.repaint();
+      }
+      else {
+        for (Rectangle r : l) {
+          m.repaint(r);
+        }
+      }
     }
   }
 }
@@ -25,17 +25,20 @@ import java.awt.Rectangle;
 import java.awt.Shape;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.swing.BoxLayout;
 import javax.swing.JPanel;
 import javax.swing.KeyStroke;
 
 import VASSAL.build.BadDataReport;
+import VASSAL.build.module.GlobalOptions;
 import VASSAL.build.module.documentation.HelpFile;
 import VASSAL.command.Command;
 import VASSAL.configure.BeanShellExpressionConfigurer;
 import VASSAL.configure.StringConfigurer;
 import VASSAL.i18n.Resources;
+import VASSAL.script.PropertyRecorder;
 import VASSAL.script.expression.BeanShellExpression;
 import VASSAL.script.expression.Expression;
 import VASSAL.script.expression.ExpressionException;
@@ -58,6 +61,16 @@ public class CalculatedProperty extends Decorator implements EditablePiece, Loop
   protected String name = "";
   protected Expression expression;
 
+  /*
+   * The last value computed, and the properties read to compute it.
+   * The value is reused for as long as those properties are unchanged.
+   */
+  protected String cachedValue;
+  protected PropertyRecorder.Snapshot cachedInputs;
+
+  private static final AtomicLong hits = new AtomicLong();
+  private static final AtomicLong evaluations = new AtomicLong();
+
   public CalculatedProperty() {
     this(ID, null);
   }
@@ -134,6 +147,7 @@ public class CalculatedProperty extends Decorator implements EditablePiece, Loop
     st.nextToken();
     name = st.nextToken("");
     expression = BeanShellExpression.createExpression(st.nextToken(""));
+    clearCache();
   }
 
   protected String getExpression() {
@@ -181,13 +195,60 @@ public class CalculatedProperty extends Decorator implements EditablePiece, Loop
    * @return value
    */
   protected String evaluate() {
+    final GamePiece outer = Decorator.getOutermost(this);
+    final boolean caching = isCaching();
+
+    if (caching && cachedInputs != null && cachedInputs.isCurrent(outer)) {
+      hits.incrementAndGet();
+      return cachedValue;
+    }
+
+    evaluations.incrementAndGet();
+    clearCache();
+
+    final PropertyRecorder rec = PropertyRecorder.start();
+    final String value;
     try {
-      return expression.evaluate(Decorator.getOutermost(this));
+      value = expression.evaluate(outer);
     }
     catch (ExpressionException e) {
       ErrorDialog.dataError(new BadDataReport(Resources.getString("Error.expression_error"), piece.getProperty(BasicPiece.BASIC_NAME)+"-Calculated Property["+name+"]="+getExpression()+", Error="+e.getError(), e));
       return "";
     }
+    finally {
+      rec.stop();
+    }
+
+    if (caching && rec.isTracked()) {
+      cachedValue = value;
+      cachedInputs = rec.getSnapshot();
+    }
+    return value;
+  }
+
+  protected boolean isCaching() {
+    return GlobalOptions.getInstance().isCacheCalculatedProperties();
+  }
+
+  /** Forget the last value computed */
+  public void clearCache() {
+    cachedValue = null;
+    cachedInputs = null;
+  }
+
+  /** @return the number of times a value was reused */
+  public static long getCacheHitCount() {
+    return hits.get();
+  }
+
+  /** @return the number of times an expression was evaluated */
+  public static long getEvaluationCount() {
+    return evaluations.get();
+  }
+
+  public static void resetStatistics() {
+    hits.set(0);
+    evaluations.set(0);
   }
 
   @Override
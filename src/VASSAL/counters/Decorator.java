@@ -51,6 +51,7 @@ public abstract class Decorator implements GamePiece, StateMergeable, PropertyNa
   protected GamePiece piece;
   private Decorator dec;
   private boolean selected = false;
+  private long modified = ModificationStamp.next();
 
   public Decorator() {
   }
@@ -58,6 +59,7 @@ public abstract class Decorator implements GamePiece, StateMergeable, PropertyNa
   /** Set the inner GamePiece */
   public void setInner(GamePiece p) {
     piece = p;
+    markModified();
     if (p != null) {
       p.setProperty(Properties.OUTER, this);
     }
@@ -139,6 +141,7 @@ public abstract class Decorator implements GamePiece, StateMergeable, PropertyNa
 
   @Override
   public void setProperty(Object key, Object val) {
+    markModified();
     if (Properties.INNER.equals(key)) {
       setInner((GamePiece) val);
     }
@@ -207,6 +210,7 @@ public abstract class Decorator implements GamePiece, StateMergeable, PropertyNa
   public void setState(String newState) {
     SequenceEncoder.Decoder st = new SequenceEncoder.Decoder(newState, '\t');
     mySetState(st.nextToken());
+    markModified();
     try {
       piece.setState(st.nextToken());
     }
@@ -231,6 +235,7 @@ public abstract class Decorator implements GamePiece, StateMergeable, PropertyNa
     String innerOldState = stOld.nextToken();
     if (!myOldState.equals(myNewState)) {
       mySetState(myNewState);
+      markModified();
     }
     if (piece instanceof StateMergeable) {
       ((StateMergeable)piece).mergeState(innerNewState,innerOldState);
@@ -314,8 +319,34 @@ public abstract class Decorator implements GamePiece, StateMergeable, PropertyNa
   @Override
   public Command keyEvent(KeyStroke stroke) {
     Command c = myKeyEvent(stroke);
-    return c == null ? piece.keyEvent(stroke)
-      : c.append(piece.keyEvent(stroke));
+    if (c == null) {
+      return piece.keyEvent(stroke);
+    }
+    markModified();
+    return c.append(piece.keyEvent(stroke));
+  }
+
+  /**
+   * The stamp of a trait is the largest of its own and that of its
+   * inner piece. Traits which change their state other than through
+   * {@link #setState}, {@link #setProperty} or a {@link #myKeyEvent}
+   * which returns a {@link Command} should call {@link #markModified}.
+   * Traits whose {@link Properties#VISIBLE_STATE} depends on anything
+   * besides their state, such as the current player, should return a
+   * negative number.
+   */
+  @Override
+  public long getModificationStamp() {
+    if (piece == null) {
+      return modified;
+    }
+    final long inner = piece.getModificationStamp();
+    return inner < 0 ? inner : Math.max(modified, inner);
+  }
+
+  @Override
+  public void markModified() {
+    modified = ModificationStamp.next(this);
   }
 
   @Override
@@ -351,6 +382,63 @@ public abstract class Decorator implements GamePiece, StateMergeable, PropertyNa
     return p;
   }
 
+  /**
+   * @param p
+   * @return the number of layers of this piece: one for each Decorator
+   * within it, and one for its innermost GamePiece
+   */
+  public static int getLayerCount(GamePiece p) {
+    int n = 1;
+    while (p instanceof Decorator) {
+      p = ((Decorator) p).piece;
+      ++n;
+    }
+    return n;
+  }
+
+  /**
+   * Split the state of a piece into the states of its layers, as
+   * {@link #setState} reads them.
+   *
+   * @param state the state of the outermost layer
+   * @param layers the number of layers
+   * @return the {@link #myGetState} of each Decorator, outermost first,
+   * followed by the state of the innermost GamePiece, or
+   * <code>null</code> if the state has fewer layers
+   */
+  public static String[] splitState(String state, int layers) {
+    final String[] states = new String[layers];
+    for (int i = 0; i < layers - 1; ++i) {
+      final SequenceEncoder.Decoder st =
+        new SequenceEncoder.Decoder(state, '\t');
+      if (!st.hasMoreTokens()) {
+        return null;
+      }
+      states[i] = st.nextToken();
+      if (!st.hasMoreTokens()) {
+        return null;
+      }
+      state = st.nextToken();
+    }
+    states[layers - 1] = state;
+    return states;
+  }
+
+  /**
+   * The reverse of {@link #splitState}.
+   *
+   * @param states the states of the layers, outermost first
+   * @return the state of the outermost layer, as {@link #getState}
+   * composes it
+   */
+  public static String joinState(String[] states) {
+    String state = states[states.length - 1];
+    for (int i = states.length - 2; i >= 0; --i) {
+      state = new SequenceEncoder(states[i], '\t').append(state).getValue();
+    }
+    return state;
+  }
+
   /**
    * @return the first Decorator within the given GamePiece
    * that is an instance of the given Class
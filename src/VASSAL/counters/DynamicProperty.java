@@ -234,6 +234,7 @@ public class DynamicProperty extends Decorator implements TranslatablePiece, Pro
     else {
       this.value = value;
     }
+    markModified();
   }
 
   private String formatValue(String value) {
@@ -69,6 +69,7 @@ import VASSAL.tools.icon.IconFactory;
 import VASSAL.tools.icon.IconFamily;
 import VASSAL.tools.image.ImageUtils;
 import VASSAL.tools.imageop.ImageOp;
+import VASSAL.tools.imageop.Op;
 import VASSAL.tools.imageop.ScaledImagePainter;
 
 /**
@@ -164,6 +165,7 @@ public class Embellishment extends Decorator implements TranslatablePiece {
 
   public void setActive(boolean val) {
     value = val ? Math.abs(value) : -Math.abs(value);
+    markModified();
   }
 
   public int getValue() {
@@ -182,6 +184,7 @@ public class Embellishment extends Decorator implements TranslatablePiece {
       theVal = nValues;
     }
     value = value > 0 ? theVal + 1 : -theVal - 1;
+    markModified();
   }
 
   @Override
@@ -190,8 +193,91 @@ public class Embellishment extends Decorator implements TranslatablePiece {
       originalSetType(s);
     }
     else {
+      final Definition def =
+        TraitDefinitionCache.get(Embellishment.class, s, Definition::new);
+      activateCommand = def.activateCommand;
+      activateModifiers = def.activateModifiers;
+      activateKey = def.activateKey;
+      upCommand = def.upCommand;
+      upModifiers = def.upModifiers;
+      upKey = def.upKey;
+      downCommand = def.downCommand;
+      downModifiers = def.downModifiers;
+      downKey = def.downKey;
+      resetCommand = def.resetCommand;
+      resetKey = def.resetKey;
+      resetLevel = new FormattedString(def.resetLevel);
+      drawUnderneathWhenSelected = def.drawUnderneathWhenSelected;
+      xOff = def.xOff;
+      yOff = def.yOff;
+      imageName = def.imageName;
+      commonName = def.commonName;
+      loopLevels = def.loopLevels;
+      name = def.name;
+      rndKey = def.rndKey;
+      rndText = def.rndText;
+      followProperty = def.followProperty;
+      propertyName = def.propertyName;
+      firstLevelValue = def.firstLevelValue;
+      version = def.version;
+      alwaysActive = def.alwaysActive;
+      activateKeyStroke = def.activateKeyStroke;
+      increaseKeyStroke = def.increaseKeyStroke;
+      decreaseKeyStroke = def.decreaseKeyStroke;
+
+      value = activateKey.length() > 0 ? -1 : 1;
+      nValues = imageName.length;
+      size = new Rectangle[imageName.length];
+      imagePainter = new ScaledImagePainter[imageName.length];
+
+      for (int i = 0; i < imageName.length; ++i) {
+        imagePainter[i] = new ScaledImagePainter();
+        imagePainter[i].setSource(def.images[i]);
+      }
+    }
+
+    commands = null;
+  }
+
+  /**
+   * The parsed type of an Embellishment, shared by all layers of that
+   * type. The arrays must not be altered.
+   */
+  private static final class Definition {
+    final String activateCommand;
+    final int activateModifiers;
+    final String activateKey;
+    final String upCommand;
+    final int upModifiers;
+    final String upKey;
+    final String downCommand;
+    final int downModifiers;
+    final String downKey;
+    final String resetCommand;
+    final NamedKeyStroke resetKey;
+    final String resetLevel;
+    final boolean drawUnderneathWhenSelected;
+    final int xOff;
+    final int yOff;
+    final String[] imageName;
+    final String[] commonName;
+    final ImageOp[] images;
+    final boolean loopLevels;
+    final String name;
+    final NamedKeyStroke rndKey;
+    final String rndText;
+    final boolean followProperty;
+    final String propertyName;
+    final int firstLevelValue;
+    final int version;
+    final boolean alwaysActive;
+    final NamedKeyStroke activateKeyStroke;
+    final NamedKeyStroke increaseKeyStroke;
+    final NamedKeyStroke decreaseKeyStroke;
+
+    Definition(String s) {
       s = s.substring(ID.length());
-      SequenceEncoder.Decoder st = new SequenceEncoder.Decoder(s, ';');
+      final SequenceEncoder.Decoder st = new SequenceEncoder.Decoder(s, ';');
       activateCommand = st.nextToken("");
       activateModifiers = st.nextInt(InputEvent.CTRL_MASK);
       activateKey = st.nextToken("A");
@@ -203,7 +289,7 @@ public class Embellishment extends Decorator implements TranslatablePiece {
       downKey = st.nextToken("");
       resetCommand = st.nextToken("");
       resetKey = st.nextNamedKeyStroke();
-      resetLevel = new FormattedString(st.nextToken("1"));
+      resetLevel = st.nextToken("1");
       drawUnderneathWhenSelected = st.nextBoolean(false);
       xOff = st.nextInt(0);
       yOff = st.nextInt(0);
@@ -222,11 +308,11 @@ public class Embellishment extends Decorator implements TranslatablePiece {
       propertyName = st.nextToken("");
       firstLevelValue = st.nextInt(1);
 
-      version = st.nextInt(0);
-      alwaysActive = st.nextBoolean(false);
-      activateKeyStroke = st.nextNamedKeyStroke();
-      increaseKeyStroke = st.nextNamedKeyStroke();
-      decreaseKeyStroke = st.nextNamedKeyStroke();
+      int version = st.nextInt(0);
+      boolean alwaysActive = st.nextBoolean(false);
+      NamedKeyStroke activateKeyStroke = st.nextNamedKeyStroke();
+      NamedKeyStroke increaseKeyStroke = st.nextNamedKeyStroke();
+      NamedKeyStroke decreaseKeyStroke = st.nextNamedKeyStroke();
 
       // Conversion?
       if (version == BASE_VERSION) {
@@ -258,18 +344,18 @@ public class Embellishment extends Decorator implements TranslatablePiece {
         }
       }
 
-      value = activateKey.length() > 0 ? -1 : 1;
-      nValues = imageName.length;
-      size = new Rectangle[imageName.length];
-      imagePainter = new ScaledImagePainter[imageName.length];
+      this.version = version;
+      this.alwaysActive = alwaysActive;
+      this.activateKeyStroke = activateKeyStroke;
+      this.increaseKeyStroke = increaseKeyStroke;
+      this.decreaseKeyStroke = decreaseKeyStroke;
 
+      images = new ImageOp[imageName.length];
       for (int i = 0; i < imageName.length; ++i) {
-        imagePainter[i] = new ScaledImagePainter();
-        imagePainter[i].setImageName(imageName[i]);
+        images[i] = imageName[i] == null || imageName[i].trim().length() == 0
+          ? null : Op.load(imageName[i]);
       }
     }
-
-    commands = null;
   }
 
   /**
@@ -785,6 +871,15 @@ public class Embellishment extends Decorator implements TranslatablePiece {
     }
   }
 
+  /**
+   * A layer which follows a property may change without any change to
+   * this piece.
+   */
+  @Override
+  public long getModificationStamp() {
+    return followProperty ? -1L : super.getModificationStamp();
+  }
+
   @Override
   public Object getProperty(Object key) {
     if (key.equals(name + IMAGE)) {
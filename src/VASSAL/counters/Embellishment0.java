@@ -148,6 +148,7 @@ public class Embellishment0 extends Decorator implements TranslatablePiece {
 
     public void setActive(boolean val) {
       value = val ? Math.abs(value) : -Math.abs(value);
+      markModified();
     }
 
     public int getValue() {
@@ -164,6 +165,7 @@ public class Embellishment0 extends Decorator implements TranslatablePiece {
         throw new IllegalArgumentException();
       }
       value = value > 0 ? val + 1 : -val - 1;
+      markModified();
     }
 
     @Override
@@ -681,6 +683,11 @@ public class Embellishment0 extends Decorator implements TranslatablePiece {
       }
     }
 
+    @Override
+    public long getModificationStamp() {
+      return followProperty ? -1L : super.getModificationStamp();
+    }
+
     @Override
     public Object getProperty(Object key) {
       if (key.equals(name + IMAGE)) {
@@ -255,6 +255,7 @@ public class Footprint extends MovementMarkable {
     else {
       clearTrail();
     }
+    markModified();
     redraw();
   }
 
@@ -288,6 +289,7 @@ public class Footprint extends MovementMarkable {
   protected void addPoint(Point p) {
     pointList.add(p);
     myBoundingBox = null;
+    markModified();
   }
 
   private Rectangle getBB() {
@@ -221,6 +221,7 @@ public class FreeRotator extends Decorator
       }
       angleIndex = newIndex;
     }
+    markModified();
   }
 
   /** @deprecated Use {@link boundingBox()} instead. */
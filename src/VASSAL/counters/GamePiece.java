@@ -121,6 +121,28 @@ public interface GamePiece extends PropertySource {
 
   public void setState(String newState);
 
+  /**
+   * A cheap way of telling whether the state of a piece may have changed:
+   * the stamp increases whenever the state of the piece, or anything else
+   * affecting its {@link Properties#VISIBLE_STATE}, changes. An unchanged
+   * stamp means an unchanged state; a changed stamp need not mean a
+   * changed state.
+   *
+   * @return the modification stamp, or a negative number if this piece
+   * does not keep one, in which case states must be compared instead
+   * @see ModificationStamp
+   */
+  public default long getModificationStamp() {
+    return -1L;
+  }
+
+  /**
+   * Raise the modification stamp of this piece, e.g., after changing it
+   * otherwise than through the methods of this interface.
+   */
+  public default void markModified() {
+  }
+
   /**
    * Other properties, possibly game-specific, can be associated with a piece.
    * The properties may or may not need to be encoded
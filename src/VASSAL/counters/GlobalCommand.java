@@ -18,14 +18,17 @@
  */
 package VASSAL.counters;
 
+import java.util.Set;
+
 import javax.swing.KeyStroke;
 
 import VASSAL.build.GameModule;
 import VASSAL.build.module.Chatter;
 import VASSAL.build.module.Map;
+import VASSAL.build.module.PropertyIndex;
 import VASSAL.build.module.properties.PropertySource;
 import VASSAL.command.Command;
-import VASSAL.command.NullCommand;
+import VASSAL.command.CommandBatch;
 import VASSAL.tools.FormattedString;
 import VASSAL.tools.NamedKeyStroke;
 import VASSAL.tools.RecursionLimitException;
@@ -95,7 +98,7 @@ public class GlobalCommand {
    * @return a the corresponding {@link Command}
    */
   public Command apply(Map[] m, PieceFilter filter) {
-    Command c = new NullCommand();
+    Command c = new CommandBatch();
     try {
       if (reportSingle) {
         Map.setChangeReportingEnabled(false);
@@ -107,8 +110,17 @@ public class GlobalCommand {
           GameModule.getGameModule().getChatter(), "*" + reportText);
         c.execute();
       }
+
+      // Narrow down the pieces to try, if the filter can use the index
+      final PropertyIndex index =
+        GameModule.getGameModule().getGameState().getPropertyIndex();
+      final Set<GamePiece> candidates = index.getCandidates(filter);
+      if (index.isEnabled()) {
+        index.recordUsage(owner.getComponentName(), candidates != null);
+      }
+
       for (Map map : m) {
-        Visitor visitor = new Visitor(c, filter, keyStroke);
+        Visitor visitor = new Visitor(c, filter, keyStroke, candidates);
         DeckVisitorDispatcher dispatcher = new DeckVisitorDispatcher(visitor);
         GamePiece[] p = map.getPieces();
         for (GamePiece gamePiece : p) {
@@ -137,12 +149,23 @@ public class GlobalCommand {
     private PieceFilter filter;
     private KeyStroke stroke;
     private int selectedCount;
+    private Set<GamePiece> candidates;
 
     public Visitor(Command command, PieceFilter filter, KeyStroke stroke) {
+      this(command, filter, stroke, null);
+    }
+
+    /**
+     * @param candidates the pieces the filter may accept, as found by the
+     * {@link PropertyIndex}, or null to try every piece
+     */
+    public Visitor(Command command, PieceFilter filter, KeyStroke stroke,
+                   Set<GamePiece> candidates) {
       this.command = command;
       tracker = new BoundsTracker();
       this.filter = filter;
       this.stroke = stroke;
+      this.candidates = candidates;
     }
 
     @Override
@@ -178,6 +201,13 @@ public class GlobalCommand {
     }
 
     private void apply(GamePiece p) {
+      if (candidates != null && !candidates.contains(p) &&
+          GameModule.getGameModule().getGameState()
+                    .getPropertyIndex().isCurrent(p)) {
+        // The index shows that the filter will not accept this piece
+        return;
+      }
+
       if (filter == null || filter.accept(p)) {
         tracker.addPiece(p);
         p.setProperty(Properties.SNAPSHOT, PieceCloner.getInstance().clonePiece(p));
@@ -70,6 +70,7 @@ public class Hideable extends Decorator implements TranslatablePiece {
   public void setProperty(Object key, Object val) {
     if (HIDDEN_BY.equals(key)) {
       hiddenBy = (String) val;
+      markModified();
     }
     else {
       super.setProperty(key, val);
@@ -99,6 +100,15 @@ public class Hideable extends Decorator implements TranslatablePiece {
     }
   }
 
+  /**
+   * Whether this piece is hidden depends on who is looking at it,
+   * so it does not keep a modification stamp.
+   */
+  @Override
+  public long getModificationStamp() {
+    return -1L;
+  }
+
   @Override
   public Object getProperty(Object key) {
     if (HIDDEN_BY.equals(key)) {
@@ -58,12 +58,14 @@ public class KeyBuffer {
     if (p != null && !pieces.contains(p)) {
       pieces.add(p);
       p.setProperty(Properties.SELECTED, Boolean.TRUE);
+      selectionChanged(p);
     }
   }
 
   public void clear() {
     for (GamePiece p : pieces) {
       p.setProperty(Properties.SELECTED, null);
+      selectionChanged(p);
     }
     pieces.clear();
   }
@@ -72,6 +74,14 @@ public class KeyBuffer {
     if (p != null) {
       p.setProperty(Properties.SELECTED, null);
       pieces.remove(p);
+      selectionChanged(p);
+    }
+  }
+
+  /** Selection highlighting changes the bounds of a piece */
+  private void selectionChanged(GamePiece p) {
+    if (p.getMap() != null) {
+      p.getMap().pieceBoundsChanged(p);
     }
   }
 
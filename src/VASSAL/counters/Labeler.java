@@ -114,6 +114,7 @@ public class Labeler extends Decorator implements TranslatablePiece, Loopable {
   protected String description;
 
   private Point position = null; // Label position cache
+  private long positionStamp = -1L; // stamp of the inner piece when cached
 
   public Labeler() {
     this(ID, null);
@@ -127,26 +128,68 @@ public class Labeler extends Decorator implements TranslatablePiece, Loopable {
   @Override
   public void mySetType(String type) {
     commands = null;
-    final SequenceEncoder.Decoder st = new SequenceEncoder.Decoder(type, ';');
-    st.nextToken();
-    labelKey = st.nextNamedKeyStroke(null);
-    menuCommand = st.nextToken("Change Label");
-    final int fontSize = st.nextInt(10);
-    textBg = st.nextColor(null);
-    textFg = st.nextColor(Color.black);
-    verticalPos = st.nextChar('t');
-    verticalOffset = st.nextInt(0);
-    horizontalPos = st.nextChar('c');
-    horizontalOffset = st.nextInt(0);
-    verticalJust = st.nextChar('b');
-    horizontalJust = st.nextChar('c');
-    nameFormat.setFormat(clean(st.nextToken("$" + PIECE_NAME + "$ ($" + LABEL + "$)")));
-    final String fontFamily = st.nextToken("Dialog");
-    final int fontStyle = st.nextInt(Font.PLAIN);
-    font = new Font(fontFamily, fontStyle, fontSize);
-    rotateDegrees = st.nextInt(0);
-    propertyName = st.nextToken("TextLabel");
-    description = st.nextToken("");
+    final Definition def =
+      TraitDefinitionCache.get(Labeler.class, type, Definition::new);
+    labelKey = def.labelKey;
+    menuCommand = def.menuCommand;
+    textBg = def.textBg;
+    textFg = def.textFg;
+    verticalPos = def.verticalPos;
+    verticalOffset = def.verticalOffset;
+    horizontalPos = def.horizontalPos;
+    horizontalOffset = def.horizontalOffset;
+    verticalJust = def.verticalJust;
+    horizontalJust = def.horizontalJust;
+    nameFormat.setFormat(clean(def.nameFormat));
+    font = def.font;
+    rotateDegrees = def.rotateDegrees;
+    propertyName = def.propertyName;
+    description = def.description;
+  }
+
+  /**
+   * The parsed type of a Labeler, shared by all labels of that type.
+   */
+  private static final class Definition {
+    final NamedKeyStroke labelKey;
+    final String menuCommand;
+    final Color textBg;
+    final Color textFg;
+    final char verticalPos;
+    final int verticalOffset;
+    final char horizontalPos;
+    final int horizontalOffset;
+    final char verticalJust;
+    final char horizontalJust;
+    final String nameFormat;
+    final Font font;
+    final int rotateDegrees;
+    final String propertyName;
+    final String description;
+
+    Definition(String type) {
+      final SequenceEncoder.Decoder st =
+        new SequenceEncoder.Decoder(type, ';');
+      st.nextToken();
+      labelKey = st.nextNamedKeyStroke(null);
+      menuCommand = st.nextToken("Change Label");
+      final int fontSize = st.nextInt(10);
+      textBg = st.nextColor(null);
+      textFg = st.nextColor(Color.black);
+      verticalPos = st.nextChar('t');
+      verticalOffset = st.nextInt(0);
+      horizontalPos = st.nextChar('c');
+      horizontalOffset = st.nextInt(0);
+      verticalJust = st.nextChar('b');
+      horizontalJust = st.nextChar('c');
+      nameFormat = st.nextToken("$" + PIECE_NAME + "$ ($" + LABEL + "$)");
+      final String fontFamily = st.nextToken("Dialog");
+      final int fontStyle = st.nextInt(Font.PLAIN);
+      font = new Font(fontFamily, fontStyle, fontSize);
+      rotateDegrees = st.nextInt(0);
+      propertyName = st.nextToken("TextLabel");
+      description = st.nextToken("");
+    }
   }
 
   /*
@@ -170,6 +213,15 @@ public class Labeler extends Decorator implements TranslatablePiece, Loopable {
     }
   }
 
+  /**
+   * A label which refers to properties may change without any change to
+   * this piece.
+   */
+  @Override
+  public long getModificationStamp() {
+    return label.indexOf('$') >= 0 ? -1L : super.getModificationStamp();
+  }
+
   @Override
   public Object getProperty(Object key) {
     if (key.equals(propertyName)) {
@@ -353,10 +405,11 @@ public class Labeler extends Decorator implements TranslatablePiece, Loopable {
   /**
    * Return the relative position of the upper-left corner of the label,
    * for a piece at position (0,0). Cache the position of the label once the label
-   * image has been generated.
+   * image has been generated, until the inner piece changes.
    */
   private Point getLabelPosition() {
-    if (position != null) {
+    final long stamp = piece.getModificationStamp();
+    if (position != null && stamp == positionStamp) {
       return position;
     }
     int x = horizontalOffset;
@@ -403,6 +456,7 @@ public class Labeler extends Decorator implements TranslatablePiece, Loopable {
     // Cache the position once the label image has been generated
     if (lblSize.height > 0 && lblSize.width > 0 ) {
       position = result;
+      positionStamp = stamp;
     }
 
     return result;
@@ -412,6 +466,7 @@ public class Labeler extends Decorator implements TranslatablePiece, Loopable {
     if (s == null) s = "";
 
     position = null;  // clear position cache
+    markModified();
 
     int index = s.indexOf("$" + propertyName + "$");
     while (index >= 0) {
@@ -62,15 +62,20 @@ public class Marker extends Decorator implements EditablePiece {
 
   @Override
   public void mySetType(String s) {
+    // the keys are shared by all markers of this type
+    keys = TraitDefinitionCache.get(Marker.class, s, Marker::parseKeys);
+    values = new String[keys.length];
+    Arrays.fill(values, "");
+  }
+
+  private static String[] parseKeys(String s) {
     s = s.substring(ID.length());
     SequenceEncoder.Decoder st = new SequenceEncoder.Decoder(s, ',');
     ArrayList<String> l = new ArrayList<>();
     while (st.hasMoreTokens()) {
       l.add(st.nextToken());
     }
-    keys = l.toArray(new String[0]);
-    values = new String[keys.length];
-    Arrays.fill(values, "");
+    return l.toArray(new String[0]);
   }
 
   @Override
@@ -118,6 +123,7 @@ public class Marker extends Decorator implements EditablePiece {
     for (int i = 0; i < keys.length; ++i) {
       if (keys[i].equals(key)) {
         values[i] = (String) value;
+        markModified();
         return;
       }
     }
@@ -1100,6 +1100,9 @@ public class MassPieceLoader {
       int count = 0;
       builtImages.clear();
 
+      // our image names may be shared with other layers of the same type
+      imageName = imageName.clone();
+
       for (int i = 0; i < imageName.length; i++) {
         final String imageTemplate = imageName[i];
         String thisImage = null;
@@ -0,0 +1,67 @@
+/*
+ * $Id$
+ *
+ * Copyright (c) 2020 by Joel Uckelman
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+package VASSAL.counters;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * The source of the stamps returned by
+ * {@link GamePiece#getModificationStamp}.
+ *
+ * Stamps are drawn from a single counter shared by all pieces, so that
+ * the stamp of a whole piece may be taken to be the largest of the stamps
+ * of its traits: any change to any trait raises it.
+ *
+ * @author Joel Uckelman
+ * @since 3.3.1
+ */
+public final class ModificationStamp {
+  private ModificationStamp() {}
+
+  private static final AtomicLong counter = new AtomicLong();
+
+  private static volatile Consumer<GamePiece> observer;
+
+  /** @return a stamp larger than any returned before */
+  public static long next() {
+    return counter.incrementAndGet();
+  }
+
+  /**
+   * @param p the piece or trait which has been modified
+   * @return a stamp larger than any returned before
+   */
+  public static long next(GamePiece p) {
+    final Consumer<GamePiece> o = observer;
+    if (o != null) {
+      o.accept(p);
+    }
+    return next();
+  }
+
+  /**
+   * Set the observer notified of each piece or trait modified.
+   *
+   * @param o the observer, or null for none
+   */
+  public static void setObserver(Consumer<GamePiece> o) {
+    observer = o;
+  }
+}
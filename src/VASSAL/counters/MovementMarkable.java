@@ -84,6 +84,7 @@ public class MovementMarkable extends Decorator implements TranslatablePiece {
 
   public void setMoved(boolean b) {
     hasMoved = b;
+    markModified();
   }
 
   @Override
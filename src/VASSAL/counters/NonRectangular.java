@@ -33,8 +33,8 @@ import java.awt.geom.Area;
 import java.awt.geom.GeneralPath;
 import java.awt.geom.PathIterator;
 import java.awt.image.BufferedImage;
-import java.util.HashMap;
 import java.util.StringTokenizer;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.swing.BoxLayout;
 import javax.swing.JPanel;
@@ -54,7 +54,8 @@ import VASSAL.tools.imageop.Op;
  */
 public class NonRectangular extends Decorator implements EditablePiece {
   public static final String ID = "nonRect;";
-  private static HashMap<String,Shape> shapeCache = new HashMap<>();
+  private static ConcurrentHashMap<String,Shape> shapeCache =
+    new ConcurrentHashMap<>();
 
   private String type;
   private Shape shape;
@@ -246,6 +246,7 @@ public class Obscurable extends Decorator implements TranslatablePiece {
           obscuredBy = null;
           obscuredOptions = null;
         }
+        markModified();
       }
     }
     else if (Properties.SELECTED.equals(key)) {
@@ -261,12 +262,22 @@ public class Obscurable extends Decorator implements TranslatablePiece {
       }
       obscuredBy = owner;
       obscuredOptions = new ObscurableOptions(ObscurableOptions.getInstance().encodeOptions());
+      markModified();
     }
     else {
       super.setProperty(key, val);
     }
   }
 
+  /**
+   * Whether this piece is obscured depends on who is looking at it,
+   * so it does not keep a modification stamp.
+   */
+  @Override
+  public long getModificationStamp() {
+    return -1L;
+  }
+
   @Override
   public Object getProperty(Object key) {
     if (Properties.OBSCURED_TO_ME.equals(key)) {
@@ -18,11 +18,26 @@
  */
 package VASSAL.counters;
 
+import java.util.Set;
 
+import VASSAL.build.module.PropertyIndex;
 
 /**
  * A filter for GamePieces
  */
 public interface PieceFilter {
   public abstract boolean accept(GamePiece piece);
+
+  /**
+   * Use a {@link PropertyIndex} to narrow down the pieces this filter may
+   * accept. Pieces for which the index is not current must still be
+   * tried.
+   *
+   * @return the indexed pieces this filter may accept, or null if the
+   * index cannot tell
+   * @see PropertyIndex#isCurrent
+   */
+  public default Set<GamePiece> getCandidates(PropertyIndex index) {
+    return null;
+  }
 }
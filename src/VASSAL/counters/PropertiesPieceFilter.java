@@ -18,8 +18,11 @@
  */
 package VASSAL.counters;
 
+import java.util.HashSet;
+import java.util.Set;
 import java.util.regex.Pattern;
 
+import VASSAL.build.module.PropertyIndex;
 import VASSAL.script.expression.BeanShellExpression;
 import VASSAL.script.expression.FormattedStringExpression;
 
@@ -193,6 +196,18 @@ public class PropertiesPieceFilter {
       super(name, value);
     }
 
+    @Override
+    public Set<GamePiece> getCandidates(PropertyIndex index) {
+      final Set<GamePiece> c = index.getPieces(name, value);
+      if (c != null && "null".equals(value)) {
+        // String.valueOf() makes a missing property "null"
+        final Set<GamePiece> u = new HashSet<>(c);
+        u.addAll(index.getPieces(name, null));
+        return u;
+      }
+      return c;
+    }
+
     @Override
     public boolean accept(GamePiece piece) {
       String property = String.valueOf(piece.getProperty(name));
@@ -319,6 +334,9 @@ public class PropertiesPieceFilter {
   }
 
   private static class MATCH extends ComparisonFilter {
+    // Compiled on first use, so that a bad pattern fails where it did
+    private Pattern pattern;
+
     public MATCH(String name, String value) {
       super(name, value);
     }
@@ -326,7 +344,10 @@ public class PropertiesPieceFilter {
     @Override
     public boolean accept(GamePiece piece) {
       String property = String.valueOf(piece.getProperty(name));
-      return Pattern.matches(value, property);
+      if (pattern == null) {
+        pattern = Pattern.compile(value);
+      }
+      return pattern.matcher(property).matches();
     }
 
     public String toString() {
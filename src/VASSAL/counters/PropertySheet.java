@@ -224,6 +224,7 @@ public class PropertySheet extends Decorator implements TranslatablePiece {
   @Override
   public void mySetState(String state) {
     this.state = state;
+    markModified();
     updateFieldsFromState();
   }
 
@@ -173,6 +173,7 @@ public class SetGlobalProperty extends DynamicProperty {
 
   @Override
   public void setProperty(Object key, Object val) {
+    markModified();
     if (Properties.INNER.equals(key)) {
       setInner((GamePiece) val);
     }
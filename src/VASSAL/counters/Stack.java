@@ -126,10 +126,18 @@ public class Stack implements GamePiece, StateMergeable {
   }
 
   public void remove(GamePiece p) {
+    final Map m = getMap();
+    final Rectangle r = m == null ? null : m.damageBoundsOf(this);
     removePieceAt(indexOf(p));
     p.setParent(null);
-    if (getMap() != null) {
-      getMap().repaint();
+    if (m != null) {
+      m.pieceBoundsChanged(this);
+      if (r != null) {
+        m.repaint(r);
+      }
+      else {
+        m.repaint();
+      }
     }
   }
 
@@ -172,11 +180,18 @@ public class Stack implements GamePiece, StateMergeable {
 
     contents[index] = p;
     pieceCount++;
+
+    if (getMap() != null) {
+      getMap().pieceBoundsChanged(this);
+    }
   }
 
   public void removeAll() {
     pieceCount = 0;
     expanded = false;
+    if (getMap() != null) {
+      getMap().pieceBoundsChanged(this);
+    }
   }
 
   public int indexOf(GamePiece p) {
@@ -457,6 +472,9 @@ public class Stack implements GamePiece, StateMergeable {
 
   public void setExpanded(boolean b) {
     expanded = b && getPieceCount() > 1;
+    if (getMap() != null) {
+      getMap().pieceBoundsChanged(this);
+    }
   }
 
   @Override
@@ -580,6 +598,7 @@ public class Stack implements GamePiece, StateMergeable {
   @Override
   public void setMap(Map map) {
     this.map = map;
+    markContentsModified();
   }
 
   @Override
@@ -595,6 +614,20 @@ public class Stack implements GamePiece, StateMergeable {
   @Override
   public void setPosition(Point p) {
     pos = p;
+    if (getMap() != null) {
+      getMap().pieceBoundsChanged(this);
+    }
+    markContentsModified();
+  }
+
+  /**
+   * The contents take their position and map from the stack, so their
+   * properties change when it moves.
+   */
+  protected void markContentsModified() {
+    for (int i = 0; i < pieceCount; ++i) {
+      contents[i].markModified();
+    }
   }
 
   @Override
@@ -0,0 +1,84 @@
+/*
+ * $Id$
+ *
+ * Copyright (c) 2020 by Joel Uckelman
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+package VASSAL.counters;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Shares the parsed form of trait type strings among pieces.
+ *
+ * A module typically has many copies of the same piece, all with the same
+ * type. A trait which keeps what it parses from its type in an immutable
+ * definition object can get that object from here, keyed by the exact
+ * type string, so that the type is parsed once and every copy of the trait
+ * refers to the same definition. Only the trait's mutable state is then
+ * held per piece.
+ *
+ * A definition must depend on nothing but its type string and the
+ * current module, whose images it may load, and must not be altered once
+ * made, as it may be shared between threads. The cache is cleared when a
+ * module is loaded or unloaded.
+ *
+ * @author Joel Uckelman
+ * @since 3.3.1
+ */
+public final class TraitDefinitionCache {
+  private TraitDefinitionCache() {}
+
+  // Definitions are small, but the set of types grows while pieces are
+  // edited; start over once a kind of trait has this many.
+  private static final int MAX_ENTRIES = 8192;
+
+  private static final ConcurrentHashMap<Class<?>,ConcurrentHashMap<String,Object>> definitions = new ConcurrentHashMap<>();
+
+  /**
+   * @param kind the class of the trait whose type this is
+   * @param type the type string of the trait
+   * @param parser makes the definition from the type, if it is not cached
+   * @return the shared definition for this kind of trait and type
+   */
+  public static <T> T get(Class<?> kind, String type, Function<String,T> parser) {
+    final ConcurrentHashMap<String,Object> cache =
+      definitions.computeIfAbsent(kind, k -> new ConcurrentHashMap<>());
+
+    @SuppressWarnings("unchecked")
+    T def = (T) cache.get(type);
+    if (def == null) {
+      def = parser.apply(type);
+      if (cache.size() >= MAX_ENTRIES) {
+        cache.clear();
+      }
+
+      @SuppressWarnings("unchecked")
+      final T prev = (T) cache.putIfAbsent(type, def);
+      if (prev != null) {
+        def = prev;
+      }
+    }
+    return def;
+  }
+
+  /**
+   * Forget all definitions.
+   */
+  public static void clear() {
+    definitions.clear();
+  }
+}
@@ -50,6 +50,8 @@ public class UsePrototype extends Decorator implements EditablePiece, Loopable {
   public static final String ID = "prototype;";
   private String prototypeName;
   private String lastCachedPrototype;
+  private PrototypeDefinition cachedDefinition;
+  private int cachedVersion;
   private GamePiece prototype;
   private PropertySource properties;
   private String type;
@@ -104,6 +106,7 @@ public class UsePrototype extends Decorator implements EditablePiece, Loopable {
       };
     }
     lastCachedPrototype = null;
+    cachedDefinition = null;
   }
 
   @Override
@@ -120,13 +123,27 @@ public class UsePrototype extends Decorator implements EditablePiece, Loopable {
   public void setInner(GamePiece p) {
     super.setInner(p);
     lastCachedPrototype = null;
+    cachedDefinition = null;
   }
 
   protected void buildPrototype() {
     final PrototypeDefinition def =
       PrototypesContainer.getPrototype(prototypeName);
     if (def != null) {
+      // The parameters come from our type, so the expansion can change
+      // only if the definition does. mySetType() and setInner() reset this.
+      if (def == cachedDefinition && def.getVersion() == cachedVersion) {
+        return;
+      }
+      final int version = def.getVersion();
+
       final GamePiece expandedPrototype = def.getPiece(properties);
+      if (expandedPrototype == null) {
+        lastCachedPrototype = null;
+        prototype = null;
+        cacheDefinition(def, version);
+        return;
+      }
 
       // Check to see if prototype definition has changed
       final String type = expandedPrototype.getType();
@@ -154,12 +171,24 @@ public class UsePrototype extends Decorator implements EditablePiece, Loopable {
           RecursionLimiter.endExecution();
         }
       }
+      cacheDefinition(def, version);
     }
     else {
+      cachedDefinition = null;
       prototype = null;
     }
   }
 
+  /*
+   * Record the definition the expansion was built from. This is done only
+   * once the expansion is in place, so that no caller finds the definition
+   * cached and takes an expansion not yet built.
+   */
+  private void cacheDefinition(PrototypeDefinition def, int version) {
+    cachedVersion = version;
+    cachedDefinition = def;
+  }
+
   /**
    * Build a new GamePiece instance based on the traits in the referenced {@link PrototypeDefinition}. Substitute the
    * new instance for {@link #getInner} and return it. If the referenced definition does not exist, return the default
@@ -26,6 +26,9 @@ import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.InputStream;
 import java.io.IOException;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.io.Writer;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -59,6 +62,8 @@ import VASSAL.chat.node.NodeClientFactory;
 import VASSAL.chat.peer2peer.P2PClientFactory;
 import VASSAL.chat.ui.ChatServerControls;
 import VASSAL.command.Command;
+import VASSAL.command.CommandReader;
+import VASSAL.command.CommandWriter;
 import VASSAL.configure.PasswordConfigurer;
 import VASSAL.configure.StringConfigurer;
 import VASSAL.configure.TextConfigurer;
@@ -227,12 +232,13 @@ public class BasicModule extends GameModule {
     return c;
   }
 
-  private Command decodeSubCommand(String subCommand) {
-    Command c = null;
-    for (int i = 0; i < commandEncoders.length && c == null; ++i) {
-      c = commandEncoders[i].decode(subCommand);
-    }
-    return c;
+  /**
+   * Decodes a {@link Command} from a {@link Reader} without reading the
+   * whole encoding into memory.
+   */
+  @Override
+  public Command decode(Reader in) throws IOException {
+    return new CommandReader(this::decodeSubCommand, COMMAND_SEPARATOR, in).read();
   }
 
   @Override
@@ -240,28 +246,30 @@ public class BasicModule extends GameModule {
     if (c == null) {
       return null;
     }
-    String s = encodeSubCommand(c);
-    String s2;
-    Command[] sub = c.getSubCommands();
-    if (sub.length > 0) {
-      SequenceEncoder se = new SequenceEncoder(s, COMMAND_SEPARATOR);
-      for (Command command : sub) {
-        s2 = encode(command);
-        if (s2 != null) {
-          se.append(s2);
-        }
-      }
-      s = se.getValue();
+    if (c.getSubCommandCount() == 0) {
+      return encodeSubCommand(c);
     }
-    return s;
-  }
 
-  private String encodeSubCommand(Command c) {
-    String s = null;
-    for (int i = 0; i < commandEncoders.length && s == null; ++i) {
-      s = commandEncoders[i].encode(c);
+    // CommandWriter gives the same text as joining the encodings of the
+    // subcommands, but without copying them at each level or recursing
+    final StringWriter w = new StringWriter();
+    try {
+      new CommandWriter(this::encodeSubCommand, COMMAND_SEPARATOR, w).write(c);
+    }
+    catch (IOException e) {
+      // a StringWriter does not throw
+      throw new IllegalStateException(e);
     }
-    return s;
+    return w.toString();
+  }
+
+  /**
+   * Encodes a {@link Command} to a {@link Writer} without building the
+   * whole encoding in memory.
+   */
+  @Override
+  public void encode(Command c, Writer out) throws IOException {
+    new CommandWriter(this::encodeSubCommand, COMMAND_SEPARATOR, out).write(c);
   }
 
   protected void buildDefaultComponents() {
@@ -82,6 +82,9 @@ public class PlayerWindow extends JFrame {
     fileMenu.addSeparator();
     fileMenu.add(mm.addKey("BasicLogger.begin_logfile"));
     fileMenu.add(mm.addKey("BasicLogger.end_logfile"));
+    fileMenu.add(mm.addKey("BasicLogger.step_back"));
+    fileMenu.add(mm.addKey("BasicLogger.go_to_step"));
+    fileMenu.add(mm.addKey("BasicLogger.fast_forward"));
 
     if (SystemUtils.IS_OS_MAC_OSX) {
       fileMenu.add(mm.addMarker("Editor.File.start"));
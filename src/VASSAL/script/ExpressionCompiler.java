@@ -0,0 +1,108 @@
+/*
+ * $Id$
+ *
+ * Copyright (c) 2020 by Joel Uckelman
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+package VASSAL.script;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.codehaus.commons.compiler.CompileException;
+import org.codehaus.janino.ClassBodyEvaluator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import bsh.ExpressionTranslator;
+import bsh.UtilEvalError;
+
+/**
+ * Compiles BeanShell expressions to bytecode with Janino.
+ *
+ * Expressions are translated by {@link ExpressionTranslator}, which
+ * handles the common subset of Vassal expressions; the rest are left to
+ * the interpreter.
+ *
+ * @author Joel Uckelman
+ * @since 3.3.1
+ */
+public final class ExpressionCompiler {
+  private ExpressionCompiler() {}
+
+  private static final Logger logger =
+    LoggerFactory.getLogger(ExpressionCompiler.class);
+
+  /**
+   * The number of times an expression is interpreted before it is
+   * compiled; a negative value disables compilation.
+   */
+  public static final int THRESHOLD =
+    Integer.getInteger("expressionCompileThreshold", 8); //$NON-NLS-1$
+
+  private static final AtomicLong compiled = new AtomicLong();
+  private static final AtomicLong rejected = new AtomicLong();
+
+  /** A compiled expression. */
+  public interface Evaluator {
+    /**
+     * @return the value of the expression, exactly as the interpreter
+     * would have computed it
+     */
+    Object evaluate(ExpressionTranslator.Context c) throws UtilEvalError;
+  }
+
+  /**
+   * Compile an expression.
+   *
+   * @param expression the expression, without braces
+   * @param variables the variables of the expression
+   * @return the compiled expression, or null if it must be interpreted
+   */
+  public static Evaluator compile(String expression, List<String> variables) {
+    final String body =
+      new ExpressionTranslator(expression, variables).translate();
+    if (body == null) {
+      rejected.incrementAndGet();
+      return null;
+    }
+
+    try {
+      final ClassBodyEvaluator cbe = new ClassBodyEvaluator();
+      cbe.setParentClassLoader(ExpressionCompiler.class.getClassLoader());
+      cbe.setImplementedInterfaces(new Class<?>[]{ Evaluator.class });
+      cbe.cook(body);
+      final Evaluator e = (Evaluator) cbe.getClazz().getDeclaredConstructor().newInstance();
+      compiled.incrementAndGet();
+      return e;
+    }
+    catch (CompileException | ReflectiveOperationException e) {
+      // Should not happen, but the interpreter can still cope
+      logger.warn("Failed to compile expression: " + expression, e);
+      rejected.incrementAndGet();
+      return null;
+    }
+  }
+
+  /** @return the number of expressions compiled */
+  public static long getCompiledCount() {
+    return compiled.get();
+  }
+
+  /** @return the number of expressions left to the interpreter */
+  public static long getRejectedCount() {
+    return rejected.get();
+  }
+}
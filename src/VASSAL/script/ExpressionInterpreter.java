@@ -24,8 +24,11 @@ import java.io.InputStreamReader;
 import java.io.IOException;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -40,7 +43,10 @@ import VASSAL.tools.WarningDialog;
 import VASSAL.tools.io.IOUtils;
 import bsh.BeanShellExpressionValidator;
 import bsh.EvalError;
+import bsh.ExpressionTranslator;
 import bsh.NameSpace;
+import bsh.Primitive;
+import bsh.UtilEvalError;
 
 /**
  *
@@ -82,6 +88,36 @@ public class ExpressionInterpreter extends AbstractInterpreter {
   protected PropertySource source;
   protected List<String> variables = new ArrayList<>();
 
+  /**
+   * Methods which depend on nothing but their arguments. An expression
+   * calling anything else cannot have its result reused.
+   * @see PropertyRecorder
+   */
+  protected static final Set<String> PURE_METHODS = new HashSet<>(Arrays.asList(
+    "If", "GetProperty", "GetLocalizedProperty",
+    "length", "isEmpty", "charAt", "contains", "startsWith", "endsWith",
+    "indexOf", "lastIndexOf", "substring", "toLowerCase", "toUpperCase",
+    "trim", "replace", "replaceAll", "matches", "equals",
+    "equalsIgnoreCase", "compareTo", "toString", "valueOf", "parseInt",
+    "abs", "min", "max", "floor", "ceil", "round", "sqrt", "pow"
+  ));
+
+  /** Classes whose static methods may be called by expressions */
+  protected static final Set<String> PURE_CLASSES = new HashSet<>(Arrays.asList(
+    "Math", "Integer", "String", "Float", "Double", "Boolean"
+  ));
+
+  /** Properties whose methods the expression calls, e.g., <code>Name.length()</code> */
+  protected List<String> receivers = new ArrayList<>();
+
+  /** True if the result depends only on the properties the expression reads */
+  protected boolean pure = true;
+
+  /** The compiled expression, if it could be compiled */
+  protected ExpressionCompiler.Evaluator compiled;
+  protected boolean compileTried = false;
+  protected int interpreted = 0;
+
   // Maintain a cache of all generated Interpreters. All Expressions
   // with the same Expression use the same Interpreter.
   protected static HashMap<String, ExpressionInterpreter> cache = new HashMap<>();
@@ -132,7 +168,21 @@ public class ExpressionInterpreter extends AbstractInterpreter {
     // Get a list of any variables used in the expression. These are
     // property names that will need to be evaluated at expression
     // evaluation time
-    variables = new BeanShellExpressionValidator(expression).getVariables();
+    final BeanShellExpressionValidator validator =
+      new BeanShellExpressionValidator(expression);
+    variables = validator.getVariables();
+    for (String m : validator.getMethods()) {
+      final int dot = m.lastIndexOf('.');
+      if (!PURE_METHODS.contains(m.substring(dot + 1))) {
+        pure = false;
+      }
+      if (dot > 0) {
+        final String receiver = m.substring(0, m.indexOf('.'));
+        if (!PURE_CLASSES.contains(receiver) && !receivers.contains(receiver)) {
+          receivers.add(receiver);
+        }
+      }
+    }
 
     // Build a method enclosing the expression. This saves the results
     // of the expression parsing, improving performance. Force return
@@ -215,38 +265,40 @@ public class ExpressionInterpreter extends AbstractInterpreter {
     // GamePiece supplied.
     source = ps == null ? GameModule.getGameModule() : ps;
 
+    // Once the expression has proved to be in use, try to compile it
+    if (!compileTried && ExpressionCompiler.THRESHOLD >= 0 &&
+        interpreted++ >= ExpressionCompiler.THRESHOLD) {
+      compileTried = true;
+      compiled = ExpressionCompiler.compile(expression, variables);
+    }
+
+    if (compiled != null) {
+      try {
+        final Object value = compiled.evaluate(new Bindings(localized));
+        if (value != Primitive.NULL) {
+          return value.toString();
+        }
+      }
+      catch (UtilEvalError | RuntimeException e) {
+        // Let the interpreter evaluate it, and report any error
+      }
+    }
+
     setNameSpace(expressionNameSpace);
 
     // Bind each undeclared variable with the value of the
     // corresponding Vassal property. Allow for old-style $variable$ references
     for (String var : variables) {
-      String name = var;
-      if (name.length() > 2 && name.startsWith("$") && name.endsWith("$")) {
-        name = name.substring(1, name.length()-1);
-      }
-      Object prop = localized ? source.getLocalizedProperty(name) : source.getProperty(name);
-      String value = prop == null ? "" : prop.toString();
-      if (value == null) {
-        setVar(var, "");
-      }
-      else if ("true".equals(value)) {
-        setVar(var, true);
-      }
-      else if ("false".equals(value)) {
-        setVar(var, false);
-      }
-      else {
-        try {
-          setVar(var, Integer.valueOf(value).intValue());
-        }
-        catch (NumberFormatException e) {
-          try {
-            setVar(var, Float.valueOf(value).floatValue());
-          }
-          catch (NumberFormatException e1) {
-            setVar(var, value);
-          }
-        }
+      setVar(var, bind(var, localized));
+    }
+
+    if (!pure) {
+      PropertyRecorder.recordUntracked();
+    }
+    else {
+      for (String name : receivers) {
+        PropertyRecorder.record(name, localized ?
+          source.getLocalizedProperty(name) : source.getProperty(name), localized);
       }
     }
 
@@ -275,6 +327,46 @@ public class ExpressionInterpreter extends AbstractInterpreter {
     return getExpression().length() == 0 ? "" : evaluate(GameModule.getGameModule());
   }
 
+  /**
+   * Get the value of the Vassal property matching a variable, converted
+   * as for binding to the variable.
+   *
+   * @param var the variable name
+   * @param localized true to get the localized value
+   * @return a boolean, int or float {@link Primitive}, or else a String
+   */
+  protected Object bind(String var, boolean localized) {
+    String name = var;
+    if (name.length() > 2 && name.startsWith("$") && name.endsWith("$")) {
+      name = name.substring(1, name.length()-1);
+    }
+    Object prop = localized ? source.getLocalizedProperty(name) : source.getProperty(name);
+    PropertyRecorder.record(name, prop, localized);
+    String value = prop == null ? "" : prop.toString();
+    if (value == null) {
+      return "";
+    }
+    else if ("true".equals(value)) {
+      return new Primitive(true);
+    }
+    else if ("false".equals(value)) {
+      return new Primitive(false);
+    }
+    else {
+      try {
+        return new Primitive(Integer.valueOf(value).intValue());
+      }
+      catch (NumberFormatException e) {
+        try {
+          return new Primitive(Float.valueOf(value).floatValue());
+        }
+        catch (NumberFormatException e1) {
+          return value;
+        }
+      }
+    }
+  }
+
   /**
    * Convert a String value into a wrapped primitive object if possible.
    * Note this is a non-static copy of BeanShell.wrap(). Callbacks from
@@ -309,11 +401,13 @@ public class ExpressionInterpreter extends AbstractInterpreter {
 
   public Object getProperty(String name) {
     final Object value = source.getProperty(name);
+    PropertyRecorder.record(name, value, false);
     return value == null ? "" : wrap(value.toString());
   }
 
   public Object getLocalizedProperty(String name) {
     final Object value = source.getLocalizedProperty(name);
+    PropertyRecorder.record(name, value, true);
     return value == null ? "" : wrap(value.toString());
   }
 
@@ -327,6 +421,7 @@ public class ExpressionInterpreter extends AbstractInterpreter {
    * @return total
    */
   public Object sumStack(String property, PropertySource ps) {
+    PropertyRecorder.recordUntracked();
     int result = 0;
     if (ps instanceof GamePiece) {
       Stack s = ((GamePiece) ps).getParent();
@@ -358,6 +453,7 @@ public class ExpressionInterpreter extends AbstractInterpreter {
    * @return total
    */
   public Object sumLocation(String property, PropertySource ps) {
+    PropertyRecorder.recordUntracked();
     int result = 0;
     if (ps instanceof GamePiece) {
       GamePiece p = (GamePiece) ps;
@@ -391,4 +487,67 @@ public class ExpressionInterpreter extends AbstractInterpreter {
     }
     return result;
   }
+
+  /**
+   * Binds the variables of a compiled expression as they are needed, in
+   * the same way as the interpreter binds them before evaluation, and
+   * provides the callbacks of init_expression.bsh.
+   */
+  protected class Bindings implements ExpressionTranslator.Context {
+    protected final boolean localized;
+    protected final Object[] values = new Object[variables.size()];
+
+    public Bindings(boolean localized) {
+      this.localized = localized;
+    }
+
+    @Override
+    public Object getVariable(int index) {
+      if (values[index] == null) {
+        values[index] = bind(variables.get(index), localized);
+      }
+      return values[index];
+    }
+
+    @Override
+    public Object getProperty(Object name) throws UtilEvalError {
+      return unwrap(ExpressionInterpreter.this.getProperty(name(name)));
+    }
+
+    @Override
+    public Object getLocalizedProperty(Object name) throws UtilEvalError {
+      return unwrap(ExpressionInterpreter.this.getLocalizedProperty(name(name)));
+    }
+
+    @Override
+    public Object sumStack(Object name) throws UtilEvalError {
+      return unwrap(ExpressionInterpreter.this.sumStack(name(name), source));
+    }
+
+    @Override
+    public Object sumLocation(Object name) throws UtilEvalError {
+      return unwrap(ExpressionInterpreter.this.sumLocation(name(name), source));
+    }
+
+    protected String name(Object name) throws UtilEvalError {
+      if (name instanceof String) {
+        return (String) name;
+      }
+      throw new UtilEvalError("Property name must be a String");
+    }
+
+    /** As unwrap() in init_expression.bsh */
+    protected Object unwrap(Object value) {
+      if (value instanceof Integer) {
+        return new Primitive(((Integer) value).intValue());
+      }
+      else if (value instanceof Float) {
+        return new Primitive(((Float) value).floatValue());
+      }
+      else if (value instanceof Boolean) {
+        return new Primitive(((Boolean) value).booleanValue());
+      }
+      return value;
+    }
+  }
 }
@@ -0,0 +1,148 @@
+/*
+ * $Id$
+ *
+ * Copyright (c) 2020 by Joel Uckelman
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+package VASSAL.script;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+import VASSAL.build.module.properties.PropertySource;
+
+/**
+ * Records the properties read, and the values seen, while evaluating an
+ * expression, so that the result may be reused for as long as those
+ * properties keep the same values.
+ *
+ * Recorders nest: an expression which reads a property computed by
+ * another expression records only that property, not what the other
+ * expression read. Each thread has its own stack of recorders.
+ *
+ * @author Joel Uckelman
+ * @since 3.3.1
+ */
+public class PropertyRecorder {
+  private static final ThreadLocal<PropertyRecorder> current =
+    new ThreadLocal<>();
+
+  protected final PropertyRecorder previous;
+
+  protected final List<String> names = new ArrayList<>();
+  protected final List<String> values = new ArrayList<>();
+  protected final List<Boolean> localized = new ArrayList<>();
+  protected boolean untracked = false;
+
+  protected PropertyRecorder(PropertyRecorder previous) {
+    this.previous = previous;
+  }
+
+  /**
+   * Start recording on this thread. Each call must be paired with a call
+   * to {@link #stop} on the returned recorder.
+   */
+  public static PropertyRecorder start() {
+    final PropertyRecorder r = new PropertyRecorder(current.get());
+    current.set(r);
+    return r;
+  }
+
+  /** Stop recording, resuming the recorder interrupted by this one */
+  public void stop() {
+    current.set(previous);
+  }
+
+  /**
+   * Note that a property was read.
+   *
+   * @param name the property name
+   * @param value the value read
+   * @param loc true if the localized value was read
+   */
+  public static void record(String name, Object value, boolean loc) {
+    final PropertyRecorder r = current.get();
+    if (r != null) {
+      r.names.add(name);
+      r.values.add(normalize(value));
+      r.localized.add(loc);
+    }
+  }
+
+  /**
+   * Note that the result depends on something other than the properties
+   * of the source, e.g., other pieces, or chance.
+   */
+  public static void recordUntracked() {
+    final PropertyRecorder r = current.get();
+    if (r != null) {
+      r.untracked = true;
+    }
+  }
+
+  /** @return true if the result depends only on the recorded properties */
+  public boolean isTracked() {
+    return !untracked;
+  }
+
+  /**
+   * @return the properties read, which remain valid while
+   * {@link Snapshot#isCurrent} holds
+   */
+  public Snapshot getSnapshot() {
+    return new Snapshot(
+      names.toArray(new String[0]),
+      values.toArray(new String[0]),
+      localized.toArray(new Boolean[0])
+    );
+  }
+
+  protected static String normalize(Object value) {
+    return value == null ? "" : value.toString();
+  }
+
+  /** The recorded properties of an evaluation. */
+  public static class Snapshot {
+    protected final String[] names;
+    protected final String[] values;
+    protected final Boolean[] localized;
+
+    protected Snapshot(String[] names, String[] values, Boolean[] localized) {
+      this.names = names;
+      this.values = values;
+      this.localized = localized;
+    }
+
+    /**
+     * @return true if every recorded property still has the value it had
+     * when recorded
+     */
+    public boolean isCurrent(PropertySource ps) {
+      for (int i = 0; i < names.length; ++i) {
+        final Object v = localized[i] ? ps.getLocalizedProperty(names[i])
+                                      : ps.getProperty(names[i]);
+        if (!Objects.equals(values[i], normalize(v))) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    public int size() {
+      return names.length;
+    }
+  }
+}
@@ -19,8 +19,10 @@
 package VASSAL.script.expression;
 
 import java.util.Map;
+import java.util.Set;
 
 import VASSAL.build.BadDataReport;
+import VASSAL.build.module.PropertyIndex;
 import VASSAL.build.module.properties.PropertySource;
 import VASSAL.counters.GamePiece;
 import VASSAL.counters.PieceFilter;
@@ -28,6 +30,7 @@ import VASSAL.i18n.Resources;
 import VASSAL.script.ExpressionInterpreter;
 import VASSAL.tools.ErrorDialog;
 import VASSAL.tools.FormattedString;
+import bsh.ExpressionAnalyzer;
 
 /**
  * A basic beanShell expression
@@ -35,6 +38,7 @@ import VASSAL.tools.FormattedString;
 public class BeanShellExpression extends Expression {
 
   protected ExpressionInterpreter interpreter;
+  protected Map<String, String> requiredValues;
 
   public BeanShellExpression (String s) {
     setExpression("{" + s + "}");
@@ -102,9 +106,33 @@ public class BeanShellExpression extends Expression {
         }
         return "true".equals(result);
       }
+
+      @Override
+      public Set<GamePiece> getCandidates(PropertyIndex index) {
+        // Any property required to have a value gives a set of candidates
+        Set<GamePiece> candidates = null;
+        for (Map.Entry<String, String> e : getRequiredValues().entrySet()) {
+          final Set<GamePiece> c = index.getPieces(e.getKey(), e.getValue());
+          if (c != null && (candidates == null || c.size() < candidates.size())) {
+            candidates = c;
+          }
+        }
+        return candidates;
+      }
     };
   }
 
+  /**
+   * @return the property values this expression requires to be true
+   * @see ExpressionAnalyzer#getRequiredValues
+   */
+  protected Map<String, String> getRequiredValues() {
+    if (requiredValues == null) {
+      requiredValues = ExpressionAnalyzer.getRequiredValues(strip(getExpression()));
+    }
+    return requiredValues;
+  }
+
   /**
    * Convert a Property name to it's BeanShell equivalent.
    *
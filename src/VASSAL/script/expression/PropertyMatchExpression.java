@@ -31,6 +31,7 @@ import VASSAL.tools.FormattedString;
 public class PropertyMatchExpression extends Expression {
 
   protected PieceFilter filter;
+  protected String filterText;
 
   public PropertyMatchExpression (String s) {
     setExpression(s);
@@ -45,7 +46,12 @@ public class PropertyMatchExpression extends Expression {
   @Override
   public PieceFilter getFilter(PropertySource ps) {
     if (filter == null || isDynamic()) {
-      filter = PropertiesPieceFilter.parse(new FormattedString(getExpression()).getText(ps));
+      // Reparse only if the $...$ references give a different filter
+      final String text = new FormattedString(getExpression()).getText(ps);
+      if (filter == null || !text.equals(filterText)) {
+        filter = PropertiesPieceFilter.parse(text);
+        filterText = text;
+      }
     }
     return filter;
   }
@@ -37,13 +37,15 @@ public class NamedKeyManager {
   protected static final int NAMED_END = '\uF8FE';
   protected static final int NAMED_MARKER = '\uF8FF';
 
+  // Pieces may be built on several threads at once, so both of these are
+  // guarded by the class lock.
   protected static int nextNamedKey = NAMED_START;
   protected static HashMap<String, KeyStroke> strokes = new HashMap<>();
 
   public NamedKeyManager() {
   }
 
-  public static NamedKeyManager getInstance() {
+  public static synchronized NamedKeyManager getInstance() {
     if (instance == null) {
       instance = new NamedKeyManager();
     }
@@ -85,13 +87,14 @@ public class NamedKeyManager {
 
     // Look up the name in the cache and allocate the next
     // available KeyStroke if required.
-    KeyStroke stroke = strokes.get(vkey.getName());
-    if (stroke == null) {
-      stroke = KeyStroke.getKeyStroke(getNextStroke(), 0);
-      strokes.put(vkey.getName(), stroke);
+    synchronized (NamedKeyManager.class) {
+      KeyStroke stroke = strokes.get(vkey.getName());
+      if (stroke == null) {
+        stroke = KeyStroke.getKeyStroke(getNextStroke(), 0);
+        strokes.put(vkey.getName(), stroke);
+      }
+      return stroke;
     }
-
-    return stroke;
   }
 
   /**
@@ -99,10 +102,12 @@ public class NamedKeyManager {
    * @return KeyStroke Id
    */
   public int getNextStroke() {
-    if (nextNamedKey == NAMED_END) {
-      throw new IllegalStateException("Too many Named Keys");
+    synchronized (NamedKeyManager.class) {
+      if (nextNamedKey == NAMED_END) {
+        throw new IllegalStateException("Too many Named Keys");
+      }
+      return nextNamedKey++;
     }
-    return nextNamedKey++;
   }
 
 }
\ No newline at end of file
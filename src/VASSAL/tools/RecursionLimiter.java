@@ -25,18 +25,20 @@ package VASSAL.tools;
  */
 public class RecursionLimiter {
   protected static final int RECURSION_LIMIT = 50;
-  protected static int recursionDepth = 0;
+  // pieces may be built on several threads at once, so each counts its own
+  protected static final ThreadLocal<int[]> recursionDepth =
+    ThreadLocal.withInitial(() -> new int[1]);
   protected static boolean reporting = false;
 
   public static void startExecution(Loopable looper)
                                               throws RecursionLimitException {
-    if (++recursionDepth > RECURSION_LIMIT) {
+    if (++recursionDepth.get()[0] > RECURSION_LIMIT) {
       throw new RecursionLimitException(looper);
     }
   }
 
   public static void endExecution() {
-    --recursionDepth;
+    --recursionDepth.get()[0];
   }
 
   /**
@@ -150,12 +150,27 @@ public class SequenceEncoder {
     buffer.append(s.substring(begin));
   }
 
+  /**
+   * Decodes a sequence encoded by {@link SequenceEncoder}.
+   *
+   * The decoder scans its string in place, keeping the position of the
+   * next token rather than a copy of what remains. A token without escaped
+   * delimiters or enclosing quotes is returned as a single substring, and
+   * the typed methods such as {@link #nextInt} parse such a token where it
+   * lies, without making a <code>String</code> of it.
+   */
   public static class Decoder implements Iterator<String> {
     private String val;
+    private int pos;
     private final char delimit;
 
     public Decoder(String value, char delimiter) {
+      this(value, 0, delimiter);
+    }
+
+    private Decoder(String value, int start, char delimiter) {
       val = value;
+      pos = start;
       delimit = delimiter;
     }
 
@@ -163,23 +178,64 @@ public class SequenceEncoder {
       return val != null;
     }
 
+    /**
+     * @return the end of the next token, if it has neither escaped
+     * delimiters nor enclosing quotes, otherwise -1
+     */
+    private int plainTokenEnd() {
+      int end = val.indexOf(delimit, pos);
+      if (end < 0) {
+        end = val.length();
+      }
+      else if (end > pos && val.charAt(end - 1) == '\\') {
+        return -1;
+      }
+
+      if (end - pos > 1 &&
+          val.charAt(pos) == '\'' && val.charAt(end - 1) == '\'') {
+        return -1;
+      }
+
+      return end;
+    }
+
+    /**
+     * Move past the token ending at <code>end</code>.
+     */
+    private void skipTo(int end) {
+      if (end >= val.length()) {
+        val = null;
+      }
+      else {
+        // skip the delimiter; if it was the last character, an empty
+        // token follows
+        pos = end + 1;
+      }
+    }
+
     public String nextToken() {
       if (!hasMoreTokens()) throw new NoSuchElementException();
 
       String value;
 
-      final int i = val.indexOf(delimit);
-      if (i < 0) {
-        value = val;
+      final int i = plainTokenEnd();
+      if (i >= 0) {
+        value = val.substring(pos, i);
+        skipTo(i);
+        return value;
+      }
+
+      int end = val.indexOf(delimit, pos);
+      if (end < 0) {
+        value = val.substring(pos);
         val = null;
       }
       else {
         final StringBuilder buffer = new StringBuilder();
-        int begin = 0;
-        int end = i;
+        int begin = pos;
         while (begin < end) {
           if (val.charAt(end - 1) == '\\') {
-            buffer.append(val.substring(begin, end - 1));
+            buffer.append(val, begin, end - 1);
             begin = end;
             end = val.indexOf(delimit, end + 1);
           }
@@ -189,12 +245,12 @@ public class SequenceEncoder {
         }
 
         if (end < 0) {
-          buffer.append(val.substring(begin));
+          buffer.append(val, begin, val.length());
           val = null;
         }
         else {
-          buffer.append(val.substring(begin, end));
-          val = end >= val.length() - 1 ? "" : val.substring(end + 1);
+          buffer.append(val, begin, end);
+          skipTo(end);
         }
 
         value = buffer.toString();
@@ -223,7 +279,7 @@ public class SequenceEncoder {
     }
 
     public Decoder copy() {
-      return new Decoder(val, delimit);
+      return new Decoder(val, pos, delimit);
     }
 
     /**
@@ -233,8 +289,17 @@ public class SequenceEncoder {
      */
     public int nextInt(int defaultValue) {
       if (val != null) {
+        final String s = val;
+        final int begin = pos;
+        final int end = plainTokenEnd();
         try {
-          defaultValue = Integer.parseInt(nextToken());
+          if (end >= 0) {
+            skipTo(end);
+            defaultValue = Integer.parseInt(s, begin, end, 10);
+          }
+          else {
+            defaultValue = Integer.parseInt(nextToken());
+          }
         }
         catch (NumberFormatException e) {
         }
@@ -244,8 +309,17 @@ public class SequenceEncoder {
 
     public long nextLong(long defaultValue) {
       if (val != null) {
+        final String s = val;
+        final int begin = pos;
+        final int end = plainTokenEnd();
         try {
-          defaultValue = Long.parseLong(nextToken());
+          if (end >= 0) {
+            skipTo(end);
+            defaultValue = Long.parseLong(s, begin, end, 10);
+          }
+          else {
+            defaultValue = Long.parseLong(nextToken());
+          }
         }
         catch (NumberFormatException e) {
         }
@@ -265,7 +339,18 @@ public class SequenceEncoder {
     }
 
     public boolean nextBoolean(boolean defaultValue) {
-      return val != null ? "true".equals(nextToken()) : defaultValue;
+      if (val == null) {
+        return defaultValue;
+      }
+
+      final String s = val;
+      final int begin = pos;
+      final int end = plainTokenEnd();
+      if (end >= 0) {
+        skipTo(end);
+        return end - begin == 4 && s.startsWith("true", begin);
+      }
+      return "true".equals(nextToken());
     }
 
     /**
@@ -275,8 +360,17 @@ public class SequenceEncoder {
      */
     public char nextChar(char defaultValue) {
       if (val != null) {
-        final String s = nextToken();
-        defaultValue = s.length() > 0 ? s.charAt(0) : defaultValue;
+        final String s = val;
+        final int begin = pos;
+        final int end = plainTokenEnd();
+        if (end >= 0) {
+          skipTo(end);
+          defaultValue = end > begin ? s.charAt(begin) : defaultValue;
+        }
+        else {
+          final String t = nextToken();
+          defaultValue = t.length() > 0 ? t.charAt(0) : defaultValue;
+        }
       }
       return defaultValue;
     }
@@ -288,6 +382,11 @@ public class SequenceEncoder {
 
     public Color nextColor(Color defaultValue) {
       if (val != null) {
+        final Color c = nextPlainColor();
+        if (c != null) {
+          return c;
+        }
+
         final String s = nextToken();
         if (s.length() > 0) {
           defaultValue = ColorConfigurer.stringToColor(s);
@@ -299,6 +398,65 @@ public class SequenceEncoder {
       return defaultValue;
     }
 
+    /**
+     * Parse the next token in place if it is a plain <code>r,g,b</code>
+     * color, as written by {@link ColorConfigurer#colorToString}.
+     *
+     * @return the color, or null without consuming the token if it is
+     * in any other form
+     */
+    private Color nextPlainColor() {
+      final int end = plainTokenEnd();
+      if (end < 0) {
+        return null;
+      }
+
+      final int c1 = val.indexOf(',', pos);
+      if (c1 < 0 || c1 >= end) {
+        return null;
+      }
+
+      final int c2 = val.indexOf(',', c1 + 1);
+      if (c2 < 0 || c2 >= end) {
+        return null;
+      }
+
+      final int c3 = val.indexOf(',', c2 + 1);
+      if (c3 >= 0 && c3 < end) {
+        return null;
+      }
+
+      final int r = parseComponent(pos, c1);
+      final int g = parseComponent(c1 + 1, c2);
+      final int b = parseComponent(c2 + 1, end);
+      if (r < 0 || g < 0 || b < 0) {
+        return null;
+      }
+
+      skipTo(end);
+      return new Color(r, g, b);
+    }
+
+    /**
+     * @return the color component of decimal digits from
+     * <code>begin</code> to <code>end</code>, or -1 if it is not one
+     */
+    private int parseComponent(int begin, int end) {
+      if (begin == end || end - begin > 3) {
+        return -1;
+      }
+
+      int n = 0;
+      for (int i = begin; i < end; ++i) {
+        final char c = val.charAt(i);
+        if (c < '0' || c > '9') {
+          return -1;
+        }
+        n = 10*n + (c - '0');
+      }
+      return n > 255 ? -1 : n;
+    }
+
     public KeyStroke nextKeyStroke(KeyStroke defaultValue) {
       if (val != null) {
         final String s = nextToken();
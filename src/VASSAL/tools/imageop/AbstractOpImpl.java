@@ -65,6 +65,11 @@ public abstract class AbstractOpImpl
     cache.clear();
   }
 
+  /** @return the cache shared by all <code>ImageOp</code>s */
+  public static OpCache getCache() {
+    return cache;
+  }
+
   public AbstractOpImpl() {
     super(cache);
   }
@@ -46,6 +46,9 @@ public class GamePieceOpImpl extends AbstractTileOpImpl implements GamePieceOp {
   private final String state;
   private final int hash;
 
+  /** The modification stamp of the piece when its state was last seen */
+  private long stamp;
+
   /**
    * Constructs an <code>ImageOp</code> which will produce an image
    * from the given <code>GamePiece</code>.
@@ -56,6 +59,7 @@ public class GamePieceOpImpl extends AbstractTileOpImpl implements GamePieceOp {
   public GamePieceOpImpl(GamePiece gp) {
     if (gp == null) throw new IllegalArgumentException();
     piece = gp;
+    stamp = piece.getModificationStamp();
     state = String.valueOf(piece.getProperty(Properties.VISIBLE_STATE));
     hash = piece.hashCode();
   }
@@ -123,13 +127,25 @@ public class GamePieceOpImpl extends AbstractTileOpImpl implements GamePieceOp {
 
   /**
    * Returns <code>true</code> iff the source <code>GamePiece</code>
-   * has changed state.
+   * has changed state. The visible state of the piece is compared only
+   * if its modification stamp has changed or it has none.
    *
    * @return <code>true</code> iff the source has changed.
    */
   @Override
   public boolean isChanged() {
-    return !state.equals(piece.getProperty(Properties.VISIBLE_STATE));
+    final long s = piece.getModificationStamp();
+    if (s >= 0 && s == stamp) {
+      return false;
+    }
+
+    if (!state.equals(piece.getProperty(Properties.VISIBLE_STATE))) {
+      return true;
+    }
+
+    // unchanged after all, so the new stamp will do for next time
+    stamp = s;
+    return false;
   }
 
   /** {@inheritDoc} */
@@ -27,6 +27,7 @@ import VASSAL.tools.ErrorDialog;
 import VASSAL.tools.image.ImageIOException;
 import VASSAL.tools.image.ImageNotFoundException;
 import VASSAL.tools.image.UnrecognizedImageTypeException;
+import VASSAL.tools.opcache.OpCache;
 import VASSAL.tools.opcache.OpFailedException;
 
 public class Op {
@@ -109,6 +110,10 @@ public class Op {
     AbstractOpImpl.clearCache();
   }
 
+  public static OpCache getCache() {
+    return AbstractOpImpl.getCache();
+  }
+
   public static boolean handleException(Exception e) {
     for (Throwable c = e; c != null; c = c.getCause()) {
       if (c instanceof OpFailedException) {
@@ -0,0 +1,154 @@
+/*
+ * $Id$
+ *
+ * Copyright (c) 2020 by Joel Uckelman
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+package VASSAL.tools.imageop;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+
+import VASSAL.tools.opcache.OpCache;
+
+/**
+ * Queues low-priority requests for tiles which are likely to be wanted
+ * soon: those just beyond the visible region in the direction it is
+ * moving, and those covering the visible region at other scales.
+ *
+ * Prefetched tiles go into the ordinary {@link OpCache}, so a later
+ * request for one of them either finds it done or promotes it ahead of
+ * the remaining prefetches. The cache counts prefetch hits, so the ring
+ * size can be tuned by watching {@link OpCache#getPrefetchHitCount}.
+ *
+ * @author Joel Uckelman
+ * @since 3.3.1
+ */
+public class TilePrefetcher {
+  /**
+   * The default number of tiles to prefetch beyond each edge of the
+   * visible region. Set with <code>-DtilePrefetchRing=n</code>; 0 turns
+   * prefetching off.
+   */
+  public static final int DEFAULT_RING =
+    Integer.getInteger("tilePrefetchRing", 1); //$NON-NLS-1$
+
+  protected final OpCache cache;
+  protected int ring;
+
+  /** The last region seen, used to find the direction of motion */
+  protected Rectangle last;
+  protected ImageOp lastOp;
+
+  public TilePrefetcher() {
+    this(Op.getCache(), DEFAULT_RING);
+  }
+
+  public TilePrefetcher(OpCache cache, int ring) {
+    if (cache == null) throw new IllegalArgumentException();
+    if (ring < 0) throw new IllegalArgumentException("ring = " + ring);
+
+    this.cache = cache;
+    this.ring = ring;
+  }
+
+  public int getRing() {
+    return ring;
+  }
+
+  public void setRing(int ring) {
+    if (ring < 0) throw new IllegalArgumentException("ring = " + ring);
+    this.ring = ring;
+  }
+
+  /**
+   * Prefetch the ring of tiles around the visible region of an
+   * <code>ImageOp</code>. If the region has moved since the last call
+   * with the same <code>op</code>, only tiles on the sides toward which
+   * it moved are prefetched.
+   *
+   * @param op the op whose tiles are visible
+   * @param visible the visible region, in the coordinates of
+   * <code>op</code>
+   */
+  public void prefetchAround(ImageOp op, Rectangle visible) {
+    if (ring == 0 || visible.isEmpty()) {
+      return;
+    }
+
+    int dx = 0;
+    int dy = 0;
+    if (op == lastOp && last != null) {
+      dx = Integer.signum(visible.x - last.x);
+      dy = Integer.signum(visible.y - last.y);
+    }
+
+    lastOp = op;
+    last = new Rectangle(visible);
+
+    final int rw = ring * op.getTileWidth();
+    final int rh = ring * op.getTileHeight();
+
+    final Rectangle r = new Rectangle(visible);
+    if (dx == 0 && dy == 0) {
+      // not moving, or we do not know which way: all around
+      r.grow(rw, rh);
+    }
+    else {
+      if (dx < 0) { r.x -= rw; r.width += rw; }
+      else if (dx > 0) { r.width += rw; }
+
+      if (dy < 0) { r.y -= rh; r.height += rh; }
+      else if (dy > 0) { r.height += rh; }
+    }
+
+    prefetch(op, r, visible);
+  }
+
+  /**
+   * Prefetch the tiles of an <code>ImageOp</code> which cover a region.
+   *
+   * @param op the op
+   * @param r the region, in the coordinates of <code>op</code>
+   */
+  public void prefetchRegion(ImageOp op, Rectangle r) {
+    prefetch(op, r, null);
+  }
+
+  /*
+   * Prefetch the tiles of op in r, except for those in skip, which the
+   * caller has requested already.
+   */
+  protected void prefetch(ImageOp op, Rectangle r, Rectangle skip) {
+    final Point[] tiles = op.getTileIndices(r);
+    if (tiles.length == 0) {
+      return;
+    }
+
+    final int tw = op.getTileWidth();
+    final int th = op.getTileHeight();
+    final Rectangle t = new Rectangle(0, 0, tw, th);
+
+    for (Point tile : tiles) {
+      if (skip != null) {
+        t.setLocation(tile.x * tw, tile.y * th);
+        if (t.intersects(skip)) {
+          continue;
+        }
+      }
+      cache.prefetch(op.getTileOp(tile).newKey());
+    }
+  }
+}
@@ -24,6 +24,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.PushbackInputStream;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 
 /**
  * A {@link FilterInputStream} which converts a file created with
@@ -77,10 +78,27 @@ public class DeobfuscatingInputStream extends FilterInputStream {
     return n;
   }
 
+  // the value of each hex digit, or -1 for other bytes
+  private static final byte[] unhex = new byte[256];
+
+  static {
+    Arrays.fill(unhex, (byte) -1);
+    for (int i = 0; i < 10; ++i) {
+      unhex['0' + i] = (byte) i;
+    }
+    for (int i = 0; i < 6; ++i) {
+      unhex['A' + i] = (byte) (10 + i);
+      unhex['a' + i] = (byte) (10 + i);
+    }
+  }
+
   private static class DeobfuscatingInputStreamImpl extends FilterInputStream {
     private final byte key;
     private final byte[] pair = new byte[2];
 
+    // hex digits read but not yet decoded
+    private final byte[] buf = new byte[8192];
+
     public DeobfuscatingInputStreamImpl(InputStream in) throws IOException {
       super(in);
 
@@ -90,10 +108,34 @@ public class DeobfuscatingInputStream extends FilterInputStream {
 
     @Override
     public int read(byte[] bytes, int off, int len) throws IOException {
-      int b = 0;
-      int i = 0;
-      while (i < len && (b = read()) >= 0) bytes[(i++)+off] = (byte) b;
-      return b == -1 && i == 0 ? -1 : i;
+      if ((off | len | (off + len) | (bytes.length - (off + len))) < 0) {
+        throw new IndexOutOfBoundsException();
+      }
+
+      if (len == 0) {
+        return 0;
+      }
+
+      // read as many digits as are available, up to two per byte wanted
+      int n = in.read(buf, 0, Math.min(len, buf.length >>> 1) << 1);
+      if (n < 0) {
+        return -1;
+      }
+
+      // a byte must not be split between reads
+      if ((n & 1) == 1) {
+        if (readFully(in, buf, n, 1) != 1) {
+          throw new IOException();
+        }
+        ++n;
+      }
+
+      for (int i = 0; i < n; i += 2) {
+        bytes[off++] =
+          (byte) (((unhex(buf[i]) << 4) | unhex(buf[i + 1])) ^ key);
+      }
+
+      return n >>> 1;
     }
 
     @Override
@@ -111,38 +153,11 @@ public class DeobfuscatingInputStream extends FilterInputStream {
     }
 
     private int unhex(int i) throws IOException {
-      switch (i) {
-      // digits 0-9
-      case 0x30:
-      case 0x31:
-      case 0x32:
-      case 0x33:
-      case 0x34:
-      case 0x35:
-      case 0x36:
-      case 0x37:
-      case 0x38:
-      case 0x39:
-        return i - 0x30;
-      // digits A-F
-      case 0x41:
-      case 0x42:
-      case 0x43:
-      case 0x44:
-      case 0x45:
-      case 0x46:
-        return i - 0x37;
-      // digits a-f
-      case 0x61:
-      case 0x62:
-      case 0x63:
-      case 0x64:
-      case 0x65:
-      case 0x66:
-        return i - 0x57;
-      default:
+      final int v = unhex[i & 0xFF];
+      if (v < 0) {
         throw new IOException(String.valueOf(i));
       }
+      return v;
     }
   }
 
@@ -39,7 +39,10 @@ public class ObfuscatingOutputStream extends FilterOutputStream {
   private static final Random rand = new Random();
 
   private final byte key;
-  private final byte[] pair = new byte[2];
+
+  // encoded bytes waiting to be written
+  private final byte[] buf = new byte[8192];
+  private int count = 0;
 
   /**
    * @param out the stream to wrap
@@ -61,15 +64,8 @@ public class ObfuscatingOutputStream extends FilterOutputStream {
 
     out.write(HEADER.getBytes(StandardCharsets.UTF_8));
 
-    pair[0] = hex[(key & 0xF0) >>> 4];
-    pair[1] = hex[key & 0x0F];
-    out.write(pair);
-  }
-
-  /** {@inheritDoc} */
-  @Override
-  public void write(byte[] bytes, int off, int len) throws IOException {
-    for (int i = 0; i < len; ++i) write(bytes[off+i]);
+    final int i = (key & 0xFF) << 1;
+    out.write(hexPairs, i, 2);
   }
 
   private final static byte[] hex = {
@@ -77,14 +73,63 @@ public class ObfuscatingOutputStream extends FilterOutputStream {
     '8', '9', 'a', 'b', 'c', 'd', 'e', 'f'
   };
 
+  // the two hex digits of each byte value, at twice its value
+  private static final byte[] hexPairs = new byte[512];
+
+  static {
+    for (int b = 0; b < 256; ++b) {
+      hexPairs[b << 1] = hex[b >>> 4];
+      hexPairs[(b << 1) + 1] = hex[b & 0x0F];
+    }
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void write(byte[] bytes, int off, int len) throws IOException {
+    if ((off | len | (off + len) | (bytes.length - (off + len))) < 0) {
+      throw new IndexOutOfBoundsException();
+    }
+
+    final int end = off + len;
+    while (off < end) {
+      if (count == buf.length) {
+        flushBuffer();
+      }
+
+      final int n = Math.min(end - off, (buf.length - count) >>> 1);
+      for (int i = off; i < off + n; ++i) {
+        final int j = ((bytes[i] ^ key) & 0xFF) << 1;
+        buf[count++] = hexPairs[j];
+        buf[count++] = hexPairs[j + 1];
+      }
+      off += n;
+    }
+  }
+
   /** {@inheritDoc} */
   @Override
   public void write(int b) throws IOException {
-    b ^= key;
+    if (count == buf.length) {
+      flushBuffer();
+    }
 
-    pair[0] = hex[(b & 0xF0) >>> 4];
-    pair[1] = hex[b & 0x0F];
-    out.write(pair);
+    final int j = ((b ^ key) & 0xFF) << 1;
+    buf[count++] = hexPairs[j];
+    buf[count++] = hexPairs[j + 1];
+  }
+
+  private void flushBuffer() throws IOException {
+    if (count > 0) {
+      out.write(buf, 0, count);
+      count = 0;
+    }
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void flush() throws IOException {
+    flushBuffer();
+    out.flush();
   }
 
   public static void main(String[] args) throws IOException {
@@ -20,17 +20,20 @@
 package VASSAL.tools.opcache;
 
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.PriorityBlockingQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.swing.SwingWorker;
 
@@ -40,6 +43,11 @@ import VASSAL.tools.concurrent.ConcurrentSoftHashMap;
 /**
  * A memory-sensitive cache for {@link Op}s and their results.
  *
+ * <p>Asynchronous requests are run by a small thread pool. Requests made
+ * by {@link #prefetch} are run only when no ordinary requests are
+ * waiting, and are promoted if an ordinary request for the same
+ * {@link Key} arrives while they are still queued.</p>
+ *
  * @since 3.1.0
  * @author Joel Uckelman
  */
@@ -184,19 +192,60 @@ public class OpCache {
     }
   };
 
+  /** Queued requests are run in order of priority, then of arrival. */
+  private static final int NORMAL = 0;
+  private static final int PREFETCH = 1;
+
+  private static final AtomicLong sequence = new AtomicLong();
+
   /**
    * A request for execution of an {@link Op}, to be queued.
    */
   private class Request<V> extends SwingWorker<V,Void> {
     private final Key<V> key;
-    private final OpObserver<V> obs;
+    private final List<OpObserver<V>> observers = new ArrayList<>(1);
+    private boolean notified = false;
+
+    // these are changed only while the request is out of the queue
+    private volatile int priority;
+    private volatile long seq;
+
+    private final boolean prefetched;
 
     public Request(Key<V> key, OpObserver<V> obs) {
       if (key == null) throw new IllegalArgumentException();
       if (obs == null) throw new IllegalArgumentException();
 
       this.key = key;
-      this.obs = obs;
+      observers.add(obs);
+      priority = NORMAL;
+      seq = sequence.getAndIncrement();
+      prefetched = false;
+    }
+
+    /** Creates a prefetch request, which has no observer. */
+    public Request(Key<V> key) {
+      if (key == null) throw new IllegalArgumentException();
+
+      this.key = key;
+      priority = PREFETCH;
+      seq = sequence.getAndIncrement();
+      prefetched = true;
+    }
+
+    /**
+     * @return false if observers have already been notified, in which
+     * case this request is done
+     */
+    public synchronized boolean addObserver(OpObserver<V> obs) {
+      if (notified) return false;
+      observers.add(obs);
+      return true;
+    }
+
+    private synchronized List<OpObserver<V>> takeObservers() {
+      notified = true;
+      return observers;
     }
 
     @Override
@@ -206,25 +255,40 @@ public class OpCache {
 
     @Override
     protected void done() {
+      final List<OpObserver<V>> obs = takeObservers();
       try {
         final V val = get();
-        if (obs != null) obs.succeeded(key.op, val);
+        for (OpObserver<V> o : obs) o.succeeded(key.op, val);
       }
       catch (CancellationException e) {
         cache.remove(key, this);
-        if (obs != null) obs.cancelled(key.op, e);
+        for (OpObserver<V> o : obs) o.cancelled(key.op, e);
       }
       catch (InterruptedException e) {
         cache.remove(key, this);
-        if (obs != null) obs.interrupted(key.op, e);
+        for (OpObserver<V> o : obs) o.interrupted(key.op, e);
       }
       catch (ExecutionException e) {
         cache.replace(key, this, failure);
-        if (obs != null) obs.failed(key.op, e);
+        for (OpObserver<V> o : obs) o.failed(key.op, e);
       }
     }
   }
 
+  private static final Comparator<Runnable> requestOrdering =
+    new Comparator<>() {
+      @Override
+      public int compare(Runnable a, Runnable b) {
+        final int pa = a instanceof Request ? ((Request<?>) a).priority : NORMAL;
+        final int pb = b instanceof Request ? ((Request<?>) b).priority : NORMAL;
+        if (pa != pb) return pa - pb;
+
+        final long sa = a instanceof Request ? ((Request<?>) a).seq : 0;
+        final long sb = b instanceof Request ? ((Request<?>) b).seq : 0;
+        return Long.compare(sa, sb);
+      }
+    };
+
   /**
    * Gets a value from the cache.
    *
@@ -307,6 +371,7 @@ public class OpCache {
 
     Future<V> fut = (Future<V>) cache.get(key);
     if (fut == null) {
+      misses.incrementAndGet();
       if (obs == null) {
         // check whether any other op has beat us into the cache
         final Result<V> res = new Result<>();
@@ -340,9 +405,48 @@ public class OpCache {
       }
     }
     else {
+      if (fut.isDone()) {
+        hits.incrementAndGet();
+      }
+      else {
+        pending.incrementAndGet();
+      }
+
+      if (fut instanceof Request && ((Request<V>) fut).prefetched) {
+        final Request<V> req = (Request<V>) fut;
+        if (req.isDone()) {
+          prefetchHits.incrementAndGet();
+        }
+        else if (obs != null) {
+          // A prefetch is wanted now: run it ahead of other prefetches,
+          // and tell the observer when it is done.
+          if (!req.addObserver(obs)) {
+            // too late, it finished while we were looking
+            prefetchHits.incrementAndGet();
+          }
+          else if (req.priority == PREFETCH) {
+            prefetchesPromoted.incrementAndGet();
+            if (requestQueue.remove(req)) {
+              prefetchQueue.remove(req);
+              req.priority = NORMAL;
+              req.seq = sequence.getAndIncrement();
+              threadPool.execute(req);
+            }
+            else {
+              // already running
+              req.priority = NORMAL;
+            }
+          }
+        }
+      }
+      else if (obs != null && fut instanceof Request && !fut.isDone()) {
+        ((Request<V>) fut).addObserver(obs);
+      }
+
       // Are we a synchronous request in the queue being re-requested?
       if (obs == null && fut instanceof Runnable) {
         if (requestQueue.remove(fut)) {
+          prefetchQueue.remove(fut);
           // Then run on this thread to prevent deadlock.
           ((Runnable) fut).run();
         }
@@ -352,10 +456,100 @@ public class OpCache {
     return fut;
   }
 
+  /** The maximum number of prefetch requests waiting to be run. */
+  public static final int MAX_QUEUED_PREFETCHES = 512;
+
+  private final ConcurrentLinkedQueue<Request<?>> prefetchQueue =
+    new ConcurrentLinkedQueue<>();
+
+  /**
+   * Requests that a value be computed in the background, if it is not
+   * in the cache already. Prefetch requests run only when no other
+   * requests are waiting. If too many prefetch requests are waiting,
+   * the oldest are dropped.
+   *
+   * @param key the <code>Key</code> for which to compute a value
+   */
+  public <V> void prefetch(Key<V> key) {
+    if (cache.containsKey(key)) return;
+
+    final Request<V> req = new Request<>(key);
+    if (cache.putIfAbsent(key, req) == null) {
+      prefetches.incrementAndGet();
+      prefetchQueue.add(req);
+      threadPool.submit(req);
+
+      while (prefetchQueue.size() > MAX_QUEUED_PREFETCHES) {
+        final Request<?> old = prefetchQueue.poll();
+        if (old != null && requestQueue.remove(old)) {
+          // done() removes it from the cache
+          old.cancel(false);
+          prefetchesDropped.incrementAndGet();
+        }
+      }
+    }
+  }
+
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private final AtomicLong pending = new AtomicLong();
+  private final AtomicLong prefetches = new AtomicLong();
+  private final AtomicLong prefetchHits = new AtomicLong();
+  private final AtomicLong prefetchesPromoted = new AtomicLong();
+  private final AtomicLong prefetchesDropped = new AtomicLong();
+
+  /** @return the number of requests for values already computed */
+  public long getHitCount() {
+    return hits.get();
+  }
+
+  /** @return the number of requests for values not in the cache */
+  public long getMissCount() {
+    return misses.get();
+  }
+
+  /** @return the number of requests for values still being computed */
+  public long getPendingCount() {
+    return pending.get();
+  }
+
+  /** @return the number of prefetch requests queued */
+  public long getPrefetchCount() {
+    return prefetches.get();
+  }
+
+  /** @return the number of requests served by a completed prefetch */
+  public long getPrefetchHitCount() {
+    return prefetchHits.get();
+  }
+
+  /**
+   * @return the number of requests which found their prefetch still
+   * waiting or running
+   */
+  public long getPrefetchPromotedCount() {
+    return prefetchesPromoted.get();
+  }
+
+  /** @return the number of prefetch requests dropped before running */
+  public long getPrefetchDroppedCount() {
+    return prefetchesDropped.get();
+  }
+
+  public void resetStatistics() {
+    hits.set(0);
+    misses.set(0);
+    pending.set(0);
+    prefetches.set(0);
+    prefetchHits.set(0);
+    prefetchesPromoted.set(0);
+    prefetchesDropped.set(0);
+  }
+
 /////
 // FIXME: finalize this...
   private final BlockingQueue<Runnable> requestQueue =
-    new LinkedBlockingQueue<>();
+    new PriorityBlockingQueue<>(11, requestOrdering);
 
   private static class Ex extends ThreadPoolExecutor {
     public Ex(int corePoolSize, int maximumPoolSize, long keepAliveTime,
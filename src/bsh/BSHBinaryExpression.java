@@ -80,162 +80,24 @@ class BSHBinaryExpression extends SimpleNode implements ParserConstants {
       return new Primitive(ret);
     }
 
-    // The following two boolean checks were tacked on.
-    // This could probably be smoothed out.
-
     /*
-     * Look ahead and short circuit evaluation of the rhs if: we're a boolean
-     * AND and the lhs is false.
+     * Short circuit evaluation of the rhs if we're a boolean AND and the
+     * lhs is false, or a boolean OR and the lhs is true.
      */
-    if (kind == BOOL_AND || kind == BOOL_ANDX) {
-      Object obj = lhs;
-      if (isPrimitiveValue(lhs))
-        obj = ((Primitive) lhs).getValue();
-      if (obj instanceof Boolean && (((Boolean) obj).booleanValue() == false))
-        return new Primitive(false);
-    }
-    /*
-     * Look ahead and short circuit evaluation of the rhs if: we're a boolean
-     * AND and the lhs is false.
-     */
-    if (kind == BOOL_OR || kind == BOOL_ORX) {
-      Object obj = lhs;
-      if (isPrimitiveValue(lhs))
-        obj = ((Primitive) lhs).getValue();
-      if (obj instanceof Boolean && (((Boolean) obj).booleanValue() == true))
-        return new Primitive(true);
-    }
-
-    // end stuff that was tacked on for boolean short-circuiting.
+    final Object sc = ExpressionOperations.shortCircuit(lhs, kind);
+    if (sc != null)
+      return sc;
 
     /*
-     * Are both the lhs and rhs either wrappers or primitive values? do binary
-     * op
+     * VASSAL - The operators, with the Vassal special cases for Strings,
+     * are shared with compiled expressions.
      */
-    boolean isLhsWrapper = isWrapper(lhs);
     Object rhs = ((SimpleNode) jjtGetChild(1)).eval(callstack, interpreter);
-    boolean isRhsWrapper = isWrapper(rhs);
-    if ((isLhsWrapper || isPrimitiveValue(lhs))
-        && (isRhsWrapper || isPrimitiveValue(rhs))) {
-      // Special case for EQ on two wrapper objects
-      if ((isLhsWrapper && isRhsWrapper && kind == EQ)) {
-        /*
-         * Don't auto-unwrap wrappers (preserve identity semantics) FALL THROUGH
-         * TO OBJECT OPERATIONS BELOW.
-         */
-      }
-      else {
-        try {
-          return Primitive.binaryOperation(lhs, rhs, kind);
-        }
-        catch (UtilEvalError e) {
-          /* VASSAL - Try again, converting both sides to Strings, report the original error if it fails */
-          try {
-            return Primitive.binaryOperation(lhs.toString(), rhs.toString(), kind); 
-          }
-          catch (UtilEvalError e2) {
-            throw e.toEvalError(this, callstack);
-          }
-        }
-      }
-    }    
-    /*
-     * VASSAL Special cases
-     * 1. If one side is an Integer and the other is the null String, replace
-     *    the null String with a 0.
-     * 2. If one side is a Primitive and the other side is a non-null String, convert the Primitive
-     *    to a String so that + will work. 
-     */
-    else {
-      // lhs in an Integer and rhs is the null string
-      if (lhs instanceof Primitive && ((Primitive) lhs).getValue() instanceof Integer && rhs.equals("") ) {
-        try {
-          return Primitive.binaryOperation(lhs, new Primitive(0), kind);
-        }
-        catch (UtilEvalError e) {
-          throw e.toEvalError(this, callstack);
-        }
-      }
-      // lhs is the null string and rhs is an Integer
-      else if (rhs instanceof Primitive && ((Primitive) rhs).getValue() instanceof Integer && lhs.equals("") ) {
-        try {
-          return Primitive.binaryOperation(new Primitive(0), rhs, kind);
-        }
-        catch (UtilEvalError e) {
-          throw e.toEvalError(this, callstack);
-        }
-      }
-      // lhs is primitive, right hand side is string
-      else if ((isLhsWrapper || isPrimitiveValue(lhs)) && rhs instanceof String) {
-        try {
-          return Primitive.binaryOperation(lhs.toString(), rhs, kind);
-        }
-        catch (UtilEvalError e) {
-          throw e.toEvalError(this, callstack);
-        }
-      }
-      // lhs is string, rhs is primitiv
-      else if ((isRhsWrapper || isPrimitiveValue(rhs)) && lhs instanceof String) {
-        try {
-          return Primitive.binaryOperation(lhs, rhs.toString(), kind);
-        }
-        catch (UtilEvalError e) {
-          throw e.toEvalError(this, callstack);
-        } 
-      }
-    }
-    /*
-     * Doing the following makes it hard to use untyped vars... e.g. if ( arg ==
-     * null ) ...what if arg is a primitive? The answer is that we should test
-     * only if the var is typed...? need to get that info here...
-     * 
-     * else { // Do we have a mixture of primitive values and non-primitives ?
-     * // (primitiveValue = not null, not void)
-     * 
-     * int primCount = 0; if ( isPrimitiveValue( lhs ) ) ++primCount; if (
-     * isPrimitiveValue( rhs ) ) ++primCount;
-     * 
-     * if ( primCount > 1 ) // both primitive types, should have been handled
-     * above throw new InterpreterError("should not be here"); else if (
-     * primCount == 1 ) // mixture of one and the other throw new
-     * EvalError("Operator: '" + tokenImage[kind]
-     * +"' inappropriate for object / primitive combination.", this, callstack
-     * );
-     * 
-     * // else fall through to handle both non-primitive types
-     * 
-     * // end check for primitive and non-primitive mix }
-     */
-
-    /*
-     * Treat lhs and rhs as arbitrary objects and do the operation. (including
-     * NULL and VOID represented by their Primitive types)
-     */
-    // System.out.println("binary op arbitrary obj: {"+lhs+"}, {"+rhs+"}");
-    
-    /*
-     * VASSAL - Handle Strings as a type of Primitive - allow comparison operators on Strings. 
-     */
-    if (lhs instanceof String && rhs instanceof String) {
-      try {
-        return Primitive.binaryOperation(lhs, rhs, kind);
-      }
-      catch (UtilEvalError e) {
-        throw e.toEvalError(this, callstack);
-      }
+    try {
+      return ExpressionOperations.binaryOperation(lhs, rhs, kind);
     }
-    else {
-      if (lhs instanceof Primitive || rhs instanceof Primitive)
-        if (lhs == Primitive.VOID || rhs == Primitive.VOID)
-          throw new EvalError(
-              "illegal use of undefined variable, class, or 'void' literal",
-              this, callstack);
-        else if (lhs == Primitive.NULL || rhs == Primitive.NULL)
-          throw new EvalError("illegal use of null value or 'null' literal",
-              this, callstack);
-
-      throw new EvalError("Operator: '" + tokenImage[kind]
-          + "' inappropriate for objects", this, callstack);
+    catch (UtilEvalError e) {
+      throw e.toEvalError(this, callstack);
     }
   }
     
@@ -259,18 +121,4 @@ class BSHBinaryExpression extends SimpleNode implements ParserConstants {
     }
     return new Primitive(i);
   }
-
-  /*
-   * object is a non-null and non-void Primitive type
-   */
-  private boolean isPrimitiveValue(Object obj) {
-    return ((obj instanceof Primitive) && (obj != Primitive.VOID) && (obj != Primitive.NULL));
-  }
-
-  /*
-   * object is a java.lang wrapper for boolean, char, or number type
-   */
-  private boolean isWrapper(Object obj) {
-    return (obj instanceof Boolean || obj instanceof Character || obj instanceof Number);
-  }
 }
@@ -0,0 +1,159 @@
+/*
+ * $Id$
+ *
+ * Copyright (c) 2020 by Joel Uckelman
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+package bsh;
+
+import java.io.StringReader;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Find the property values which a single line BeanShell expression
+ * requires in order to be true.
+ *
+ * This Class must be defined in package bsh to allow access to
+ * package visible elements in the bsh library.
+ *
+ * @author Joel Uckelman
+ * @since 3.3.1
+ */
+public class ExpressionAnalyzer implements ParserConstants {
+  private ExpressionAnalyzer() {}
+
+  /**
+   * Find the tests of the form <code>Name == "value"</code> or
+   * <code>GetProperty("Name") == "value"</code> which begin a chain of
+   * <code>&amp;&amp;</code>s making up the expression. If any of these is
+   * false, then the expression is false, and nothing else in it is
+   * evaluated.
+   *
+   * Only values which the interpreter does not convert, i.e., which are
+   * not booleans or numbers, are found, so a test is true just when the
+   * property has exactly the value.
+   *
+   * @param expression the expression, without braces
+   * @return property name -&gt; required value
+   */
+  public static Map<String, String> getRequiredValues(String expression) {
+    final Map<String, String> values = new LinkedHashMap<>();
+    try {
+      final Parser p =
+        new Parser(new StringReader("_v=" + expression + ";"));
+      if (!p.Line()) {
+        final SimpleNode a = p.popNode();
+        if (p.Line() && a instanceof BSHAssignment &&
+            ((BSHAssignment) a).operator == ASSIGN) {
+          collect(a.getChild(1), values);
+        }
+      }
+    }
+    catch (ParseException | TokenMgrError e) {
+      values.clear();
+    }
+    return values;
+  }
+
+  /**
+   * @return false if the conjunction may go on to evaluate something
+   * other than a property test
+   */
+  protected static boolean collect(SimpleNode node, Map<String, String> values) {
+    node = unwrap(node);
+    if (node instanceof BSHBinaryExpression) {
+      final int kind = ((BSHBinaryExpression) node).kind;
+      if (kind == BOOL_AND || kind == BOOL_ANDX) {
+        return collect(node.getChild(0), values) &&
+               collect(node.getChild(1), values);
+      }
+      else if (kind == EQ) {
+        final SimpleNode lhs = unwrap(node.getChild(0));
+        final SimpleNode rhs = unwrap(node.getChild(1));
+        String name = propertyName(lhs);
+        String value = literal(rhs);
+        if (name == null || value == null) {
+          name = propertyName(rhs);
+          value = literal(lhs);
+        }
+        if (name != null && value != null) {
+          values.putIfAbsent(name, value);
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  protected static SimpleNode unwrap(SimpleNode node) {
+    while (node instanceof BSHPrimaryExpression &&
+           node.jjtGetNumChildren() == 1) {
+      node = node.getChild(0);
+    }
+    return node;
+  }
+
+  protected static String propertyName(SimpleNode node) {
+    if (node instanceof BSHAmbiguousName) {
+      final String name = ((BSHAmbiguousName) node).text;
+      if (name.indexOf('.') >= 0) {
+        return null;
+      }
+      if (name.length() > 2 && name.startsWith("$") && name.endsWith("$")) {
+        return name.substring(1, name.length() - 1);
+      }
+      return name;
+    }
+    else if (node instanceof BSHMethodInvocation) {
+      final SimpleNode args = node.getChild(1);
+      if ("GetProperty".equals(((BSHAmbiguousName) node.getChild(0)).text) &&
+          args.jjtGetNumChildren() == 1) {
+        final SimpleNode arg = unwrap(args.getChild(0));
+        if (arg instanceof BSHLiteral &&
+            ((BSHLiteral) arg).value instanceof String) {
+          return (String) ((BSHLiteral) arg).value;
+        }
+      }
+    }
+    return null;
+  }
+
+  /**
+   * @return the value of a String literal which properties are compared
+   * with unconverted, or null
+   */
+  protected static String literal(SimpleNode node) {
+    if (!(node instanceof BSHLiteral) ||
+        !(((BSHLiteral) node).value instanceof String)) {
+      return null;
+    }
+
+    final String value = (String) ((BSHLiteral) node).value;
+    // "" equals 0 when compared with a number
+    if (value.length() == 0 || "true".equals(value) || "false".equals(value)) {
+      return null;
+    }
+
+    try {
+      Float.valueOf(value);
+      return null;
+    }
+    catch (NumberFormatException e) {
+      // Not a number, so compared as a String
+    }
+    return value;
+  }
+}
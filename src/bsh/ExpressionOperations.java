@@ -0,0 +1,238 @@
+/*
+ * $Id$
+ *
+ * Copyright (c) 2020 by Joel Uckelman
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+package bsh;
+
+/**
+ * The operators of Vassal expressions, including the Vassal extensions
+ * for mixing Strings and numbers. These are used both by the interpreter
+ * and by expressions translated by {@link ExpressionTranslator}, so that
+ * the two always agree.
+ *
+ * This Class must be defined in package bsh to allow access to
+ * package visible elements in the bsh library.
+ *
+ * @author Joel Uckelman
+ * @since 3.3.1
+ */
+public final class ExpressionOperations implements ParserConstants {
+  private ExpressionOperations() {}
+
+  /**
+   * Short circuit a boolean AND or OR.
+   *
+   * @param lhs the value of the left hand side
+   * @param kind the operator
+   * @return the value of the whole expression, or null if the right hand
+   * side must be evaluated
+   */
+  public static Object shortCircuit(Object lhs, int kind) {
+    Object obj = lhs;
+    if (isPrimitiveValue(lhs)) {
+      obj = ((Primitive) lhs).getValue();
+    }
+
+    if (obj instanceof Boolean) {
+      final boolean b = ((Boolean) obj).booleanValue();
+      if (!b && (kind == BOOL_AND || kind == BOOL_ANDX)) {
+        return new Primitive(false);
+      }
+      if (b && (kind == BOOL_OR || kind == BOOL_ORX)) {
+        return new Primitive(true);
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Apply a binary operator other than <code>instanceof</code>.
+   */
+  public static Object binaryOperation(Object lhs, Object rhs, int kind)
+                                                        throws UtilEvalError {
+    /*
+     * Are both the lhs and rhs either wrappers or primitive values? do binary
+     * op
+     */
+    final boolean isLhsWrapper = isWrapper(lhs);
+    final boolean isRhsWrapper = isWrapper(rhs);
+    if ((isLhsWrapper || isPrimitiveValue(lhs))
+        && (isRhsWrapper || isPrimitiveValue(rhs))) {
+      // Special case for EQ on two wrapper objects
+      if ((isLhsWrapper && isRhsWrapper && kind == EQ)) {
+        /*
+         * Don't auto-unwrap wrappers (preserve identity semantics) FALL THROUGH
+         * TO OBJECT OPERATIONS BELOW.
+         */
+      }
+      else {
+        try {
+          return Primitive.binaryOperation(lhs, rhs, kind);
+        }
+        catch (UtilEvalError e) {
+          /* VASSAL - Try again, converting both sides to Strings, report the original error if it fails */
+          try {
+            return Primitive.binaryOperation(lhs.toString(), rhs.toString(), kind);
+          }
+          catch (UtilEvalError e2) {
+            throw e;
+          }
+        }
+      }
+    }
+    /*
+     * VASSAL Special cases
+     * 1. If one side is an Integer and the other is the null String, replace
+     *    the null String with a 0.
+     * 2. If one side is a Primitive and the other side is a non-null String, convert the Primitive
+     *    to a String so that + will work.
+     */
+    else {
+      // lhs in an Integer and rhs is the null string
+      if (lhs instanceof Primitive && ((Primitive) lhs).getValue() instanceof Integer && rhs.equals("")) {
+        return Primitive.binaryOperation(lhs, new Primitive(0), kind);
+      }
+      // lhs is the null string and rhs is an Integer
+      else if (rhs instanceof Primitive && ((Primitive) rhs).getValue() instanceof Integer && lhs.equals("")) {
+        return Primitive.binaryOperation(new Primitive(0), rhs, kind);
+      }
+      // lhs is primitive, right hand side is string
+      else if ((isLhsWrapper || isPrimitiveValue(lhs)) && rhs instanceof String) {
+        return Primitive.binaryOperation(lhs.toString(), rhs, kind);
+      }
+      // lhs is string, rhs is primitive
+      else if ((isRhsWrapper || isPrimitiveValue(rhs)) && lhs instanceof String) {
+        return Primitive.binaryOperation(lhs, rhs.toString(), kind);
+      }
+    }
+
+    /*
+     * VASSAL - Handle Strings as a type of Primitive - allow comparison operators on Strings.
+     */
+    if (lhs instanceof String && rhs instanceof String) {
+      return Primitive.binaryOperation(lhs, rhs, kind);
+    }
+    else {
+      if (lhs instanceof Primitive || rhs instanceof Primitive) {
+        if (lhs == Primitive.VOID || rhs == Primitive.VOID) {
+          throw new UtilEvalError(
+            "illegal use of undefined variable, class, or 'void' literal");
+        }
+        else if (lhs == Primitive.NULL || rhs == Primitive.NULL) {
+          throw new UtilEvalError(
+            "illegal use of null value or 'null' literal");
+        }
+      }
+
+      throw new UtilEvalError(
+        "Operator: '" + tokenImage[kind] + "' inappropriate for objects");
+    }
+  }
+
+  /**
+   * Apply a unary operator to a value.
+   */
+  public static Object unaryOperation(Object op, int kind)
+                                                        throws UtilEvalError {
+    if (op instanceof Boolean || op instanceof Character
+        || op instanceof Number) {
+      return primitiveWrapperUnaryOperation(op, kind);
+    }
+
+    if (!(op instanceof Primitive)) {
+      throw new UtilEvalError("Unary operation " + tokenImage[kind]
+        + " inappropriate for object");
+    }
+
+    return Primitive.unaryOperation((Primitive) op, kind);
+  }
+
+  private static Object primitiveWrapperUnaryOperation(Object val, int kind)
+                                                        throws UtilEvalError {
+    final Class<?> operandType = val.getClass();
+    final Object operand = Primitive.promoteToInteger(val);
+
+    if (operand instanceof Boolean) {
+      return Boolean.valueOf(
+        Primitive.booleanUnaryOperation((Boolean) operand, kind));
+    }
+    else if (operand instanceof Integer) {
+      final int result = Primitive.intUnaryOperation((Integer) operand, kind);
+
+      // ++ and -- must be cast back the original type
+      if (kind == INCR || kind == DECR) {
+        if (operandType == Byte.TYPE) {
+          return Byte.valueOf((byte) result);
+        }
+        if (operandType == Short.TYPE) {
+          return Short.valueOf((short) result);
+        }
+        if (operandType == Character.TYPE) {
+          return Character.valueOf((char) result);
+        }
+      }
+
+      return Integer.valueOf(result);
+    }
+    else if (operand instanceof Long) {
+      return Long.valueOf(Primitive.longUnaryOperation((Long) operand, kind));
+    }
+    else if (operand instanceof Float) {
+      return Float.valueOf(Primitive.floatUnaryOperation((Float) operand, kind));
+    }
+    else if (operand instanceof Double) {
+      return Double.valueOf(Primitive.doubleUnaryOperation((Double) operand, kind));
+    }
+    else {
+      throw new InterpreterError("An error occurred.  Please call technical support.");
+    }
+  }
+
+  /**
+   * Convert the value of a condition to a boolean.
+   */
+  public static boolean condition(Object obj) throws UtilEvalError {
+    if (obj instanceof Primitive) {
+      if (obj == Primitive.VOID) {
+        throw new UtilEvalError("Condition evaluates to void type");
+      }
+      obj = ((Primitive) obj).getValue();
+    }
+
+    if (obj instanceof Boolean) {
+      return ((Boolean) obj).booleanValue();
+    }
+    else {
+      throw new UtilEvalError(
+        "Condition must evaluate to a Boolean or boolean.");
+    }
+  }
+
+  /*
+   * object is a non-null and non-void Primitive type
+   */
+  private static boolean isPrimitiveValue(Object obj) {
+    return ((obj instanceof Primitive) && (obj != Primitive.VOID) && (obj != Primitive.NULL));
+  }
+
+  /*
+   * object is a java.lang wrapper for boolean, char, or number type
+   */
+  private static boolean isWrapper(Object obj) {
+    return (obj instanceof Boolean || obj instanceof Character || obj instanceof Number);
+  }
+}
@@ -0,0 +1,315 @@
+/*
+ * $Id$
+ *
+ * Copyright (c) 2020 by Joel Uckelman
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+package bsh;
+
+import java.io.StringReader;
+import java.util.List;
+
+/**
+ * Translate a single line BeanShell expression into the body of a Java
+ * class, so that it may be compiled instead of interpreted.
+ *
+ * Only the common subset of Vassal expressions is translated: literals,
+ * property references, the unary, binary and ternary operators, and the
+ * functions If, GetProperty, GetLocalizedProperty, SumStack and
+ * SumLocation. For anything else, {@link #translate} returns null and
+ * the expression must be interpreted.
+ *
+ * The translated class has a method
+ * <code>public Object evaluate(bsh.ExpressionTranslator.Context c)</code>
+ * which returns the same value as the interpreter would, as the operators
+ * are applied by {@link ExpressionOperations}.
+ *
+ * This Class must be defined in package bsh to allow access to
+ * package visible elements in the bsh library.
+ *
+ * @author Joel Uckelman
+ * @since 3.3.1
+ */
+public class ExpressionTranslator implements ParserConstants {
+
+  /**
+   * The values and functions available to a translated expression. The
+   * functions return values as the scripted functions do: Integers and
+   * Booleans are unwrapped to {@link Primitive}s.
+   */
+  public interface Context {
+    /**
+     * @param index the position of the variable in the list passed to
+     * the translator
+     * @return the value of the variable, as it would be bound in the
+     * interpreter
+     */
+    Object getVariable(int index) throws UtilEvalError;
+
+    Object getProperty(Object name) throws UtilEvalError;
+
+    Object getLocalizedProperty(Object name) throws UtilEvalError;
+
+    Object sumStack(Object name) throws UtilEvalError;
+
+    Object sumLocation(Object name) throws UtilEvalError;
+  }
+
+  protected static final String OPS = "bsh.ExpressionOperations";
+  protected static final String CONTEXT = "bsh.ExpressionTranslator.Context";
+
+  protected final String expression;
+  protected final List<String> variables;
+
+  protected final StringBuilder fields = new StringBuilder();
+  protected final StringBuilder methods = new StringBuilder();
+  protected int count = 0;
+
+  /**
+   * @param expression the expression, without braces
+   * @param variables the variables of the expression, as found by
+   * {@link BeanShellExpressionValidator}
+   */
+  public ExpressionTranslator(String expression, List<String> variables) {
+    this.expression = expression;
+    this.variables = variables;
+  }
+
+  /**
+   * @return the body of a class evaluating the expression, or null if the
+   * expression cannot be translated
+   */
+  public String translate() {
+    final SimpleNode node;
+    try {
+      // Parse the expression as the interpreter does, as the value of an
+      // assignment, as that can change how it is tokenized, e.g., "=~"
+      final Parser p =
+        new Parser(new StringReader("_v=" + expression + ";"));
+      if (p.Line()) {
+        return null;
+      }
+      final SimpleNode a = p.popNode();
+      if (!p.Line() || !(a instanceof BSHAssignment) ||
+          ((BSHAssignment) a).operator != ASSIGN) {
+        return null;
+      }
+      node = a.getChild(1);
+    }
+    catch (ParseException | TokenMgrError e) {
+      return null;
+    }
+
+    final String root;
+    try {
+      root = translate(node);
+    }
+    catch (UnsupportedOperationException e) {
+      return null;
+    }
+
+    return fields.toString() + methods.toString() +
+      "public Object evaluate(" + CONTEXT + " c) throws bsh.UtilEvalError {\n" +
+      "  return " + root + ";\n" +
+      "}\n";
+  }
+
+  protected String translate(SimpleNode node) {
+    if (node instanceof BSHPrimaryExpression) {
+      if (node.jjtGetNumChildren() != 1) {
+        throw new UnsupportedOperationException();
+      }
+      return translate(node.getChild(0));
+    }
+    else if (node instanceof BSHLiteral) {
+      return literal(((BSHLiteral) node).value);
+    }
+    else if (node instanceof BSHAmbiguousName) {
+      final int i = variables.indexOf(((BSHAmbiguousName) node).text);
+      if (i < 0) {
+        throw new UnsupportedOperationException();
+      }
+      return "c.getVariable(" + i + ")";
+    }
+    else if (node instanceof BSHMethodInvocation) {
+      return invocation(node);
+    }
+    else if (node instanceof BSHUnaryExpression) {
+      final int kind = ((BSHUnaryExpression) node).kind;
+      if (kind == INCR || kind == DECR) {
+        throw new UnsupportedOperationException();
+      }
+      return OPS + ".unaryOperation(" + translate(node.getChild(0)) +
+        ", " + kind + ")";
+    }
+    else if (node instanceof BSHBinaryExpression) {
+      return binary((BSHBinaryExpression) node);
+    }
+    else if (node instanceof BSHTernaryExpression) {
+      return "(" + OPS + ".condition(" + translate(node.getChild(0)) +
+        ") ? " + translate(node.getChild(1)) +
+        " : " + translate(node.getChild(2)) + ")";
+    }
+    else {
+      throw new UnsupportedOperationException();
+    }
+  }
+
+  protected String binary(BSHBinaryExpression node) {
+    final int kind = node.kind;
+    if (kind == INSTANCEOF) {
+      throw new UnsupportedOperationException();
+    }
+
+    final String lhs = translate(node.getChild(0));
+    final String rhs = translate(node.getChild(1));
+
+    if (kind == BOOL_AND || kind == BOOL_ANDX ||
+        kind == BOOL_OR || kind == BOOL_ORX) {
+      // The rhs must not be evaluated if the lhs decides the result
+      return method(
+        "  final Object l = " + lhs + ";\n" +
+        "  final Object s = " + OPS + ".shortCircuit(l, " + kind + ");\n" +
+        "  return s != null ? s : " + OPS + ".binaryOperation(l, " + rhs +
+          ", " + kind + ");\n"
+      );
+    }
+
+    return OPS + ".binaryOperation(" + lhs + ", " + rhs + ", " + kind + ")";
+  }
+
+  protected String invocation(SimpleNode node) {
+    final String name = ((BSHAmbiguousName) node.getChild(0)).text;
+    final SimpleNode args = node.getChild(1);
+    final int argc = args.jjtGetNumChildren();
+
+    if ("If".equals(name) && argc == 3) {
+      // Arguments to a scripted method are all evaluated before the call,
+      // and the Object parameters wrap any primitives
+      return method(
+        "  final Object e = " + translate(args.getChild(0)) + ";\n" +
+        "  final Object o1 = " + translate(args.getChild(1)) + ";\n" +
+        "  final Object o2 = " + translate(args.getChild(2)) + ";\n" +
+        "  return bsh.Primitive.unwrap(" + OPS + ".condition(e) ? o1 : o2);\n"
+      );
+    }
+
+    if (argc == 1) {
+      final String arg = translate(args.getChild(0));
+      switch (name) {
+      case "GetProperty":
+        return "c.getProperty(" + arg + ")";
+      case "GetLocalizedProperty":
+        return "c.getLocalizedProperty(" + arg + ")";
+      case "SumStack":
+        return "c.sumStack(" + arg + ")";
+      case "SumLocation":
+        return "c.sumLocation(" + arg + ")";
+      }
+    }
+
+    throw new UnsupportedOperationException();
+  }
+
+  /**
+   * Add a method to the class.
+   *
+   * @param body the body of the method
+   * @return a call of the method
+   */
+  protected String method(String body) {
+    final String name = "m" + (count++);
+    methods.append("private static Object ").append(name).append('(')
+           .append(CONTEXT).append(" c) throws bsh.UtilEvalError {\n")
+           .append(body)
+           .append("}\n");
+    return name + "(c)";
+  }
+
+  /**
+   * Add a constant to the class.
+   *
+   * @param value the value of the literal
+   * @return a reference to the constant
+   */
+  protected String literal(Object value) {
+    final String type;
+    final String init;
+    if (value instanceof String) {
+      type = "String";
+      init = quote((String) value);
+    }
+    else if (value == Primitive.NULL) {
+      return "bsh.Primitive.NULL";
+    }
+    else if (value instanceof Primitive) {
+      type = "Object";
+      final Object v = ((Primitive) value).getValue();
+      if (v instanceof Boolean || v instanceof Integer) {
+        init = "new bsh.Primitive(" + v + ")";
+      }
+      else if (v instanceof Long) {
+        init = "new bsh.Primitive(" + v + "L)";
+      }
+      else if (v instanceof Character) {
+        init = "new bsh.Primitive((char) " + (int) ((Character) v).charValue() + ")";
+      }
+      else if (v instanceof Float) {
+        init = "new bsh.Primitive(Float.intBitsToFloat(" +
+          Float.floatToRawIntBits((Float) v) + "))";
+      }
+      else if (v instanceof Double) {
+        init = "new bsh.Primitive(Double.longBitsToDouble(" +
+          Double.doubleToRawLongBits((Double) v) + "L))";
+      }
+      else {
+        throw new UnsupportedOperationException();
+      }
+    }
+    else {
+      throw new UnsupportedOperationException();
+    }
+
+    final String name = "k" + (count++);
+    fields.append("private static final ").append(type).append(' ').append(name)
+          .append(" = ").append(init).append(";\n");
+    return name;
+  }
+
+  protected static String quote(String s) {
+    final StringBuilder b = new StringBuilder(s.length() + 2).append('"');
+    for (int i = 0; i < s.length(); ++i) {
+      final char ch = s.charAt(i);
+      // Unicode escapes are processed before the source is tokenized, so
+      // they cannot be used for quotes, backslashes, or line ends
+      if (ch == '"' || ch == '\\') {
+        b.append('\\').append(ch);
+      }
+      else if (ch == '\n') {
+        b.append("\\n");
+      }
+      else if (ch == '\r') {
+        b.append("\\r");
+      }
+      else if (ch >= ' ' && ch <= '~') {
+        b.append(ch);
+      }
+      else {
+        b.append(String.format("\\u%04x", (int) ch));
+      }
+    }
+    return b.append('"').toString();
+  }
+}
@@ -0,0 +1,166 @@
+/*
+ * $Id$
+ *
+ * Copyright (c) 2020 by Joel Uckelman
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+package VASSAL.build.module;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import VASSAL.command.AddPiece;
+import VASSAL.command.ChangePiece;
+import VASSAL.counters.Decorator;
+import VASSAL.counters.DynamicProperty;
+import VASSAL.counters.GamePiece;
+import VASSAL.counters.Stack;
+import VASSAL.tools.SequenceEncoder;
+
+public class BasicCommandEncoderTest {
+
+  private static String type(int i) {
+    return DynamicProperty.ID + "Strength\tpiece;;;;Unit " + i;
+  }
+
+  @Test
+  public void testParallelConstruction() {
+    // prepare
+    final BasicCommandEncoder enc = new BasicCommandEncoder();
+    final List<AddPiece> adds = new ArrayList<>();
+
+    // run
+    assertTrue(BasicCommandEncoder.beginParallelConstruction());
+    try {
+      assertFalse(BasicCommandEncoder.beginParallelConstruction());
+      for (int i = 0; i < 500; ++i) {
+        adds.add((AddPiece) enc.decode(
+          BasicCommandEncoder.ADD + i + "/" + type(i) + "/" + i));
+      }
+      adds.add((AddPiece) enc.decode(
+        BasicCommandEncoder.ADD + "s/" + Stack.TYPE + "/"));
+    }
+    finally {
+      BasicCommandEncoder.endParallelConstruction();
+    }
+
+    // assert
+    for (int i = 0; i < 500; ++i) {
+      final GamePiece p = adds.get(i).getTarget();
+      assertEquals(String.valueOf(i), p.getId());
+      assertEquals(enc.createPiece(type(i)).getType(), p.getType());
+      assertEquals(String.valueOf(i), adds.get(i).getState());
+    }
+    assertTrue(adds.get(500).getTarget() instanceof Stack);
+    assertTrue(BasicCommandEncoder.beginParallelConstruction());
+    BasicCommandEncoder.endParallelConstruction();
+  }
+
+  @Test
+  public void testSplitState() {
+    final String[] layers = { "1", "a\tb/c", "", "base;x;y" };
+    final String state = Decorator.joinState(layers);
+    assertArrayEquals(layers, Decorator.splitState(state, 4));
+    assertNull(Decorator.splitState(state, 5));
+
+    final BasicCommandEncoder enc = new BasicCommandEncoder();
+    final String inner = new SequenceEncoder(DynamicProperty.ID + "B", '\t')
+      .append("piece;;;;Unit").getValue();
+    final GamePiece p = enc.createPiece(
+      new SequenceEncoder(DynamicProperty.ID + "A", '\t').append(inner)
+        .getValue());
+    assertEquals(3, Decorator.getLayerCount(p));
+  }
+
+  @Test
+  public void testChangeDelta() {
+    final BasicCommandEncoder enc = new BasicCommandEncoder();
+    final String base = "base;" + "x".repeat(100);
+    final String oldState =
+      Decorator.joinState(new String[] { "1", "a\tb/c", "", base });
+    final String newState =
+      Decorator.joinState(new String[] { "1", "a\tb/d", "", base });
+
+    final String encoded;
+    BasicCommandEncoder.setDeltaEncoding(true);
+    try {
+      encoded = enc.encode(new ChangePiece("42", oldState, newState, 4));
+    }
+    finally {
+      BasicCommandEncoder.setDeltaEncoding(false);
+    }
+    assertTrue(encoded.startsWith(BasicCommandEncoder.CHANGE_DELTA));
+    assertTrue(encoded.length() < newState.length());
+
+    // deltas are always decoded, and re-encoded as deltas
+    final ChangePiece cp = (ChangePiece) enc.decode(encoded);
+    assertEquals("42", cp.getId());
+    assertNull(cp.getNewState());
+    assertEquals(encoded, enc.encode(cp));
+
+    // applied to the old state, the delta gives back both states
+    final String[] states = cp.getDelta().apply(oldState);
+    assertEquals(oldState, states[0]);
+    assertEquals(newState, states[1]);
+
+    // applied to another state, the delta changes only its own layer
+    final String other =
+      Decorator.joinState(new String[] { "2", "a\tb/c", "", base });
+    final String[] merged = cp.getDelta().apply(other);
+    assertEquals(other, merged[0]);
+    assertEquals(
+      Decorator.joinState(new String[] { "2", "a\tb/d", "", base }),
+      merged[1]);
+
+    assertNull(cp.getDelta().apply("too;few;layers"));
+  }
+
+  @Test
+  public void testChangeWithoutDelta() {
+    final BasicCommandEncoder enc = new BasicCommandEncoder();
+    final String oldState = Decorator.joinState(new String[] { "1", "a" });
+    final String newState = Decorator.joinState(new String[] { "2", "b" });
+    final String same = Decorator.joinState(new String[] { "1", "b" });
+
+    // deltas are off unless the player opts in, since older versions
+    // cannot read them
+    assertFalse(BasicCommandEncoder.isDeltaEncoding());
+    assertTrue(enc.encode(new ChangePiece("1", oldState, same, 2))
+      .startsWith(BasicCommandEncoder.CHANGE));
+
+    BasicCommandEncoder.setDeltaEncoding(true);
+    try {
+      // every layer changed, or the layers are not known
+      assertTrue(enc.encode(new ChangePiece("1", oldState, newState, 2))
+        .startsWith(BasicCommandEncoder.CHANGE));
+      assertTrue(enc.encode(new ChangePiece("1", oldState, newState))
+        .startsWith(BasicCommandEncoder.CHANGE));
+
+      assertTrue(enc.encode(new ChangePiece("1", oldState, same, 2))
+        .startsWith(BasicCommandEncoder.CHANGE_DELTA));
+    }
+    finally {
+      BasicCommandEncoder.setDeltaEncoding(false);
+    }
+  }
+}
@@ -0,0 +1,142 @@
+/*
+ * $Id$
+ *
+ * Copyright (c) 2020 by Joel Uckelman
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+package VASSAL.build.module;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.zip.InflaterInputStream;
+
+import org.junit.Test;
+
+import VASSAL.command.BinaryCommandReader;
+import VASSAL.command.Command;
+
+public class LogIndexTest {
+
+  private static class TextCommand extends Command {
+    final String text;
+
+    TextCommand(String text) {
+      this.text = text;
+    }
+
+    @Override
+    protected void executeCommand() {
+    }
+
+    @Override
+    protected Command myUndoCommand() {
+      return null;
+    }
+
+    @Override
+    public String getDetails() {
+      return text;
+    }
+  }
+
+  @Test
+  public void testPutInBackground() throws IOException {
+    final Command restore = new TextCommand("a"); //$NON-NLS-1$
+    final Command b = new TextCommand("b"); //$NON-NLS-1$
+    b.append(new TextCommand("b1")); //$NON-NLS-1$
+    restore.append(b);
+    restore.append(new TextCommand("c")); //$NON-NLS-1$
+
+    final LogIndex index = new LogIndex(10);
+    index.put(0, restore, c -> ((TextCommand) c).text);
+    // not due again while it is being built
+    assertFalse(index.isDue(0));
+
+    // the checkpoint does not change with the game
+    ((TextCommand) restore.getSubCommand(1)).append(new TextCommand("d")); //$NON-NLS-1$
+
+    assertTrue(index.contains(0));
+    final Command c = new BinaryCommandReader(TextCommand::new,
+      new InflaterInputStream(new ByteArrayInputStream(index.checkpoints.get(0)))
+    ).read();
+    assertEquals("TextCommand[a]+TextCommand[b]+TextCommand[b1]+TextCommand[c]", //$NON-NLS-1$
+      c.toString());
+  }
+
+  @Test
+  public void testFloorStep() {
+    final LogIndex index = new LogIndex(10);
+    assertEquals(-1, index.floorStep(5));
+    assertTrue(index.isDue(0));
+    assertFalse(index.isDue(5));
+
+    index.put(0, new byte[1]);
+    index.put(10, new byte[1]);
+    index.put(20, new byte[1]);
+    assertFalse(index.isDue(10));
+    assertTrue(index.isDue(30));
+
+    assertEquals(0, index.floorStep(9));
+    assertEquals(10, index.floorStep(10));
+    assertEquals(20, index.floorStep(1000));
+
+    index.truncate(10);
+    assertEquals(10, index.floorStep(1000));
+  }
+
+  @Test
+  public void testThin() {
+    final LogIndex index = new LogIndex(10);
+    for (int step = 0; step <= 100; step += 10) {
+      index.put(step, new byte[1]);
+    }
+
+    index.thin();
+    assertEquals(20, index.getInterval());
+    assertEquals(0, index.floorStep(19));
+    assertEquals(20, index.floorStep(39));
+    assertEquals(100, index.floorStep(100));
+    assertFalse(index.contains(90));
+  }
+
+  @Test
+  public void testReadWrite() throws IOException {
+    final LogIndex index = new LogIndex(10);
+    index.put(0, new byte[] { 1, 2, 3 });
+    index.put(10, new byte[] { 4 });
+    index.put(20, new byte[] { 5, 6 });
+
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    index.write(out, 15);
+    final byte[] bytes = out.toByteArray();
+
+    final LogIndex read = LogIndex.read(new ByteArrayInputStream(bytes), 15);
+    assertEquals(10, read.getInterval());
+    assertArrayEquals(new byte[] { 1, 2, 3 }, read.checkpoints.get(0));
+    assertArrayEquals(new byte[] { 4 }, read.checkpoints.get(10));
+    // checkpoints past the end of the log are not written
+    assertFalse(read.contains(20));
+
+    // the index of another log is not read
+    assertNull(LogIndex.read(new ByteArrayInputStream(bytes), 16));
+  }
+}
@@ -0,0 +1,146 @@
+/*
+ * $Id$
+ *
+ * Copyright (c) 2020 by Joel Uckelman
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+package VASSAL.build.module;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Point;
+import java.util.Collections;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import VASSAL.counters.BasicPiece;
+import VASSAL.counters.DynamicProperty;
+import VASSAL.counters.GamePiece;
+import VASSAL.counters.PropertiesPieceFilter;
+import VASSAL.counters.Stack;
+import VASSAL.script.expression.Expression;
+
+public class PropertyIndexTest {
+
+  private PropertyIndex index;
+  private DynamicProperty tank;
+  private DynamicProperty truck;
+
+  private static DynamicProperty makePiece(String type) {
+    final BasicPiece bp = new BasicPiece(BasicPiece.ID + ";;;" + type + ";");
+    bp.setProperty("Type", type);
+    final DynamicProperty dp =
+      new DynamicProperty(DynamicProperty.ID + "Strength", bp);
+    dp.setValue("5");
+    return dp;
+  }
+
+  @Before
+  public void setUp() {
+    tank = makePiece("Tank");
+    truck = makePiece("Truck");
+    index = new PropertyIndex();
+    index.setIndexedProperties("Type", "Strength");
+    index.add(tank);
+    index.add(truck);
+  }
+
+  @After
+  public void tearDown() {
+    index.setIndexedProperties();
+  }
+
+  @Test
+  public void testLookup() {
+    assertEquals(Collections.singleton(tank), index.getPieces("Type", "Tank"));
+    assertEquals(2, index.getPieces("Strength", "5").size());
+    assertTrue(index.getPieces("Type", "Jeep").isEmpty());
+    assertNull(index.getPieces("Side", "Allies"));
+  }
+
+  @Test
+  public void testChangeIsReindexed() {
+    // prepare
+    index.getPieces("Strength", "5");
+    assertTrue(index.isCurrent(tank));
+
+    // run
+    tank.setValue("3");
+
+    // assert
+    assertFalse(index.isCurrent(tank));
+    assertEquals(Collections.singleton(tank), index.getPieces("Strength", "3"));
+    assertEquals(Collections.singleton(truck), index.getPieces("Strength", "5"));
+    assertTrue(index.isCurrent(tank));
+  }
+
+  @Test
+  public void testStackMoveMarksContents() {
+    // prepare
+    final Stack s = new Stack(tank);
+    index.getPieces("Type", "Tank");
+
+    // run
+    s.setPosition(new Point(10, 10));
+
+    // assert
+    assertFalse(index.isCurrent(tank));
+  }
+
+  @Test
+  public void testRemovedPieceIsDropped() {
+    // run
+    index.remove(tank);
+
+    // assert
+    assertTrue(index.getPieces("Type", "Tank").isEmpty());
+    assertFalse(index.isCurrent(tank));
+  }
+
+  @Test
+  public void testPropertyMatchCandidates() {
+    // prepare
+    final Set<GamePiece> c =
+      PropertiesPieceFilter.parse("Type=Truck && Strength>2").getCandidates(index);
+
+    // assert
+    assertEquals(Collections.singleton(truck), c);
+  }
+
+  @Test
+  public void testBeanShellCandidates() {
+    // prepare
+    final Set<GamePiece> c = Expression.createExpression(
+      "{Type==\"Tank\" && Strength > 2}").getFilter().getCandidates(index);
+
+    // assert
+    assertEquals(Collections.singleton(tank), c);
+  }
+
+  @Test
+  public void testNumericComparisonIsNotIndexed() {
+    // Strength==5 compares numbers, so "05" would match too
+    assertNull(Expression.createExpression(
+      "{Strength==\"5\"}").getFilter().getCandidates(index));
+    assertNull(Expression.createExpression(
+      "{Strength>2 && Type==\"Tank\"}").getFilter().getCandidates(index));
+  }
+}
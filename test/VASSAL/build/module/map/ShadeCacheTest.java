@@ -0,0 +1,142 @@
+package VASSAL.build.module.map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import java.awt.Rectangle;
+import java.awt.geom.Area;
+import java.util.List;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import VASSAL.counters.GamePiece;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ShadeCacheTest {
+
+  private static Area union(List<ShadeCache.Cell> cells) {
+    final Area a = new Area();
+    for (ShadeCache.Cell c : cells) {
+      a.add(new Area(c.getFill()));
+    }
+    return a;
+  }
+
+  @Test
+  public void cellsShouldCoverTheUnionOfAreas() {
+    // prepare
+    final GamePiece a = mock(GamePiece.class);
+    final GamePiece b = mock(GamePiece.class);
+    final ShadeCache sc = new ShadeCache(null, false, 16);
+
+    // run
+    sc.beginUpdate();
+    sc.update(a, new Area(new Rectangle(100, 100, 600, 100)));
+    sc.update(b, new Area(new Rectangle(2000, 2000, 50, 50)));
+    sc.endUpdate();
+
+    // assert
+    final Area expected = new Area(new Rectangle(100, 100, 600, 100));
+    expected.add(new Area(new Rectangle(2000, 2000, 50, 50)));
+    assertTrue(expected.equals(union(sc.getCells(new Rectangle(0, 0, 3000, 3000), 1.0))));
+  }
+
+  @Test
+  public void backgroundShouldSubtractAreas() {
+    // prepare
+    final GamePiece a = mock(GamePiece.class);
+    final ShadeCache sc =
+      new ShadeCache(new Area(new Rectangle(0, 0, 1000, 1000)), true, 16);
+
+    // run
+    sc.beginUpdate();
+    sc.update(a, new Area(new Rectangle(100, 100, 100, 100)));
+    sc.endUpdate();
+
+    // assert
+    final Area expected = new Area(new Rectangle(0, 0, 1000, 1000));
+    expected.subtract(new Area(new Rectangle(100, 100, 100, 100)));
+    assertTrue(expected.equals(union(sc.getCells(new Rectangle(0, 0, 1000, 1000), 1.0))));
+  }
+
+  @Test
+  public void movingAPieceShouldRebuildOnlyItsCells() {
+    // prepare
+    final GamePiece a = mock(GamePiece.class);
+    final GamePiece b = mock(GamePiece.class);
+    final ShadeCache sc = new ShadeCache(null, false, 16);
+    sc.beginUpdate();
+    sc.update(a, new Area(new Rectangle(100, 100, 50, 50)));
+    sc.update(b, new Area(new Rectangle(2100, 100, 50, 50)));
+    sc.endUpdate();
+    final List<ShadeCache.Cell> before =
+      sc.getCells(new Rectangle(0, 0, 3000, 3000), 1.0);
+    assertEquals(2, before.size());
+
+    // run
+    sc.beginUpdate();
+    sc.update(a, new Area(new Rectangle(120, 100, 50, 50)));
+    sc.update(b, new Area(new Rectangle(2100, 100, 50, 50)));
+    sc.endUpdate();
+    final List<ShadeCache.Cell> after =
+      sc.getCells(new Rectangle(0, 0, 3000, 3000), 1.0);
+
+    // assert
+    assertEquals(2, after.size());
+    assertNotSame(before.get(0), after.get(0));
+    assertSame(before.get(1), after.get(1));
+  }
+
+  @Test
+  public void reshapingAPieceInItsBoundsShouldRebuildItsCells() {
+    // prepare
+    final GamePiece a = mock(GamePiece.class);
+    final ShadeCache sc = new ShadeCache(null, false, 16);
+    sc.beginUpdate();
+    sc.update(a, new Area(new Rectangle(100, 100, 50, 50)));
+    sc.endUpdate();
+    final List<ShadeCache.Cell> before =
+      sc.getCells(new Rectangle(0, 0, 1000, 1000), 1.0);
+
+    // run
+    sc.beginUpdate();
+    sc.update(a, new Area(new Rectangle(100, 100, 50, 50)));
+    sc.endUpdate();
+
+    // assert
+    assertSame(before.get(0),
+      sc.getCells(new Rectangle(0, 0, 1000, 1000), 1.0).get(0));
+
+    // run
+    final Area ring = new Area(new Rectangle(100, 100, 50, 50));
+    ring.subtract(new Area(new Rectangle(110, 110, 30, 30)));
+    sc.beginUpdate();
+    sc.update(a, ring);
+    sc.endUpdate();
+
+    // assert
+    assertTrue(ring.equals(union(sc.getCells(new Rectangle(0, 0, 1000, 1000), 1.0))));
+  }
+
+  @Test
+  public void piecesNotUpdatedShouldBeDropped() {
+    // prepare
+    final GamePiece a = mock(GamePiece.class);
+    final ShadeCache sc = new ShadeCache(null, false, 16);
+    sc.beginUpdate();
+    sc.update(a, new Area(new Rectangle(100, 100, 50, 50)));
+    sc.endUpdate();
+
+    // run
+    sc.beginUpdate();
+    sc.endUpdate();
+
+    // assert
+    assertTrue(sc.getCells(new Rectangle(0, 0, 1000, 1000), 1.0).isEmpty());
+  }
+}
@@ -0,0 +1,156 @@
+package VASSAL.build.module.map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.mockito.Mockito.*;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import VASSAL.build.module.Map;
+import VASSAL.counters.GamePiece;
+
+@RunWith(MockitoJUnitRunner.class)
+public class SimplePieceCollectionTest {
+
+  private GamePiece piece(Map map, int x, int y) {
+    final GamePiece p = mock(GamePiece.class);
+    final Point pos = new Point(x, y);
+    when(p.getMap()).thenReturn(map);
+    when(p.getPosition()).thenAnswer(inv -> new Point(pos));
+    when(map.boundingBoxOf(p)).thenAnswer(
+      inv -> new Rectangle(pos.x - 25, pos.y - 25, 50, 50));
+    doAnswer(inv -> {
+      pos.setLocation((Point) inv.getArgument(0));
+      return null;
+    }).when(p).setPosition(any());
+    return p;
+  }
+
+  @Test
+  public void regionQueryShouldReturnOverlappingPiecesInOrder() {
+    // prepare
+    final Map map = mock(Map.class);
+    final GamePiece a = piece(map, 100, 100);
+    final GamePiece b = piece(map, 120, 100);
+    final GamePiece c = piece(map, 1000, 1000);
+    final SimplePieceCollection pc = new SimplePieceCollection();
+    pc.add(a);
+    pc.add(b);
+    pc.add(c);
+
+    // assert
+    assertArrayEquals(new GamePiece[]{a, b},
+      pc.getPiecesInRegion(new Rectangle(90, 90, 10, 10)));
+    assertArrayEquals(new GamePiece[]{c},
+      pc.getPiecesInRegion(new Rectangle(new Point(1010, 990))));
+    assertArrayEquals(new GamePiece[0],
+      pc.getPiecesInRegion(new Rectangle(500, 500, 10, 10)));
+    assertArrayEquals(new GamePiece[]{a, b, c},
+      pc.getPiecesInRegion(new Rectangle(0, 0, 2000, 2000)));
+  }
+
+  @Test
+  public void regionQueryShouldFollowDrawingOrder() {
+    // prepare
+    final Map map = mock(Map.class);
+    final GamePiece a = piece(map, 100, 100);
+    final GamePiece b = piece(map, 110, 100);
+    final GamePiece c = piece(map, 120, 100);
+    final SimplePieceCollection pc = new SimplePieceCollection();
+    pc.add(a);
+    pc.add(b);
+    pc.add(c);
+
+    // run
+    pc.moveToFront(a);
+    pc.moveToBack(c);
+
+    // assert
+    assertArrayEquals(pc.getPieces(),
+      pc.getPiecesInRegion(new Rectangle(100, 100, 1, 1)));
+    assertArrayEquals(new GamePiece[]{c, b, a},
+      pc.getPiecesInRegion(new Rectangle(100, 100, 1, 1)));
+
+    // run
+    pc.reposition(a, 1);
+
+    // assert
+    assertArrayEquals(new GamePiece[]{c, a, b},
+      pc.getPiecesInRegion(new Rectangle(100, 100, 1, 1)));
+  }
+
+  @Test
+  public void updatedPiecesShouldBeFoundAtNewLocation() {
+    // prepare
+    final Map map = mock(Map.class);
+    final GamePiece a = piece(map, 100, 100);
+    final SimplePieceCollection pc = new SimplePieceCollection();
+    pc.add(a);
+    assertArrayEquals(new GamePiece[]{a},
+      pc.getPiecesInRegion(new Rectangle(100, 100, 1, 1)));
+
+    // run
+    a.setPosition(new Point(5000, -5000));
+    pc.update(a);
+
+    // assert
+    assertArrayEquals(new GamePiece[0],
+      pc.getPiecesInRegion(new Rectangle(100, 100, 1, 1)));
+    assertArrayEquals(new GamePiece[]{a},
+      pc.getPiecesInRegion(new Rectangle(5000, -5000, 1, 1)));
+  }
+
+  @Test
+  public void invalidatedPiecesShouldBeFoundWithNewBounds() {
+    // prepare
+    final Map map = mock(Map.class);
+    final GamePiece a = piece(map, 100, 100);
+    final SimplePieceCollection pc = new SimplePieceCollection();
+    pc.add(a);
+    assertArrayEquals(new GamePiece[0],
+      pc.getPiecesInRegion(new Rectangle(300, 100, 1, 1)));
+
+    // run
+    // the piece grows without moving, as when a property it shows changes
+    when(map.boundingBoxOf(a)).thenReturn(new Rectangle(75, 75, 250, 50));
+    pc.invalidate();
+
+    // assert
+    assertArrayEquals(new GamePiece[]{a},
+      pc.getPiecesInRegion(new Rectangle(300, 100, 1, 1)));
+  }
+
+  @Test
+  public void removedPiecesShouldNotBeFound() {
+    // prepare
+    final Map map = mock(Map.class);
+    final GamePiece a = piece(map, 100, 100);
+    final GamePiece b = piece(map, 100, 100);
+    final SimplePieceCollection pc = new SimplePieceCollection();
+    pc.add(a);
+    pc.add(b);
+
+    // run
+    pc.remove(a);
+
+    // assert
+    assertArrayEquals(new GamePiece[]{b},
+      pc.getPiecesInRegion(new Rectangle(100, 100, 1, 1)));
+  }
+
+  @Test
+  public void piecesOffMapShouldAlwaysBeFound() {
+    // prepare
+    final GamePiece a = mock(GamePiece.class);
+    final SimplePieceCollection pc = new SimplePieceCollection();
+    pc.add(a);
+
+    // assert
+    assertArrayEquals(new GamePiece[]{a},
+      pc.getPiecesInRegion(new Rectangle(100, 100, 1, 1)));
+  }
+}
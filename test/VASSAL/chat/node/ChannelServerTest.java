@@ -0,0 +1,94 @@
+/*
+ * $Id$
+ *
+ * Copyright (c) 2020 by Joel Uckelman
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+package VASSAL.chat.node;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+public class ChannelServerTest {
+
+  private static class Client implements AutoCloseable {
+    final Socket socket;
+    final BufferedReader in;
+    final OutputStream out;
+
+    Client(int port) throws IOException {
+      socket = new Socket("localhost", port); //$NON-NLS-1$
+      socket.setSoTimeout(10000);
+      in = new BufferedReader(
+        new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+      out = socket.getOutputStream();
+    }
+
+    void write(String s) throws IOException {
+      out.write(s.getBytes(StandardCharsets.UTF_8));
+      out.flush();
+    }
+
+    String readUntil(String prefix) throws IOException {
+      String line;
+      while ((line = in.readLine()) != null && !line.startsWith(prefix));
+      return line;
+    }
+
+    @Override
+    public void close() throws IOException {
+      socket.close();
+    }
+  }
+
+  @Test
+  public void testForward() throws Exception {
+    final ChannelServer server =
+      new ChannelServer(new AsynchronousServerNode(null), 0, 2);
+    final int port = server.getLocalPort();
+
+    try (Client a = new Client(port); Client b = new Client(port)) {
+      a.write(Protocol.encodeRegisterCommand("a", "mod/Main Room", "") + '\n'); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+      b.write(Protocol.encodeRegisterCommand("b", "mod/Main Room", "") + "\r\n"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+
+      // wait until both are registered
+      while (!b.readUntil(Protocol.LIST).contains("a")); //$NON-NLS-1$
+
+      // a message sent in pieces arrives whole
+      final String msg = Protocol.encodeForwardCommand(
+        "mod/Main Room/b", "hello \u00e9t\u00e9") + '\n'; //$NON-NLS-1$ //$NON-NLS-2$
+      a.write(msg.substring(0, 10));
+      Thread.sleep(50);
+      a.write(msg.substring(10));
+      assertEquals("hello \u00e9t\u00e9", b.readUntil("hello")); //$NON-NLS-1$ //$NON-NLS-2$
+
+      // signing off closes the connection
+      b.write("!BYE\n"); //$NON-NLS-1$
+      assertNull(b.readUntil("!")); //$NON-NLS-1$
+    }
+    finally {
+      server.close();
+    }
+  }
+}
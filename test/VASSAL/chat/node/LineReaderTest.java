@@ -0,0 +1,87 @@
+/*
+ * $Id$
+ *
+ * Copyright (c) 2020 by Joel Uckelman
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+package VASSAL.chat.node;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class LineReaderTest {
+
+  private static List<String> readInPieces(String s, int pieceLength)
+                                                        throws IOException {
+    final byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+    final List<String> lines = new ArrayList<>();
+    final LineReader reader =
+      new LineReader(1000);
+
+    for (int i = 0; i < bytes.length; i += pieceLength) {
+      final ByteBuffer buf = ByteBuffer.wrap(
+        bytes, i, Math.min(pieceLength, bytes.length - i));
+      assertTrue(reader.read(buf, lines::add));
+      assertFalse(buf.hasRemaining());
+    }
+    reader.finish(lines::add);
+    return lines;
+  }
+
+  @Test
+  public void testLineEnds() throws IOException {
+    final String s = "a\nbc\r\nd\re\n\nf";
+    final List<String> expected = List.of("a", "bc", "d", "e", "", "f");
+
+    // however the input is broken up, the lines are the same
+    for (int n = 1; n <= s.length(); ++n) {
+      assertEquals(expected, readInPieces(s, n));
+    }
+  }
+
+  @Test
+  public void testSplitCharacters() throws IOException {
+    final String s = "\u00e9t\u00e9\n\u4e2d\u6587\n";
+    assertEquals(List.of("\u00e9t\u00e9", "\u4e2d\u6587"), readInPieces(s, 1));
+  }
+
+  @Test
+  public void testRefused() throws IOException {
+    final LineReader reader =
+      new LineReader(1000);
+    final ByteBuffer buf =
+      ByteBuffer.wrap("a\n!BYE\nb\n".getBytes(StandardCharsets.UTF_8));
+    final List<String> lines = new ArrayList<>();
+
+    assertFalse(reader.read(buf, l -> lines.add(l) && !"!BYE".equals(l)));
+    assertEquals(List.of("a", "!BYE"), lines);
+  }
+
+  @Test(expected = IOException.class)
+  public void testTooLong() throws IOException {
+    final LineReader reader = new LineReader(4);
+    reader.read(ByteBuffer.wrap(new byte[] { 'a', 'b', 'c' }), l -> true);
+    reader.read(ByteBuffer.wrap(new byte[] { 'd', 'e', '\n' }), l -> true);
+  }
+}
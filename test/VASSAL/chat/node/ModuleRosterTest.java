@@ -0,0 +1,185 @@
+/*
+ * $Id$
+ *
+ * Copyright (c) 2020 by Joel Uckelman
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+package VASSAL.chat.node;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class ModuleRosterTest {
+
+  private static Node player(String id, String info) {
+    return new Node(null, id, info);
+  }
+
+  // rooms as "room=info", each with its players as "id=info"
+  private static List<String> describe(Node module) {
+    final List<String> l = new ArrayList<>();
+    for (Node room : module.getChildren()) {
+      l.add(room.getId() + "=" + room.getInfo()); //$NON-NLS-1$
+      for (Node p : room.getChildren()) {
+        l.add(" " + p.getId() + "=" + p.getInfo()); //$NON-NLS-1$ //$NON-NLS-2$
+      }
+    }
+    return l;
+  }
+
+  @Test
+  public void testDeltas() {
+    final Node server = new Node(null, null, null);
+    final Node module = Node.build(server, "mod"); //$NON-NLS-1$
+    Node.build(server, "mod/Main Room").add(player("a", "A")); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+
+    final ModuleRoster serverRoster = new ModuleRoster();
+    assertNotNull(serverRoster.update(module));
+    assertNull(serverRoster.update(module));
+
+    final ModuleRoster client = ModuleRoster.decode(serverRoster.encode());
+    assertEquals(serverRoster.getVersion(), client.getVersion());
+    assertEquals(describe(module), describe(client.toNode("mod"))); //$NON-NLS-1$
+
+    // joins, a new room, a changed player
+    final Node b = player("b", "B"); //$NON-NLS-1$ //$NON-NLS-2$
+    Node.build(server, "mod/Main Room").add(b); //$NON-NLS-1$
+    final Node room = Node.build(server, "mod/Other/Room"); //$NON-NLS-1$
+    room.getParent().setInfo("owner=c"); //$NON-NLS-1$
+    final Node c = player("c", "C"); //$NON-NLS-1$ //$NON-NLS-2$
+    Node.build(server, "mod/Other").add(c); //$NON-NLS-1$
+    module.getChild("Other").remove(room); //$NON-NLS-1$
+    module.getChild("Main Room").getChild("a").setInfo("A2"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+
+    final String delta = serverRoster.update(module);
+    assertTrue(client.apply(delta));
+    assertEquals(describe(module), describe(client.toNode("mod"))); //$NON-NLS-1$
+
+    // the same delta cannot be applied twice
+    assertFalse(client.apply(delta));
+
+    // moves and leaves, and a room going
+    Node.build(server, "mod/Main Room").add(c); //$NON-NLS-1$
+    module.remove(module.getChild("Other")); //$NON-NLS-1$
+    module.getChild("Main Room").remove(b); //$NON-NLS-1$
+
+    assertTrue(client.apply(serverRoster.update(module)));
+    assertEquals(describe(module), describe(client.toNode("mod"))); //$NON-NLS-1$
+    assertEquals(serverRoster.getVersion(), client.getVersion());
+  }
+
+  @Test
+  public void testMissedDelta() {
+    final Node server = new Node(null, null, null);
+    final Node module = Node.build(server, "mod"); //$NON-NLS-1$
+    Node.build(server, "mod/Main Room").add(player("a", "A")); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+
+    final ModuleRoster serverRoster = new ModuleRoster();
+    serverRoster.update(module);
+    final ModuleRoster client = ModuleRoster.decode(serverRoster.encode());
+
+    Node.build(server, "mod/Main Room").add(player("b", "B")); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+    serverRoster.update(module);
+    Node.build(server, "mod/Main Room").add(player("c", "C")); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+
+    final long version = client.getVersion();
+    assertFalse(client.apply(serverRoster.update(module)));
+    assertEquals(version, client.getVersion());
+  }
+
+  private static class Connection implements LineConnection {
+    final BlockingQueue<String> lines = new LinkedBlockingQueue<>();
+
+    @Override
+    public void writeLine(String line) {
+      lines.add(line);
+    }
+
+    @Override
+    public void writeLine(ByteBuffer line) {
+      lines.add(LineConnection.decode(line));
+    }
+
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public InetAddress getInetAddress() {
+      return InetAddress.getLoopbackAddress();
+    }
+
+    @Override
+    public void startCompression(byte[] dictionary) {
+    }
+
+    String next(String prefix) throws InterruptedException {
+      String line;
+      do {
+        line = lines.poll(10, TimeUnit.SECONDS);
+      } while (line != null && !line.startsWith(prefix));
+      return line;
+    }
+  }
+
+  private static Connection join(AsynchronousServerNode server, String id,
+                                 boolean deltas) {
+    final PlayerNode player = new PlayerNode(server);
+    final Connection conn = new Connection();
+    player.setConnection(conn);
+    player.handleMessage(Protocol.encodeRegisterCommand(id, "mod/Main Room", "id=" + id)); //$NON-NLS-1$ //$NON-NLS-2$
+    if (deltas) {
+      player.handleMessage(Protocol.encodeRosterRequest());
+    }
+    return conn;
+  }
+
+  @Test
+  public void testServer() throws Exception {
+    final AsynchronousServerNode server = new AsynchronousServerNode(null);
+    final Connection a = join(server, "a", true); //$NON-NLS-1$
+    final Connection b = join(server, "b", false); //$NON-NLS-1$
+
+    final ModuleRoster roster =
+      ModuleRoster.decode(a.next(Protocol.ROSTER));
+    assertNotNull(b.next(Protocol.LIST));
+
+    while (roster.toNode("mod").getDescendant("Main Room/b") == null) { //$NON-NLS-1$ //$NON-NLS-2$
+      assertTrue(roster.apply(a.next(Protocol.ROSTER_DELTA)));
+    }
+
+    join(server, "c", false); //$NON-NLS-1$
+    while (roster.toNode("mod").getDescendant("Main Room/c") == null) { //$NON-NLS-1$ //$NON-NLS-2$
+      assertTrue(roster.apply(a.next(Protocol.ROSTER_DELTA)));
+    }
+    assertEquals(3, roster.toNode("mod").getChild("Main Room").getChildren().length); //$NON-NLS-1$ //$NON-NLS-2$
+
+    // the player taking deltas is never sent the whole list
+    assertTrue(a.lines.stream().noneMatch(l -> l.startsWith(Protocol.LIST)));
+  }
+}
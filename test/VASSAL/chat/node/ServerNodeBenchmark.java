@@ -0,0 +1,124 @@
+/*
+ * $Id$
+ *
+ * Copyright (c) 2020 by Joel Uckelman
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+package VASSAL.chat.node;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures how many forwards per second a {@link ServerNode} delivers
+ * when several threads forward to rooms spread over one or more modules,
+ * while other players join and leave, to show how the per-module locks
+ * let modules proceed independently.
+ *
+ * This is not a unit test. Run it by hand:
+ *
+ * <pre>
+ *   java -cp classes:lib/*:test-classes VASSAL.chat.node.ServerNodeBenchmark
+ * </pre>
+ */
+public class ServerNodeBenchmark {
+  private static final int THREADS = 4;
+  private static final int LEAVES_PER_MODULE = 10;
+  private static final long WARMUP_MILLIS = 1000;
+  private static final long RUN_MILLIS = 3000;
+
+  private static final String MSG = "msg"; //$NON-NLS-1$
+
+  private static class Leaf extends Node {
+    final AtomicLong received = new AtomicLong();
+
+    Leaf(String id) {
+      super(null, id, null);
+    }
+
+    @Override
+    public boolean isLeaf() {
+      return true;
+    }
+
+    @Override
+    public void send(String msg) {
+      received.incrementAndGet();
+    }
+  }
+
+  /**
+   * @return the forwards per second
+   */
+  private static long measure(int modules, long millis) throws Exception {
+    final ServerNode server = new ServerNode();
+    for (int m = 0; m < modules; ++m) {
+      for (int i = 0; i < LEAVES_PER_MODULE; ++i) {
+        server.registerNode("m" + m + "/Main Room", new Leaf("p" + i)); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+      }
+    }
+
+    final AtomicBoolean running = new AtomicBoolean(true);
+    final AtomicLong sent = new AtomicLong();
+    final ExecutorService exec = Executors.newFixedThreadPool(THREADS + 1);
+    final List<Future<?>> futures = new ArrayList<>();
+
+    for (int t = 0; t < THREADS; ++t) {
+      final String path = "m" + (t % modules) + "/Main Room"; //$NON-NLS-1$ //$NON-NLS-2$
+      futures.add(exec.submit(() -> {
+        while (running.get()) {
+          server.forward(path, MSG);
+          sent.incrementAndGet();
+        }
+      }));
+    }
+
+    // players come and go meanwhile
+    futures.add(exec.submit(() -> {
+      for (int n = 0; running.get(); ++n) {
+        final Leaf leaf = new Leaf("churn" + n); //$NON-NLS-1$
+        server.registerNode("m" + (n % modules) + "/Room " + n, leaf); //$NON-NLS-1$ //$NON-NLS-2$
+        server.disconnect(leaf);
+      }
+    }));
+
+    final long start = System.nanoTime();
+    Thread.sleep(millis);
+    running.set(false);
+    for (Future<?> f : futures) {
+      f.get(10, TimeUnit.SECONDS);
+    }
+    final long elapsed = System.nanoTime() - start;
+    exec.shutdown();
+
+    return sent.get() * TimeUnit.SECONDS.toNanos(1) / elapsed;
+  }
+
+  public static void main(String[] args) throws Exception {
+    for (int modules = 1; modules <= THREADS; modules *= 2) {
+      measure(modules, WARMUP_MILLIS);
+      System.out.println(THREADS + " threads, " + modules + " modules: " + //$NON-NLS-1$ //$NON-NLS-2$
+        measure(modules, RUN_MILLIS) + " forwards/s"); //$NON-NLS-1$
+    }
+    // each ServerNode keeps a Timer thread running
+    System.exit(0);
+  }
+}
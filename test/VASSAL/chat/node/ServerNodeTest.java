@@ -0,0 +1,230 @@
+/*
+ * $Id$
+ *
+ * Copyright (c) 2020 by Joel Uckelman
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+package VASSAL.chat.node;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+public class ServerNodeTest {
+  private static final String MSG = "msg"; //$NON-NLS-1$
+
+  private static class Leaf extends Node {
+    final AtomicLong received = new AtomicLong();
+
+    Leaf(String id) {
+      super(null, id, null);
+    }
+
+    @Override
+    public boolean isLeaf() {
+      return true;
+    }
+
+    @Override
+    public void send(String msg) {
+      if (MSG.equals(msg)) {
+        received.incrementAndGet();
+      }
+    }
+  }
+
+  // A leaf which holds up whoever sends to it until released
+  private static class SlowLeaf extends Leaf {
+    final CountDownLatch entered = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+
+    SlowLeaf(String id) {
+      super(id);
+    }
+
+    @Override
+    public void send(String msg) {
+      if (MSG.equals(msg)) {
+        entered.countDown();
+        try {
+          release.await();
+        }
+        catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+      super.send(msg);
+    }
+  }
+
+  // A leaf which takes lines encoded, as a PlayerNode does
+  private static class EncodedLeaf extends Leaf {
+    final List<ByteBuffer> lines = new ArrayList<>();
+
+    EncodedLeaf(String id) {
+      super(id);
+    }
+
+    @Override
+    public void send(ByteBuffer line) {
+      lines.add(line);
+    }
+  }
+
+  @Test
+  public void testRegisterMoveDisconnect() {
+    final ServerNode server = new ServerNode();
+    final Leaf a = new Leaf("a"); //$NON-NLS-1$
+    final Leaf b = new Leaf("b"); //$NON-NLS-1$
+
+    server.registerNode("mod/Main Room", a); //$NON-NLS-1$
+    server.registerNode("mod/Main Room", b); //$NON-NLS-1$
+    server.move(b, "mod/Other Room"); //$NON-NLS-1$
+    assertEquals("mod/Other Room/b", b.getPath()); //$NON-NLS-1$
+
+    server.forward("mod/*/~a", MSG); //$NON-NLS-1$
+    assertEquals(0, a.received.get());
+    assertEquals(1, b.received.get());
+
+    server.disconnect(b);
+    assertNull(server.getDescendant("mod/Other Room")); //$NON-NLS-1$
+    server.disconnect(a);
+    assertNull(server.getChild("mod")); //$NON-NLS-1$
+  }
+
+  @Test
+  public void testBroadcastEncodedOnce() {
+    final ServerNode server = new ServerNode();
+    final EncodedLeaf a = new EncodedLeaf("a"); //$NON-NLS-1$
+    final EncodedLeaf b = new EncodedLeaf("b"); //$NON-NLS-1$
+    final Leaf c = new Leaf("c"); //$NON-NLS-1$
+    server.registerNode("mod/Main Room", a); //$NON-NLS-1$
+    server.registerNode("mod/Main Room", b); //$NON-NLS-1$
+    server.registerNode("mod/Main Room", c); //$NON-NLS-1$
+
+    server.forward("mod/Main Room", MSG); //$NON-NLS-1$
+    assertEquals(1, a.lines.size());
+    assertEquals(1, b.lines.size());
+    assertSame(a.lines.get(0), b.lines.get(0));
+    assertEquals(MSG, LineConnection.decode(a.lines.get(0)));
+    // leaves which cannot take it encoded get it decoded
+    assertEquals(1, c.received.get());
+  }
+
+  @Test
+  public void testModulesDoNotWait() throws Exception {
+    final ServerNode server = new ServerNode();
+    final SlowLeaf slow = new SlowLeaf("slow"); //$NON-NLS-1$
+    final Leaf fast = new Leaf("fast"); //$NON-NLS-1$
+    server.registerNode("a/Main Room", slow); //$NON-NLS-1$
+    server.registerNode("b/Main Room", fast); //$NON-NLS-1$
+
+    final ExecutorService exec = Executors.newFixedThreadPool(2);
+    try {
+      // a forward in module a is stuck sending...
+      final Future<?> stuck =
+        exec.submit(() -> server.forward("a/Main Room", MSG)); //$NON-NLS-1$
+      slow.entered.await();
+
+      // ...which holds up neither forwarding nor joining in module b
+      exec.submit(() -> {
+        server.forward("b/Main Room", MSG); //$NON-NLS-1$
+        server.registerNode("b/Main Room", new Leaf("late")); //$NON-NLS-1$ //$NON-NLS-2$
+      }).get(10, TimeUnit.SECONDS);
+      assertEquals(1, fast.received.get());
+      assertNotNull(server.getDescendant("b/Main Room/late")); //$NON-NLS-1$
+
+      slow.release.countDown();
+      stuck.get(10, TimeUnit.SECONDS);
+    }
+    finally {
+      slow.release.countDown();
+      exec.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testConcurrentForwardsAreDelivered() throws Exception {
+    final int threads = 4;
+    final int modules = 2;
+    final int leavesPerModule = 10;
+    final int forwardsPerThread = 1000;
+
+    final ServerNode server = new ServerNode();
+    final List<Leaf> leaves = new ArrayList<>();
+    for (int m = 0; m < modules; ++m) {
+      for (int i = 0; i < leavesPerModule; ++i) {
+        final Leaf leaf = new Leaf("p" + i); //$NON-NLS-1$
+        leaves.add(leaf);
+        server.registerNode("m" + m + "/Main Room", leaf); //$NON-NLS-1$ //$NON-NLS-2$
+      }
+    }
+
+    final AtomicBoolean running = new AtomicBoolean(true);
+    final ExecutorService exec = Executors.newFixedThreadPool(threads + 1);
+    try {
+      final List<Future<?>> futures = new ArrayList<>();
+      for (int t = 0; t < threads; ++t) {
+        final String path = "m" + (t % modules) + "/Main Room"; //$NON-NLS-1$ //$NON-NLS-2$
+        futures.add(exec.submit(() -> {
+          for (int n = 0; n < forwardsPerThread; ++n) {
+            server.forward(path, MSG);
+          }
+        }));
+      }
+
+      // players come and go meanwhile
+      final Future<?> churn = exec.submit(() -> {
+        for (int n = 0; running.get(); ++n) {
+          final Leaf leaf = new Leaf("churn" + n); //$NON-NLS-1$
+          server.registerNode("m" + (n % modules) + "/Room " + n, leaf); //$NON-NLS-1$ //$NON-NLS-2$
+          server.disconnect(leaf);
+        }
+      });
+
+      for (Future<?> f : futures) {
+        f.get(30, TimeUnit.SECONDS);
+      }
+      running.set(false);
+      churn.get(10, TimeUnit.SECONDS);
+    }
+    finally {
+      running.set(false);
+      exec.shutdownNow();
+    }
+
+    long received = 0;
+    for (Leaf leaf : leaves) {
+      received += leaf.received.get();
+    }
+    assertEquals((long) threads * forwardsPerThread * leavesPerModule,
+      received);
+    assertEquals(modules, server.getChildren().length);
+  }
+}
@@ -0,0 +1,170 @@
+/*
+ * $Id$
+ *
+ * Copyright (c) 2020 by Joel Uckelman
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+package VASSAL.chat.node;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class SocketHandlerTest {
+
+  static class Watcher implements SocketWatcher {
+    final BlockingQueue<String> lines = new LinkedBlockingQueue<>();
+
+    @Override
+    public void handleMessage(String msg) {
+      lines.add(msg);
+    }
+
+    @Override
+    public void socketClosed(SocketHandler handler) {
+    }
+
+    String next(String prefix) throws InterruptedException {
+      String line;
+      do {
+        line = lines.poll(10, TimeUnit.SECONDS);
+      } while (line != null && !line.startsWith(prefix));
+      return line;
+    }
+  }
+
+  static byte[] dictionary() {
+    return "+/piece/type;with;many;parts\tmore;parts/state"
+      .getBytes(StandardCharsets.UTF_8);
+  }
+
+  static String repetitive(int n) {
+    final StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < n; ++i) {
+      sb.append("+/").append(i).append("/piece/type;with;many;parts\t"); //$NON-NLS-1$ //$NON-NLS-2$
+    }
+    return sb.toString();
+  }
+
+  @Test
+  public void testCompression() throws Exception {
+    try (ServerSocket ss = new ServerSocket(0);
+         Socket cs = new Socket("localhost", ss.getLocalPort()); //$NON-NLS-1$
+         Socket s = ss.accept()) {
+      final Watcher clientWatcher = new Watcher();
+      final Watcher serverWatcher = new Watcher();
+      final SocketHandler client = new SocketHandler(cs, clientWatcher);
+      final SocketHandler server = new SocketHandler(s, serverWatcher);
+      client.start();
+      server.start();
+
+      client.setCompressionDictionary(dictionary());
+      client.writeLine("before"); //$NON-NLS-1$
+      assertEquals("before", serverWatcher.next("")); //$NON-NLS-1$ //$NON-NLS-2$
+      assertFalse(client.isCompressing());
+
+      // the server starts, and the client follows
+      server.startCompression(dictionary());
+      server.writeLine("to client"); //$NON-NLS-1$
+      assertEquals("to client", clientWatcher.next("")); //$NON-NLS-1$ //$NON-NLS-2$
+      assertTrue(client.isCompressing());
+
+      final String big = repetitive(1000);
+      for (int i = 0; i < 3; ++i) {
+        client.writeLine(big + i);
+        server.writeLine(big + i);
+      }
+      for (int i = 0; i < 3; ++i) {
+        assertEquals(big + i, serverWatcher.next(""));
+        assertEquals(big + i, clientWatcher.next(""));
+      }
+
+      client.close();
+      server.close();
+    }
+  }
+
+  @Test(timeout = 10000)
+  public void testMarkerContentIsNotAMarker() throws Exception {
+    try (ServerSocket ss = new ServerSocket(0);
+         Socket cs = new Socket("localhost", ss.getLocalPort()); //$NON-NLS-1$
+         Socket s = ss.accept()) {
+      final SocketHandler server = new SocketHandler(s, new Watcher());
+      server.start();
+
+      // lines forwarded from other players which look like our markers
+      // must neither start compression nor end the connection
+      server.writeLine(Protocol.DEFLATE);
+      server.writeLine("!BYE"); //$NON-NLS-1$
+      server.writeLine("after"); //$NON-NLS-1$
+      assertFalse(server.isCompressing());
+
+      final BufferedReader in = new BufferedReader(
+        new InputStreamReader(cs.getInputStream(), StandardCharsets.UTF_8));
+      assertEquals(Protocol.DEFLATE, in.readLine());
+      assertEquals("!BYE", in.readLine()); //$NON-NLS-1$
+      assertEquals("after", in.readLine()); //$NON-NLS-1$
+
+      server.close();
+    }
+  }
+
+  @Test(timeout = 10000)
+  public void testChannelServer() throws Exception {
+    final ChannelServer server =
+      new ChannelServer(new AsynchronousServerNode(null), 0, 1);
+    final int port = server.getLocalPort();
+
+    try (Socket as = new Socket("localhost", port); //$NON-NLS-1$
+         Socket bs = new Socket("localhost", port)) { //$NON-NLS-1$
+      final Watcher aw = new Watcher();
+      final Watcher bw = new Watcher();
+      final SocketHandler a = new SocketHandler(as, aw);
+      final SocketHandler b = new SocketHandler(bs, bw);
+      a.start();
+      b.start();
+
+      // a compresses, b does not
+      a.setCompressionDictionary(dictionary());
+      a.writeLine(Protocol.encodeDeflateRequest(dictionary()));
+      a.writeLine(Protocol.encodeRegisterCommand("a", "mod/Main Room", "")); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+      b.writeLine(Protocol.encodeRegisterCommand("b", "mod/Main Room", "")); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+
+      while (!aw.next(Protocol.LIST).contains("b")); //$NON-NLS-1$
+      assertTrue(a.isCompressing());
+
+      final String big = repetitive(1000);
+      a.writeLine(Protocol.encodeForwardCommand("mod/Main Room/b", big + "a")); //$NON-NLS-1$ //$NON-NLS-2$
+      b.writeLine(Protocol.encodeForwardCommand("mod/Main Room/a", big + "b")); //$NON-NLS-1$ //$NON-NLS-2$
+      assertEquals(big + "a", bw.next("+")); //$NON-NLS-1$ //$NON-NLS-2$
+      assertEquals(big + "b", aw.next("+")); //$NON-NLS-1$ //$NON-NLS-2$
+    }
+    finally {
+      server.close();
+    }
+  }
+}
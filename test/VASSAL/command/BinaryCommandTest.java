@@ -0,0 +1,167 @@
+/*
+ * $Id$
+ *
+ * Copyright (c) 2020 by Joel Uckelman
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+package VASSAL.command;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.function.Function;
+
+import org.junit.Test;
+
+import VASSAL.tools.io.DeobfuscatingInputStream;
+import VASSAL.tools.io.ObfuscatingOutputStream;
+
+public class BinaryCommandTest {
+
+  private static final char DELIM = '\u001b';
+
+  private static class TextCommand extends Command {
+    private final String text;
+
+    public TextCommand(String text) {
+      this.text = text;
+    }
+
+    @Override
+    protected void executeCommand() {
+    }
+
+    @Override
+    protected Command myUndoCommand() {
+      return null;
+    }
+
+    @Override
+    public String getDetails() {
+      return text;
+    }
+  }
+
+  private static final Function<Command, String> encoder =
+    c -> ((TextCommand) c).text;
+
+  private static final Function<String, Command> decoder =
+    s -> "n".equals(s) ? null : new TextCommand(s);
+
+  private static final String TYPE =
+    "emb2;Activate;2;A;;0;0;;0;0;;1;false;0;0;a.png,b.png;,;true;Step;;;" +
+    "false;;1\tpiece;;;tank.png;Tank";
+
+  private static final String[] texts = {
+    null, "", "n", "begin_save", "+/1234567890123/" + TYPE + "/1\tmap;12;34;;",
+    "+/null/" + TYPE + "/2\tmap;1;1;;", "+/a\\/b/x/y", "+/1/2",
+    "-/1234567890123", "-/", "D/15/1\tstate/1\told", "D/15/st\\/ate",
+    "M/77/Main Map/100/-20/null/Main Map/0/0/88/player",
+    "M/77/Main Map/x/-20/null/Main Map/0/0/88/player",
+    "M/077/Main Map/1/2/null/null/0/0/null/p", "\u00e9\u4e2d"
+  };
+
+  private static Command randomCommand(Random r, int depth) {
+    final Command c = new TextCommand(texts[r.nextInt(texts.length)]);
+    if (depth < 3) {
+      final int n = r.nextInt(4);
+      for (int i = 0; i < n; ++i) {
+        c.append(randomCommand(r, depth + 1));
+      }
+    }
+    return c;
+  }
+
+  private static byte[] writeBinary(Command c) throws IOException {
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    new BinaryCommandWriter(encoder, out).write(c);
+    return out.toByteArray();
+  }
+
+  private static String writeText(Command c) throws IOException {
+    final StringWriter w = new StringWriter();
+    new CommandWriter(encoder, DELIM, w).write(c);
+    return w.toString();
+  }
+
+  @Test
+  public void testMatchesTextFormat() throws IOException {
+    final Random r = new Random(42);
+    for (int i = 0; i < 2000; ++i) {
+      final Command c = randomCommand(r, 0);
+      final Command text = new CommandReader(
+        decoder, DELIM, new StringReader(writeText(c))).read();
+      final Command bin = new BinaryCommandReader(
+        decoder, new ByteArrayInputStream(writeBinary(c))).read();
+      assertEquals(String.valueOf(text), String.valueOf(bin));
+    }
+  }
+
+  @Test
+  public void testDetectFormat() throws IOException {
+    final InputStream bin = new BufferedInputStream(
+      new ByteArrayInputStream(writeBinary(new TextCommand("a"))));
+    assertTrue(BinaryCommandReader.isBinary(bin));
+    assertEquals("TextCommand[a]",
+      new BinaryCommandReader(decoder, bin).read().toString());
+
+    final InputStream text = new BufferedInputStream(new ByteArrayInputStream(
+      "!VCSK00".getBytes(StandardCharsets.UTF_8)));
+    assertFalse(BinaryCommandReader.isBinary(text));
+    assertEquals('!', text.read());
+  }
+
+  @Test
+  public void testDetectObfuscatedFormat() throws IOException {
+    final ByteArrayOutputStream bout = new ByteArrayOutputStream();
+    try (OutputStream out = new ObfuscatingOutputStream(bout)) {
+      new BinaryCommandWriter(encoder, out).write(new TextCommand("a"));
+    }
+
+    final InputStream bin = new BufferedInputStream(
+      new DeobfuscatingInputStream(new ByteArrayInputStream(bout.toByteArray())));
+    assertTrue(BinaryCommandReader.isBinary(bin));
+    assertEquals("TextCommand[a]",
+      new BinaryCommandReader(decoder, bin).read().toString());
+  }
+
+  @Test
+  public void testPieceTypesAreShared() throws IOException {
+    // prepare
+    final Command c = new TextCommand("begin_save");
+    for (int i = 0; i < 3000; ++i) {
+      c.append(new TextCommand(
+        "+/" + (1580000000000L + i) + "/" + TYPE + "/1\tmap;" + i + ";34;;"));
+    }
+
+    // run
+    final int text = writeText(c).getBytes(StandardCharsets.UTF_8).length;
+    final int bin = writeBinary(c).length;
+
+    // assert
+    assertTrue(bin + " vs " + text, bin * 5 < text);
+  }
+}
@@ -0,0 +1,151 @@
+/*
+ * $Id$
+ *
+ * Copyright (c) 2020 by Joel Uckelman
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+package VASSAL.command;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Random;
+import java.util.function.Function;
+
+import org.junit.Test;
+
+import VASSAL.tools.SequenceEncoder;
+
+public class CommandReaderTest {
+
+  private static final char DELIM = '\u001b';
+
+  private static class TextCommand extends Command {
+    private final String text;
+
+    public TextCommand(String text) {
+      this.text = text;
+    }
+
+    @Override
+    protected void executeCommand() {
+    }
+
+    @Override
+    protected Command myUndoCommand() {
+      return null;
+    }
+
+    @Override
+    public String getDetails() {
+      return text;
+    }
+  }
+
+  // "n" stands for a command which cannot be decoded
+  private static final Function<String, Command> decoder =
+    s -> "n".equals(s) ? null : new TextCommand(s);
+
+  // the decoding done by BasicModule
+  private static Command decode(String command) {
+    if (command == null) {
+      return null;
+    }
+    Command c = null;
+    final SequenceEncoder.Decoder st =
+      new SequenceEncoder.Decoder(command, DELIM);
+    String first = st.nextToken();
+    if (command.equals(first)) {
+      c = decoder.apply(first);
+    }
+    else {
+      Command next = null;
+      c = decode(first);
+      while (st.hasMoreTokens()) {
+        next = decode(st.nextToken());
+        c = c == null ? next : c.append(next);
+      }
+    }
+    return c;
+  }
+
+  private static Command read(String s) throws IOException {
+    return new CommandReader(decoder, DELIM, new StringReader(s)).read();
+  }
+
+  private static void assertSame(String s) throws IOException {
+    assertEquals(s, String.valueOf(decode(s)), String.valueOf(read(s)));
+  }
+
+  @Test
+  public void testMatchesDecoderOnRandomText() throws IOException {
+    final char[] chars = { 'a', 'n', '\'', '\\', DELIM };
+    final Random r = new Random(42);
+    final StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < 20000; ++i) {
+      sb.setLength(0);
+      final int len = r.nextInt(12);
+      for (int j = 0; j < len; ++j) {
+        sb.append(chars[r.nextInt(chars.length)]);
+      }
+      assertSame(sb.toString());
+    }
+  }
+
+  @Test
+  public void testReadsWrittenCommands() throws IOException {
+    final String[] texts = {
+      "", "a", "'", "''", "'a'", "a\\", "\\", DELIM + "a", "a" + DELIM
+    };
+    final Random r = new Random(42);
+    for (int i = 0; i < 2000; ++i) {
+      final Command c = new TextCommand(texts[r.nextInt(texts.length)]);
+      Command p = c;
+      for (int j = r.nextInt(20); j > 0; --j) {
+        final Command sub = new TextCommand(texts[r.nextInt(texts.length)]);
+        if (r.nextBoolean()) {
+          p.append(sub);
+        }
+        else {
+          c.append(sub);
+          p = sub;
+        }
+      }
+
+      final StringWriter w = new StringWriter();
+      new CommandWriter(x -> ((TextCommand) x).text, DELIM, w).write(c);
+      assertSame(w.toString());
+    }
+  }
+
+  @Test
+  public void testTopLevelCommands() throws IOException {
+    // prepare
+    final String s = "a" + DELIM + "b\\" + DELIM + "c" + DELIM + "d";
+    final CommandReader r =
+      new CommandReader(decoder, DELIM, new StringReader(s));
+
+    // run, assert
+    assertTrue(r.hasNext());
+    assertEquals("TextCommand[a]", r.next().toString());
+    assertEquals("TextCommand[b]+TextCommand[c]", r.next().toString());
+    assertEquals("TextCommand[d]", r.next().toString());
+    assertFalse(r.hasNext());
+  }
+}
@@ -0,0 +1,191 @@
+/*
+ * $Id$
+ *
+ * Copyright (c) 2020 by Joel Uckelman
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+package VASSAL.command;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class CommandTest {
+
+  private static class LogCommand extends Command {
+    final String name;
+    final List<String> log;
+
+    public LogCommand(String name, List<String> log) {
+      this.name = name;
+      this.log = log;
+    }
+
+    @Override
+    protected void executeCommand() {
+      log.add(name);
+    }
+
+    @Override
+    protected Command myUndoCommand() {
+      return new LogCommand("~" + name, log);
+    }
+
+    @Override
+    public String getDetails() {
+      return name;
+    }
+  }
+
+  // A command which walks its own subtree, as some subclasses do
+  private static class OwnExecuteCommand extends LogCommand {
+    public OwnExecuteCommand(String name, List<String> log) {
+      super(name, log);
+    }
+
+    @Override
+    public void execute() {
+      log.add("(");
+      super.execute();
+      log.add(")");
+    }
+  }
+
+  private static Command tree(List<String> log) {
+    final Command a = new LogCommand("a", log);
+    final Command b = new LogCommand("b", log);
+    final Command c = new OwnExecuteCommand("c", log);
+    b.append(new LogCommand("b1", log));
+    b.append(new LogCommand("b2", log));
+    c.append(new LogCommand("c1", log));
+    a.append(b);
+    a.append(c);
+    a.append(new LogCommand("d", log));
+    return a;
+  }
+
+  @Test
+  public void testExecuteOrder() {
+    final List<String> log = new ArrayList<>();
+    tree(log).execute();
+    assertEquals(
+      List.of("a", "b", "b1", "b2", "(", "c", "c1", ")", "d"), log);
+  }
+
+  @Test
+  public void testUndoOrder() {
+    final List<String> log = new ArrayList<>();
+    final Command a = tree(log);
+    final Command undo = a.getUndoCommand();
+    assertSame(undo, a.getUndoCommand());
+
+    undo.execute();
+    assertEquals(
+      List.of("~d", "~c1", "~c", "~b2", "~b1", "~b", "~a"), log);
+  }
+
+  @Test
+  public void testDeepChain() throws IOException {
+    final List<String> log = new ArrayList<>();
+    final int n = 100_000;
+
+    final Command root = new LogCommand("0", log);
+    Command c = root;
+    for (int i = 1; i < n; ++i) {
+      final Command next = new LogCommand(String.valueOf(i), log);
+      c.append(next);
+      c = next;
+    }
+
+    root.execute();
+    assertEquals(n, log.size());
+    assertEquals("0", log.get(0));
+    assertEquals(String.valueOf(n - 1), log.get(n - 1));
+
+    log.clear();
+    root.getUndoCommand().execute();
+    assertEquals(n, log.size());
+    assertEquals("~" + (n - 1), log.get(0));
+    assertEquals("~0", log.get(n - 1));
+
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    new BinaryCommandWriter(x -> ((LogCommand) x).name, out).write(root);
+
+    Command r = new BinaryCommandReader(
+      s -> new LogCommand(s, log), new ByteArrayInputStream(out.toByteArray())
+    ).read();
+    for (int i = 0; i < n - 1; ++i) {
+      assertEquals(String.valueOf(i), r.getDetails());
+      assertEquals(1, r.getSubCommandCount());
+      r = r.getSubCommand(0);
+    }
+    assertEquals(0, r.getSubCommandCount());
+  }
+
+  @Test
+  public void testNoSubCommands() {
+    final Command c = new NullCommand();
+    assertEquals(0, c.getSubCommandCount());
+    assertEquals(0, c.getSubCommands().length);
+  }
+
+  @Test(expected = IndexOutOfBoundsException.class)
+  public void testGetSubCommandOutOfRange() {
+    final Command c = new NullCommand();
+    c.append(new NullCommand());
+    c.getSubCommand(1);
+  }
+
+  @Test
+  public void testAppendReturnValue() {
+    final List<String> log = new ArrayList<>();
+    final Command a = new LogCommand("a", log);
+
+    final Command n = new NullCommand();
+    assertSame(a, n.append(a));
+    assertSame(a, a.append(new LogCommand("b", log)));
+  }
+
+  @Test
+  public void testBatchFlattens() {
+    final List<String> log = new ArrayList<>();
+    final Command a = new LogCommand("a", log);
+    final Command b = new LogCommand("b", log);
+    final Command c = new LogCommand("c", log);
+
+    final Command inner = new NullCommand();
+    inner.append(a);
+    inner.append(b);
+
+    final Command batch = new CommandBatch();
+    assertSame(batch, batch.append(inner));
+    batch.append(new NullCommand());
+    batch.append(c);
+
+    final Command[] expected = { a, b, c };
+    assertArrayEquals(expected, batch.getSubCommands());
+
+    batch.execute();
+    assertEquals(List.of("a", "b", "c"), log);
+  }
+}
@@ -0,0 +1,110 @@
+/*
+ * $Id$
+ *
+ * Copyright (c) 2020 by Joel Uckelman
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+package VASSAL.command;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Random;
+import java.util.function.Function;
+
+import org.junit.Test;
+
+import VASSAL.tools.SequenceEncoder;
+
+public class CommandWriterTest {
+
+  private static final char DELIM = '\u001b';
+
+  private static class TextCommand extends Command {
+    private final String text;
+
+    public TextCommand(String text) {
+      this.text = text;
+    }
+
+    @Override
+    protected void executeCommand() {
+    }
+
+    @Override
+    protected Command myUndoCommand() {
+      return null;
+    }
+  }
+
+  private static final Function<Command, String> encoder =
+    c -> ((TextCommand) c).text;
+
+  // the encoding done by BasicModule
+  private static String encode(Command c) {
+    String s = encoder.apply(c);
+    final Command[] sub = c.getSubCommands();
+    if (sub.length > 0) {
+      final SequenceEncoder se = new SequenceEncoder(s, DELIM);
+      for (Command command : sub) {
+        final String s2 = encode(command);
+        if (s2 != null) {
+          se.append(s2);
+        }
+      }
+      s = se.getValue();
+    }
+    return s;
+  }
+
+  private static String write(Command c) throws IOException {
+    final StringWriter w = new StringWriter();
+    new CommandWriter(encoder, DELIM, w).write(c);
+    return w.toString();
+  }
+
+  private static final String[] texts = {
+    null, "", "a", "'", "''", "'a'", "a\\", "\\", DELIM + "a",
+    "a" + DELIM, "a" + DELIM + "b", "'" + DELIM + "'", "\\" + DELIM
+  };
+
+  private static Command randomCommand(Random r, int depth) {
+    final Command c = new TextCommand(texts[r.nextInt(texts.length)]);
+    if (depth < 4) {
+      final int n = r.nextInt(4);
+      for (int i = 0; i < n; ++i) {
+        c.append(randomCommand(r, depth + 1));
+      }
+    }
+    return c;
+  }
+
+  @Test
+  public void testSingleCommand() throws IOException {
+    assertEquals("a" + DELIM + "b", write(new TextCommand("a" + DELIM + "b")));
+    assertEquals("", write(new TextCommand(null)));
+  }
+
+  @Test
+  public void testMatchesSequenceEncoder() throws IOException {
+    final Random r = new Random(42);
+    for (int i = 0; i < 5000; ++i) {
+      final Command c = randomCommand(r, 0);
+      final String expected = encode(c);
+      assertEquals(expected == null ? "" : expected, write(c));
+    }
+  }
+}
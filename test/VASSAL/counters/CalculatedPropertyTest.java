@@ -0,0 +1,115 @@
+/*
+ * $Id$
+ *
+ * Copyright (c) 2020 by Joel Uckelman
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+package VASSAL.counters;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class CalculatedPropertyTest {
+
+  private DynamicProperty strength;
+
+  @Before
+  public void setUp() {
+    final BasicPiece bp = new BasicPiece(BasicPiece.ID + ";;;Test;");
+    strength = new DynamicProperty(DynamicProperty.ID + "Strength", bp);
+    strength.setValue("5");
+    CalculatedProperty.resetStatistics();
+  }
+
+  private CalculatedProperty calc(String expr, GamePiece inner) {
+    return new CalculatedProperty(
+      CalculatedProperty.ID + "Calc;" + expr, inner);
+  }
+
+  @Test
+  public void testValueIsReused() {
+    // prepare
+    final CalculatedProperty cp = calc("{Strength*2}", strength);
+
+    // run
+    final Object first = cp.getProperty("Calc");
+    final Object second = cp.getProperty("Calc");
+
+    // assert
+    assertEquals("10", first);
+    assertEquals("10", second);
+    assertEquals(1, CalculatedProperty.getEvaluationCount());
+    assertEquals(1, CalculatedProperty.getCacheHitCount());
+  }
+
+  @Test
+  public void testInputChangeForcesEvaluation() {
+    // prepare
+    final CalculatedProperty cp = calc("{Strength*2}", strength);
+    assertEquals("10", cp.getProperty("Calc"));
+
+    // run
+    strength.setValue("6");
+
+    // assert
+    assertEquals("12", cp.getProperty("Calc"));
+    assertEquals(2, CalculatedProperty.getEvaluationCount());
+  }
+
+  @Test
+  public void testCallbackReadsAreTracked() {
+    // prepare
+    final CalculatedProperty cp =
+      calc("{GetProperty(\"Strength\")+1}", strength);
+    assertEquals("6", cp.getProperty("Calc"));
+
+    // run
+    strength.setValue("7");
+
+    // assert
+    assertEquals("8", cp.getProperty("Calc"));
+  }
+
+  @Test
+  public void testNestedCalculatedProperties() {
+    // prepare
+    final CalculatedProperty inner = new CalculatedProperty(
+      CalculatedProperty.ID + "Double;{Strength*2}", strength);
+    final CalculatedProperty cp = calc("{Double+1}", inner);
+    assertEquals("11", cp.getProperty("Calc"));
+
+    // run
+    strength.setValue("1");
+
+    // assert
+    assertEquals("3", cp.getProperty("Calc"));
+  }
+
+  @Test
+  public void testUntrackedExpressionIsNotReused() {
+    // prepare
+    final CalculatedProperty cp = calc("{SumStack(\"Strength\")}", strength);
+
+    // run
+    cp.getProperty("Calc");
+    cp.getProperty("Calc");
+
+    // assert
+    assertEquals(2, CalculatedProperty.getEvaluationCount());
+    assertEquals(0, CalculatedProperty.getCacheHitCount());
+  }
+}
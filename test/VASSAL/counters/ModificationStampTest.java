@@ -0,0 +1,106 @@
+/*
+ * $Id$
+ *
+ * Copyright (c) 2020 by Joel Uckelman
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+package VASSAL.counters;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import VASSAL.tools.imageop.GamePieceOpImpl;
+
+public class ModificationStampTest {
+
+  private static DynamicProperty makePiece() {
+    final BasicPiece bp = new BasicPiece(BasicPiece.ID + ";;;Test;");
+    return new DynamicProperty(DynamicProperty.ID + "Strength", bp);
+  }
+
+  @Test
+  public void testUntouchedPieceKeepsStamp() {
+    final DynamicProperty dp = makePiece();
+    final long s = dp.getModificationStamp();
+
+    dp.myGetState();
+    dp.getProperty(Properties.VISIBLE_STATE);
+
+    assertEquals(s, dp.getModificationStamp());
+  }
+
+  @Test
+  public void testInnerChangeRaisesOuterStamp() {
+    // prepare
+    final DynamicProperty dp = makePiece();
+    final long s = dp.getModificationStamp();
+
+    // run
+    dp.getInner().setProperty("Foo", "bar");
+
+    // assert
+    assertTrue(dp.getModificationStamp() > s);
+  }
+
+  @Test
+  public void testSetStateRaisesStamp() {
+    // prepare
+    final DynamicProperty dp = makePiece();
+    final long s = dp.getModificationStamp();
+
+    // run
+    dp.setState("5\tnull;0;0;;0");
+
+    // assert
+    assertTrue(dp.getModificationStamp() > s);
+  }
+
+  @Test
+  public void testPlayerDependentTraitHasNoStamp() {
+    final Hideable h = new Hideable(Hideable.ID + "I", makePiece());
+    assertTrue(h.getModificationStamp() < 0);
+  }
+
+  @Test
+  public void testGamePieceOpSeesChange() {
+    // prepare
+    final DynamicProperty dp = makePiece();
+    final GamePieceOpImpl op = new GamePieceOpImpl(dp);
+    assertFalse(op.isChanged());
+
+    // run
+    dp.setProperty("Strength", "5");
+
+    // assert
+    assertTrue(op.isChanged());
+  }
+
+  @Test
+  public void testGamePieceOpIgnoresStampOnlyChange() {
+    // prepare
+    final DynamicProperty dp = makePiece();
+    final GamePieceOpImpl op = new GamePieceOpImpl(dp);
+
+    // run
+    dp.setProperty("Foo", "bar");
+
+    // assert
+    assertFalse(op.isChanged());
+    assertFalse(op.isChanged());
+  }
+}
@@ -0,0 +1,126 @@
+/*
+ * $Id$
+ *
+ * Copyright (c) 2020 by Joel Uckelman
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+package VASSAL.counters;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.List;
+
+import VASSAL.build.GameModule;
+import VASSAL.build.module.BasicCommandEncoder;
+import VASSAL.command.AddPiece;
+import VASSAL.configure.ColorConfigurer;
+import VASSAL.tools.DataArchive;
+
+/**
+ * Reports the time and heap taken to build a synthetic game of many
+ * copies of a few typical counters from their types, as
+ * {@link BasicCommandEncoder#createPiece} does when loading a save.
+ *
+ * This is not a unit test. Run it by hand, with a fixed heap so that
+ * the figures are comparable between builds:
+ *
+ * <pre>
+ *   java -Xms512m -Xmx512m -cp classes:lib/*:test-classes VASSAL.counters.PieceTypeHeapReport
+ * </pre>
+ */
+public class PieceTypeHeapReport {
+  private static final int PIECES = 10000;
+  private static final int KINDS = 20;
+  private static final int ROUNDS = 5;
+
+  // a counter with a base image, a damage layer, a step-loss layer,
+  // a text label and a marker, as is common in wargames
+  private static String makeType(BasicCommandEncoder enc, int kind) {
+    GamePiece p = new BasicPiece(
+      BasicPiece.ID + ";;unit" + kind + ".png;Unit " + kind);
+    p = new Marker(Marker.ID + "Side,Type,Class", p);
+    p = new Embellishment(Embellishment.ID + "Flip;" +
+      "130;F;;130;;;130;;;;1;false;0;0;" +
+      "unit" + kind + "-reduced.png,unit" + kind + "-full.png;" +
+      "Reduced,Full;true;Step;;;false;;1;1;true;65,130;;", p);
+    p = new Embellishment(Embellishment.ID + "Damage;" +
+      "130;D;;130;;;130;;;;1;false;0;0;" +
+      "dmg1.png,dmg2.png,dmg3.png;+ 1 hit,+ 2 hits,+ 3 hits;" +
+      "true;Damage;;;false;;1;1;true;68,130;;", p);
+    p = new Labeler(Labeler.ID + "76,130;Change Label;10;;" +
+      ColorConfigurer.colorToString(Color.black) + ";t;0;c;0;b;c;$pieceName$;Dialog;0;0;" +
+      "TextLabel;", p);
+    return enc.encode(new AddPiece(p));
+  }
+
+  private static long usedHeap() {
+    final Runtime rt = Runtime.getRuntime();
+    for (int i = 0; i < 4; ++i) {
+      System.gc();
+      try {
+        Thread.sleep(50);
+      }
+      catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    return rt.totalMemory() - rt.freeMemory();
+  }
+
+  public static void main(String[] args) throws Exception {
+    final BasicCommandEncoder enc = new BasicCommandEncoder();
+
+    final GameModule module = mock(GameModule.class);
+    final DataArchive archive = mock(DataArchive.class);
+    when(module.getDataArchive()).thenReturn(archive);
+    when(module.createPiece(anyString())).thenAnswer(
+      inv -> enc.createPiece(inv.getArgument(0)));
+    GameModule.init(module);
+
+    final String[] types = new String[KINDS];
+    for (int i = 0; i < KINDS; ++i) {
+      // decode and keep only the type of each AddPiece, as a save holds it
+      final String encoded = makeType(enc, i);
+      types[i] = ((AddPiece) enc.decode(encoded)).getTarget().getType();
+    }
+
+    double best = Double.MAX_VALUE;
+    long perPiece = 0;
+    List<GamePiece> pieces = null;
+    for (int r = 0; r < ROUNDS; ++r) {
+      pieces = null;
+      final long before = usedHeap();
+
+      final long start = System.nanoTime();
+      pieces = new ArrayList<>(PIECES);
+      for (int i = 0; i < PIECES; ++i) {
+        // each piece gets its own copy of its type, as when read from a file
+        pieces.add(enc.createPiece(new String(types[i % KINDS])));
+      }
+      best = Math.min(best, (System.nanoTime() - start) / 1e6);
+
+      perPiece = (usedHeap() - before) / PIECES;
+    }
+
+    System.out.printf("%d pieces of %d types%n", pieces.size(), KINDS);
+    System.out.printf("construction  best %8.1f ms%n", best);
+    System.out.printf("retained heap      %8d bytes/piece%n", perPiece);
+    System.exit(0);
+  }
+}
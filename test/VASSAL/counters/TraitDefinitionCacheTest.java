@@ -0,0 +1,83 @@
+/*
+ * $Id$
+ *
+ * Copyright (c) 2020 by Joel Uckelman
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+package VASSAL.counters;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+public class TraitDefinitionCacheTest {
+
+  private static final String LAYER_TYPE = Embellishment.ID +
+    "Activate;130;A;;130;;;130;;;;1;false;0;0;,,;Low,Mid,High;true;Level;" +
+    ";;false;;1;1;true;65,130;;";
+
+  private static Embellishment makeLayer() {
+    return new Embellishment(
+      new String(LAYER_TYPE), new BasicPiece(BasicPiece.ID + ";;;Test;"));
+  }
+
+  @Test
+  public void testSameTypeSharesDefinition() {
+    final Object a = TraitDefinitionCache.get(
+      TraitDefinitionCacheTest.class, new String("x"), StringBuilder::new);
+    final Object b = TraitDefinitionCache.get(
+      TraitDefinitionCacheTest.class, new String("x"), StringBuilder::new);
+    final Object c = TraitDefinitionCache.get(
+      TraitDefinitionCacheTest.class, "y", StringBuilder::new);
+
+    assertSame(a, b);
+    assertNotSame(a, c);
+  }
+
+  @Test
+  public void testMarkersShareKeysNotValues() {
+    // prepare
+    final Marker m1 = new Marker(Marker.ID + "Side,Type", null);
+    final Marker m2 = new Marker(new String(Marker.ID + "Side,Type"), null);
+
+    // run
+    m1.setProperty("Side", "Allied");
+
+    // assert
+    assertSame(m1.getKeys(), m2.getKeys());
+    assertEquals("Allied", m1.getProperty("Side"));
+    assertEquals("", m2.getProperty("Side"));
+  }
+
+  @Test
+  public void testLayersShareDefinitionNotState() {
+    // prepare
+    final Embellishment e1 = makeLayer();
+    final Embellishment e2 = makeLayer();
+
+    // run
+    e1.setValue(2);
+
+    // assert
+    assertSame(e1.imageName, e2.imageName);
+    assertSame(e1.commonName, e2.commonName);
+    assertNotSame(e1.imagePainter, e2.imagePainter);
+    assertEquals(2, e1.getValue());
+    assertEquals(0, e2.getValue());
+    assertEquals(LAYER_TYPE, e1.myGetType());
+  }
+}
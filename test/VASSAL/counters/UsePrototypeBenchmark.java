@@ -0,0 +1,165 @@
+/*
+ * $Id$
+ *
+ * Copyright (c) 2020 by Joel Uckelman
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+package VASSAL.counters;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.Collections;
+
+import VASSAL.build.GameModule;
+import VASSAL.build.module.BasicCommandEncoder;
+import VASSAL.build.module.PrototypeDefinition;
+import VASSAL.build.module.PrototypesContainer;
+import VASSAL.build.module.properties.PropertySource;
+import VASSAL.command.AddPiece;
+import VASSAL.command.Command;
+import VASSAL.tools.FormattedString;
+
+/**
+ * Measures the cost of drawing a piece through a {@link UsePrototype}
+ * trait, with the expansion reused and with it rebuilt on every call
+ * as was done before prototype definitions had versions.
+ *
+ * This is not a unit test. Run it by hand:
+ *
+ * <pre>
+ *   java -cp classes:lib/*:test-classes VASSAL.counters.UsePrototypeBenchmark
+ * </pre>
+ */
+public class UsePrototypeBenchmark {
+  private static final int WARMUP = 5;
+  private static final int ITERATIONS = 10;
+  private static final int OPS = 20000;
+
+  private static final String PROTO = "Unit";
+
+  private static String definition;
+
+  private static PrototypeDefinition setUp() throws Exception {
+    final BasicCommandEncoder enc = new BasicCommandEncoder();
+
+    final GameModule module = mock(GameModule.class);
+    when(module.decode(anyString())).thenAnswer(
+      inv -> enc.decode(inv.getArgument(0)));
+    when(module.encode(any(Command.class))).thenAnswer(
+      inv -> enc.encode(inv.getArgument(0)));
+    when(module.createPiece(anyString())).thenAnswer(
+      inv -> enc.createPiece(inv.getArgument(0)));
+    GameModule.init(module);
+
+    // a prototype of a dozen traits, parameterized by $side$
+    GamePiece p = new BasicPiece(BasicPiece.ID + ";;;;");
+    for (int i = 0; i < 12; ++i) {
+      p = new Marker(Marker.ID + "Prop" + i, p);
+      p.setProperty("Prop" + i, "$side$ " + i);
+    }
+
+    definition = enc.encode(new AddPiece(p));
+
+    final PrototypeDefinition def = new PrototypeDefinition();
+    def.setConfigureName(PROTO);
+    def.setPiece(p);
+
+    final PrototypesContainer pc = new PrototypesContainer();
+    pc.add(def);
+    when(module.getComponentsOf(PrototypesContainer.class))
+      .thenReturn(Collections.singletonList(pc));
+
+    return def;
+  }
+
+  private interface Op {
+    void run();
+  }
+
+  private static void measure(String name, Op op) {
+    for (int i = 0; i < WARMUP; ++i) {
+      for (int j = 0; j < OPS; ++j) {
+        op.run();
+      }
+    }
+
+    double best = Double.MAX_VALUE;
+    double total = 0.0;
+    for (int i = 0; i < ITERATIONS; ++i) {
+      final long start = System.nanoTime();
+      for (int j = 0; j < OPS; ++j) {
+        op.run();
+      }
+      final double nsPerOp = (double) (System.nanoTime() - start) / OPS;
+      best = Math.min(best, nsPerOp);
+      total += nsPerOp;
+    }
+
+    System.out.printf("%-10s avg %10.1f ns/op   best %10.1f ns/op%n",
+                      name, total / ITERATIONS, best);
+  }
+
+  public static void main(String[] args) throws Exception {
+    final PrototypeDefinition def = setUp();
+
+    final UsePrototype up = new UsePrototype(
+      UsePrototype.ID + PROTO + ";side=Allied",
+      new BasicPiece(BasicPiece.ID + ";;;;")
+    );
+
+    final Graphics2D g =
+      new BufferedImage(64, 64, BufferedImage.TYPE_INT_ARGB).createGraphics();
+
+    final PropertySource props = new PropertySource() {
+      @Override
+      public Object getProperty(Object key) {
+        return "side".equals(key) ? "Allied" : null;
+      }
+
+      @Override
+      public Object getLocalizedProperty(Object key) {
+        return getProperty(key);
+      }
+    };
+
+    // what every call to getExpandedInner() used to do before drawing:
+    // expand the definition, decode it, and compare its type
+    final String lastType = def.getPiece(props).getType();
+    final Op before = () -> {
+      final String expanded = new FormattedString(definition).getText(props);
+      final AddPiece c =
+        (AddPiece) GameModule.getGameModule().decode(expanded);
+      final GamePiece gp = c.getTarget();
+      gp.setState(c.getState());
+      if (!gp.getType().equals(lastType)) {
+        throw new IllegalStateException();
+      }
+      up.draw(g, 0, 0, null, 1.0);
+    };
+
+    final Op after = () -> up.draw(g, 0, 0, null, 1.0);
+
+    measure("before", before);
+    measure("after", after);
+
+    g.dispose();
+    System.exit(0);
+  }
+}
@@ -0,0 +1,149 @@
+/*
+ * $Id$
+ *
+ * Copyright (c) 2020 by Joel Uckelman
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+package VASSAL.script;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import VASSAL.build.module.properties.PropertySource;
+import VASSAL.script.expression.ExpressionException;
+
+public class ExpressionCompilerTest {
+
+  private static final Map<String,String> props = new HashMap<>();
+  static {
+    props.put("A", "5");
+    props.put("B", "2.5");
+    props.put("S", "abc");
+    props.put("T", "true");
+    props.put("F", "false");
+    props.put("E", "");
+  }
+
+  private static final PropertySource source = new PropertySource() {
+    @Override
+    public Object getProperty(Object key) {
+      return props.get(key);
+    }
+
+    @Override
+    public Object getLocalizedProperty(Object key) {
+      return props.get(key);
+    }
+  };
+
+  private static String evaluate(ExpressionInterpreter i) {
+    try {
+      return i.evaluate(source);
+    }
+    catch (ExpressionException e) {
+      return "error";
+    }
+  }
+
+  private static String interpret(String expr) throws ExpressionException {
+    final ExpressionInterpreter i = ExpressionInterpreter.createInterpreter(expr);
+    i.compileTried = true;
+    i.compiled = null;
+    return evaluate(i);
+  }
+
+  private static String compile(String expr) throws ExpressionException {
+    final ExpressionInterpreter i = ExpressionInterpreter.createInterpreter(expr);
+    i.compileTried = true;
+    i.compiled = ExpressionCompiler.compile(i.getExpression(), i.variables);
+    assertNotNull(expr, i.compiled);
+    return evaluate(i);
+  }
+
+  @Test
+  public void testCompiledMatchesInterpreter() throws ExpressionException {
+    final String[] exprs = {
+      "A+1", "A*B", "A/2", "B*2", "-A", "A+S", "S+\"d\"", "A+E", "X+1",
+      "A==5", "S==\"abc\"", "S<\"b\"", "T==\"true\"", "A>=5 && B<=2.5",
+      "F||T&&F", "!T", "A>3 ? \"big\" : \"small\"", "If(A>3,1,2)+1",
+      "If(A>3,1,2)==If(A>3,1,2)", "GetProperty(\"A\")+1",
+      "GetProperty(\"T\")&&T", "$A$+1", "'c'+1", "1.0/0", "S-1",
+      "A?1:2", "If(T,null,1)", "null", "A =~ 1", "\"x\\\"\\n\"+S"
+    };
+
+    for (String e : exprs) {
+      assertEquals(e, interpret(e), compile(e));
+    }
+  }
+
+  @Test
+  public void testUnsupportedExpressionIsInterpreted() throws ExpressionException {
+    // prepare
+    final ExpressionInterpreter i =
+      ExpressionInterpreter.createInterpreter("Math.max(A,2)+1");
+
+    // run
+    final ExpressionCompiler.Evaluator e =
+      ExpressionCompiler.compile(i.getExpression(), i.variables);
+
+    // assert
+    assertNull(e);
+    assertEquals("6", i.evaluate(source));
+  }
+
+  @Test
+  public void testExpressionIsCompiledWhenUsed() throws ExpressionException {
+    // prepare
+    final ExpressionInterpreter i =
+      ExpressionInterpreter.createInterpreter("A*100+B");
+
+    // run
+    for (int n = 0; n <= ExpressionCompiler.THRESHOLD; ++n) {
+      assertNull(i.compiled);
+      assertEquals("502.5", i.evaluate(source));
+    }
+
+    // assert
+    assertNotNull(i.compiled);
+    assertEquals("502.5", i.evaluate(source));
+  }
+
+  @Test
+  public void testShortCircuitReadsOnlyLhs() throws ExpressionException {
+    // prepare
+    final String expr = "F && S==\"abc\"";
+    compile(expr);
+    final PropertyRecorder r = PropertyRecorder.start();
+
+    // run
+    final String result;
+    try {
+      result = ExpressionInterpreter.createInterpreter(expr).evaluate(source);
+    }
+    finally {
+      r.stop();
+    }
+
+    // assert
+    assertEquals("false", result);
+    assertEquals(1, r.getSnapshot().size());
+  }
+}
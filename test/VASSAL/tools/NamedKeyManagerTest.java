@@ -0,0 +1,76 @@
+/*
+ * $Id$
+ *
+ * Copyright (c) 2020 by Joel Uckelman
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+package VASSAL.tools;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.swing.KeyStroke;
+
+import org.junit.Test;
+
+public class NamedKeyManagerTest {
+
+  @Test
+  public void testConcurrentNamesGetDistinctStrokes() throws Exception {
+    final int threads = 8;
+    final int names = 500;
+
+    final ExecutorService exec = Executors.newFixedThreadPool(threads);
+    try {
+      final List<Future<KeyStroke[]>> futures = new ArrayList<>();
+      for (int t = 0; t < threads; ++t) {
+        futures.add(exec.submit(() -> {
+          final KeyStroke[] ks = new KeyStroke[names];
+          for (int i = 0; i < names; ++i) {
+            ks[i] = new NamedKeyStroke("concurrent" + i).getKeyStroke(); //$NON-NLS-1$
+          }
+          return ks;
+        }));
+      }
+
+      final KeyStroke[] first = futures.get(0).get(30, TimeUnit.SECONDS);
+      for (Future<KeyStroke[]> f : futures) {
+        final KeyStroke[] ks = f.get(30, TimeUnit.SECONDS);
+        for (int i = 0; i < names; ++i) {
+          // every thread gets the same stroke for a name...
+          assertEquals(first[i], ks[i]);
+        }
+      }
+
+      // ...and no two names share one
+      final Set<KeyStroke> distinct = new HashSet<>();
+      for (KeyStroke k : first) {
+        distinct.add(k);
+      }
+      assertEquals(names, distinct.size());
+    }
+    finally {
+      exec.shutdownNow();
+    }
+  }
+}
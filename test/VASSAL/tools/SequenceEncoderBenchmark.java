@@ -0,0 +1,156 @@
+/*
+ * $Id$
+ *
+ * Copyright (c) 2020 by Joel Uckelman
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+package VASSAL.tools;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.awt.Color;
+
+import VASSAL.build.GameModule;
+import VASSAL.build.module.BasicCommandEncoder;
+import VASSAL.command.AddPiece;
+import VASSAL.configure.ColorConfigurer;
+import VASSAL.counters.BasicPiece;
+import VASSAL.counters.DynamicProperty;
+import VASSAL.counters.Embellishment;
+import VASSAL.counters.GamePiece;
+import VASSAL.counters.Labeler;
+import VASSAL.counters.Marker;
+
+/**
+ * Measures {@link SequenceEncoder.Decoder} taking apart the type and state
+ * of a typical counter, as encoded into a saved game: the nested traits
+ * are split on tabs, and each trait's fields on semicolons.
+ *
+ * This is not a unit test. Run it by hand:
+ *
+ * <pre>
+ *   java -cp classes:lib/*:test-classes VASSAL.tools.SequenceEncoderBenchmark
+ * </pre>
+ */
+public class SequenceEncoderBenchmark {
+  private static final int WARMUP = 5;
+  private static final int ITERATIONS = 10;
+  private static final int OPS = 20000;
+
+  private static String makeCommand() throws Exception {
+    final GameModule module = mock(GameModule.class);
+    final DataArchive archive = mock(DataArchive.class);
+    when(module.getDataArchive()).thenReturn(archive);
+    GameModule.init(module);
+
+    GamePiece p = new BasicPiece(BasicPiece.ID + ";;unit.png;1-23 Infantry");
+    p = new Marker(Marker.ID + "Side,Type,Class", p);
+    p.setProperty("Side", "Allied");
+    p = new DynamicProperty(DynamicProperty.ID +
+      "Strength;;,;;0;10;true;,80\\,130\\,Increase\\,1\\,,Change\\,;", p);
+    p = new Embellishment(Embellishment.ID + "Flip;" +
+      "130;F;;130;;;130;;;;1;false;0;0;" +
+      "unit-reduced.png,unit-full.png;Reduced,Full;" +
+      "true;Step;;;false;;1;1;true;65,130;;", p);
+    p = new Embellishment(Embellishment.ID + "Damage;" +
+      "130;D;;130;;;130;;;;1;false;0;0;" +
+      "dmg1.png,dmg2.png,dmg3.png;+ 1 hit,+ 2 hits,+ 3 hits;" +
+      "true;Damage;;;false;;1;1;true;68,130;;", p);
+    p = new Labeler(Labeler.ID + "76,130;Change Label;10;;" +
+      ColorConfigurer.colorToString(Color.black) +
+      ";t;0;c;0;b;c;$pieceName$;Dialog;0;0;TextLabel;", p);
+    return new BasicCommandEncoder().encode(new AddPiece(p));
+  }
+
+  private static int sink;
+
+  // take a nested type or state apart the way the traits do
+  private static void decode(String s, char outer, char inner) {
+    final SequenceEncoder.Decoder st = new SequenceEncoder.Decoder(s, outer);
+    final String head = st.nextToken();
+    final SequenceEncoder.Decoder fields =
+      new SequenceEncoder.Decoder(head, inner);
+    while (fields.hasMoreTokens()) {
+      sink += fields.nextToken().length();
+    }
+    if (st.hasMoreTokens()) {
+      decode(st.nextToken(), outer, inner);
+    }
+  }
+
+  private interface Op {
+    void run();
+  }
+
+  private static void measure(String name, Op op) {
+    for (int i = 0; i < WARMUP; ++i) {
+      for (int j = 0; j < OPS; ++j) {
+        op.run();
+      }
+    }
+
+    double best = Double.MAX_VALUE;
+    double total = 0.0;
+    for (int i = 0; i < ITERATIONS; ++i) {
+      final long start = System.nanoTime();
+      for (int j = 0; j < OPS; ++j) {
+        op.run();
+      }
+      final double nsPerOp = (double) (System.nanoTime() - start) / OPS;
+      best = Math.min(best, nsPerOp);
+      total += nsPerOp;
+    }
+
+    System.out.printf("%-10s avg %10.1f ns/op   best %10.1f ns/op%n",
+                      name, total / ITERATIONS, best);
+  }
+
+  public static void main(String[] args) throws Exception {
+    final SequenceEncoder.Decoder cmd =
+      new SequenceEncoder.Decoder(makeCommand(), '/');
+    cmd.nextToken();
+    cmd.nextToken();
+    final String type = cmd.nextToken();
+    final String state = cmd.nextToken();
+
+    final String ints = "1;0;-3;120;65;130;1;1;true;false;2;0";
+    final String color = "32,145,212;0,0,0;255,255,255;;128,64,32";
+
+    measure("type", () -> decode(type, '\t', ';'));
+    measure("state", () -> decode(state, '\t', ';'));
+    measure("ints", () -> {
+      final SequenceEncoder.Decoder st =
+        new SequenceEncoder.Decoder(ints, ';');
+      for (int i = 0; i < 8; ++i) {
+        sink += st.nextInt(0);
+      }
+      sink += st.nextBoolean(false) ? 1 : 0;
+      sink += st.nextBoolean(false) ? 1 : 0;
+      sink += st.nextChar('x');
+      sink += st.nextLong(0);
+    });
+    measure("color", () -> {
+      final SequenceEncoder.Decoder st =
+        new SequenceEncoder.Decoder(color, ';');
+      while (st.hasMoreTokens()) {
+        final Color c = st.nextColor(null);
+        sink += c == null ? 0 : c.getRGB();
+      }
+    });
+
+    System.exit(sink == 42 ? 1 : 0);
+  }
+}
@@ -20,8 +20,11 @@ package VASSAL.tools;
 
 import java.awt.Color;
 import java.awt.event.KeyEvent;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.Random;
 import javax.swing.KeyStroke;
 
 import VASSAL.configure.PropertyExpression;
@@ -199,4 +202,117 @@ public class SequenceEncoderTest {
     assertEquals("", sd.nextToken());
     assertEquals(value2, sd.nextToken());
   }
+
+  // The decoder as it was before it scanned in place, for comparison
+  private static List<String> legacyDecode(String val, char delimit) {
+    final List<String> tokens = new ArrayList<>();
+    while (val != null) {
+      String value;
+      final int i = val.indexOf(delimit);
+      if (i < 0) {
+        value = val;
+        val = null;
+      }
+      else {
+        final StringBuilder buffer = new StringBuilder();
+        int begin = 0;
+        int end = i;
+        while (begin < end) {
+          if (val.charAt(end - 1) == '\\') {
+            buffer.append(val.substring(begin, end - 1));
+            begin = end;
+            end = val.indexOf(delimit, end + 1);
+          }
+          else {
+            break;
+          }
+        }
+
+        if (end < 0) {
+          buffer.append(val.substring(begin));
+          val = null;
+        }
+        else {
+          buffer.append(val.substring(begin, end));
+          val = end >= val.length() - 1 ? "" : val.substring(end + 1);
+        }
+
+        value = buffer.toString();
+      }
+
+      if (value.startsWith("'") && value.endsWith("'") && value.length() > 1) {
+        value = value.substring(1, value.length() - 1);
+      }
+
+      tokens.add(value);
+    }
+    return tokens;
+  }
+
+  @Test
+  public void testDecodeMatchesLegacy() {
+    final Random r = new Random(42);
+    final char[] alphabet = { 'a', '1', ',', ';', '\\', '\'', ' ' };
+    for (int n = 0; n < 20000; ++n) {
+      final char[] c = new char[r.nextInt(12)];
+      for (int i = 0; i < c.length; ++i) {
+        c[i] = alphabet[r.nextInt(alphabet.length)];
+      }
+      final String s = new String(c);
+
+      final List<String> tokens = new ArrayList<>();
+      final SequenceEncoder.Decoder sd = new SequenceEncoder.Decoder(s, ',');
+      while (sd.hasMoreTokens()) {
+        tokens.add(sd.nextToken());
+      }
+
+      assertEquals(s, legacyDecode(s, ','), tokens);
+    }
+  }
+
+  @Test
+  public void testTypedValuesOfEscapedTokens() {
+    final SequenceEncoder.Decoder sd =
+      new SequenceEncoder.Decoder("'12',tr\\,ue,'true',1\\,2\\,3,x,", ',');
+    assertEquals(12, sd.nextInt(0));
+    assertFalse(sd.nextBoolean(true));
+    assertTrue(sd.nextBoolean(false));
+    assertEquals(new Color(1, 2, 3), sd.nextColor(null));
+    assertEquals(7, sd.nextInt(7));
+    assertTrue(sd.hasMoreTokens());
+    assertEquals('z', sd.nextChar('z'));
+    assertFalse(sd.hasMoreTokens());
+  }
+
+  @Test
+  public void testTypedValuesInPlace() {
+    final SequenceEncoder.Decoder sd = new SequenceEncoder.Decoder(
+      "-5,12345678901,true,truer,255,0,9,null,,Q,", ',');
+    assertEquals(-5, sd.nextInt(0));
+    assertEquals(12345678901L, sd.nextLong(0));
+    assertTrue(sd.nextBoolean(false));
+    assertFalse(sd.nextBoolean(true));
+    assertEquals(new Color(255, 0, 9), new SequenceEncoder.Decoder(
+      "255,0,9", ';').nextColor(null));
+    assertEquals(255, sd.nextInt(0));
+    assertEquals(0, sd.nextInt(1));
+    assertEquals(9, sd.nextInt(0));
+    assertNull(sd.nextColor(Color.RED));
+    assertNull(sd.nextColor(Color.RED));
+    assertEquals('Q', sd.nextChar('x'));
+    assertEquals('x', sd.nextChar('x'));
+    assertEquals(3, sd.nextInt(3));
+  }
+
+  @Test
+  public void testCopyResumesAtPosition() {
+    final SequenceEncoder.Decoder sd =
+      new SequenceEncoder.Decoder("a,b\\,c,d", ',');
+    sd.nextToken();
+    final SequenceEncoder.Decoder cp = sd.copy();
+    assertEquals("b,c", sd.nextToken());
+    assertEquals("b,c", cp.nextToken());
+    assertEquals("d", cp.nextToken());
+    assertFalse(cp.hasMoreTokens());
+  }
 }
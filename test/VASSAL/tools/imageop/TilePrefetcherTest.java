@@ -0,0 +1,82 @@
+package VASSAL.tools.imageop;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.*;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import VASSAL.tools.opcache.OpCache;
+
+@RunWith(MockitoJUnitRunner.class)
+public class TilePrefetcherTest {
+
+  // 4x4 tiles of 256x256
+  private final ImageOp op = Op.load(
+    new BufferedImage(1024, 1024, BufferedImage.TYPE_INT_ARGB));
+
+  private Set<Object> prefetched(OpCache cache, int times) {
+    final ArgumentCaptor<OpCache.Key<?>> captor =
+      ArgumentCaptor.forClass(OpCache.Key.class);
+    verify(cache, times(times)).prefetch(captor.capture());
+    final Set<Object> ops = new HashSet<>();
+    for (OpCache.Key<?> k : captor.getAllValues()) {
+      ops.add(k.op);
+    }
+    return ops;
+  }
+
+  @Test
+  public void stationaryViewShouldPrefetchAllAround() {
+    // prepare
+    final OpCache cache = mock(OpCache.class);
+    final TilePrefetcher tp = new TilePrefetcher(cache, 1);
+
+    // run
+    tp.prefetchAround(op, new Rectangle(256, 256, 256, 256));
+
+    // assert
+    final Set<Object> ops = prefetched(cache, 8);
+    for (int x = 0; x < 3; ++x) {
+      for (int y = 0; y < 3; ++y) {
+        assertEquals(x != 1 || y != 1, ops.contains(op.getTileOp(x, y)));
+      }
+    }
+  }
+
+  @Test
+  public void movingViewShouldPrefetchAhead() {
+    // prepare
+    final OpCache cache = mock(OpCache.class);
+    final TilePrefetcher tp = new TilePrefetcher(cache, 1);
+    tp.prefetchAround(op, new Rectangle(256, 256, 256, 256));
+    reset(cache);
+
+    // run
+    tp.prefetchAround(op, new Rectangle(300, 256, 256, 256));
+
+    // assert
+    final Set<Object> ops = prefetched(cache, 1);
+    assertEquals(true, ops.contains(op.getTileOp(3, 1)));
+  }
+
+  @Test
+  public void zeroRingShouldPrefetchNothing() {
+    // prepare
+    final OpCache cache = mock(OpCache.class);
+    final TilePrefetcher tp = new TilePrefetcher(cache, 0);
+
+    // run
+    tp.prefetchAround(op, new Rectangle(256, 256, 256, 256));
+
+    // assert
+    verifyNoInteractions(cache);
+  }
+}
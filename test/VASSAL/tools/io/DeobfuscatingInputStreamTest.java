@@ -19,7 +19,11 @@
 package VASSAL.tools.io;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
 
 import org.junit.*;
 import static org.junit.Assert.*;
@@ -77,4 +81,57 @@ public class DeobfuscatingInputStreamTest {
 
     assertArrayEquals(expected, result);
   }
+
+  // an input stream which hands out at most one byte per read
+  private static class TrickleInputStream extends FilterInputStream {
+    public TrickleInputStream(InputStream in) {
+      super(in);
+    }
+
+    @Override
+    public int read(byte[] bytes, int off, int len) throws IOException {
+      return super.read(bytes, off, Math.min(len, 1));
+    }
+  }
+
+  /** Test round trip of data longer than the buffers, read a byte at a time. */
+  @Test
+  public void testRoundTripTrickle() throws IOException {
+    final byte[] expected = new byte[20000];
+    new Random(2).nextBytes(expected);
+
+    final ByteArrayOutputStream bout = new ByteArrayOutputStream();
+    try (ObfuscatingOutputStream out = new ObfuscatingOutputStream(bout)) {
+      out.write(expected);
+    }
+
+    final DeobfuscatingInputStream in =
+      new DeobfuscatingInputStream(
+        new TrickleInputStream(new ByteArrayInputStream(bout.toByteArray())));
+
+    final byte[] result = IOUtils.toByteArray(in);
+    in.close();
+
+    assertArrayEquals(expected, result);
+  }
+
+  /** Test that a bad hex digit is an error. */
+  @Test(expected=IOException.class)
+  public void testBadDigit() throws IOException {
+    final byte[] b = (obfus.substring(0, 20) + "xy").getBytes("UTF-8");
+    try (DeobfuscatingInputStream in =
+           new DeobfuscatingInputStream(new ByteArrayInputStream(b))) {
+      IOUtils.toByteArray(in);
+    }
+  }
+
+  /** Test that a byte cut in half is an error. */
+  @Test(expected=IOException.class)
+  public void testTruncated() throws IOException {
+    final byte[] b = obfus.substring(0, obfus.length() - 1).getBytes("UTF-8");
+    try (DeobfuscatingInputStream in =
+           new DeobfuscatingInputStream(new ByteArrayInputStream(b))) {
+      IOUtils.toByteArray(in);
+    }
+  }
 }
@@ -20,6 +20,7 @@ package VASSAL.tools.io;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.util.Random;
 
 import org.junit.*;
 import static org.junit.Assert.*;
@@ -45,4 +46,49 @@ public class ObfuscatingOutputStreamTest {
 
     assertArrayEquals(expected, bout.toByteArray());
   }
+
+  @Test
+  public void testMixedWritesMatchSingleByteOutput() throws IOException {
+    final byte[] data = new byte[20000];
+    new Random(1).nextBytes(data);
+
+    // one byte at a time
+    final ByteArrayOutputStream b1 = new ByteArrayOutputStream();
+    try (ObfuscatingOutputStream out = new ObfuscatingOutputStream(b1, key)) {
+      for (byte b : data) {
+        out.write(b);
+      }
+    }
+
+    // in chunks of various sizes, some larger than the buffer
+    final ByteArrayOutputStream b2 = new ByteArrayOutputStream();
+    try (ObfuscatingOutputStream out = new ObfuscatingOutputStream(b2, key)) {
+      int off = 0;
+      int len = 1;
+      while (off < data.length) {
+        len = Math.min(len, data.length - off);
+        out.write(data, off, len);
+        off += len;
+        len = len * 3 + 1;
+        if (off < data.length) {
+          out.write(data[off++]);
+        }
+      }
+    }
+
+    assertArrayEquals(b1.toByteArray(), b2.toByteArray());
+    assertEquals(ObfuscatingOutputStream.HEADER.length() + 2 + 2*data.length,
+                 b1.size());
+  }
+
+  @Test
+  public void testFlushWritesBufferedBytes() throws IOException {
+    final ByteArrayOutputStream bout = new ByteArrayOutputStream();
+    final ObfuscatingOutputStream out = new ObfuscatingOutputStream(bout, key);
+    out.write(plain.getBytes("UTF-8"));
+    out.flush();
+
+    assertEquals(obfus, bout.toString("UTF-8"));
+    out.close();
+  }
 }
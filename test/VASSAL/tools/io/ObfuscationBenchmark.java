@@ -0,0 +1,139 @@
+/*
+ * $Id$
+ *
+ * Copyright (c) 2020 by Joel Uckelman
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Library General Public
+ * License (LGPL) as published by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this library; if not, copies are available
+ * at http://www.opensource.org.
+ */
+package VASSAL.tools.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Measures the throughput of {@link ObfuscatingOutputStream} and
+ * {@link DeobfuscatingInputStream} on save-like text, against that of
+ * the ZIP codec which a saved game also passes through.
+ *
+ * This is not a unit test. Run it by hand:
+ *
+ * <pre>
+ *   java -cp classes:lib/*:test-classes VASSAL.tools.io.ObfuscationBenchmark
+ * </pre>
+ */
+public class ObfuscationBenchmark {
+  private static final int WARMUP = 5;
+  private static final int ITERATIONS = 10;
+
+  private interface Op {
+    void run() throws IOException;
+  }
+
+  private static void measure(String name, long bytes, Op op)
+                                                          throws IOException {
+    for (int i = 0; i < WARMUP; ++i) {
+      op.run();
+    }
+
+    double best = 0.0;
+    for (int i = 0; i < ITERATIONS; ++i) {
+      final long start = System.nanoTime();
+      op.run();
+      final double mbps = bytes / ((System.nanoTime() - start) / 1e9) / 1e6;
+      best = Math.max(best, mbps);
+    }
+
+    System.out.printf("%-12s best %8.1f MB/s%n", name, best);
+  }
+
+  private static void copy(InputStream in, OutputStream out)
+                                                          throws IOException {
+    final byte[] buf = new byte[8192];
+    int n;
+    while ((n = in.read(buf)) > 0) {
+      out.write(buf, 0, n);
+    }
+  }
+
+  public static void main(String[] args) throws IOException {
+    // about 8 MB of text resembling the commands in a saved game
+    final StringBuilder sb = new StringBuilder();
+    for (int i = 0; sb.length() < 8_000_000; ++i) {
+      sb.append("\u001b+/").append(1588000000000L + i)
+        .append("/piece;;;unit").append(i % 50).append(".png;Unit ")
+        .append(i % 50).append("\\\tmark;Side/Allied\\\t;Main Map;")
+        .append(i * 7 % 1000).append(';').append(i * 13 % 800).append(';')
+        .append(i % 3).append("\\\t");
+    }
+    final byte[] plain = sb.toString().getBytes(StandardCharsets.UTF_8);
+
+    final ByteArrayOutputStream obfusOut =
+      new ByteArrayOutputStream(2 * plain.length + 16);
+    try (OutputStream out = new ObfuscatingOutputStream(obfusOut)) {
+      out.write(plain);
+    }
+    final byte[] obfus = obfusOut.toByteArray();
+
+    final ByteArrayOutputStream zipOut = new ByteArrayOutputStream();
+    try (ZipOutputStream out = new ZipOutputStream(zipOut)) {
+      out.putNextEntry(new ZipEntry("savedGame"));
+      out.write(obfus);
+    }
+    final byte[] zip = zipOut.toByteArray();
+
+    final ByteArrayOutputStream sink =
+      new ByteArrayOutputStream(2 * plain.length + 16);
+
+    measure("obfuscate", plain.length, () -> {
+      sink.reset();
+      try (OutputStream out = new ObfuscatingOutputStream(sink)) {
+        copy(new ByteArrayInputStream(plain), out);
+      }
+    });
+
+    measure("deobfuscate", plain.length, () -> {
+      sink.reset();
+      try (InputStream in =
+             new DeobfuscatingInputStream(new ByteArrayInputStream(obfus))) {
+        copy(in, sink);
+      }
+    });
+
+    measure("deflate", plain.length, () -> {
+      sink.reset();
+      try (ZipOutputStream out = new ZipOutputStream(sink)) {
+        out.putNextEntry(new ZipEntry("savedGame"));
+        copy(new ByteArrayInputStream(obfus), out);
+      }
+    });
+
+    measure("inflate", plain.length, () -> {
+      sink.reset();
+      try (ZipInputStream in =
+             new ZipInputStream(new ByteArrayInputStream(zip))) {
+        in.getNextEntry();
+        copy(in, sink);
+      }
+    });
+
+    System.exit(0);
+  }
+}